@@ -0,0 +1,67 @@
+package com.medilabo.benchmarks;
+
+import com.medilabo.microrisk.index.PatientBitmap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a cohort query on the bitmaps of the cohort index of microrisk: the patients having two risk words
+ * and one of two risk levels, minus the patients having a third risk word.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CohortIndexBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int patients;
+
+    private PatientBitmap smokers;
+    private PatientBitmap cholesterol;
+    private PatientBitmap relapse;
+    private PatientBitmap inDanger;
+    private PatientBitmap earlyOnset;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        smokers = randomBitmap(random, 0.3);
+        cholesterol = randomBitmap(random, 0.2);
+        relapse = randomBitmap(random, 0.05);
+        inDanger = randomBitmap(random, 0.1);
+        earlyOnset = randomBitmap(random, 0.02);
+    }
+
+    @Benchmark
+    public long cohortQuery() {
+        return smokers.and(cholesterol)
+                .and(inDanger.or(earlyOnset))
+                .andNot(relapse)
+                .cardinality();
+    }
+
+    private PatientBitmap randomBitmap(Random random, double density) {
+        PatientBitmap bitmap = new PatientBitmap();
+        for (long patientId = 1; patientId <= patients; patientId++) {
+            if (random.nextDouble() < density) {
+                bitmap.add(patientId);
+            }
+        }
+        return bitmap;
+    }
+}
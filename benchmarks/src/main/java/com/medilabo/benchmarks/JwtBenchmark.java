@@ -0,0 +1,49 @@
+package com.medilabo.benchmarks;
+
+import com.medilabo.gateway.util.JwtUtil;
+import com.medilabo.microauth.service.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation of a token by microauth at login, and its validation by the gateway,
+ * which happens for every request to a secured route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private final JwtService jwtService = new JwtService();
+    private final JwtUtil jwtUtil = new JwtUtil();
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        token = jwtService.generateToken("user");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken("user");
+    }
+
+    @Benchmark
+    public void validateToken() {
+        jwtUtil.validateToken(token);
+    }
+}
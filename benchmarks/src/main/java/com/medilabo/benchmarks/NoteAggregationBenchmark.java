@@ -0,0 +1,170 @@
+package com.medilabo.benchmarks;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.repository.NoteRepository;
+import com.medilabo.microrisk.repository.NoteRiskTermRepositoryImpl;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Compares counting the risk words of a patient by transferring the note contents to microrisk
+ * against evaluating them with the MongoDB aggregation, for patients with more and more notes.
+ * Requires a MongoDB server, {@code mongodb://localhost:27017} unless set with {@code -Dmongo.uri=...}.
+ * The bytes of the server replies of each path are measured once per note volume, and printed before the iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteAggregationBenchmark {
+
+    private static final Long PATIENT_ID = 1L;
+    private static final String[] SENTENCES = {
+            "Le patient déclare qu'il se sent bien. ",
+            "Poids égal ou inférieur au poids recommandé. ",
+            "Le patient déclare qu'il fume depuis peu, il est Fumeur. ",
+            "Taille et poids stables depuis la dernière visite. ",
+            "Hémoglobine A1C supérieure au niveau recommandé. ",
+            "Le patient signale des Vertiges et une Réaction aux anticorps. ",
+            "Cholestérol LDL anormal, à surveiller lors de la prochaine visite. ",
+            "Rechute constatée, Microalbumine élevée. "};
+
+    @Param({"10", "100", "1000"})
+    private int notes;
+
+    private MongoClient mongoClient;
+    private AnnotationConfigApplicationContext context;
+    private NoteRepository noteRepository;
+    private RiskVocabulary vocabulary;
+
+    private final AtomicLong replyBytes = new AtomicLong();
+    private volatile boolean measuringReplies;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CommandListener replies = new CommandListener() {
+            @Override
+            public void commandSucceeded(CommandSucceededEvent event) {
+                if (measuringReplies) {
+                    replyBytes.addAndGet(sizeOf(event.getResponse()));
+                }
+            }
+        };
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(System.getProperty("mongo.uri", "mongodb://localhost:27017")))
+                .addCommandListener(replies)
+                .build());
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, "medilabo-benchmarks");
+
+        mongoTemplate.dropCollection(Note.class);
+        mongoTemplate.indexOps(Note.class).ensureIndex(new TextIndexDefinition.TextIndexDefinitionBuilder().onField("content").build());
+        mongoTemplate.indexOps(Note.class).ensureIndex(new Index("patientId", Sort.Direction.ASC));
+        Random random = new Random(42);
+        List<Note> patientNotes = new ArrayList<>(notes);
+        for (int i = 0; i < notes; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int j = 0; j < 8; j++) {
+                content.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+            }
+            // Every note has a risk word, so that the text search selects the same notes for both paths
+            content.append("Fumeur.");
+            patientNotes.add(new Note(null, PATIENT_ID, "Kenobi", content.toString()));
+        }
+        mongoTemplate.insertAll(patientNotes);
+
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(MongoTemplate.class, () -> mongoTemplate);
+        context.registerBean(NoteRiskTermRepositoryImpl.class);
+        context.refresh();
+        noteRepository = new MongoRepositoryFactory(mongoTemplate)
+                .getRepository(NoteRepository.class, context.getBean(NoteRiskTermRepositoryImpl.class));
+        vocabulary = RiskVocabulary.compile(1,
+                List.of("Hémoglobine A1C", "Microalbumine", "Taille", "Poids", "Fumeur", "Fumeuse", "Anormal",
+                        "Cholestérol", "Vertiges", "Vertige", "Rechute", "Réaction", "Anticorps"),
+                List.of("Égal", "Recommandé"));
+
+        long contentsBytes = measureReplies(this::noteContents);
+        long aggregationBytes = measureReplies(this::aggregation);
+        if (noteContents() != aggregation()) {
+            throw new IllegalStateException("Both paths must count the same risk words");
+        }
+        System.out.printf("%n%d notes: %d bytes replied for the note contents, %d bytes for the aggregation%n",
+                notes, contentsBytes, aggregationBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        mongoClient.close();
+    }
+
+    /**
+     * Counts the risk words by matching the note contents in microrisk.
+     */
+    @Benchmark
+    public long noteContents() {
+        // Every note is read, as done by the aggregation
+        try (Stream<Note> patientNotes = noteRepository.streamNotesByContentAndPatientId(vocabulary.getSearchQuery(), PATIENT_ID)) {
+            return Long.bitCount(patientNotes.mapToLong(note -> vocabulary.getMatcher().match(note.getContent()))
+                    .reduce(0L, (first, second) -> first | second));
+        }
+    }
+
+    /**
+     * Counts the risk words returned by the aggregation.
+     */
+    @Benchmark
+    public long aggregation() {
+        return Long.bitCount(vocabulary.getMatcher().maskOf(noteRepository.findRiskTermsByPatientId(vocabulary, PATIENT_ID)));
+    }
+
+    private long measureReplies(Runnable query) {
+        replyBytes.set(0);
+        measuringReplies = true;
+        query.run();
+        measuringReplies = false;
+        return replyBytes.get();
+    }
+
+    private static long sizeOf(BsonDocument reply) {
+        return reply instanceof RawBsonDocument raw
+                ? raw.getByteBuffer().remaining()
+                : new RawBsonDocument(reply, new BsonDocumentCodec()).getByteBuffer().remaining();
+    }
+}
@@ -0,0 +1,156 @@
+package com.medilabo.benchmarks;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queries of the notes of a patient as the notes collection grows, with the indexes declared by micronotes
+ * ({@code patientId_createdAt_id} and the French text index on {@code content}) and without them, through a collection scan.
+ * Patients have 10 notes on average, the patient being drawn at random for each query.
+ * Requires a MongoDB server, {@code mongodb://localhost:27017} unless set with {@code -Dmongo.uri=...}.
+ * The collection of each volume is written once and kept between runs, seeding 10 million notes taking several minutes;
+ * the collection scans of the largest volumes take seconds per query, so they may be left out with {@code -p notes=10000,100000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteIndexBenchmark {
+
+    private static final int NOTES_PER_PATIENT = 10;
+    private static final int BATCH_SIZE = 10_000;
+    private static final String[] SENTENCES = {
+            "Le patient déclare qu'il se sent bien. ",
+            "Poids égal ou inférieur au poids recommandé. ",
+            "Le patient déclare qu'il fume depuis peu, il est Fumeur. ",
+            "Taille et poids stables depuis la dernière visite. ",
+            "Hémoglobine A1C supérieure au niveau recommandé. ",
+            "Le patient signale des Vertiges et une Réaction aux anticorps. ",
+            "Cholestérol LDL anormal, à surveiller lors de la prochaine visite. ",
+            "Rechute constatée, Microalbumine élevée. "};
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int notes;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private String collection;
+    private int patients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mongoClient = MongoClients.create(System.getProperty("mongo.uri", "mongodb://localhost:27017"));
+        mongoTemplate = new MongoTemplate(mongoClient, "medilabo-benchmarks");
+        collection = "notes_" + notes;
+        patients = notes / NOTES_PER_PATIENT;
+
+        if (mongoTemplate.getCollection(collection).estimatedDocumentCount() != notes) {
+            seed();
+        }
+        mongoTemplate.indexOps(collection).ensureIndex(new Index()
+                .named("patientId_createdAt_id")
+                .on("patientId", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC));
+        mongoTemplate.indexOps(collection).ensureIndex(new TextIndexDefinition.TextIndexDefinitionBuilder()
+                .onField("content")
+                .withDefaultLanguage("french")
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoClient.close();
+    }
+
+    /**
+     * Reads the notes of a patient in the order of their creation, as replayed by the risk timeline, with the compound index.
+     */
+    @Benchmark
+    public int notesByPatient() {
+        return mongoTemplate.find(notesOf(randomPatient()), Document.class, collection).size();
+    }
+
+    /**
+     * Reads the notes of a patient in the order of their creation through a collection scan, as without the compound index.
+     */
+    @Benchmark
+    public int notesByPatientWithoutIndex() {
+        return mongoTemplate.find(notesOf(randomPatient()).withHint(new Document("$natural", 1)), Document.class, collection).size();
+    }
+
+    /**
+     * Searches the notes of a patient mentioning a risk word, as microrisk does before matching the risk words,
+     * the text index selecting the notes of every patient mentioning it.
+     */
+    @Benchmark
+    public int textSearchByPatient() {
+        return mongoTemplate.find(new BasicQuery(new Document("$text", new Document("$search", "Fumeur Rechute"))
+                .append("patientId", randomPatient())), Document.class, collection).size();
+    }
+
+    private Query notesOf(long patientId) {
+        return Query.query(Criteria.where("patientId").is(patientId)).with(Sort.by("createdAt"));
+    }
+
+    private long randomPatient() {
+        return ThreadLocalRandom.current().nextLong(1, patients + 1);
+    }
+
+    private void seed() {
+        mongoTemplate.dropCollection(collection);
+        Random random = new Random(42);
+        Instant start = Instant.parse("2020-01-01T00:00:00Z");
+        List<Document> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < notes; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int j = 0; j < 4; j++) {
+                content.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+            }
+            // Notes are written in the order of their creation, the notes of a patient being spread across the collection
+            batch.add(new Document("_id", new ObjectId())
+                    .append("patientId", (long) (random.nextInt(patients) + 1))
+                    .append("patientLastName", "Kenobi")
+                    .append("content", content.toString())
+                    .append("createdAt", Date.from(start.plusSeconds(60L * i))));
+            if (batch.size() == BATCH_SIZE || i == notes - 1) {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection).insert(batch).execute();
+                batch.clear();
+            }
+        }
+        System.out.printf("%nSeeded %d notes of %d patients in %s%n", notes, patients, collection);
+    }
+}
@@ -0,0 +1,111 @@
+package com.medilabo.benchmarks;
+
+import com.medilabo.microrisk.rules.RiskDecisionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the classification of patients with the compiled risk decision table
+ * against the nested conditions it replaced in RiskService.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiskClassificationBenchmark {
+
+    private static final int PATIENTS = 1024;
+    private static final String[] GENDERS = {"M", "F", "m", "f"};
+
+    private RiskDecisionTable decisionTable;
+    private final int[] ages = new int[PATIENTS];
+    private final String[] genders = new String[PATIENTS];
+    private final long[] counts = new long[PATIENTS];
+
+    @Setup
+    public void setUp() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                RiskDecisionTable.class.getClassLoader().getResourceAsStream("risk-rules.csv"), StandardCharsets.UTF_8))) {
+            decisionTable = RiskDecisionTable.parse(reader.lines().toList());
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < PATIENTS; i++) {
+            ages[i] = random.nextInt(90);
+            genders[i] = GENDERS[random.nextInt(GENDERS.length)];
+            counts[i] = random.nextInt(12);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATIENTS)
+    public void decisionTable(Blackhole blackhole) {
+        for (int i = 0; i < PATIENTS; i++) {
+            blackhole.consume(decisionTable.classify(ages[i], genders[i], counts[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATIENTS)
+    public void nestedConditions(Blackhole blackhole) {
+        for (int i = 0; i < PATIENTS; i++) {
+            blackhole.consume(nestedConditions(ages[i], genders[i], counts[i]));
+        }
+    }
+
+    /**
+     * Classification as previously done in RiskService.
+     */
+    private static String nestedConditions(int age, String gender, long riskWordOccurrences) {
+        if (riskWordOccurrences == 0) {
+            return "None";
+        } else if (riskWordOccurrences >= 2 && riskWordOccurrences <= 5) {
+            if (age > 30) {
+                return "Borderline";
+            }
+        }
+        if ("m".equalsIgnoreCase(gender)) {
+            if (age < 30) {
+                if (riskWordOccurrences >= 3 && riskWordOccurrences < 5) {
+                    return "In Danger";
+                } else if (riskWordOccurrences < 3) {
+                    return "None";
+                } else return "Early onset";
+            }
+            if (riskWordOccurrences >= 6 && riskWordOccurrences < 8) {
+                return "In Danger";
+            } else return "Early onset";
+        }
+        if ("f".equalsIgnoreCase(gender)) {
+            if (age < 30) {
+                if (riskWordOccurrences >= 4 && riskWordOccurrences < 7) {
+                    return "In Danger";
+                } else if (riskWordOccurrences < 4) {
+                    return "None";
+                } else return "Early onset";
+            }
+            if (riskWordOccurrences == 7) {
+                return "In Danger";
+            } else return "Early onset";
+        }
+        return "None";
+    }
+}
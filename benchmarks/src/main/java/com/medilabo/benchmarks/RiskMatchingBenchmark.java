@@ -0,0 +1,115 @@
+package com.medilabo.benchmarks;
+
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.service.RiskVocabularyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares counting the risk words of a patient with the compiled {@link RiskWordMatcher}
+ * against the {@code String.contains} checks it replaced in RiskService,
+ * for notes of increasing size and patients with an increasing number of notes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiskMatchingBenchmark {
+
+    private static final String[] WORDS = {
+            "le", "patient", "déclare", "qu'il", "se", "sent", "bien", "poids", "égal", "recommandé", "taille",
+            "fumeur", "cholestérol", "anormal", "vertiges", "réaction", "anticorps", "rechute", "visite", "tension",
+            "Hémoglobine A1C", "microalbumine", "depuis", "stable", "examen", "résultats", "normaux", "à", "surveiller"};
+
+    /**
+     * Number of characters of each note.
+     */
+    @Param({"200", "2000", "20000"})
+    private int noteLength;
+
+    /**
+     * Number of notes of the patient.
+     */
+    @Param({"1", "10", "100"})
+    private int notes;
+
+    private RiskVocabulary vocabulary;
+    private List<String> contents;
+
+    @Setup
+    public void setUp() {
+        vocabulary = new RiskVocabularyService().getVocabulary();
+        Random random = new Random(42);
+        contents = new ArrayList<>(notes);
+        for (int i = 0; i < notes; i++) {
+            StringBuilder content = new StringBuilder(noteLength + 32);
+            while (content.length() < noteLength) {
+                content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            contents.add(content.toString());
+        }
+    }
+
+    @Benchmark
+    public long matcher() {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        long mask = 0L;
+        for (String content : contents) {
+            mask |= matcher.match(content);
+        }
+        return Long.bitCount(mask);
+    }
+
+    @Benchmark
+    public long containsChecks() {
+        List<String> riskWords = vocabulary.getRiskWords();
+        List<String> exclusionWords = vocabulary.getExclusionWords();
+        Set<String> countedRiskWords = new HashSet<>();
+        for (String content : contents) {
+            for (String riskWord : riskWords) {
+                if (isToBeCountedRiskWord(content, riskWord, exclusionWords)) {
+                    countedRiskWords.add(riskWord);
+                }
+            }
+        }
+        return countedRiskWords.size();
+    }
+
+    /**
+     * Check of a risk word as previously done in RiskService.
+     */
+    static boolean isToBeCountedRiskWord(String content, String riskWord, List<String> exclusionWords) {
+        String lowerContent = content.toLowerCase();
+        String lowerRiskWord = riskWord.toLowerCase();
+        if (!lowerContent.contains(lowerRiskWord)) {
+            return false;
+        }
+        for (String exclusionWord : exclusionWords) {
+            String lowerExclusionWord = exclusionWord.toLowerCase();
+            if (lowerContent.contains(lowerExclusionWord + " " + lowerRiskWord)
+                    || lowerContent.contains(lowerRiskWord + " " + lowerExclusionWord)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package com.medilabo.benchmarks;
+
+import com.medilabo.gateway.filter.RouteValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the check, done by the gateway for every request, of whether the requested route is secured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteValidatorBenchmark {
+
+    private final RouteValidator routeValidator = new RouteValidator();
+
+    private final ServerHttpRequest[] requests = {
+            MockServerHttpRequest.get("/patients/1").build(),
+            MockServerHttpRequest.get("/notes/patient/1").build(),
+            MockServerHttpRequest.get("/risk/1").build(),
+            MockServerHttpRequest.get("/api/login").build(),
+            MockServerHttpRequest.get("/webjars/bootstrap/css/bootstrap.min.css").build()};
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void isSecured(Blackhole blackhole) {
+        for (ServerHttpRequest request : requests) {
+            blackhole.consume(routeValidator.isSecured.test(request));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.medilabo.benchmarks;
+
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.matcher.Utf8RiskWordMatcher;
+import com.medilabo.microrisk.service.RiskVocabularyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares matching a note as read from MongoDB, i.e. as UTF-8 bytes, with the {@link Utf8RiskWordMatcher}
+ * against decoding it first for the {@link RiskWordMatcher} and for the {@code String.contains} checks,
+ * for notes from 1 KB to 1 MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Utf8MatchingBenchmark {
+
+    private static final String[] WORDS = {
+            "le", "patient", "déclare", "qu'il", "se", "sent", "bien", "poids", "égal", "recommandé", "taille",
+            "fumeur", "cholestérol", "anormal", "vertiges", "réaction", "anticorps", "rechute", "visite", "tension",
+            "Hémoglobine A1C", "microalbumine", "depuis", "stable", "examen", "résultats", "normaux", "à", "surveiller"};
+
+    /**
+     * Number of UTF-8 bytes of the note.
+     */
+    @Param({"1024", "32768", "1048576"})
+    private int noteLength;
+
+    private RiskVocabulary vocabulary;
+    private byte[] content;
+
+    @Setup
+    public void setUp() {
+        vocabulary = new RiskVocabularyService().getVocabulary();
+        Random random = new Random(42);
+        StringBuilder note = new StringBuilder(noteLength + 32);
+        while (note.toString().getBytes(StandardCharsets.UTF_8).length < noteLength) {
+            for (int i = 0; i < 1024; i++) {
+                note.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+        }
+        content = note.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long utf8Matcher() {
+        return Long.bitCount(vocabulary.getUtf8Matcher().match(content));
+    }
+
+    @Benchmark
+    public long decodeThenMatcher() {
+        return Long.bitCount(vocabulary.getMatcher().match(new String(content, StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public long decodeThenContainsChecks() {
+        String decoded = new String(content, StandardCharsets.UTF_8);
+        long counted = 0;
+        for (String riskWord : vocabulary.getRiskWords()) {
+            if (RiskMatchingBenchmark.isToBeCountedRiskWord(decoded, riskWord, vocabulary.getExclusionWords())) {
+                counted++;
+            }
+        }
+        return counted;
+    }
+}
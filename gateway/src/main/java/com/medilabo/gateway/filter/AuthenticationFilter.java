@@ -21,7 +21,8 @@ import java.nio.charset.StandardCharsets;
  * {@link RouteValidator}. If a request is secured, it attempts to retrieve
  * the JWT token from the Authorization header or from cookies. If the token
  * is missing or invalid, the filter redirects the user to the login page
- * with an appropriate error message.
+ * with an appropriate error message. Requests to internal endpoints are
+ * answered with 404 Not Found, whatever their token.
  */
 @Component
 public class AuthenticationFilter extends AbstractGatewayFilterFactory<AuthenticationFilter.Config> {
@@ -48,6 +49,10 @@ public class AuthenticationFilter extends AbstractGatewayFilterFactory<Authentic
     @Override
     public GatewayFilter apply(Config config) {
         return ((exchange, chain) -> {
+            if (routeValidator.isInternal.test(exchange.getRequest())) {
+                exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+                return exchange.getResponse().setComplete();
+            }
             if (routeValidator.isSecured.test(exchange.getRequest())) {
                 // Check for the token in the Authorization header first
                 String authorizationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
@@ -2,6 +2,7 @@ package com.medilabo.gateway.filter;
 
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
 
 import java.util.List;
 import java.util.function.Predicate;
@@ -9,7 +10,8 @@ import java.util.function.Predicate;
 /**
  * The {@code RouteValidator} class is responsible for validating routes
  * to determine if they are secured or open. It contains a list of endpoints
- * that are accessible without authentication.
+ * that are accessible without authentication, and a list of internal endpoints
+ * that are never routed.
  */
 @Component
 public class RouteValidator {
@@ -30,6 +32,27 @@ public class RouteValidator {
             "/webjars/**"
     );
 
+    /**
+     * Internal endpoints of the microservices, called directly by the other microservices
+     * or by the operators, which the gateway doesn't expose to the users even when authenticated:
+     * the administration of microrisk and the eviction of the risks cached by microrisk.
+     */
+    public static final List<String> internalEndpoints = List.of(
+            "/risk/admin/**",
+            "/risk/*/cache"
+    );
+
+    private static final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * A predicate that checks if a given HTTP request targets an internal endpoint,
+     * which the gateway rejects without routing it.
+     */
+    public Predicate<ServerHttpRequest> isInternal =
+            request -> internalEndpoints
+                    .stream()
+                    .anyMatch(pattern -> pathMatcher.match(pattern, request.getURI().getPath()));
+
     /**
      * A predicate that checks if a given HTTP request is secured.
      * It returns {@code true} if the request does not match any
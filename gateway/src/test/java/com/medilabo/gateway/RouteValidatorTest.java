@@ -0,0 +1,27 @@
+package com.medilabo.gateway;
+
+import com.medilabo.gateway.filter.RouteValidator;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RouteValidatorTest {
+
+    private final RouteValidator routeValidator = new RouteValidator();
+
+    @Test
+    public void isInternal_shouldMatchTheAdministrationAndCacheEndpointsOfMicrorisk() {
+        assertTrue(routeValidator.isInternal.test(MockServerHttpRequest.post("/risk/admin/rules/reload").build()));
+        assertTrue(routeValidator.isInternal.test(MockServerHttpRequest.post("/risk/admin/cohort/rebuild").build()));
+        assertTrue(routeValidator.isInternal.test(MockServerHttpRequest.delete("/risk/1/cache").build()));
+    }
+
+    @Test
+    public void isInternal_shouldNotMatchTheRisksOfThePatients() {
+        assertFalse(routeValidator.isInternal.test(MockServerHttpRequest.get("/risk/1").build()));
+        assertFalse(routeValidator.isInternal.test(MockServerHttpRequest.post("/risk/patients").build()));
+        assertFalse(routeValidator.isInternal.test(MockServerHttpRequest.get("/risk/report").build()));
+    }
+}
@@ -0,0 +1,16 @@
+package com.medilabo.microfront.beans;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+/**
+ * Bean class representing a risk preview request sent to the risk service.
+ * It holds the draft content of a note and, when the draft updates a saved note, the ID of that note.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RiskPreviewRequestBean {
+    private String noteId;
+    private String content;
+}
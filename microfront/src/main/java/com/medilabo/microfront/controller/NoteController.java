@@ -4,7 +4,10 @@ import com.medilabo.microfront.beans.NoteBean;
 import com.medilabo.microfront.exception.NoteNotFoundException;
 import com.medilabo.microfront.exception.PatientNotFoundException;
 import com.medilabo.microfront.service.NoteService;
+import com.medilabo.microfront.service.RiskService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -23,6 +26,9 @@ public class NoteController {
     @Autowired
     private NoteService noteService;
 
+    @Autowired
+    private RiskService riskService;
+
     @Autowired
     private WebClient.Builder webClientBuilder;
 
@@ -145,6 +151,21 @@ public class NoteController {
         return updateModelWithPatientNotes(token, patientId, model);
     }
 
+    /**
+     * Previews the risk level of the patient with the note being written, called by the note forms while the note is typed.
+     *
+     * @param token The Bearer token for authentication.
+     * @param note  The draft note, with its ID when it updates a saved note.
+     * @return A ResponseEntity containing the JSON preview returned by the risk service.
+     */
+    @PostMapping(value = "/notes/preview", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> previewRisk(@CookieValue(name = "token", required = false) String token,
+                                              @RequestBody NoteBean note) {
+        String preview = riskService.previewRisk(note.getPatientId(), note.getId(), note.getContent(), token);
+        return ResponseEntity.ok(preview);
+    }
+
     /**
      * Deletes a specific note by its ID.
      *
@@ -167,4 +188,4 @@ public class NoteController {
             return "error";
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.medilabo.microfront.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import com.medilabo.microfront.beans.RiskPreviewRequestBean;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
@@ -32,4 +34,26 @@ public class RiskService {
                 .bodyToMono(String.class)
                 .block();
     }
+
+    /**
+     * Previews the risk assessment a patient would have once a draft note is saved. Includes the cookie to the request to Authenticate on Microrisk Service.
+     *
+     * @param id      The ID of the patient the draft note is written for.
+     * @param noteId  The ID of the note updated by the draft, or null for a new note.
+     * @param content The content of the draft note.
+     * @param token   Authorization token for the request.
+     * @return JSON String holding the previewed risk level, the risk words counted and their occurrences in the draft.
+     */
+    public String previewRisk(long id, String noteId, String content, String token) {
+        return webClientBuilder.build()
+                .post()
+                .uri("/risk/{patientId}/preview", id)
+                .cookie("token", token)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RiskPreviewRequestBean(noteId, content))
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+    }
 }
@@ -0,0 +1,75 @@
+// Previews the risk level of the patient while a note is typed, in the forms having a data-risk-preview attribute.
+// The preview is requested once typing pauses, a request still running being cancelled by the next one.
+(function () {
+    const DEBOUNCE_DELAY = 400;
+
+    const form = document.querySelector('form[data-risk-preview]');
+    if (!form) {
+        return;
+    }
+    const content = form.querySelector('textarea[name="content"]');
+    const panel = document.getElementById('risk-preview');
+    const level = document.getElementById('risk-preview-level');
+    const words = document.getElementById('risk-preview-words');
+    const highlighted = document.getElementById('risk-preview-content');
+    let timer = null;
+    let controller = null;
+
+    function render(text, spans) {
+        highlighted.replaceChildren();
+        let position = 0;
+        spans.forEach(function (span) {
+            // Overlapping risk words (Vertige in Vertiges) are highlighted once
+            if (span.start < position) {
+                return;
+            }
+            highlighted.append(text.substring(position, span.start));
+            const mark = document.createElement('mark');
+            mark.textContent = text.substring(span.start, span.end);
+            mark.title = span.riskWord;
+            highlighted.append(mark);
+            position = span.end;
+        });
+        highlighted.append(text.substring(position));
+    }
+
+    function preview() {
+        if (controller) {
+            controller.abort();
+        }
+        controller = new AbortController();
+        const draft = content.value;
+        fetch('/api/notes/preview', {
+            method: 'POST',
+            headers: {'Content-Type': 'application/json'},
+            body: JSON.stringify({
+                id: form.dataset.noteId || null,
+                patientId: Number(form.dataset.patientId),
+                content: draft
+            }),
+            signal: controller.signal
+        })
+            .then(function (response) {
+                return response.ok ? response.json() : Promise.reject(new Error('Risk preview failed: ' + response.status));
+            })
+            .then(function (result) {
+                level.textContent = result.riskLevel;
+                words.textContent = result.riskWords.length ? result.riskWords.join(', ') : '-';
+                render(draft, result.spans);
+                panel.hidden = false;
+            })
+            .catch(function (error) {
+                if (error.name !== 'AbortError') {
+                    panel.hidden = true;
+                }
+            });
+    }
+
+    content.addEventListener('input', function () {
+        clearTimeout(timer);
+        timer = setTimeout(preview, DEBOUNCE_DELAY);
+    });
+    if (content.value) {
+        preview();
+    }
+})();
@@ -4,6 +4,7 @@ import com.medilabo.microfront.beans.NoteBean;
 import com.medilabo.microfront.beans.PatientBean;
 import com.medilabo.microfront.controller.NoteController;
 import com.medilabo.microfront.service.NoteService;
+import com.medilabo.microfront.service.RiskService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -12,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.ui.Model;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -38,6 +40,9 @@ public class NoteControllerTest {
     @MockBean
     private NoteService noteService;
 
+    @MockBean
+    private RiskService riskService;
+
     @MockBean
     private WebClient.Builder webClientBuilder;
 
@@ -137,4 +142,15 @@ public class NoteControllerTest {
         verify(model, times(1)).addAttribute("notes", notes);
         verify(model, times(1)).addAttribute("patientId", firstPatient.getId());
     }
+
+    @Test
+    public void testPreviewRisk() {
+        String preview = "{\"riskLevel\":\"Borderline\",\"riskWords\":[\"Fumeur\"],\"spans\":[]}";
+        when(riskService.previewRisk(1L, "firstNoteId", firstNote.getContent(), "someValidToken")).thenReturn(preview);
+
+        ResponseEntity<String> result = noteController.previewRisk("someValidToken", firstNote);
+
+        assertEquals(200, result.getStatusCode().value());
+        assertEquals(preview, result.getBody());
+    }
 }
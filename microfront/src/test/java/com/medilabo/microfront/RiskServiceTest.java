@@ -3,6 +3,7 @@ package com.medilabo.microfront;
 import com.medilabo.microfront.service.RiskService;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -64,4 +65,26 @@ public class RiskServiceTest {
         assertEquals(risk, foundRisk);
     }
 
+    @Test
+    public void testPreviewRisk() throws Exception {
+        String preview = "{\"riskLevel\":\"None\",\"riskWords\":[],\"spans\":[]}";
+
+        gatewayMockServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody(preview)
+                .addHeader("Content-Type", "application/json"));
+
+        when(webClientBuilder.build()).thenReturn(WebClient.builder()
+                .baseUrl(gatewayMockServer.url("/").toString())
+                .build());
+
+        String foundPreview = riskService.previewRisk(1L, "noteId", "Patient feels fine", "someValidToken");
+        assertEquals(preview, foundPreview);
+
+        RecordedRequest request = gatewayMockServer.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/risk/1/preview", request.getPath());
+        assertEquals("{\"noteId\":\"noteId\",\"content\":\"Patient feels fine\"}", request.getBody().readUtf8());
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.medilabo.microlabo.controller;
 
 import com.medilabo.microlabo.domain.Patient;
+import com.medilabo.microlabo.dto.PatientDemographicsDto;
 import com.medilabo.microlabo.exception.PatientNotFoundException;
 import com.medilabo.microlabo.service.PatientService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -116,6 +117,47 @@ public class PatientController {
         return ResponseEntity.ok(gender);
     }
 
+    /**
+     * Retrieves the birthdate and gender of a patient by their ID.
+     *
+     * @param id the ID of the patient
+     * @return a ResponseEntity containing the birthdate and gender of the patient
+     */
+    @GetMapping(value = "/{id}/demographics")
+    public ResponseEntity<PatientDemographicsDto> getDemographics(@PathVariable("id") Long id) {
+        PatientDemographicsDto demographics = patientService.getDemographicsById(id);
+        return ResponseEntity.ok(demographics);
+    }
+
+    /**
+     * Retrieves the birthdate and gender of several patients at once.
+     * Patients that do not exist are left out of the response.
+     *
+     * @param ids the IDs of the patients
+     * @return a ResponseEntity containing the demographics of the patients found
+     */
+    @PostMapping(value = "/demographics")
+    public ResponseEntity<List<PatientDemographicsDto>> getDemographics(@RequestBody List<Long> ids) {
+        List<PatientDemographicsDto> demographics = patientService.getDemographicsByIds(ids);
+        return ResponseEntity.ok(demographics);
+    }
+
+    /**
+     * Retrieves the birthdate and gender of the patients following a given ID, in ascending order of ID.
+     * All the patients are read by requesting the page following the last ID of the previous one, until a page
+     * is empty: the size of a page is capped, so a page holding less patients than requested isn't always the last one.
+     *
+     * @param afterId the ID after which the patients are read, 0 for the first page
+     * @param size    the number of patients to read, at most {@link PatientService#MAX_DEMOGRAPHICS_PAGE_SIZE}
+     * @return a ResponseEntity containing the demographics of the patients of the page
+     */
+    @GetMapping(value = "/demographics")
+    public ResponseEntity<List<PatientDemographicsDto>> getDemographicsPage(@RequestParam(value = "afterId", defaultValue = "0") long afterId,
+                                                                            @RequestParam(value = "size", defaultValue = "1000") int size) {
+        List<PatientDemographicsDto> demographics = patientService.getDemographicsPage(afterId, size);
+        return ResponseEntity.ok(demographics);
+    }
+
     /**
      * Checks if a patient exists by their ID.
      *
@@ -127,4 +169,4 @@ public class PatientController {
         boolean exists = patientService.existsPatient(id);
         return ResponseEntity.ok(exists);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
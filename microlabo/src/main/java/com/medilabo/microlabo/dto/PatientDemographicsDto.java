@@ -0,0 +1,20 @@
+package com.medilabo.microlabo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object (DTO) for the demographic data of a patient.
+ * This class encapsulates the birthdate and gender of a patient, which are needed by the risk service.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientDemographicsDto {
+    private Long id;
+    private LocalDate birthdate;
+    private String gender;
+}
@@ -0,0 +1,10 @@
+package com.medilabo.microlabo.event;
+
+/**
+ * Event published when a patient is created, so that the services caching the existence of the patients forget that
+ * the patient didn't exist.
+ *
+ * @param patientId the ID of the patient
+ */
+public record PatientCreatedEvent(Long patientId) {
+}
@@ -0,0 +1,10 @@
+package com.medilabo.microlabo.event;
+
+/**
+ * Event published when a patient is deleted, so that the services caching the existence of the patients forget that
+ * the patient existed.
+ *
+ * @param patientId the ID of the patient
+ */
+public record PatientDeletedEvent(Long patientId) {
+}
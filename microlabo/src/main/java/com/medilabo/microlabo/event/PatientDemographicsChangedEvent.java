@@ -0,0 +1,10 @@
+package com.medilabo.microlabo.event;
+
+/**
+ * Event published when the birthdate or the gender of a patient changes,
+ * both being used by the risk microservice to determine the risk level of the patient.
+ *
+ * @param patientId the ID of the patient
+ */
+public record PatientDemographicsChangedEvent(Long patientId) {
+}
@@ -1,6 +1,8 @@
 package com.medilabo.microlabo.repository;
 
 import com.medilabo.microlabo.domain.Patient;
+import com.medilabo.microlabo.dto.PatientDemographicsDto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,6 +11,8 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Repository interface for managing {@link Patient} entities.
@@ -46,6 +50,36 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
     @Query("SELECT p.gender FROM Patient p WHERE p.id = :id")
     String findGenderById(Long id);
 
+    /**
+     * Retrieves the birthdate and gender of a patient by their ID.
+     *
+     * @param id the ID of the patient
+     * @return the demographics of the patient, or {@code null} if no patient is found
+     */
+    @Query("SELECT new com.medilabo.microlabo.dto.PatientDemographicsDto(p.id, p.birthdate, p.gender) FROM Patient p WHERE p.id = :id")
+    PatientDemographicsDto findDemographicsById(@Param("id") Long id);
+
+    /**
+     * Retrieves the birthdate and gender of several patients in a single query.
+     *
+     * @param ids the IDs of the patients
+     * @return the demographics of the patients found, patients that do not exist being left out
+     */
+    @Query("SELECT new com.medilabo.microlabo.dto.PatientDemographicsDto(p.id, p.birthdate, p.gender) FROM Patient p WHERE p.id IN :ids")
+    List<PatientDemographicsDto> findDemographicsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Retrieves the birthdate and gender of the patients following a given ID, in ascending order of ID.
+     * Pages are read by seeking on the primary key rather than with an offset, so that each page costs the same
+     * however far it is in the table.
+     *
+     * @param afterId  the ID after which the patients are read, the last ID of the previous page
+     * @param pageable the number of patients to read, only the page size being used
+     * @return the demographics of the patients following the given ID
+     */
+    @Query("SELECT new com.medilabo.microlabo.dto.PatientDemographicsDto(p.id, p.birthdate, p.gender) FROM Patient p WHERE p.id > :afterId ORDER BY p.id")
+    List<PatientDemographicsDto> findDemographicsByIdGreaterThan(@Param("afterId") Long afterId, Pageable pageable);
+
     /**
      * Checks if a patient exists with the same first name, last name, and birthdate.
      *
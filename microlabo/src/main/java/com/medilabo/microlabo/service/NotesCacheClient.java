@@ -0,0 +1,64 @@
+package com.medilabo.microlabo.service;
+
+import com.medilabo.microlabo.event.PatientCreatedEvent;
+import com.medilabo.microlabo.event.PatientDeletedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Client notifying the note microservice that a patient was created or deleted,
+ * so that the cached existence of the patient is evicted.
+ * Notifications are sent once the transaction is committed, without waiting for the response:
+ * a failure is only logged, the cached existence then expiring after its time to live.
+ */
+@Slf4j
+@Component
+public class NotesCacheClient {
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Value("${micronotes.url:http://micronotes:8083}")
+    private String micronotesUrl;
+
+    /**
+     * Evicts the cached existence of a patient who was just created.
+     *
+     * @param event the event published by the PatientService
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPatientCreated(PatientCreatedEvent event) {
+        evictPatient(event.patientId());
+    }
+
+    /**
+     * Evicts the cached existence of a patient who was just deleted.
+     *
+     * @param event the event published by the PatientService
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPatientDeleted(PatientDeletedEvent event) {
+        evictPatient(event.patientId());
+    }
+
+    /**
+     * Evicts the cached existence of a patient in the note microservice.
+     *
+     * @param patientId the ID of the patient
+     */
+    public void evictPatient(Long patientId) {
+        webClientBuilder.build()
+                .delete()
+                .uri(micronotesUrl + "/notes/patient/{id}/cache", patientId)
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(
+                        response -> log.debug("Evicted cached existence of patient {}", patientId),
+                        error -> log.warn("Could not evict cached existence of patient {}: {}", patientId, error.getMessage()));
+    }
+}
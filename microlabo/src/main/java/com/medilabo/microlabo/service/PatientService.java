@@ -4,6 +4,12 @@ import com.medilabo.microlabo.exception.PatientAlreadyExistsException;
 import com.medilabo.microlabo.exception.PatientNotFoundException;
 import com.medilabo.microlabo.repository.PatientRepository;
 import com.medilabo.microlabo.domain.Patient;
+import com.medilabo.microlabo.dto.PatientDemographicsDto;
+import com.medilabo.microlabo.event.PatientCreatedEvent;
+import com.medilabo.microlabo.event.PatientDeletedEvent;
+import com.medilabo.microlabo.event.PatientDemographicsChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -11,6 +17,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.time.Period;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Service class for managing patients.
@@ -19,9 +26,17 @@ import java.util.List;
 @Service
 public class PatientService {
 
+    /**
+     * Maximum number of patients whose demographics are read in a single page.
+     */
+    public static final int MAX_DEMOGRAPHICS_PAGE_SIZE = 1000;
+
     @Autowired
     private PatientRepository patientRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * Retrieves all patients.
      *
@@ -45,6 +60,7 @@ public class PatientService {
 
     /**
      * Adds a new patient.
+     * A {@link PatientCreatedEvent} is published once the patient is saved.
      *
      * @param patient the Patient
      * @return the added Patient
@@ -56,11 +72,16 @@ public class PatientService {
             throw new PatientAlreadyExistsException("Patient can't be added because a patient with the same first name, last name and birthdate combination already exists");
         }
         patient.setId(null);
-        return patientRepository.save(patient);
+        Patient addedPatient = patientRepository.save(patient);
+        if (addedPatient != null) {
+            eventPublisher.publishEvent(new PatientCreatedEvent(addedPatient.getId()));
+        }
+        return addedPatient;
     }
 
     /**
      * Updates an existing patient.
+     * A {@link PatientDemographicsChangedEvent} is published when the birthdate or the gender of the patient changes.
      *
      * @param patient the Patient object containing updated information
      * @return the updated Patient
@@ -75,17 +96,26 @@ public class PatientService {
             throw new PatientAlreadyExistsException("Patient can't be updated because a patient with the same first name, last name and birthdate combination already exists");
         }
 
+        boolean demographicsChanged = !Objects.equals(patientToUpdate.getBirthdate(), patient.getBirthdate())
+                || !Objects.equals(patientToUpdate.getGender(), patient.getGender());
+
         patientToUpdate.setFirstName(patient.getFirstName());
         patientToUpdate.setLastName(patient.getLastName());
         patientToUpdate.setBirthdate(patient.getBirthdate());
         patientToUpdate.setGender(patient.getGender());
         patientToUpdate.setAddress(patient.getAddress());
         patientToUpdate.setPhoneNumber(patient.getPhoneNumber());
-        return patientRepository.save(patientToUpdate);
+        Patient updatedPatient = patientRepository.save(patientToUpdate);
+
+        if (demographicsChanged) {
+            eventPublisher.publishEvent(new PatientDemographicsChangedEvent(patientToUpdate.getId()));
+        }
+        return updatedPatient;
     }
 
     /**
      * Deletes a patient by their ID.
+     * A {@link PatientDeletedEvent} is published once the patient is deleted.
      *
      * @param id the ID of the patient to delete
      * @throws PatientNotFoundException if no patient is found with the given ID
@@ -95,6 +125,7 @@ public class PatientService {
         patientRepository.findById(id)
                 .orElseThrow(() -> new PatientNotFoundException("Patient not found for id: " + id));
         patientRepository.deleteById(id);
+        eventPublisher.publishEvent(new PatientDeletedEvent(id));
     }
 
     /**
@@ -128,6 +159,47 @@ public class PatientService {
         return patientRepository.findGenderById(id);
     }
 
+    /**
+     * Retrieves the birthdate and gender of a patient by their ID.
+     *
+     * @param id the ID of the patient
+     * @return the demographics of the patient
+     * @throws PatientNotFoundException if no patient is found with the given ID
+     */
+    public PatientDemographicsDto getDemographicsById(Long id) {
+        PatientDemographicsDto demographics = patientRepository.findDemographicsById(id);
+        if (demographics == null) {
+            throw new PatientNotFoundException("Patient not found for id: " + id);
+        }
+        return demographics;
+    }
+
+    /**
+     * Retrieves the birthdate and gender of several patients by their IDs.
+     *
+     * @param ids the IDs of the patients
+     * @return the demographics of the patients found
+     */
+    public List<PatientDemographicsDto> getDemographicsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return patientRepository.findDemographicsByIdIn(ids);
+    }
+
+    /**
+     * Retrieves the birthdate and gender of the patients following a given ID, in ascending order of ID.
+     * The size of the page is capped to {@link #MAX_DEMOGRAPHICS_PAGE_SIZE}.
+     *
+     * @param afterId the ID after which the patients are read, the last ID of the previous page, or 0 for the first page
+     * @param size    the number of patients to read
+     * @return the demographics of the patients following the given ID, the last page being reached when it holds less than the requested size
+     */
+    public List<PatientDemographicsDto> getDemographicsPage(long afterId, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_DEMOGRAPHICS_PAGE_SIZE);
+        return patientRepository.findDemographicsByIdGreaterThan(afterId, PageRequest.ofSize(pageSize));
+    }
+
     /**
      * Checks if a patient with the same first name, last name, and birthdate already exists.
      *
@@ -162,4 +234,4 @@ public class PatientService {
     public boolean existsPatient(Long id) {
         return patientRepository.existsById(id);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.medilabo.microlabo.service;
+
+import com.medilabo.microlabo.event.PatientDemographicsChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Client notifying the risk microservice that the demographics of a patient changed,
+ * so that the cached risk level of the patient is evicted.
+ * Notifications are sent once the transaction is committed, without waiting for the response:
+ * a failure is only logged, the cached risk level then expiring after its time to live.
+ */
+@Slf4j
+@Component
+public class RiskCacheClient {
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Value("${microrisk.url:http://microrisk:8084}")
+    private String microriskUrl;
+
+    /**
+     * Evicts the cached risk level of a patient whose demographics changed.
+     *
+     * @param event the event published by the PatientService
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPatientDemographicsChanged(PatientDemographicsChangedEvent event) {
+        evictRisk(event.patientId());
+    }
+
+    /**
+     * Evicts the cached risk level of a patient in the risk microservice, and refreshes their demographics
+     * in its risk store when it is enabled.
+     *
+     * @param patientId the ID of the patient
+     */
+    public void evictRisk(Long patientId) {
+        webClientBuilder.build()
+                .delete()
+                .uri(microriskUrl + "/risk/{id}/cache?demographics=true", patientId)
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(
+                        response -> log.debug("Evicted cached risk of patient {}", patientId),
+                        error -> log.warn("Could not evict cached risk of patient {}: {}", patientId, error.getMessage()));
+    }
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.medilabo.microlabo.controller.PatientController;
 import com.medilabo.microlabo.domain.Patient;
+import com.medilabo.microlabo.dto.PatientDemographicsDto;
 import com.medilabo.microlabo.exception.PatientNotFoundException;
 import com.medilabo.microlabo.service.PatientService;
 import org.junit.jupiter.api.BeforeAll;
@@ -178,6 +179,51 @@ public class PatientControllerTest {
                 .andExpect(content().string(expectedGender));
     }
 
+    @Test
+    public void getDemographics_shouldReturnTheBirthdateAndGenderOfThePatient() throws Exception {
+        PatientDemographicsDto demographics = new PatientDemographicsDto(firstPatient.getId(), firstPatient.getBirthdate(), firstPatient.getGender());
+        when(patientService.getDemographicsById(anyLong())).thenReturn(demographics);
+
+        mockMvc.perform(get("/patients/1/demographics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(firstPatient.getId()))
+                .andExpect(jsonPath("$.birthdate").value(firstPatient.getBirthdate().toString()))
+                .andExpect(jsonPath("$.gender").value(firstPatient.getGender()));
+    }
+
+    @Test
+    public void postRequestToGetDemographics_shouldReturnTheDemographicsOfTheRequestedPatients() throws Exception {
+        List<PatientDemographicsDto> demographics = List.of(
+                new PatientDemographicsDto(firstPatient.getId(), firstPatient.getBirthdate(), firstPatient.getGender()),
+                new PatientDemographicsDto(secondPatient.getId(), secondPatient.getBirthdate(), secondPatient.getGender()));
+        when(patientService.getDemographicsByIds(List.of(1L, 2L, 3L))).thenReturn(demographics);
+
+        mockMvc.perform(post("/patients/demographics")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(List.of(1L, 2L, 3L))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(firstPatient.getId().intValue())))
+                .andExpect(jsonPath("$[0].birthdate", is(firstPatient.getBirthdate().toString())))
+                .andExpect(jsonPath("$[0].gender", is(firstPatient.getGender())))
+                .andExpect(jsonPath("$[1].id", is(secondPatient.getId().intValue())))
+                .andExpect(jsonPath("$[1].gender", is(secondPatient.getGender())));
+    }
+
+    @Test
+    public void getRequestToGetDemographics_shouldReturnThePageFollowingTheGivenId() throws Exception {
+        List<PatientDemographicsDto> demographics = List.of(
+                new PatientDemographicsDto(secondPatient.getId(), secondPatient.getBirthdate(), secondPatient.getGender()));
+        when(patientService.getDemographicsPage(1L, 2)).thenReturn(demographics);
+
+        mockMvc.perform(get("/patients/demographics")
+                        .param("afterId", "1")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(secondPatient.getId().intValue())));
+    }
+
     public static String asJsonString(final Object obj) {
         try {
             ObjectMapper mapper = new ObjectMapper();
@@ -1,16 +1,25 @@
 package com.medilabo.microlabo;
 
 import com.medilabo.microlabo.domain.Patient;
+import com.medilabo.microlabo.dto.PatientDemographicsDto;
+import com.medilabo.microlabo.event.PatientCreatedEvent;
+import com.medilabo.microlabo.event.PatientDeletedEvent;
+import com.medilabo.microlabo.event.PatientDemographicsChangedEvent;
 import com.medilabo.microlabo.exception.PatientAlreadyExistsException;
 import com.medilabo.microlabo.exception.PatientNotFoundException;
 import com.medilabo.microlabo.repository.PatientRepository;
+import com.medilabo.microlabo.service.NotesCacheClient;
 import com.medilabo.microlabo.service.PatientService;
+import com.medilabo.microlabo.service.RiskCacheClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -24,6 +33,7 @@ import static org.mockito.Mockito.times;
 
 @ActiveProfiles("test")
 @SpringBootTest
+@RecordApplicationEvents
 public class PatientServiceTest {
 
     @Autowired
@@ -32,6 +42,15 @@ public class PatientServiceTest {
     @MockBean
     private PatientRepository patientRepository;
 
+    @MockBean
+    private RiskCacheClient riskCacheClient;
+
+    @MockBean
+    private NotesCacheClient notesCacheClient;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
     private static Patient firstPatient;
     private static Patient secondPatient;
     private static List<Patient> patients;
@@ -80,6 +99,20 @@ public class PatientServiceTest {
         verify(patientRepository, times(1)).save(firstPatient);
     }
 
+    @Test
+    public void addPatient_shouldPublishPatientCreatedEvent() {
+        when(patientRepository.existsPatientByFirstNameAndLastNameAndBirthdate(firstPatient)).thenReturn(false);
+        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> {
+            Patient patient = invocation.getArgument(0);
+            patient.setId(3L);
+            return patient;
+        });
+
+        patientService.addPatient(firstPatient);
+
+        assertEquals(List.of(new PatientCreatedEvent(3L)), applicationEvents.stream(PatientCreatedEvent.class).toList());
+    }
+
     @Test
     public void addPatient_shouldThrowException_WhenPatientAlreadyExists() {
         when(patientRepository.existsPatientByFirstNameAndLastNameAndBirthdate(firstPatient)).thenReturn(true);
@@ -92,6 +125,7 @@ public class PatientServiceTest {
         when(patientRepository.findById(1L)).thenReturn(Optional.of(firstPatient));
         patientService.deletePatientById(1L);
         verify(patientRepository, times(1)).deleteById(firstPatient.getId());
+        assertEquals(List.of(new PatientDeletedEvent(1L)), applicationEvents.stream(PatientDeletedEvent.class).toList());
     }
 
     @Test
@@ -118,6 +152,23 @@ public class PatientServiceTest {
         assertEquals(updatedPatient.getPhoneNumber(), resultingPatient.getPhoneNumber());
 
         verify(patientRepository, times(1)).save(any(Patient.class));
+        assertEquals(List.of(new PatientDemographicsChangedEvent(1L)),
+                applicationEvents.stream(PatientDemographicsChangedEvent.class).toList());
+    }
+
+    @Test
+    public void updatePatient_shouldNotPublishDemographicsChangedEvent_whenBirthdateAndGenderAreUnchanged() {
+
+        Patient updatedPatient = new Patient
+                (1L, "Rafael", "Doe", firstPatient.getBirthdate(), firstPatient.getGender(), "555 Devil Drive", "222-111-111");
+
+        when(patientRepository.findById(anyLong())).thenReturn(Optional.ofNullable(firstPatient));
+        when(patientRepository.existsByFirstNameAndLastNameAndBirthdateAndIdNot(anyString(), anyString(), any(LocalDate.class), anyLong())).thenReturn(false);
+        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        patientService.updatePatient(updatedPatient);
+
+        assertEquals(0, applicationEvents.stream(PatientDemographicsChangedEvent.class).count());
     }
 
     @Test
@@ -154,6 +205,45 @@ public class PatientServiceTest {
         assertEquals(firstPatient.getGender(), foundGender);
     }
 
+    @Test
+    public void getDemographicsById_shouldReturnTheCorrectDemographics() {
+        PatientDemographicsDto demographics = new PatientDemographicsDto(firstPatient.getId(), firstPatient.getBirthdate(), firstPatient.getGender());
+        when(patientRepository.findDemographicsById(anyLong())).thenReturn(demographics);
+        PatientDemographicsDto foundDemographics = patientService.getDemographicsById(1L);
+        assertEquals(demographics, foundDemographics);
+    }
+
+    @Test
+    public void getDemographicsById_shouldThrowPatientNotFoundException_whenPatientIsNotFound() {
+        when(patientRepository.findDemographicsById(anyLong())).thenReturn(null);
+        assertThrows(PatientNotFoundException.class, () -> patientService.getDemographicsById(5L));
+    }
+
+    @Test
+    public void getDemographicsByIds_shouldReturnTheDemographicsOfTheFoundPatients() {
+        List<PatientDemographicsDto> demographics = List.of(
+                new PatientDemographicsDto(firstPatient.getId(), firstPatient.getBirthdate(), firstPatient.getGender()));
+        when(patientRepository.findDemographicsByIdIn(List.of(1L, 5L))).thenReturn(demographics);
+        List<PatientDemographicsDto> foundDemographics = patientService.getDemographicsByIds(List.of(1L, 5L));
+        assertEquals(demographics, foundDemographics);
+    }
+
+    @Test
+    public void getDemographicsByIds_shouldNotQueryTheRepository_whenNoIdIsGiven() {
+        List<PatientDemographicsDto> foundDemographics = patientService.getDemographicsByIds(List.of());
+        assertTrue(foundDemographics.isEmpty());
+        verify(patientRepository, never()).findDemographicsByIdIn(any());
+    }
+
+    @Test
+    public void getDemographicsPage_shouldCapThePageSize() {
+        List<PatientDemographicsDto> demographics = List.of(
+                new PatientDemographicsDto(firstPatient.getId(), firstPatient.getBirthdate(), firstPatient.getGender()));
+        when(patientRepository.findDemographicsByIdGreaterThan(0L, PageRequest.ofSize(PatientService.MAX_DEMOGRAPHICS_PAGE_SIZE))).thenReturn(demographics);
+        List<PatientDemographicsDto> foundDemographics = patientService.getDemographicsPage(0L, 50_000);
+        assertEquals(demographics, foundDemographics);
+    }
+
     @Test
     public void testIsSamePatient() {
         when(patientRepository.existsPatientByFirstNameAndLastNameAndBirthdate(firstPatient)).thenReturn(true);
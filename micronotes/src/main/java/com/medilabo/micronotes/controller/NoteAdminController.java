@@ -0,0 +1,67 @@
+package com.medilabo.micronotes.controller;
+
+import com.medilabo.micronotes.dto.IndexStatsDto;
+import com.medilabo.micronotes.service.NoteIndexService;
+import com.medilabo.micronotes.service.NoteSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+
+/**
+ * REST controller for administering the notes microservice.
+ * Provides endpoints to read the usage statistics of the indexes of the notes, to create the missing ones,
+ * and to rebuild the full-text search index.
+ */
+@RequestMapping("/notes/admin")
+@RestController
+public class NoteAdminController {
+
+    @Autowired
+    private NoteIndexService noteIndexService;
+
+    @Autowired
+    private NoteSearchService noteSearchService;
+
+    /**
+     * Retrieves the usage statistics of the indexes of the notes.
+     *
+     * @return a ResponseEntity containing the number of operations that used each index, on each server
+     */
+    @GetMapping("/indexes")
+    public ResponseEntity<List<IndexStatsDto>> getIndexStats() {
+        return ResponseEntity.ok(noteIndexService.getIndexStats());
+    }
+
+    /**
+     * Creates the declared indexes of the notes that don't exist yet, for instance after a conflicting index was dropped.
+     *
+     * @return a ResponseEntity containing the names of the declared indexes that exist
+     */
+    @PostMapping("/indexes")
+    public ResponseEntity<List<String>> createIndexes() {
+        return ResponseEntity.ok(noteIndexService.createIndexes());
+    }
+
+    /**
+     * Rebuilds the full-text search index from the notes, for instance after notes were written to MongoDB directly.
+     * Searches keep returning the notes of the previous index until the rebuild completes.
+     *
+     * @return a ResponseEntity containing the number of notes indexed, or 409 Conflict if the index is already being rebuilt
+     */
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<String> rebuildSearchIndex() {
+        try {
+            return ResponseEntity.ok("Search index rebuilt for " + noteSearchService.rebuild() + " notes");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+}
@@ -1,21 +1,36 @@
 package com.medilabo.micronotes.controller;
 
 import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.BulkNoteResultDto;
+import com.medilabo.micronotes.dto.NotePageDto;
+import com.medilabo.micronotes.dto.NoteSearchDto;
 import com.medilabo.micronotes.exception.NoteNotFoundException;
+import com.medilabo.micronotes.service.NoteBulkService;
+import com.medilabo.micronotes.service.NoteSearchService;
 import com.medilabo.micronotes.service.NoteService;
+import com.medilabo.micronotes.service.PatientExistenceService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * REST controller for managing notes.
  * Provides endpoints for retrieving, creating, updating, and deleting notes.
+ * Notes are listed as a single JSON array, page by page when a {@code size} is given, or streamed as newline-delimited JSON.
+ * Their contents are searched through the full-text index of the {@link NoteSearchService}.
  */
 @RestController
 @RequestMapping("/notes")
@@ -24,6 +39,15 @@ public class NoteController {
     @Autowired
     private NoteService noteService;
 
+    @Autowired
+    private NoteBulkService noteBulkService;
+
+    @Autowired
+    private PatientExistenceService patientExistenceService;
+
+    @Autowired
+    private NoteSearchService noteSearchService;
+
     /**
      * Retrieves all notes.
      *
@@ -46,6 +70,86 @@ public class NoteController {
         return noteService.getNotesByPatientId(patientId, token);
     }
 
+    /**
+     * Retrieves a page of all notes, for instance {@code /notes?size=100} then {@code /notes?size=100&after=<nextCursor>}.
+     *
+     * @param order the order of the notes, {@code id} or {@code createdAt}
+     * @param after the cursor returned with the previous page, none for the first page
+     * @param size  the maximum number of notes in the page, at most {@link NoteService#MAX_PAGE_SIZE}
+     * @return the page of notes, with the cursor of the next page if there is one
+     */
+    @GetMapping(value = "", params = "size")
+    public NotePageDto getNotesPage(@RequestParam(value = "order", defaultValue = NoteService.ORDER_BY_ID) String order,
+                                    @RequestParam(value = "after", required = false) String after,
+                                    @RequestParam("size") int size) {
+        return noteService.getNotesPage(order, after, size);
+    }
+
+    /**
+     * Retrieves a page of the notes associated with a specific patient ID.
+     *
+     * @param patientId the ID of the patient
+     * @param order     the order of the notes, {@code id} or {@code createdAt}
+     * @param after     the cursor returned with the previous page, none for the first page
+     * @param size      the maximum number of notes in the page, at most {@link NoteService#MAX_PAGE_SIZE}
+     * @return the page of notes, with the cursor of the next page if there is one
+     */
+    @GetMapping(value = "/patient/{patientId}", params = "size")
+    public NotePageDto getNotesPageByPatientId(@PathVariable("patientId") Long patientId,
+                                               @RequestParam(value = "order", defaultValue = NoteService.ORDER_BY_ID) String order,
+                                               @RequestParam(value = "after", required = false) String after,
+                                               @RequestParam("size") int size,
+                                               @CookieValue(value = "token", required = false) String token) {
+        return noteService.getNotesPageByPatientId(patientId, order, after, size, token);
+    }
+
+    /**
+     * Streams all notes as newline-delimited JSON, one note per line, in the order of their ID.
+     *
+     * @return a ResponseEntity whose body writes the notes as they are read
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllNotes() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(noteService.streamAllNotes());
+    }
+
+    /**
+     * Streams the notes associated with a specific patient ID as newline-delimited JSON, one note per line.
+     *
+     * @param patientId the ID of the patient
+     * @return a ResponseEntity whose body writes the notes as they are read
+     */
+    @GetMapping(value = "/patient/{patientId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamNotesByPatientId(@PathVariable("patientId") Long patientId,
+                                                                        @CookieValue(value = "token", required = false) String token) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(noteService.streamNotesByPatientId(patientId, token));
+    }
+
+    /**
+     * Searches the contents of the notes, for instance {@code /notes/search?q=microalbumine&from=2024-01-01}.
+     *
+     * @param query     the words to find, in the Lucene query syntax
+     * @param patientId the ID of the patient whose notes are searched, all the notes being searched if not given
+     * @param from      the first day the notes were written, as {@code yyyy-MM-dd}
+     * @param to        the last day the notes were written, as {@code yyyy-MM-dd}
+     * @param page      the number of the page, starting at 0
+     * @param size      the maximum number of notes in the page, at most {@link NoteSearchService#MAX_PAGE_SIZE}
+     * @return the page of the notes found, the most relevant first, with their matching passages highlighted
+     */
+    @GetMapping("/search")
+    public NoteSearchDto searchNotes(@RequestParam("q") String query,
+                                     @RequestParam(value = "patientId", required = false) Long patientId,
+                                     @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @RequestParam(value = "page", defaultValue = "0") int page,
+                                     @RequestParam(value = "size", defaultValue = "20") int size) {
+        return noteSearchService.search(query, patientId, from, to, page, size);
+    }
+
     /**
      * Validates the creation of a new note
      *
@@ -66,6 +170,36 @@ public class NoteController {
         return ResponseEntity.created(location).build();
     }
 
+    /**
+     * Evicts the cached existence of a patient.
+     * Called by the patient microservice when the patient is created or deleted.
+     *
+     * @param patientId the ID of the patient
+     * @return a ResponseEntity with no content
+     */
+    @DeleteMapping("/patient/{patientId}/cache")
+    public ResponseEntity<Void> evictPatient(@PathVariable("patientId") Long patientId) {
+        patientExistenceService.evictPatient(patientId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Creates notes in bulk, from newline-delimited JSON or a JSON array of notes.
+     *
+     * @param body        the notes to create
+     * @param contentType the content type of the body, {@code application/x-ndjson} or {@code application/json}
+     * @param token       the authentication token retrieved from the cookie
+     * @return the outcome of each note, inserted or rejected with the reason why
+     * @throws IOException if the body can't be read
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public BulkNoteResultDto createNotes(InputStream body,
+                                         @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                         @CookieValue(value = "token", required = false) String token) throws IOException {
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+        return noteBulkService.ingest(body, ndjson, token);
+    }
+
     /**
      * Deletes a note by its ID.
      *
@@ -111,4 +245,4 @@ public class NoteController {
         return note;
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
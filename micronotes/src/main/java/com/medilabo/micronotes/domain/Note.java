@@ -1,28 +1,85 @@
 package com.medilabo.micronotes.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 /**
  * Represents a note entity in the system.
  * This class maps to the MongoDB {@code notes} collection and contains information
  * about a note, such as the patient's ID, the patient's last name, and the note content.
+ * The risk microservice stores the risk words it finds in the content as a bitmask, so that it can read the masks of the
+ * notes of a patient, covered by an index, instead of scanning their contents. The mask is dropped whenever the note is
+ * written, only the risk microservice knowing the vocabulary it is computed with.
+ * The creation time of the note lets the risk microservice replay the notes of a patient in order.
+ * The notes are listed page by page in the order of their ID or of their creation time, the indexes ending with the ID
+ * letting each page start right after the last note of the previous one.
+ * The content is covered by a text index using the French stemming, which the risk microservice searches for the notes
+ * that may have a risk word.
  */
 @Entity
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Document(collection = "notes")
+@Document(collection = "notes", language = "french")
+@CompoundIndexes({
+        @CompoundIndex(name = "patientId_riskVocabulary_riskMask", def = "{ 'patientId': 1, 'riskVocabulary': 1, 'riskMask': 1 }"),
+        @CompoundIndex(name = "patientId_id", def = "{ 'patientId': 1, '_id': 1 }"),
+        @CompoundIndex(name = "patientId_createdAt_id", def = "{ 'patientId': 1, 'createdAt': 1, '_id': 1 }"),
+        @CompoundIndex(name = "createdAt_id", def = "{ 'createdAt': 1, '_id': 1 }")
+})
 public class Note {
 
     @Id
     private String id;
     private Long patientId;
     private String patientLastName;
+    @TextIndexed
     private String content;
 
+    /**
+     * Time the note was saved, not set on the notes saved before it existed.
+     */
+    private Instant createdAt;
+
+    /**
+     * Version of the content, incremented each time the note is updated, so that the risk microservice can cache
+     * what it derives from the content of each version. Not set on the notes saved before it existed.
+     */
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * Risk words present in the content and not excluded, bit {@code i} standing for the i-th distinct risk word of the
+     * vocabulary of the risk microservice, which computes it. Not set until then.
+     */
+    @JsonIgnore
+    private Long riskMask;
+
+    /**
+     * Fingerprint of the vocabulary the risk mask was computed with by the risk microservice.
+     */
+    @JsonIgnore
+    private String riskVocabulary;
+
+    /**
+     * Constructs a note whose creation time, version and risk mask are not set.
+     *
+     * @param id              the ID of the note
+     * @param patientId       the ID of the patient
+     * @param patientLastName the last name of the patient
+     * @param content         the content of the note
+     */
+    public Note(String id, Long patientId, String patientLastName, String content) {
+        this(id, patientId, patientLastName, content, null, null, null, null);
+    }
 }
@@ -0,0 +1,12 @@
+package com.medilabo.micronotes.dto;
+
+/**
+ * Outcome of the ingestion of a single note of a bulk request.
+ *
+ * @param index    the position of the note in the request, starting from 0
+ * @param id       the ID of the note, {@code null} if it couldn't be read
+ * @param inserted whether the note was inserted
+ * @param error    the reason why the note wasn't inserted, {@code null} if it was
+ */
+public record BulkNoteItemDto(int index, String id, boolean inserted, String error) {
+}
@@ -0,0 +1,14 @@
+package com.medilabo.micronotes.dto;
+
+import java.util.List;
+
+/**
+ * Report of a bulk ingestion of notes.
+ *
+ * @param received the number of notes read from the request
+ * @param inserted the number of notes inserted
+ * @param failed   the number of notes rejected or whose insertion failed
+ * @param items    the outcome of each note, in the order of the request
+ */
+public record BulkNoteResultDto(int received, int inserted, int failed, List<BulkNoteItemDto> items) {
+}
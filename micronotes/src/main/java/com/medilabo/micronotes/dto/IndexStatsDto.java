@@ -0,0 +1,16 @@
+package com.medilabo.micronotes.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Usage statistics of an index of the notes collection, as reported by a MongoDB server.
+ *
+ * @param name     the name of the index
+ * @param key      the indexed fields and their order, or {@code "text"} for the text index
+ * @param host     the server the statistics come from, each member of a replica set counting its own accesses
+ * @param accesses the number of operations that used the index since {@code since}
+ * @param since    the time the server started counting, i.e. its start or the creation of the index
+ */
+public record IndexStatsDto(String name, Map<String, Object> key, String host, long accesses, Instant since) {
+}
@@ -0,0 +1,14 @@
+package com.medilabo.micronotes.dto;
+
+import com.medilabo.micronotes.domain.Note;
+
+import java.util.List;
+
+/**
+ * A page of notes, listed in the order of their ID or of their creation time.
+ *
+ * @param notes      the notes of the page
+ * @param nextCursor the cursor to pass as {@code after} to get the next page, {@code null} on the last page
+ */
+public record NotePageDto(List<Note> notes, String nextCursor) {
+}
@@ -0,0 +1,15 @@
+package com.medilabo.micronotes.dto;
+
+import java.util.List;
+
+/**
+ * A page of the notes matching a full-text search, the most relevant first.
+ *
+ * @param page           the number of the page, starting at 0
+ * @param size           the maximum number of notes in the page
+ * @param totalHits      the number of notes matching the search
+ * @param totalHitsExact whether {@code totalHits} is exact, or only a lower bound when the search matches many notes
+ * @param hits           the notes of the page
+ */
+public record NoteSearchDto(int page, int size, long totalHits, boolean totalHitsExact, List<NoteSearchHitDto> hits) {
+}
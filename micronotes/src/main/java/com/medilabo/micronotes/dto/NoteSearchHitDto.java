@@ -0,0 +1,18 @@
+package com.medilabo.micronotes.dto;
+
+import java.time.Instant;
+
+/**
+ * A note matching a full-text search.
+ *
+ * @param id              the ID of the note
+ * @param patientId       the ID of the patient
+ * @param patientLastName the last name of the patient
+ * @param createdAt       the time the note was saved, or the time of its ID for the notes saved before creation times existed
+ * @param score           the relevance of the note to the search, the higher the better
+ * @param snippet         the passages of the content matching the search, HTML-escaped, the matching words being
+ *                        enclosed in {@code <mark>} tags
+ */
+public record NoteSearchHitDto(String id, Long patientId, String patientLastName, Instant createdAt, float score,
+                               String snippet) {
+}
@@ -0,0 +1,22 @@
+package com.medilabo.micronotes.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a page of notes is requested with an unknown order or a malformed cursor.
+ * This exception is annotated with {@link ResponseStatus} to indicate that
+ * an HTTP 400 Bad Request status should be returned when this exception is thrown.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidNotePageException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidNotePageException with the specified detail message.
+     *
+     * @param message the detail message explaining the reason for the exception
+     */
+    public InvalidNotePageException(String message) {
+        super(message);
+    }
+}
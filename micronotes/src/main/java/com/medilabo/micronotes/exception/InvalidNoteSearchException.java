@@ -0,0 +1,22 @@
+package com.medilabo.micronotes.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when notes are searched with a malformed query, an empty date range or an invalid page.
+ * This exception is annotated with {@link ResponseStatus} to indicate that
+ * an HTTP 400 Bad Request status should be returned when this exception is thrown.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidNoteSearchException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidNoteSearchException with the specified detail message.
+     *
+     * @param message the detail message explaining the reason for the exception
+     */
+    public InvalidNoteSearchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,37 @@
+package com.medilabo.micronotes.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.fr.FrenchAnalyzer;
+import org.apache.lucene.analysis.fr.FrenchLightStemFilter;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.util.ElisionFilter;
+
+/**
+ * Analyzer of the contents of the notes and of the search queries, the same one being used for both.
+ * Words are split as in French text, their elided article being removed ("l'hémoglobine" is "hémoglobine"),
+ * lower-cased, the French stop words being left out. Accents are then removed, so that "cholesterol" finds "Cholestérol",
+ * and a light stemmer removes the plural and feminine endings, so that "vertige" finds "Vertiges" and "fumeur" finds "fumeuse".
+ */
+public final class FrenchNoteAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer source = new StandardTokenizer();
+        TokenStream result = new ElisionFilter(source, FrenchAnalyzer.DEFAULT_ARTICLES);
+        result = new LowerCaseFilter(result);
+        result = new StopFilter(result, FrenchAnalyzer.getDefaultStopSet());
+        result = new ASCIIFoldingFilter(result);
+        result = new FrenchLightStemFilter(result);
+        return new TokenStreamComponents(source, result);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+    }
+}
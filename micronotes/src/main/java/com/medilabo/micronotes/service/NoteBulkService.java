@@ -0,0 +1,260 @@
+package com.medilabo.micronotes.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.BulkNoteItemDto;
+import com.medilabo.micronotes.dto.BulkNoteResultDto;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Service class ingesting notes in bulk, as when the records of a clinic are migrated.
+ * The notes are read one at a time from the request, validated, and inserted by unordered bulk writes of
+ * {@code micronotes.bulk.batch-size} notes, so that a failing note doesn't stop the others.
+ * The existence of each distinct patient is checked once per request, the checks of a batch running concurrently
+ * through the cache of the {@link PatientExistenceService},
+ * and the cached risk level of each patient having new notes is evicted once, at the end of the request.
+ * The notes inserted by each bulk write are added to the search index.
+ */
+@Slf4j
+@Service
+public class NoteBulkService {
+
+    /**
+     * Maximum number of patient existence checks running at the same time.
+     */
+    static final int PATIENT_CHECK_CONCURRENCY = 16;
+
+    @Value("${micronotes.bulk.batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PatientExistenceService patientExistenceService;
+
+    @Autowired
+    private RiskCacheClient riskCacheClient;
+
+    @Autowired
+    private NoteSearchService noteSearchService;
+
+    /**
+     * Ingests the notes of a request body, either newline-delimited JSON or a JSON array.
+     * A malformed line of newline-delimited JSON only rejects its note, while a malformed JSON array stops the reading
+     * at the malformed note, the notes read before it being ingested.
+     * The cached risks of the patients having new notes are evicted even if the request fails midway.
+     *
+     * @param body   the request body
+     * @param ndjson whether the body is newline-delimited JSON rather than a JSON array
+     * @param token  the token retrieved in the cookie, used to check the existence of the patients
+     * @return the outcome of each note read
+     * @throws IOException if the body can't be read
+     */
+    public BulkNoteResultDto ingest(InputStream body, boolean ndjson, String token) throws IOException {
+        Ingestion ingestion = new Ingestion(token);
+        int index = 0;
+        try {
+            if (ndjson) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        ingestion.add(index, objectMapper.readValue(line, Note.class));
+                    } catch (JsonProcessingException e) {
+                        ingestion.reject(index, null, "Malformed note: " + e.getOriginalMessage());
+                    }
+                    index++;
+                }
+            } else {
+                try (MappingIterator<Note> notes = objectMapper.readerFor(Note.class).readValues(body)) {
+                    while (notes.hasNextValue()) {
+                        ingestion.add(index, notes.nextValue());
+                        index++;
+                    }
+                } catch (JsonProcessingException e) {
+                    ingestion.reject(index, null, "Malformed note, the following notes were not read: " + e.getOriginalMessage());
+                }
+            }
+            ingestion.flush();
+        } finally {
+            ingestion.evictRisks();
+        }
+        return ingestion.result();
+    }
+
+    /**
+     * State of a bulk request: the notes waiting for the next bulk write, the patients already checked,
+     * and the outcome of the notes written so far.
+     */
+    private class Ingestion {
+
+        private final String token;
+        private final List<Note> pendingNotes = new ArrayList<>();
+        private final List<Integer> pendingIndexes = new ArrayList<>();
+        private final Map<Long, String> patientErrors = new HashMap<>();
+        private final Set<Long> updatedPatients = new LinkedHashSet<>();
+        private final List<BulkNoteItemDto> items = new ArrayList<>();
+        private int inserted;
+
+        private Ingestion(String token) {
+            this.token = token;
+        }
+
+        private void add(int index, Note note) {
+            if (note == null) {
+                reject(index, null, "Empty note");
+                return;
+            }
+            if (note.getPatientId() == null) {
+                reject(index, note.getId(), "The patient ID is mandatory");
+                return;
+            }
+            if (note.getContent() == null || note.getContent().isBlank()) {
+                reject(index, note.getId(), "The content is mandatory");
+                return;
+            }
+            pendingNotes.add(note);
+            pendingIndexes.add(index);
+            if (pendingNotes.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void reject(int index, String id, String error) {
+            items.add(new BulkNoteItemDto(index, id, false, error));
+        }
+
+        /**
+         * Checks the patients not seen yet, then inserts the pending notes of existing patients with one bulk write.
+         */
+        private void flush() {
+            if (pendingNotes.isEmpty()) {
+                return;
+            }
+            checkPatients();
+
+            List<Note> notes = new ArrayList<>(pendingNotes.size());
+            List<Integer> indexes = new ArrayList<>(pendingNotes.size());
+            Instant now = Instant.now();
+            for (int i = 0; i < pendingNotes.size(); i++) {
+                Note note = pendingNotes.get(i);
+                String patientError = patientErrors.get(note.getPatientId());
+                if (patientError != null) {
+                    reject(pendingIndexes.get(i), note.getId(), patientError);
+                    continue;
+                }
+                if (note.getId() == null) {
+                    note.setId(new ObjectId().toHexString());
+                }
+                note.setCreatedAt(now);
+                note.setVersion(0L);
+                notes.add(note);
+                indexes.add(pendingIndexes.get(i));
+            }
+            pendingNotes.clear();
+            pendingIndexes.clear();
+            if (!notes.isEmpty()) {
+                write(notes, indexes);
+            }
+        }
+
+        private void checkPatients() {
+            List<Long> uncheckedPatients = pendingNotes.stream()
+                    .map(Note::getPatientId)
+                    .distinct()
+                    .filter(patientId -> !patientErrors.containsKey(patientId))
+                    .toList();
+            if (uncheckedPatients.isEmpty()) {
+                return;
+            }
+            Map<Long, String> errors = Flux.fromIterable(uncheckedPatients)
+                    .flatMap(patientId -> patientExistenceService.existsPatient(patientId, token)
+                            .map(exists -> exists ? "" : "Patient not found for id: " + patientId)
+                            .onErrorResume(error -> Mono.just("Could not check patient " + patientId + ": " + error.getMessage()))
+                            .map(error -> Map.entry(patientId, error)), PATIENT_CHECK_CONCURRENCY)
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                    .block();
+            errors.forEach((patientId, error) -> patientErrors.put(patientId, error.isEmpty() ? null : error));
+        }
+
+        private void write(List<Note> notes, List<Integer> indexes) {
+            Map<Integer, String> writeErrors = new HashMap<>();
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)
+                        .insert(notes)
+                        .execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    writeErrors.put(error.getIndex(), error.getMessage());
+                }
+            } catch (DataAccessException e) {
+                // Some notes of the batch may have been written before the failure, their patients' risks are evicted too
+                log.warn("Bulk write of {} notes failed: {}", notes.size(), e.getMessage());
+                for (int i = 0; i < notes.size(); i++) {
+                    writeErrors.put(i, "Write failed, the note may not have been inserted: " + e.getMessage());
+                    updatedPatients.add(notes.get(i).getPatientId());
+                }
+            }
+            List<Note> insertedNotes = new ArrayList<>(notes.size());
+            for (int i = 0; i < notes.size(); i++) {
+                Note note = notes.get(i);
+                String error = writeErrors.get(i);
+                if (error == null) {
+                    items.add(new BulkNoteItemDto(indexes.get(i), note.getId(), true, null));
+                    updatedPatients.add(note.getPatientId());
+                    insertedNotes.add(note);
+                    inserted++;
+                } else {
+                    reject(indexes.get(i), note.getId(), error);
+                }
+            }
+            if (!insertedNotes.isEmpty()) {
+                noteSearchService.index(insertedNotes);
+            }
+        }
+
+        private void evictRisks() {
+            riskCacheClient.evictRisks(updatedPatients);
+        }
+
+        private BulkNoteResultDto result() {
+            items.sort(Comparator.comparingInt(BulkNoteItemDto::index));
+            log.info("Ingested {} of {} notes for {} patients", inserted, items.size(), updatedPatients.size());
+            return new BulkNoteResultDto(items.size(), inserted, items.size() - inserted, items);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.medilabo.micronotes.service;
+
+import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.IndexStatsDto;
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service class managing the indexes of the notes collection.
+ * The indexes declared on {@link Note} are created once the application is ready, before the other startup jobs run,
+ * since Spring Data doesn't create them by itself. Creating an index that already exists with the same keys and options
+ * does nothing, so restarts are cheap.
+ * An index conflicting with an existing one, such as a text index on other fields or with another language, the collection
+ * having at most one, is reported and skipped: it must be dropped by hand for the declared one to be created.
+ */
+@Slf4j
+@Service
+public class NoteIndexService {
+
+    /**
+     * Error codes of MongoDB when an index exists with the same name or keys but other options ({@code IndexOptionsConflict})
+     * or other keys ({@code IndexKeySpecsConflict}).
+     */
+    private static final Set<Integer> INDEX_CONFLICT_CODES = Set.of(85, 86);
+
+    /**
+     * Indexes once declared on {@link Note} and dropped since, each being a prefix of a declared index that serves
+     * the same queries, so that the notes aren't written to them anymore.
+     */
+    static final List<String> OBSOLETE_INDEXES = List.of("patientId_createdAt");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${micronotes.indexes.create-on-startup:true}")
+    private boolean createOnStartup;
+
+    /**
+     * Creates the indexes of the notes, unless disabled.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (createOnStartup) {
+            try {
+                List<String> indexes = createIndexes();
+                log.info("Ensured the indexes {} of the notes", indexes);
+            } catch (DataAccessException e) {
+                log.error("Indexes of the notes not created, they can be created later with POST /notes/admin/indexes: {}",
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates the indexes declared on {@link Note} that don't exist yet, and drops the obsolete ones.
+     *
+     * @return the names of the declared indexes that exist, the conflicting ones being left out
+     * @throws DataAccessException if an index can't be created for another reason than a conflict, such as a timeout
+     */
+    public List<String> createIndexes() {
+        IndexOperations indexOperations = mongoTemplate.indexOps(Note.class);
+        MongoPersistentEntityIndexResolver resolver =
+                new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        List<String> indexes = new ArrayList<>();
+        for (IndexDefinition index : resolver.resolveIndexFor(Note.class)) {
+            try {
+                indexes.add(indexOperations.ensureIndex(index));
+            } catch (DataAccessException e) {
+                if (!isIndexConflict(e)) {
+                    throw e;
+                }
+                log.warn("Index {} of the notes not created, conflicting with an existing index: {}",
+                        index.getIndexKeys().toJson(), e.getMessage());
+            }
+        }
+        indexOperations.getIndexInfo().stream()
+                .filter(index -> OBSOLETE_INDEXES.contains(index.getName()))
+                .forEach(index -> {
+                    indexOperations.dropIndex(index.getName());
+                    log.info("Dropped the obsolete index {} of the notes", index.getName());
+                });
+        return indexes;
+    }
+
+    /**
+     * Reads the usage statistics of the indexes of the notes, so that unused indexes can be found and dropped.
+     * Accesses are counted by each server since it started, and reset when the index is rebuilt.
+     *
+     * @return the statistics of each index on each server, ordered by index name
+     */
+    public List<IndexStatsDto> getIndexStats() {
+        Aggregation indexStats = Aggregation.newAggregation(Aggregation.stage(new Document("$indexStats", new Document())));
+        return mongoTemplate.aggregate(indexStats, mongoTemplate.getCollectionName(Note.class), Document.class)
+                .getMappedResults().stream()
+                .map(NoteIndexService::toIndexStats)
+                .sorted(Comparator.comparing(IndexStatsDto::name).thenComparing(IndexStatsDto::host))
+                .toList();
+    }
+
+    private static boolean isIndexConflict(DataAccessException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException && INDEX_CONFLICT_CODES.contains(mongoException.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static IndexStatsDto toIndexStats(Document stats) {
+        Document accesses = stats.get("accesses", Document.class);
+        return new IndexStatsDto(stats.getString("name"), stats.get("key", Document.class), stats.getString("host"),
+                ((Number) accesses.get("ops")).longValue(), accesses.getDate("since").toInstant());
+    }
+}
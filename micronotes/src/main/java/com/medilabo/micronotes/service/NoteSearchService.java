@@ -0,0 +1,426 @@
+package com.medilabo.micronotes.service;
+
+import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.NoteSearchDto;
+import com.medilabo.micronotes.dto.NoteSearchHitDto;
+import com.medilabo.micronotes.exception.InvalidNoteSearchException;
+import com.medilabo.micronotes.search.FrenchNoteAnalyzer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollectorManager;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Service class maintaining an embedded Lucene index of the contents of the notes, stored on disk, and searching it.
+ * The index is updated each time a note is saved, updated or deleted, the changes being visible to the searches once
+ * the index is refreshed, every {@code micronotes.search.refresh-interval}, and written durably every
+ * {@code micronotes.search.commit-interval} and when the application stops.
+ * MongoDB stays the source of truth: a note that can't be indexed is still saved, and the index is rebuilt from the notes
+ * when the application starts with an empty index, or on demand.
+ * Contents are analyzed by the {@link FrenchNoteAnalyzer}, and kept in the index with the offsets of their words, so that
+ * the matching passages are highlighted without analyzing the contents again.
+ */
+@Slf4j
+@Service
+public class NoteSearchService {
+
+    /**
+     * Maximum number of notes in a page of search results.
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Maximum rank of the search results that can be read, the top hits of all the pages up to the requested one being
+     * collected. The number of hits is exact up to this rank.
+     */
+    public static final int MAX_HITS = 10_000;
+
+    private static final String ID = "id";
+    private static final String PATIENT_ID = "patientId";
+    private static final String PATIENT_LAST_NAME = "patientLastName";
+    private static final String CREATED_AT = "createdAt";
+    private static final String CONTENT = "content";
+
+    /**
+     * Number of passages of the content returned for each note found.
+     */
+    private static final int MAX_PASSAGES = 2;
+
+    private static final FieldType CONTENT_TYPE = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        CONTENT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        CONTENT_TYPE.freeze();
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${micronotes.search.index-dir:search-index}")
+    private String indexDir;
+
+    @Value("${micronotes.search.refresh-interval:1s}")
+    private Duration refreshInterval;
+
+    @Value("${micronotes.search.commit-interval:1m}")
+    private Duration commitInterval;
+
+    @Value("${micronotes.search.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    private final Analyzer analyzer = new FrenchNoteAnalyzer();
+
+    /**
+     * Whether the index is being rebuilt, searches keeping the previous view of the index until it completes.
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private Directory directory;
+    private volatile IndexWriter indexWriter;
+    private volatile SearcherManager searcherManager;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Opens the index, creating it if it doesn't exist, and schedules its refreshes and commits.
+     *
+     * @throws IOException if the index directory can't be opened
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        directory = FSDirectory.open(Path.of(indexDir));
+        indexWriter = openWriter();
+        searcherManager = new SearcherManager(indexWriter, null);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "note-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::commit, commitInterval.toMillis(), commitInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Commits the pending changes and closes the index.
+     *
+     * @throws IOException if the index can't be written
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        scheduler.shutdown();
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    /**
+     * Builds the index from the notes when the application starts with an empty index, for instance the first time,
+     * unless disabled. A failure leaves the index empty without aborting the startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (rebuildOnStartup && indexWriter.getDocStats().numDocs == 0) {
+            try {
+                log.info("Indexed {} notes for the search", rebuild());
+            } catch (DataAccessException | UncheckedIOException e) {
+                log.error("Search index of the notes not built, it can be rebuilt later with POST /notes/admin/search/rebuild: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a note to the index, or replaces it.
+     *
+     * @param note the note as saved
+     */
+    public void index(Note note) {
+        try {
+            indexWriter.updateDocument(new Term(ID, note.getId()), toDocument(note));
+        } catch (IOException | AlreadyClosedException e) {
+            log.warn("Note {} couldn't be indexed for the search: {}", note.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Adds notes to the index, or replaces them.
+     *
+     * @param notes the notes as saved
+     */
+    public void index(Collection<Note> notes) {
+        notes.forEach(this::index);
+    }
+
+    /**
+     * Removes a note from the index.
+     *
+     * @param id the ID of the note
+     */
+    public void delete(String id) {
+        try {
+            indexWriter.deleteDocuments(new Term(ID, id));
+        } catch (IOException | AlreadyClosedException e) {
+            log.warn("Note {} couldn't be removed from the search index: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the index from all the notes, searches keeping the previous view of the index until it completes.
+     * A note deleted while the index is rebuilt may be found again until the next rebuild.
+     * If the rebuild fails, the index is rolled back to its state before the rebuild, the notes indexed meanwhile being
+     * lost until the next rebuild.
+     *
+     * @return the number of notes indexed
+     * @throws IllegalStateException if the index is already being rebuilt
+     */
+    public long rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("The search index is already being rebuilt");
+        }
+        boolean rebuilt = false;
+        try {
+            // Pending changes are committed first, so that a failed rebuild is rolled back to the index as it was
+            indexWriter.commit();
+            indexWriter.deleteAll();
+            long indexed = 0;
+            BasicQuery allNotes = new BasicQuery("{}");
+            allNotes.cursorBatchSize(NoteService.STREAM_BATCH_SIZE);
+            try (Stream<Note> notes = mongoTemplate.stream(allNotes, Note.class)) {
+                for (Note note : (Iterable<Note>) notes::iterator) {
+                    indexWriter.updateDocument(new Term(ID, note.getId()), toDocument(note));
+                    indexed++;
+                }
+            }
+            indexWriter.commit();
+            rebuilt = true;
+            searcherManager.maybeRefreshBlocking();
+            return indexed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!rebuilt) {
+                rollback();
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Discards the changes since the last commit, the writer being closed by its rollback, then reopens the index.
+     */
+    private void rollback() {
+        try {
+            indexWriter.rollback();
+            IndexWriter writer = openWriter();
+            SearcherManager previousSearcherManager = searcherManager;
+            searcherManager = new SearcherManager(writer, null);
+            indexWriter = writer;
+            previousSearcherManager.close();
+        } catch (IOException e) {
+            log.error("The search index couldn't be reopened after a failed rebuild: {}", e.getMessage());
+        }
+    }
+
+    private IndexWriter openWriter() throws IOException {
+        return new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+    }
+
+    /**
+     * Searches the contents of the notes, the words of the query being analyzed as the contents are.
+     * The query follows the Lucene syntax: all its words must be found, unless joined with {@code OR}; a phrase is quoted,
+     * a word is excluded with {@code -}, and {@code microalb*} finds the words starting with "microalb".
+     *
+     * @param text            the query
+     * @param patientIdFilter the ID of the patient whose notes are searched, all the notes being searched if null
+     * @param from            the first day the notes were written, in UTC, none if null
+     * @param to              the last day the notes were written, in UTC, none if null
+     * @param page            the number of the page, starting at 0
+     * @param size            the maximum number of notes in the page, at most {@link #MAX_PAGE_SIZE}
+     * @return the page of the notes found, the most relevant first, with their matching passages
+     * @throws InvalidNoteSearchException if the query is blank or malformed, the range empty or the page invalid
+     */
+    public NoteSearchDto search(String text, Long patientIdFilter, LocalDate from, LocalDate to, int page, int size) {
+        if (text == null || text.isBlank()) {
+            throw new InvalidNoteSearchException("The search query must not be blank");
+        }
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new InvalidNoteSearchException("Page must be positive and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((long) (page + 1) * size > MAX_HITS) {
+            throw new InvalidNoteSearchException("Only the first " + MAX_HITS + " notes found can be read");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidNoteSearchException("The search range must not end before it starts");
+        }
+
+        Query query = toQuery(text, patientIdFilter, from, to);
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(query, new TopScoreDocCollectorManager((page + 1) * size, MAX_HITS));
+            ScoreDoc[] pageDocs = Arrays.copyOfRange(topDocs.scoreDocs, Math.min(page * size, topDocs.scoreDocs.length),
+                    topDocs.scoreDocs.length);
+            TopDocs pageTopDocs = new TopDocs(topDocs.totalHits, pageDocs);
+            String[] snippets = UnifiedHighlighter.builder(searcher, analyzer)
+                    .withFormatter(new DefaultPassageFormatter("<mark>", "</mark>", "… ", true))
+                    .build()
+                    .highlight(CONTENT, query, pageTopDocs, MAX_PASSAGES);
+
+            StoredFields storedFields = searcher.storedFields();
+            List<NoteSearchHitDto> hits = new ArrayList<>(pageDocs.length);
+            for (int i = 0; i < pageDocs.length; i++) {
+                Document document = storedFields.document(pageDocs[i].doc);
+                IndexableField patientId = document.getField(PATIENT_ID);
+                hits.add(new NoteSearchHitDto(document.get(ID),
+                        patientId == null ? null : patientId.numericValue().longValue(),
+                        document.get(PATIENT_LAST_NAME),
+                        Instant.ofEpochMilli(document.getField(CREATED_AT).numericValue().longValue()),
+                        pageDocs[i].score,
+                        snippets[i]));
+            }
+            return new NoteSearchDto(page, size, topDocs.totalHits.value,
+                    topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO, hits);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (searcher != null) {
+                release(searcher);
+            }
+        }
+    }
+
+    /**
+     * Makes the changes made to the index visible to the searches, unless the index is being rebuilt.
+     */
+    private void refresh() {
+        if (rebuilding.get()) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Search index couldn't be refreshed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the changes made to the index durably.
+     */
+    private void commit() {
+        if (rebuilding.get() || !indexWriter.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            indexWriter.commit();
+        } catch (IOException e) {
+            log.warn("Search index couldn't be committed: {}", e.getMessage());
+        }
+    }
+
+    private Query toQuery(String text, Long patientId, LocalDate from, LocalDate to) {
+        // Query parsers are not thread-safe
+        QueryParser parser = new QueryParser(CONTENT, analyzer);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        try {
+            query.add(parser.parse(text), BooleanClause.Occur.MUST);
+        } catch (ParseException e) {
+            throw new InvalidNoteSearchException("Malformed search query: " + text);
+        }
+        if (patientId != null) {
+            query.add(LongField.newExactQuery(PATIENT_ID, patientId), BooleanClause.Occur.FILTER);
+        }
+        if (from != null || to != null) {
+            long lower = from == null ? Long.MIN_VALUE : from.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            long upper = to == null ? Long.MAX_VALUE : to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() - 1;
+            query.add(LongField.newRangeQuery(CREATED_AT, lower, upper), BooleanClause.Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.warn("Search index searcher couldn't be released: {}", e.getMessage());
+        }
+    }
+
+    private static Document toDocument(Note note) {
+        Document document = new Document();
+        document.add(new StringField(ID, note.getId(), Field.Store.YES));
+        if (note.getPatientId() != null) {
+            document.add(new LongField(PATIENT_ID, note.getPatientId(), Field.Store.YES));
+        }
+        if (note.getPatientLastName() != null) {
+            document.add(new StoredField(PATIENT_LAST_NAME, note.getPatientLastName()));
+        }
+        document.add(new LongField(CREATED_AT, creationTimeOf(note).toEpochMilli(), Field.Store.YES));
+        document.add(new Field(CONTENT, note.getContent() == null ? "" : note.getContent(), CONTENT_TYPE));
+        return document;
+    }
+
+    /**
+     * Dates the notes saved before creation times existed by their ID, an ObjectId holding the time it was generated.
+     */
+    private static Instant creationTimeOf(Note note) {
+        if (note.getCreatedAt() != null) {
+            return note.getCreatedAt();
+        }
+        return ObjectId.isValid(note.getId()) ? new ObjectId(note.getId()).getDate().toInstant() : Instant.EPOCH;
+    }
+}
@@ -1,29 +1,67 @@
 package com.medilabo.micronotes.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.NotePageDto;
+import com.medilabo.micronotes.exception.InvalidNotePageException;
 import com.medilabo.micronotes.exception.NoteNotFoundException;
 import com.medilabo.micronotes.exception.PatientNotFoundException;
 import com.medilabo.micronotes.repository.NoteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.CookieValue;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 
 /**
  * Service class for managing patient notes.
  * Provides methods to retrieve, create, update, delete, and perform operations related to patient notes
  * from the MongoDB database through the NoteRepository.
+ * Notes can also be listed page by page, each page starting right after the last note of the previous one so that
+ * deep pages cost as much as the first one, or streamed from a MongoDB cursor without being loaded all at once.
  */
 @Service
 public class NoteService {
 
+    /**
+     * Order of the pages of notes by ID, the default one.
+     */
+    public static final String ORDER_BY_ID = "id";
+
+    /**
+     * Order of the pages of notes by creation time, the notes saved before creation times existed coming first.
+     */
+    public static final String ORDER_BY_CREATION_TIME = "createdAt";
+
+    /**
+     * Maximum number of notes in a page.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Number of notes fetched from MongoDB at once when streaming notes.
+     */
+    static final int STREAM_BATCH_SIZE = 500;
+
     @Autowired
-    private WebClient.Builder webClientBuilder;
+    private PatientExistenceService patientExistenceService;
 
     @Autowired
     private NoteRepository noteRepository;
@@ -31,6 +69,15 @@ public class NoteService {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private RiskCacheClient riskCacheClient;
+
+    @Autowired
+    private NoteSearchService noteSearchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Retrieves a note by its ID.
      *
@@ -46,7 +93,7 @@ public class NoteService {
 
     /**
      * Retrieves all notes associated with a specific patient ID.
-     * Checks if the patient exists by making a REST call to the patient microservice first.
+     * Checks if the patient exists first, the patient microservice being called unless its answer is cached.
      *
      * @param patientId the ID of the patient
      * @param token the token retrieved in the cookie
@@ -55,46 +102,193 @@ public class NoteService {
      */
     public List<Note> getNotesByPatientId(Long patientId,
                                           @CookieValue(value = "token", required = false) String token) {
-        Boolean existsPatient = webClientBuilder
-                .baseUrl("http://gateway:8080")
-                .build()
-                .get()
-                .uri("/patients/{id}/exists", patientId)
-                .cookie("token", token)
-                .retrieve()
-                .bodyToMono(Boolean.class)
-                .defaultIfEmpty(false)
-                .block();
+        checkPatientExists(patientId, token);
+        return noteRepository.findByPatientId(patientId);
+    }
+
+    /**
+     * Retrieves a page of all notes.
+     *
+     * @param order the order of the notes, {@link #ORDER_BY_ID} or {@link #ORDER_BY_CREATION_TIME}
+     * @param after the cursor returned with the previous page, {@code null} for the first page
+     * @param size  the maximum number of notes in the page, at most {@link #MAX_PAGE_SIZE}
+     * @return the page of notes, with the cursor of the next page if there is one
+     * @throws InvalidNotePageException if the order is unknown or the cursor is malformed
+     */
+    public NotePageDto getNotesPage(String order, String after, int size) {
+        return findNotesPage(new Query(), order, after, size);
+    }
+
+    /**
+     * Retrieves a page of the notes associated with a specific patient ID.
+     * Checks if the patient exists first, the patient microservice being called unless its answer is cached.
+     *
+     * @param patientId the ID of the patient
+     * @param order     the order of the notes, {@link #ORDER_BY_ID} or {@link #ORDER_BY_CREATION_TIME}
+     * @param after     the cursor returned with the previous page, {@code null} for the first page
+     * @param size      the maximum number of notes in the page, at most {@link #MAX_PAGE_SIZE}
+     * @param token     the token retrieved in the cookie
+     * @return the page of notes, with the cursor of the next page if there is one
+     * @throws PatientNotFoundException if the patient is not found
+     * @throws InvalidNotePageException if the order is unknown or the cursor is malformed
+     */
+    public NotePageDto getNotesPageByPatientId(Long patientId, String order, String after, int size,
+                                               @CookieValue(value = "token", required = false) String token) {
+        checkPatientExists(patientId, token);
+        return findNotesPage(Query.query(Criteria.where("patientId").is(patientId)), order, after, size);
+    }
+
+    /**
+     * Streams all notes as newline-delimited JSON, in the order of their ID.
+     *
+     * @return the body writing the notes as they are read from a MongoDB cursor
+     */
+    public StreamingResponseBody streamAllNotes() {
+        return output -> writeNotes(new Query(), output);
+    }
+
+    /**
+     * Streams the notes associated with a specific patient ID as newline-delimited JSON, in the order of their ID.
+     * Checks if the patient exists first, the patient microservice being called unless its answer is cached.
+     *
+     * @param patientId the ID of the patient
+     * @param token     the token retrieved in the cookie
+     * @return the body writing the notes as they are read from a MongoDB cursor
+     * @throws PatientNotFoundException if the patient is not found
+     */
+    public StreamingResponseBody streamNotesByPatientId(Long patientId,
+                                                        @CookieValue(value = "token", required = false) String token) {
+        checkPatientExists(patientId, token);
+        return output -> writeNotes(Query.query(Criteria.where("patientId").is(patientId)), output);
+    }
+
+    private void writeNotes(Query query, OutputStream output) throws IOException {
+        query.with(Sort.by(Sort.Direction.ASC, "id"));
+        query.cursorBatchSize(STREAM_BATCH_SIZE);
+        try (Stream<Note> notes = mongoTemplate.stream(query, Note.class)) {
+            Iterator<Note> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                output.write(objectMapper.writeValueAsBytes(iterator.next()));
+                output.write('\n');
+            }
+        }
+    }
+
+    private NotePageDto findNotesPage(Query query, String order, String after, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        boolean byCreationTime;
+        if (ORDER_BY_ID.equals(order)) {
+            byCreationTime = false;
+        } else if (ORDER_BY_CREATION_TIME.equals(order)) {
+            byCreationTime = true;
+        } else {
+            throw new InvalidNotePageException("Unknown order: " + order);
+        }
+
+        if (after != null && !after.isEmpty()) {
+            query.addCriteria(byCreationTime ? afterCreationTimeCursor(after) : Criteria.where("id").gt(after));
+        }
+        query.with(byCreationTime ? Sort.by(Sort.Direction.ASC, "createdAt", "id") : Sort.by(Sort.Direction.ASC, "id"));
+        query.limit(pageSize + 1);
+
+        List<Note> notes = new ArrayList<>(mongoTemplate.find(query, Note.class));
+        if (notes.size() <= pageSize) {
+            return new NotePageDto(notes, null);
+        }
+        notes = notes.subList(0, pageSize);
+        Note last = notes.get(pageSize - 1);
+        return new NotePageDto(notes, byCreationTime ? creationTimeCursorOf(last) : last.getId());
+    }
+
+    /**
+     * Encodes the position of a note in the order of creation time, ties being broken by ID.
+     */
+    private static String creationTimeCursorOf(Note note) {
+        String position = (note.getCreatedAt() == null ? "" : String.valueOf(note.getCreatedAt().toEpochMilli())) + "_" + note.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Matches the notes coming after a cursor in the order of creation time, the notes without creation time coming first.
+     */
+    private static Criteria afterCreationTimeCursor(String cursor) {
+        String position;
+        try {
+            position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidNotePageException("Malformed cursor: " + cursor);
+        }
+        int separator = position.indexOf('_');
+        if (separator < 0 || separator == position.length() - 1) {
+            throw new InvalidNotePageException("Malformed cursor: " + cursor);
+        }
+        String id = position.substring(separator + 1);
+        if (separator == 0) {
+            return new Criteria().orOperator(
+                    Criteria.where("createdAt").is(null).and("id").gt(id),
+                    Criteria.where("createdAt").ne(null));
+        }
+        Date createdAt;
+        try {
+            createdAt = new Date(Long.parseLong(position.substring(0, separator)));
+        } catch (NumberFormatException e) {
+            throw new InvalidNotePageException("Malformed cursor: " + cursor);
+        }
+        return new Criteria().orOperator(
+                Criteria.where("createdAt").gt(createdAt),
+                Criteria.where("createdAt").is(createdAt).and("id").gt(id));
+    }
+
+    /**
+     * Checks if a patient exists from the cache or by making a REST call to the patient microservice.
+     *
+     * @param patientId the ID of the patient
+     * @param token     the token retrieved in the cookie
+     * @throws PatientNotFoundException if the patient is not found
+     */
+    private void checkPatientExists(Long patientId, String token) {
+        Boolean existsPatient = patientExistenceService.existsPatient(patientId, token).block();
 
         if (Boolean.FALSE.equals(existsPatient)) {
             throw new PatientNotFoundException("Patient not found for id: " + patientId);
         }
-        return noteRepository.findByPatientId(patientId);
     }
 
     /**
-     * Saves a new note.
+     * Saves a new note as its first version, along with its creation time.
+     * The note is added to the search index, and the cached risk level of the patient is evicted in the risk microservice.
      *
      * @param note the note to be saved
      * @return the saved Note
      */
     @Transactional
     public Note saveNote(Note note) {
-        return noteRepository.save(note);
+        note.setCreatedAt(Instant.now());
+        note.setVersion(0L);
+        Note savedNote = noteRepository.save(note);
+        noteSearchService.index(savedNote);
+        riskCacheClient.evictRisk(note.getPatientId());
+        return savedNote;
     }
 
     /**
      * Deletes a new note.
+     * The note is removed from the search index, and the cached risk level of the patient is evicted in the risk microservice.
      *
      * @param id the id of the note to be deleted
      */
     @Transactional
     public void deleteNoteById(String id) {
+        Optional<Note> note = noteRepository.findById(id);
         noteRepository.deleteById(id);
+        noteSearchService.delete(id);
+        note.ifPresent(deletedNote -> riskCacheClient.evictRisk(deletedNote.getPatientId()));
     }
 
     /**
-     * Updates an existing note.
+     * Updates the content of an existing note as its next version, dropping the risk mask computed from the previous
+     * content by the risk microservice. The creation time is kept.
+     * The note is replaced in the search index, and the cached risk level of the patient is evicted in the risk microservice.
      *
      * @param note the note containing updated information
      * @return the updated Note
@@ -103,7 +297,13 @@ public class NoteService {
     public Note updateNote(Note note) {
         Note noteToUpdate = getNoteById(note.getId());
         noteToUpdate.setContent(note.getContent());
-        return noteRepository.save(noteToUpdate);
+        noteToUpdate.setVersion(noteToUpdate.getVersion() == null ? 1L : noteToUpdate.getVersion() + 1);
+        noteToUpdate.setRiskMask(null);
+        noteToUpdate.setRiskVocabulary(null);
+        Note updatedNote = noteRepository.save(noteToUpdate);
+        noteSearchService.index(updatedNote);
+        riskCacheClient.evictRisk(noteToUpdate.getPatientId());
+        return updatedNote;
     }
 
     /**
@@ -114,4 +314,4 @@ public class NoteService {
     public List<Note> getAllNotes() {
         return noteRepository.findAll();
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
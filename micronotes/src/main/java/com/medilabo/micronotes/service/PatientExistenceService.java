@@ -0,0 +1,104 @@
+package com.medilabo.micronotes.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service class telling if a patient exists, by asking the patient microservice through the gateway and caching its answer.
+ * Existing patients are cached for {@code micronotes.patients.exists-cache.positive-ttl}, and unknown patients for the shorter
+ * {@code micronotes.patients.exists-cache.negative-ttl}. The patient microservice evicts a patient when they are created
+ * or deleted, so that the cached answer doesn't outlive the change.
+ * Concurrent requests for a patient not cached yet share a single call to the patient microservice, and a failed call
+ * isn't cached.
+ */
+@Service
+public class PatientExistenceService {
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Value("${micronotes.patients.exists-cache.positive-ttl:10m}")
+    private Duration positiveTtl;
+
+    @Value("${micronotes.patients.exists-cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    @Value("${micronotes.patients.exists-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    private AsyncCache<Long, Boolean> existingPatients;
+
+    /**
+     * Builds the cache, each answer expiring after the time to live of its kind.
+     */
+    @PostConstruct
+    public void buildCache() {
+        existingPatients = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Long, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(Long patientId, Boolean exists, long currentTime) {
+                        return (exists ? positiveTtl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long patientId, Boolean exists, long currentTime, long currentDuration) {
+                        return expireAfterCreate(patientId, exists, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long patientId, Boolean exists, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Checks if a patient exists, from the cache or by making a REST call to the patient microservice.
+     *
+     * @param patientId the ID of the patient
+     * @param token     the token retrieved in the cookie, used if the patient microservice is called
+     * @return a Mono emitting true if the patient exists, false otherwise
+     */
+    public Mono<Boolean> existsPatient(Long patientId, String token) {
+        return Mono.defer(() -> {
+            CompletableFuture<Boolean> exists = existingPatients.get(patientId, (id, executor) -> fetchExists(id, token).toFuture());
+            // a failed call is forgotten before its error reaches the caller, so that the next request calls again
+            return Mono.fromFuture(exists, true)
+                    .doOnError(error -> existingPatients.asMap().remove(patientId, exists));
+        });
+    }
+
+    /**
+     * Forgets whether a patient exists, as when they are created or deleted.
+     *
+     * @param patientId the ID of the patient
+     */
+    public void evictPatient(Long patientId) {
+        existingPatients.synchronous().invalidate(patientId);
+    }
+
+    private Mono<Boolean> fetchExists(Long patientId, String token) {
+        return webClientBuilder
+                .baseUrl("http://gateway:8080")
+                .build()
+                .get()
+                .uri("/patients/{id}/exists", patientId)
+                .cookie("token", token)
+                .retrieve()
+                .bodyToMono(Boolean.class)
+                .defaultIfEmpty(false);
+    }
+}
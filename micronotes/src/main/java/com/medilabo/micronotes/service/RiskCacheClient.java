@@ -0,0 +1,71 @@
+package com.medilabo.micronotes.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Client notifying the risk microservice that the notes of a patient changed,
+ * so that the cached risk level of the patient is evicted.
+ * Notifications are sent without waiting for the response: a failure is only logged,
+ * the cached risk level then expiring after its time to live.
+ */
+@Slf4j
+@Component
+public class RiskCacheClient {
+
+    /**
+     * Maximum number of evictions sent at the same time for several patients.
+     */
+    static final int EVICTION_CONCURRENCY = 16;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Value("${microrisk.url:http://microrisk:8084}")
+    private String microriskUrl;
+
+    /**
+     * Evicts the cached risk level of a patient in the risk microservice.
+     *
+     * @param patientId the ID of the patient whose notes changed
+     */
+    public void evictRisk(Long patientId) {
+        if (patientId == null) {
+            return;
+        }
+        evict(patientId).subscribe();
+    }
+
+    /**
+     * Evicts the cached risk levels of several patients in the risk microservice, at most {@link #EVICTION_CONCURRENCY}
+     * evictions being in flight at the same time, so that a bulk request doesn't open a connection per patient at once.
+     *
+     * @param patientIds the IDs of the patients whose notes changed
+     */
+    public void evictRisks(Collection<Long> patientIds) {
+        Flux.fromIterable(patientIds)
+                .flatMap(this::evict, EVICTION_CONCURRENCY)
+                .subscribe();
+    }
+
+    private Mono<Void> evict(Long patientId) {
+        return webClientBuilder.build()
+                .delete()
+                .uri(microriskUrl + "/risk/{id}/cache", patientId)
+                .retrieve()
+                .toBodilessEntity()
+                .doOnNext(response -> log.debug("Evicted cached risk of patient {}", patientId))
+                .onErrorResume(error -> {
+                    log.warn("Could not evict cached risk of patient {}: {}", patientId, error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
@@ -0,0 +1,79 @@
+package com.medilabo.micronotes;
+
+import com.medilabo.micronotes.controller.NoteAdminController;
+import com.medilabo.micronotes.dto.IndexStatsDto;
+import com.medilabo.micronotes.service.NoteIndexService;
+import com.medilabo.micronotes.service.NoteSearchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(NoteAdminController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class NoteAdminControllerTest {
+
+    @MockBean
+    private NoteIndexService noteIndexService;
+
+    @MockBean
+    private NoteSearchService noteSearchService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testGetIndexStats() throws Exception {
+        when(noteIndexService.getIndexStats()).thenReturn(List.of(new IndexStatsDto("patientId_createdAt_id",
+                Map.of("patientId", 1), "mongodb:27017", 42L, Instant.parse("2024-09-01T08:00:00Z"))));
+
+        mockMvc.perform(get("/notes/admin/indexes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("patientId_createdAt_id")))
+                .andExpect(jsonPath("$[0].key.patientId", is(1)))
+                .andExpect(jsonPath("$[0].accesses", is(42)));
+    }
+
+    @Test
+    public void testCreateIndexes() throws Exception {
+        when(noteIndexService.createIndexes()).thenReturn(List.of("patientId_createdAt_id", "Note_TextIndex"));
+
+        mockMvc.perform(post("/notes/admin/indexes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1]", is("Note_TextIndex")));
+    }
+
+    @Test
+    public void testRebuildSearchIndex() throws Exception {
+        when(noteSearchService.rebuild()).thenReturn(3L);
+
+        mockMvc.perform(post("/notes/admin/search/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Search index rebuilt for 3 notes"));
+    }
+
+    @Test
+    public void testRebuildSearchIndex_whileRebuilding() throws Exception {
+        when(noteSearchService.rebuild()).thenThrow(new IllegalStateException("The search index is already being rebuilt"));
+
+        mockMvc.perform(post("/notes/admin/search/rebuild"))
+                .andExpect(status().isConflict());
+    }
+}
@@ -0,0 +1,212 @@
+package com.medilabo.micronotes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.BulkNoteItemDto;
+import com.medilabo.micronotes.dto.BulkNoteResultDto;
+import com.medilabo.micronotes.service.NoteBulkService;
+import com.medilabo.micronotes.service.NoteSearchService;
+import com.medilabo.micronotes.service.PatientExistenceService;
+import com.medilabo.micronotes.service.RiskCacheClient;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteBulkServiceTest {
+
+    @InjectMocks
+    private NoteBulkService noteBulkService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private PatientExistenceService patientExistenceService;
+
+    @Mock
+    private RiskCacheClient riskCacheClient;
+
+    @Mock
+    private NoteSearchService noteSearchService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(noteBulkService, "batchSize", 2);
+    }
+
+    @Test
+    public void ingest_shouldInsertTheNotesByBatches_andCheckEachPatientOnce() throws Exception {
+        stubBulkWrites();
+        when(patientExistenceService.existsPatient(anyLong(), anyString())).thenReturn(Mono.just(true));
+        String body = """
+                {"patientId": 1, "patientLastName": "Kenobi", "content": "Fumeur"}
+
+                {"patientId": 1, "patientLastName": "Kenobi", "content": "Cholestérol"}
+                {"patientId": 2, "patientLastName": "Skywalker", "content": "Vertiges"
+                {"patientId": 2, "patientLastName": "Skywalker", "content": " "}
+                {"patientId": 2, "patientLastName": "Skywalker", "content": "Taille"}
+                """;
+
+        BulkNoteResultDto result = noteBulkService.ingest(stream(body), true, "someValidToken");
+
+        assertEquals(5, result.received());
+        assertEquals(3, result.inserted());
+        assertEquals(2, result.failed());
+        assertEquals(List.of(0, 1, 2, 3, 4), result.items().stream().map(BulkNoteItemDto::index).toList());
+        assertTrue(result.items().get(0).inserted());
+        assertNotNull(result.items().get(0).id());
+        assertTrue(result.items().get(2).error().startsWith("Malformed note"));
+        assertEquals("The content is mandatory", result.items().get(3).error());
+        assertTrue(result.items().get(4).inserted());
+        verify(patientExistenceService, times(1)).existsPatient(1L, "someValidToken");
+        verify(patientExistenceService, times(1)).existsPatient(2L, "someValidToken");
+        verify(bulkOperations, times(2)).execute();
+        verify(noteSearchService, times(2)).index(anyCollection());
+        verify(riskCacheClient, times(1)).evictRisks(Set.of(1L, 2L));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void ingest_shouldStampTheInsertedNotes_likeASingleNote() throws Exception {
+        stubBulkWrites();
+        when(patientExistenceService.existsPatient(anyLong(), any())).thenReturn(Mono.just(true));
+
+        noteBulkService.ingest(stream("[{\"patientId\": 1, \"patientLastName\": \"Kenobi\", \"content\": \"Fumeur\"}]"), false, null);
+
+        ArgumentCaptor<List<Note>> notes = ArgumentCaptor.forClass(List.class);
+        verify(bulkOperations).insert(notes.capture());
+        Note note = notes.getValue().get(0);
+        assertNotNull(note.getCreatedAt());
+        assertEquals(0L, note.getVersion());
+        assertNull(note.getRiskMask());
+        assertNull(note.getRiskVocabulary());
+    }
+
+    @Test
+    public void ingest_shouldRejectTheNotesOfUnknownPatients_andTheFailedWrites() throws Exception {
+        ReflectionTestUtils.setField(noteBulkService, "batchSize", 3);
+        stubBulkWrites();
+        when(patientExistenceService.existsPatient(1L, null)).thenReturn(Mono.just(true));
+        when(patientExistenceService.existsPatient(3L, null)).thenReturn(Mono.just(false));
+        BulkOperationException duplicate = mock(BulkOperationException.class);
+        when(duplicate.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)));
+        when(bulkOperations.execute()).thenThrow(duplicate);
+        String body = """
+                [{"patientId": 3, "patientLastName": "Solo", "content": "Fumeur"},
+                 {"id": "firstNoteId", "patientId": 1, "patientLastName": "Kenobi", "content": "Fumeur"},
+                 {"id": "existingNoteId", "patientId": 1, "patientLastName": "Kenobi", "content": "Rechute"}]
+                """;
+
+        BulkNoteResultDto result = noteBulkService.ingest(stream(body), false, null);
+
+        assertEquals(1, result.inserted());
+        assertEquals("Patient not found for id: 3", result.items().get(0).error());
+        assertEquals("firstNoteId", result.items().get(1).id());
+        assertTrue(result.items().get(1).inserted());
+        assertEquals("existingNoteId", result.items().get(2).id());
+        assertEquals("E11000 duplicate key", result.items().get(2).error());
+        verify(riskCacheClient, times(1)).evictRisks(Set.of(1L));
+    }
+
+    @Test
+    public void ingest_shouldRejectTheBatchWhoseWriteFailed_andEvictTheRisksOfItsPatients() throws Exception {
+        stubBulkWrites();
+        when(patientExistenceService.existsPatient(anyLong(), any())).thenReturn(Mono.just(true));
+        when(bulkOperations.execute())
+                .thenReturn(null)
+                .thenThrow(new DataAccessResourceFailureException("Timed out"));
+        String body = """
+                [{"patientId": 1, "patientLastName": "Kenobi", "content": "Fumeur"},
+                 {"patientId": 1, "patientLastName": "Kenobi", "content": "Rechute"},
+                 {"patientId": 2, "patientLastName": "Skywalker", "content": "Vertiges"}]
+                """;
+
+        BulkNoteResultDto result = noteBulkService.ingest(stream(body), false, null);
+
+        assertEquals(2, result.inserted());
+        assertEquals(1, result.failed());
+        assertFalse(result.items().get(2).inserted());
+        assertTrue(result.items().get(2).error().contains("Timed out"));
+        verify(noteSearchService, times(1)).index(anyCollection());
+        verify(riskCacheClient, times(1)).evictRisks(Set.of(1L, 2L));
+    }
+
+    @Test
+    public void ingest_shouldEvictTheRisksOfTheInsertedNotes_whenTheBodyCannotBeRead() throws Exception {
+        stubBulkWrites();
+        when(patientExistenceService.existsPatient(anyLong(), any())).thenReturn(Mono.just(true));
+        InputStream body = new SequenceInputStream(
+                stream("{\"patientId\": 1, \"content\": \"Fumeur\"}\n{\"patientId\": 1, \"content\": \"Rechute\"}\n"),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connection reset");
+                    }
+                });
+
+        assertThrows(IOException.class, () -> noteBulkService.ingest(body, true, null));
+
+        verify(bulkOperations, times(1)).execute();
+        verify(riskCacheClient, times(1)).evictRisks(Set.of(1L));
+    }
+
+    @Test
+    public void ingest_shouldKeepTheNotesReadBeforeAMalformedArray() throws Exception {
+        stubBulkWrites();
+        when(patientExistenceService.existsPatient(anyLong(), any())).thenReturn(Mono.just(true));
+        String body = "[{\"patientId\": 1, \"content\": \"Fumeur\"}, {\"patientId\": 1, \"content\": ";
+
+        BulkNoteResultDto result = noteBulkService.ingest(stream(body), false, null);
+
+        assertEquals(2, result.received());
+        assertEquals(1, result.inserted());
+        assertFalse(result.items().get(1).inserted());
+        assertTrue(result.items().get(1).error().startsWith("Malformed note, the following notes were not read"));
+    }
+
+    private void stubBulkWrites() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+        lenient().when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -3,8 +3,18 @@ package com.medilabo.micronotes;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.medilabo.micronotes.controller.NoteController;
 import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.BulkNoteItemDto;
+import com.medilabo.micronotes.dto.BulkNoteResultDto;
+import com.medilabo.micronotes.dto.NotePageDto;
+import com.medilabo.micronotes.dto.NoteSearchDto;
+import com.medilabo.micronotes.dto.NoteSearchHitDto;
+import com.medilabo.micronotes.exception.InvalidNotePageException;
+import com.medilabo.micronotes.exception.InvalidNoteSearchException;
 import com.medilabo.micronotes.exception.NoteNotFoundException;
+import com.medilabo.micronotes.service.NoteBulkService;
+import com.medilabo.micronotes.service.NoteSearchService;
 import com.medilabo.micronotes.service.NoteService;
+import com.medilabo.micronotes.service.PatientExistenceService;
 import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,11 +24,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -38,6 +53,15 @@ public class NoteControllerTest {
     @MockBean
     private NoteService noteService;
 
+    @MockBean
+    private NoteBulkService noteBulkService;
+
+    @MockBean
+    private PatientExistenceService patientExistenceService;
+
+    @MockBean
+    private NoteSearchService noteSearchService;
+
     private static Note firstNote;
     private static Note secondNote;
     private static List<Note> notes;
@@ -84,6 +108,60 @@ public class NoteControllerTest {
                 .andExpect(jsonPath("$[1].content", is(secondNote.getContent())));
     }
 
+    @Test
+    public void getAllNotes_shouldReturnAPage_whenASizeIsGiven() throws Exception {
+
+        when(noteService.getNotesPage("id", "firstNoteId", 1)).thenReturn(new NotePageDto(List.of(secondNote), null));
+
+        mockMvc.perform(get("/notes").param("size", "1").param("after", "firstNoteId"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes", hasSize(1)))
+                .andExpect(jsonPath("$.notes[0].id", is(secondNote.getId())))
+                .andExpect(jsonPath("$.nextCursor", nullValue()));
+    }
+
+    @Test
+    public void getNotesByPatientId_shouldReturnAPage_whenASizeIsGiven() throws Exception {
+
+        when(noteService.getNotesPageByPatientId(1L, "createdAt", null, 1, "SomeValidToken"))
+                .thenReturn(new NotePageDto(List.of(firstNote), "someCursor"));
+
+        mockMvc.perform(get("/notes/patient/1").param("size", "1").param("order", "createdAt")
+                        .cookie(new Cookie("token", "SomeValidToken")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes[0].id", is(firstNote.getId())))
+                .andExpect(jsonPath("$.nextCursor", is("someCursor")));
+    }
+
+    @Test
+    public void getAllNotes_shouldReturnBadRequest_whenThePageIsInvalid() throws Exception {
+
+        when(noteService.getNotesPage(anyString(), any(), anyInt())).thenThrow(new InvalidNotePageException("Unknown order: name"));
+
+        mockMvc.perform(get("/notes").param("size", "10").param("order", "name"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void streamNotesByPatientId_shouldWriteOneNotePerLine() throws Exception {
+
+        when(noteService.streamNotesByPatientId(1L, "SomeValidToken")).thenReturn(output -> {
+            for (Note note : notes) {
+                output.write((asJsonString(note) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        MvcResult result = mockMvc.perform(get("/notes/patient/1/stream")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .cookie(new Cookie("token", "SomeValidToken")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(asJsonString(firstNote) + "\n" + asJsonString(secondNote) + "\n"));
+    }
 
     @Test
     public void postRequest_toValidateNote_shouldReturnCreatedCode_whenNoteIsCreated() throws Exception {
@@ -96,6 +174,43 @@ public class NoteControllerTest {
                 .andExpect(status().isCreated());
     }
 
+    @Test
+    public void postRequest_toBulk_shouldReportTheOutcomeOfEachNote() throws Exception {
+
+        when(noteBulkService.ingest(any(), eq(true), eq("SomeValidToken"))).thenReturn(new BulkNoteResultDto(2, 1, 1, List.of(
+                new BulkNoteItemDto(0, "firstNoteId", true, null),
+                new BulkNoteItemDto(1, null, false, "The content is mandatory"))));
+
+        mockMvc.perform(post("/notes/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(asJsonString(firstNote) + "\n" + asJsonString(new Note()) + "\n")
+                        .cookie(new Cookie("token", "SomeValidToken")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted", is(1)))
+                .andExpect(jsonPath("$.items[1].error", is("The content is mandatory")));
+    }
+
+    @Test
+    public void postRequest_toBulk_shouldReadAJsonArray() throws Exception {
+
+        when(noteBulkService.ingest(any(), eq(false), any())).thenReturn(new BulkNoteResultDto(2, 2, 0, List.of()));
+
+        mockMvc.perform(post("/notes/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(notes)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received", is(2)));
+    }
+
+    @Test
+    public void deleteRequest_toPatientCache_shouldEvictTheCachedExistenceOfThePatient() throws Exception {
+
+        mockMvc.perform(delete("/notes/patient/1/cache"))
+                .andExpect(status().isNoContent());
+
+        verify(patientExistenceService, times(1)).evictPatient(1L);
+    }
+
     @Test
     public void postRequest_toValidateNote_shouldReturnNoContentCode_whenNoteObjectIsNull() throws Exception {
 
@@ -170,6 +285,33 @@ public class NoteControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void getRequest_toSearchNotes_shouldReturnTheHighlightedNotesFound() throws Exception {
+        NoteSearchHitDto hit = new NoteSearchHitDto("firstNoteId", 1L, "Kenobi", Instant.parse("2024-09-01T08:00:00Z"), 1.5f,
+                "<mark>Microalbumine</mark> élevée");
+        when(noteSearchService.search("microalbumine", 1L, LocalDate.of(2024, 1, 1), null, 0, 20))
+                .thenReturn(new NoteSearchDto(0, 20, 1, true, List.of(hit)));
+
+        mockMvc.perform(get("/notes/search")
+                        .param("q", "microalbumine")
+                        .param("patientId", "1")
+                        .param("from", "2024-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalHits", is(1)))
+                .andExpect(jsonPath("$.hits", hasSize(1)))
+                .andExpect(jsonPath("$.hits[0].id", is("firstNoteId")))
+                .andExpect(jsonPath("$.hits[0].snippet", is("<mark>Microalbumine</mark> élevée")));
+    }
+
+    @Test
+    public void getRequest_toSearchNotes_shouldReturnBadRequest_whenTheQueryIsMalformed() throws Exception {
+        when(noteSearchService.search(eq("\"microalbumine"), any(), any(), any(), anyInt(), anyInt()))
+                .thenThrow(new InvalidNoteSearchException("Malformed search query"));
+
+        mockMvc.perform(get("/notes/search").param("q", "\"microalbumine"))
+                .andExpect(status().isBadRequest());
+    }
+
     // Utility method for MockMvc testing
 
     public static String asJsonString(final Object object) {
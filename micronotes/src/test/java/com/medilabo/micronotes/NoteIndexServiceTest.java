@@ -0,0 +1,159 @@
+package com.medilabo.micronotes;
+
+import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.IndexStatsDto;
+import com.medilabo.micronotes.service.NoteIndexService;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteIndexServiceTest {
+
+    @InjectMocks
+    private NoteIndexService noteIndexService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    @BeforeEach
+    public void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        lenient().when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        lenient().when(mongoTemplate.indexOps(Note.class)).thenReturn(indexOperations);
+    }
+
+    @Test
+    public void createIndexes_shouldCreateTheCompoundIndexes_andAFrenchTextIndexOnTheContent() {
+        when(indexOperations.ensureIndex(any()))
+                .thenAnswer(invocation -> invocation.<IndexDefinition>getArgument(0).getIndexOptions().getString("name"));
+
+        List<String> indexes = noteIndexService.createIndexes();
+
+        assertTrue(indexes.containsAll(List.of("patientId_createdAt_id", "patientId_riskVocabulary_riskMask", "Note_TextIndex")));
+        assertFalse(indexes.contains("patientId_createdAt"));
+        ArgumentCaptor<IndexDefinition> definitions = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(indexOperations, times(indexes.size())).ensureIndex(definitions.capture());
+        assertTrue(definitions.getAllValues().stream().anyMatch(definition ->
+                definition.getIndexKeys().equals(new Document("patientId", 1).append("createdAt", 1).append("_id", 1))));
+        IndexDefinition text = definitions.getAllValues().stream()
+                .filter(definition -> "Note_TextIndex".equals(definition.getIndexOptions().getString("name")))
+                .findFirst().orElseThrow();
+        assertEquals(new Document("content", "text"), text.getIndexKeys());
+        assertEquals("french", text.getIndexOptions().getString("default_language"));
+    }
+
+    @Test
+    public void createIndexes_shouldSkipAConflictingIndex_andCreateTheOthers() {
+        when(indexOperations.ensureIndex(any())).thenAnswer(invocation -> {
+            IndexDefinition definition = invocation.getArgument(0);
+            if ("Note_TextIndex".equals(definition.getIndexOptions().getString("name"))) {
+                throw new DataIntegrityViolationException("Index already exists with different options",
+                        new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                                .append("code", new BsonInt32(85))
+                                .append("errmsg", new BsonString("Index already exists with different options")),
+                                new ServerAddress()));
+            }
+            return definition.getIndexOptions().getString("name");
+        });
+
+        List<String> indexes = noteIndexService.createIndexes();
+
+        assertFalse(indexes.isEmpty());
+        assertTrue(indexes.contains("patientId_createdAt_id"));
+        assertFalse(indexes.contains("Note_TextIndex"));
+    }
+
+    @Test
+    public void createIndexes_shouldDropTheObsoleteIndexes() {
+        when(indexOperations.ensureIndex(any()))
+                .thenAnswer(invocation -> invocation.<IndexDefinition>getArgument(0).getIndexOptions().getString("name"));
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(), "patientId_createdAt", false, false, null),
+                new IndexInfo(List.of(), "patientId_createdAt_id", false, false, null)));
+
+        noteIndexService.createIndexes();
+
+        verify(indexOperations, times(1)).dropIndex("patientId_createdAt");
+        verify(indexOperations, never()).dropIndex("patientId_createdAt_id");
+    }
+
+    @Test
+    public void createIndexes_shouldReportOtherFailures_asTheyAre() {
+        when(indexOperations.ensureIndex(any())).thenThrow(new DataAccessResourceFailureException("Timed out while waiting for a server"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> noteIndexService.createIndexes());
+        verify(indexOperations, times(1)).ensureIndex(any());
+    }
+
+    @Test
+    public void onApplicationReady_shouldNotFail_whenTheIndexesCantBeCreated() {
+        ReflectionTestUtils.setField(noteIndexService, "createOnStartup", true);
+        when(indexOperations.ensureIndex(any())).thenThrow(new DataAccessResourceFailureException("Timed out while waiting for a server"));
+
+        noteIndexService.onApplicationReady();
+
+        verify(indexOperations, times(1)).ensureIndex(any());
+    }
+
+    @Test
+    public void getIndexStats_shouldMapTheIndexStatsStage_orderedByName() {
+        Date since = Date.from(Instant.parse("2024-09-01T08:00:00Z"));
+        Document idStats = new Document("name", "_id_").append("key", new Document("_id", 1)).append("host", "mongodb:27017")
+                .append("accesses", new Document("ops", 12L).append("since", since));
+        Document textStats = new Document("name", "Note_TextIndex").append("key", new Document("_fts", "text").append("_ftsx", 1))
+                .append("host", "mongodb:27017").append("accesses", new Document("ops", 3).append("since", since));
+        when(mongoTemplate.getCollectionName(Note.class)).thenReturn("notes");
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("notes"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(idStats, textStats), new Document()));
+
+        List<IndexStatsDto> stats = noteIndexService.getIndexStats();
+
+        assertEquals(List.of(
+                new IndexStatsDto("Note_TextIndex", new Document("_fts", "text").append("_ftsx", 1), "mongodb:27017", 3L, since.toInstant()),
+                new IndexStatsDto("_id_", new Document("_id", 1), "mongodb:27017", 12L, since.toInstant())),
+                stats);
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq("notes"), eq(Document.class));
+        assertEquals(List.of(new Document("$indexStats", new Document())), aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT));
+    }
+}
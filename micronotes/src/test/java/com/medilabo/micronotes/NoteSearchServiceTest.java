@@ -0,0 +1,227 @@
+package com.medilabo.micronotes;
+
+import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.NoteSearchDto;
+import com.medilabo.micronotes.dto.NoteSearchHitDto;
+import com.medilabo.micronotes.exception.InvalidNoteSearchException;
+import com.medilabo.micronotes.service.NoteSearchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteSearchServiceTest {
+
+    @InjectMocks
+    private NoteSearchService noteSearchService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @TempDir
+    private Path indexDir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ReflectionTestUtils.setField(noteSearchService, "indexDir", indexDir.toString());
+        ReflectionTestUtils.setField(noteSearchService, "refreshInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(noteSearchService, "commitInterval", Duration.ofHours(1));
+        noteSearchService.open();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        noteSearchService.close();
+    }
+
+    @Test
+    public void search_shouldFindTheNotes_regardlessOfAccentsPluralsAndElisions() {
+        index(note("1", 1L, "Le patient signale des Vertiges.", "2024-03-01T10:00:00Z"),
+                note("2", 2L, "Cholestérol LDL anormal, l'hémoglobine A1C est stable.", "2024-03-02T10:00:00Z"),
+                note("3", 3L, "Le patient se sent bien.", "2024-03-03T10:00:00Z"));
+
+        assertEquals(List.of("1"), ids(noteSearchService.search("vertige", null, null, null, 0, 20)));
+        assertEquals(List.of("2"), ids(noteSearchService.search("cholesterol", null, null, null, 0, 20)));
+        assertEquals(List.of("2"), ids(noteSearchService.search("hemoglobine", null, null, null, 0, 20)));
+        assertEquals(List.of("2"), ids(noteSearchService.search("cholestérol anormal", null, null, null, 0, 20)));
+        assertTrue(ids(noteSearchService.search("cholestérol vertiges", null, null, null, 0, 20)).isEmpty());
+        assertEquals(2, noteSearchService.search("cholestérol OR vertiges", null, null, null, 0, 20).totalHits());
+    }
+
+    @Test
+    public void search_shouldHighlightTheMatchingWords_andEscapeTheContent() {
+        index(note("1", 1L, "Microalbumine élevée <script>", "2024-03-01T10:00:00Z"));
+
+        NoteSearchHitDto hit = noteSearchService.search("microalbumine", null, null, null, 0, 20).hits().get(0);
+
+        assertEquals("<mark>Microalbumine</mark> élevée &lt;script&gt;", hit.snippet());
+        assertEquals(1L, hit.patientId());
+        assertEquals("Kenobi", hit.patientLastName());
+        assertEquals(Instant.parse("2024-03-01T10:00:00Z"), hit.createdAt());
+    }
+
+    @Test
+    public void search_shouldFilterByPatientAndDays() {
+        index(note("1", 1L, "Microalbumine élevée", "2023-12-31T23:00:00Z"),
+                note("2", 1L, "Microalbumine élevée", "2024-01-01T00:00:00Z"),
+                note("3", 2L, "Microalbumine élevée", "2024-06-30T23:59:59Z"),
+                note("4", 1L, "Microalbumine élevée", "2024-07-01T00:00:00Z"));
+
+        assertEquals(List.of("2", "4"), sorted(ids(noteSearchService.search("microalbumine", 1L, LocalDate.of(2024, 1, 1), null, 0, 20))));
+        assertEquals(List.of("2", "3"), sorted(ids(noteSearchService.search("microalbumine", null,
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 30), 0, 20))));
+    }
+
+    @Test
+    public void search_shouldPageTheNotesFound() {
+        for (int i = 0; i < 5; i++) {
+            index(note("note" + i, 1L, "Fumeur", "2024-03-01T10:00:00Z"));
+        }
+
+        NoteSearchDto firstPage = noteSearchService.search("fumeur", null, null, null, 0, 2);
+        NoteSearchDto lastPage = noteSearchService.search("fumeur", null, null, null, 2, 2);
+        NoteSearchDto pastTheEnd = noteSearchService.search("fumeur", null, null, null, 3, 2);
+
+        assertEquals(5, firstPage.totalHits());
+        assertTrue(firstPage.totalHitsExact());
+        assertEquals(2, firstPage.hits().size());
+        assertEquals(1, lastPage.hits().size());
+        assertTrue(pastTheEnd.hits().isEmpty());
+    }
+
+    @Test
+    public void index_shouldReplaceAnUpdatedNote_andDeleteShouldRemoveIt() {
+        index(note("1", 1L, "Fumeur", "2024-03-01T10:00:00Z"));
+        index(note("1", 1L, "Rechute", "2024-03-01T10:00:00Z"));
+
+        assertTrue(ids(noteSearchService.search("fumeur", null, null, null, 0, 20)).isEmpty());
+        assertEquals(List.of("1"), ids(noteSearchService.search("rechute", null, null, null, 0, 20)));
+
+        noteSearchService.delete("1");
+        refresh();
+
+        assertTrue(ids(noteSearchService.search("rechute", null, null, null, 0, 20)).isEmpty());
+    }
+
+    @Test
+    public void search_shouldNotFindTheNotesIndexedSinceTheLastRefresh() {
+        noteSearchService.index(note("1", 1L, "Fumeur", "2024-03-01T10:00:00Z"));
+
+        assertTrue(ids(noteSearchService.search("fumeur", null, null, null, 0, 20)).isEmpty());
+    }
+
+    @Test
+    public void search_shouldRejectMalformedQueriesAndInvalidPages() {
+        assertThrows(InvalidNoteSearchException.class, () -> noteSearchService.search(" ", null, null, null, 0, 20));
+        assertThrows(InvalidNoteSearchException.class, () -> noteSearchService.search("\"fumeur", null, null, null, 0, 20));
+        assertThrows(InvalidNoteSearchException.class, () -> noteSearchService.search("fumeur", null, null, null, -1, 20));
+        assertThrows(InvalidNoteSearchException.class, () -> noteSearchService.search("fumeur", null, null, null, 0, 101));
+        assertThrows(InvalidNoteSearchException.class, () -> noteSearchService.search("fumeur", null, null, null, 100, 100));
+        assertThrows(InvalidNoteSearchException.class, () -> noteSearchService.search("fumeur", null,
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), 0, 20));
+    }
+
+    @Test
+    public void rebuild_shouldIndexAllTheNotes_datingTheOldOnesByTheirId() {
+        index(note("stale", 1L, "Fumeur", "2024-03-01T10:00:00Z"));
+        Note oldNote = new Note("66d4290e8b1c2a0001000000", 2L, "Skywalker", "Fumeur");
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(Stream.of(oldNote));
+
+        assertEquals(1, noteSearchService.rebuild());
+
+        List<NoteSearchHitDto> hits = noteSearchService.search("fumeur", null, null, null, 0, 20).hits();
+        assertEquals(1, hits.size());
+        assertEquals("66d4290e8b1c2a0001000000", hits.get(0).id());
+        assertEquals(Instant.ofEpochSecond(0x66d4290eL), hits.get(0).createdAt());
+    }
+
+    @Test
+    public void rebuild_shouldRollBackTheIndex_whenTheNotesCannotBeRead() throws Exception {
+        index(note("1", 1L, "Fumeur", "2024-03-01T10:00:00Z"));
+        noteSearchService.index(note("2", 2L, "Fumeur", "2024-03-02T10:00:00Z"));
+        Stream<Note> failingNotes = Stream.of(note("3", 3L, "Fumeur", "2024-03-03T10:00:00Z"), null)
+                .map(note -> {
+                    if (note == null) {
+                        throw new DataAccessResourceFailureException("Cursor killed");
+                    }
+                    return note;
+                });
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(failingNotes);
+
+        assertThrows(DataAccessResourceFailureException.class, () -> noteSearchService.rebuild());
+        refresh();
+
+        assertEquals(List.of("1", "2"), sorted(ids(noteSearchService.search("fumeur", null, null, null, 0, 20))));
+        index(note("4", 4L, "Fumeur", "2024-03-04T10:00:00Z"));
+        noteSearchService.close();
+        noteSearchService.open();
+        assertEquals(List.of("1", "2", "4"), sorted(ids(noteSearchService.search("fumeur", null, null, null, 0, 20))));
+    }
+
+    @Test
+    public void onApplicationReady_shouldLeaveTheIndexEmpty_whenTheNotesCannotBeRead() {
+        ReflectionTestUtils.setField(noteSearchService, "rebuildOnStartup", true);
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class)))
+                .thenThrow(new DataAccessResourceFailureException("MongoDB is down"));
+
+        noteSearchService.onApplicationReady();
+        refresh();
+
+        assertTrue(ids(noteSearchService.search("fumeur", null, null, null, 0, 20)).isEmpty());
+    }
+
+    @Test
+    public void open_shouldReopenTheIndexWrittenOnDisk() throws Exception {
+        index(note("1", 1L, "Fumeur", "2024-03-01T10:00:00Z"));
+        noteSearchService.close();
+
+        noteSearchService.open();
+
+        assertFalse(ids(noteSearchService.search("fumeur", null, null, null, 0, 20)).isEmpty());
+    }
+
+    private void index(Note... notes) {
+        noteSearchService.index(List.of(notes));
+        refresh();
+    }
+
+    private void refresh() {
+        ReflectionTestUtils.invokeMethod(noteSearchService, "refresh");
+    }
+
+    private static Note note(String id, Long patientId, String content, String createdAt) {
+        return new Note(id, patientId, "Kenobi", content, Instant.parse(createdAt), 0L, null, null);
+    }
+
+    private static List<String> ids(NoteSearchDto result) {
+        return result.hits().stream().map(NoteSearchHitDto::id).toList();
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
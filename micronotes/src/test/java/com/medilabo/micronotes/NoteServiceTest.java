@@ -3,26 +3,42 @@ package com.medilabo.micronotes;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.medilabo.micronotes.domain.Note;
+import com.medilabo.micronotes.dto.NotePageDto;
+import com.medilabo.micronotes.exception.InvalidNotePageException;
 import com.medilabo.micronotes.exception.NoteNotFoundException;
 import com.medilabo.micronotes.repository.NoteRepository;
+import com.medilabo.micronotes.service.NoteSearchService;
 import com.medilabo.micronotes.service.NoteService;
+import com.medilabo.micronotes.service.RiskCacheClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -39,6 +55,15 @@ public class NoteServiceTest {
     @MockBean
     private WebClient.Builder webClientBuilder;
 
+    @MockBean
+    private RiskCacheClient riskCacheClient;
+
+    @MockBean
+    private NoteSearchService noteSearchService;
+
+    @SpyBean
+    private MongoTemplate mongoTemplate;
+
 
     private static Note firstNote;
     private static Note secondNote;
@@ -63,6 +88,7 @@ public class NoteServiceTest {
         // cholestérol and anormal are riskWords
         firstNote = new Note("firstNoteId", 1L, "Kenobi", "Patient is leaning towards the dark side of the force, but also somehow has cholestérol");
         secondNote = new Note("secondNoteId", 1L, "Kenobi", "Patient admits being traumatized by killing his anormal Padawan");
+        firstNote.setCreatedAt(Instant.parse("2024-03-01T09:30:00Z"));
         notes = List.of(firstNote, secondNote);
         when(webClientBuilder.baseUrl(anyString())).thenReturn(webClientBuilder);
     }
@@ -74,6 +100,69 @@ public class NoteServiceTest {
         assertEquals(notes, allNotes);
     }
 
+    @Test
+    public void getNotesPage_shouldReturnTheCursorOfTheNextPage_whenMoreNotesExist() {
+        doReturn(List.of(firstNote, secondNote)).when(mongoTemplate).find(any(Query.class), eq(Note.class));
+
+        NotePageDto page = noteService.getNotesPage(NoteService.ORDER_BY_ID, null, 1);
+
+        assertEquals(List.of(firstNote), page.notes());
+        assertEquals(firstNote.getId(), page.nextCursor());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Note.class));
+        assertEquals(2, query.getValue().getLimit());
+        assertEquals(new Document("id", 1), query.getValue().getSortObject());
+    }
+
+    @Test
+    public void getNotesPage_shouldStartAfterTheCursor_andEndOnTheLastPage() {
+        doReturn(List.of(secondNote)).when(mongoTemplate).find(any(Query.class), eq(Note.class));
+
+        NotePageDto page = noteService.getNotesPage(NoteService.ORDER_BY_ID, firstNote.getId(), 5000);
+
+        assertEquals(List.of(secondNote), page.notes());
+        assertNull(page.nextCursor());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Note.class));
+        assertEquals(NoteService.MAX_PAGE_SIZE + 1, query.getValue().getLimit());
+        assertEquals(firstNote.getId(), query.getValue().getQueryObject().get("id", Document.class).get("$gt"));
+    }
+
+    @Test
+    public void getNotesPage_shouldResumeAfterTheCreationTimeCursor() {
+        doReturn(List.of(firstNote, secondNote), List.of()).when(mongoTemplate).find(any(Query.class), eq(Note.class));
+
+        NotePageDto page = noteService.getNotesPage(NoteService.ORDER_BY_CREATION_TIME, null, 1);
+        noteService.getNotesPage(NoteService.ORDER_BY_CREATION_TIME, page.nextCursor(), 1);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(query.capture(), eq(Note.class));
+        String resumed = query.getAllValues().get(1).getQueryObject().toJson();
+        assertTrue(resumed.contains("\"$gt\": {\"$date\": \"2024-03-01T09:30:00Z\"}"), resumed);
+        assertTrue(resumed.contains("\"$gt\": \"firstNoteId\""), resumed);
+    }
+
+    @Test
+    public void getNotesPage_shouldRejectAnUnknownOrder_orAMalformedCursor() {
+        assertThrows(InvalidNotePageException.class, () -> noteService.getNotesPage("content", null, 10));
+        assertThrows(InvalidNotePageException.class, () -> noteService.getNotesPage(NoteService.ORDER_BY_CREATION_TIME, "not a cursor!", 10));
+        assertThrows(InvalidNotePageException.class, () -> noteService.getNotesPage(NoteService.ORDER_BY_CREATION_TIME, "YWJj", 10));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Note.class));
+    }
+
+    @Test
+    public void streamAllNotes_shouldWriteOneNotePerLine_fromTheCursor() throws Exception {
+        doReturn(Stream.of(firstNote, secondNote)).when(mongoTemplate).stream(any(Query.class), eq(Note.class));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        noteService.streamAllNotes().writeTo(output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(firstNote.getId(), new ObjectMapper().readTree(lines[0]).get("id").asText());
+        assertEquals(secondNote.getContent(), new ObjectMapper().readTree(lines[1]).get("content").asText());
+    }
+
     @Test
     public void getNoteById_shouldReturnTheCorrectNote_forTheCorrectId() {
         when(noteRepository.findById(firstNote.getId())).thenReturn(Optional.ofNullable(firstNote));
@@ -113,6 +202,20 @@ public class NoteServiceTest {
         when(noteRepository.save(any(Note.class))).thenReturn(firstNote);
         Note savedNote = noteService.saveNote(firstNote);
         assertEquals(firstNote, savedNote);
+        verify(noteSearchService, times(1)).index(firstNote);
+        verify(riskCacheClient, times(1)).evictRisk(1L);
+    }
+
+    @Test
+    public void saveNote_shouldStoreTheCreationTime() {
+        when(noteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Instant before = Instant.now();
+
+        Note savedNote = noteService.saveNote(new Note(null, 1L, "Kenobi", "Fumeur"));
+
+        assertFalse(savedNote.getCreatedAt().isBefore(before));
+        assertFalse(savedNote.getCreatedAt().isAfter(Instant.now()));
+        assertEquals(0L, savedNote.getVersion());
     }
 
     @Test
@@ -120,6 +223,14 @@ public class NoteServiceTest {
         noteService.saveNote(firstNote);
         noteService.deleteNoteById("firstNoteId");
         verify(noteRepository, times(1)).deleteById("firstNoteId");
+        verify(noteSearchService, times(1)).delete("firstNoteId");
+    }
+
+    @Test
+    public void deleteNoteById_shouldEvictTheCachedRiskOfThePatient() {
+        when(noteRepository.findById("firstNoteId")).thenReturn(Optional.of(firstNote));
+        noteService.deleteNoteById("firstNoteId");
+        verify(riskCacheClient, times(1)).evictRisk(1L);
     }
 
     @Test
@@ -129,6 +240,8 @@ public class NoteServiceTest {
                 firstNote.getId(), 1L, "Kenobi", "updatedContent"
         );
 
+        firstNote.setRiskMask(1L);
+        firstNote.setRiskVocabulary("92bfed9e2026411d");
         when(noteRepository.findById(anyString())).thenReturn(Optional.ofNullable(firstNote));
         when(noteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -137,8 +250,14 @@ public class NoteServiceTest {
         assertEquals(1L, resultingNote.getPatientId());
         assertEquals(firstNote.getId(), resultingNote.getId());
         assertEquals(updatedNote.getContent(), resultingNote.getContent());
+        assertNull(resultingNote.getRiskMask());
+        assertNull(resultingNote.getRiskVocabulary());
+        assertEquals(firstNote.getCreatedAt(), resultingNote.getCreatedAt());
+        assertEquals(1L, resultingNote.getVersion());
 
         verify(noteRepository, times(1)).save(any(Note.class));
+        verify(noteSearchService, times(1)).index(resultingNote);
+        verify(riskCacheClient, times(1)).evictRisk(1L);
     }
 
 }
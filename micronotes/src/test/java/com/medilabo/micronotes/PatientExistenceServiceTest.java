@@ -0,0 +1,110 @@
+package com.medilabo.micronotes;
+
+import com.medilabo.micronotes.service.PatientExistenceService;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PatientExistenceServiceTest {
+
+    private final PatientExistenceService patientExistenceService = new PatientExistenceService();
+
+    private MockWebServer mockPatientServer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        mockPatientServer = new MockWebServer();
+        mockPatientServer.start();
+        WebClient.Builder webClientBuilder = mock(WebClient.Builder.class);
+        when(webClientBuilder.baseUrl(anyString())).thenReturn(webClientBuilder);
+        when(webClientBuilder.build()).thenReturn(WebClient.builder().baseUrl(mockPatientServer.url("/").toString()).build());
+        ReflectionTestUtils.setField(patientExistenceService, "webClientBuilder", webClientBuilder);
+        ReflectionTestUtils.setField(patientExistenceService, "positiveTtl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(patientExistenceService, "negativeTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(patientExistenceService, "maximumSize", 100L);
+        patientExistenceService.buildCache();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mockPatientServer.shutdown();
+    }
+
+    @Test
+    public void existsPatient_shouldAskThePatientMicroservice_onlyOnce() {
+        mockPatientServer.enqueue(exists(true));
+
+        assertEquals(true, patientExistenceService.existsPatient(1L, "someValidToken").block());
+        assertEquals(true, patientExistenceService.existsPatient(1L, "someValidToken").block());
+        assertEquals(1, mockPatientServer.getRequestCount());
+    }
+
+    @Test
+    public void existsPatient_shouldShareTheCallToThePatientMicroservice_betweenConcurrentRequests() {
+        mockPatientServer.enqueue(exists(true).setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+        List<Boolean> answers = Mono.zip(patientExistenceService.existsPatient(1L, "someValidToken"),
+                        patientExistenceService.existsPatient(1L, "someValidToken"),
+                        patientExistenceService.existsPatient(1L, "anotherValidToken"))
+                .map(answer -> List.of(answer.getT1(), answer.getT2(), answer.getT3()))
+                .block();
+
+        assertEquals(List.of(true, true, true), answers);
+        assertEquals(1, mockPatientServer.getRequestCount());
+    }
+
+    @Test
+    public void existsPatient_shouldAskAgain_onceTheUnknownPatientExpired() throws Exception {
+        ReflectionTestUtils.setField(patientExistenceService, "negativeTtl", Duration.ofMillis(300));
+        patientExistenceService.buildCache();
+        mockPatientServer.enqueue(exists(false));
+        mockPatientServer.enqueue(exists(true));
+
+        assertEquals(false, patientExistenceService.existsPatient(2L, "someValidToken").block());
+        assertEquals(false, patientExistenceService.existsPatient(2L, "someValidToken").block());
+        Thread.sleep(600);
+        assertEquals(true, patientExistenceService.existsPatient(2L, "someValidToken").block());
+        assertEquals(2, mockPatientServer.getRequestCount());
+    }
+
+    @Test
+    public void existsPatient_shouldAskAgain_whenThePatientIsEvicted() {
+        mockPatientServer.enqueue(exists(false));
+        mockPatientServer.enqueue(exists(true));
+
+        assertEquals(false, patientExistenceService.existsPatient(3L, "someValidToken").block());
+        patientExistenceService.evictPatient(3L);
+        assertEquals(true, patientExistenceService.existsPatient(3L, "someValidToken").block());
+        assertEquals(2, mockPatientServer.getRequestCount());
+    }
+
+    @Test
+    public void existsPatient_shouldNotCacheAFailedCall() {
+        mockPatientServer.enqueue(new MockResponse().setResponseCode(503));
+        mockPatientServer.enqueue(exists(true));
+
+        assertThrows(RuntimeException.class, () -> patientExistenceService.existsPatient(4L, "someValidToken").block());
+        assertEquals(true, patientExistenceService.existsPatient(4L, "someValidToken").block());
+    }
+
+    private static MockResponse exists(boolean exists) {
+        return new MockResponse()
+                .setResponseCode(200)
+                .setBody(String.valueOf(exists))
+                .addHeader("Content-Type", "application/json");
+    }
+}
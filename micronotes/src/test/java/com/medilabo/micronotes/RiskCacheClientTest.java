@@ -0,0 +1,68 @@
+package com.medilabo.micronotes;
+
+import com.medilabo.micronotes.service.RiskCacheClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RiskCacheClientTest {
+
+    private final RiskCacheClient riskCacheClient = new RiskCacheClient();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private MockWebServer mockRiskServer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        mockRiskServer = new MockWebServer();
+        mockRiskServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                inFlight.decrementAndGet();
+                return new MockResponse().setResponseCode(request.getPath().endsWith("/7/cache") ? 500 : 200);
+            }
+        });
+        mockRiskServer.start();
+        WebClient.Builder webClientBuilder = mock(WebClient.Builder.class);
+        when(webClientBuilder.build()).thenReturn(WebClient.create());
+        ReflectionTestUtils.setField(riskCacheClient, "webClientBuilder", webClientBuilder);
+        ReflectionTestUtils.setField(riskCacheClient, "microriskUrl", mockRiskServer.url("/").toString().replaceAll("/$", ""));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mockRiskServer.shutdown();
+    }
+
+    @Test
+    public void evictRisks_shouldEvictEveryPatient_withABoundedNumberOfRequestsInFlight() throws InterruptedException {
+        List<Long> patientIds = LongStream.rangeClosed(1, 40).boxed().toList();
+
+        riskCacheClient.evictRisks(patientIds);
+
+        for (int attempt = 0; attempt < 100 && mockRiskServer.getRequestCount() < patientIds.size(); attempt++) {
+            Thread.sleep(100);
+        }
+        assertEquals(patientIds.size(), mockRiskServer.getRequestCount());
+        assertTrue(maxInFlight.get() <= 16, "At most 16 evictions in flight, got " + maxInFlight.get());
+    }
+}
@@ -0,0 +1,49 @@
+// Load test of the microrisk endpoints, run with k6 (https://k6.io):
+//   k6 run -e TOKEN=<jwt> -e BASE_URL=http://localhost:8084 microrisk/loadtest/risk-load.js
+// Run it once with the default (blocking) mode and once with SPRING_PROFILES_ACTIVE=reactive,
+// keeping the same heap (-Xmx) and container limits, then compare p95/p99 latencies and throughput.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8084';
+const TOKEN = __ENV.TOKEN || '';
+const PATIENT_IDS = (__ENV.PATIENT_IDS || '1,2,3,4').split(',').map(Number);
+
+export const options = {
+    scenarios: {
+        single: {
+            executor: 'ramping-vus',
+            exec: 'single',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: 50 },
+                { duration: '1m', target: 200 },
+                { duration: '30s', target: 0 },
+            ],
+        },
+        batch: {
+            executor: 'constant-vus',
+            exec: 'batch',
+            vus: 10,
+            duration: '2m',
+        },
+    },
+    thresholds: {
+        'http_req_duration{scenario:single}': ['p(95)<500', 'p(99)<1000'],
+        'http_req_failed': ['rate<0.01'],
+    },
+};
+
+const params = { cookies: { token: TOKEN } };
+
+export function single() {
+    const id = PATIENT_IDS[Math.floor(Math.random() * PATIENT_IDS.length)];
+    const res = http.get(`${BASE_URL}/risk/${id}`, params);
+    check(res, { 'status is 200': (r) => r.status === 200 });
+}
+
+export function batch() {
+    const res = http.post(`${BASE_URL}/risk/batch`, JSON.stringify(PATIENT_IDS),
+        Object.assign({ headers: { 'Content-Type': 'application/json' } }, params));
+    check(res, { 'status is 200': (r) => r.status === 200 });
+}
@@ -0,0 +1,47 @@
+package com.medilabo.microrisk.configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.medilabo.microrisk.service.NoteTokenService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the cache of computed risk levels.
+ * The Caffeine cache itself (size, TTL, statistics) is configured with the {@code spring.cache} properties.
+ * Async mode is required to cache the {@code Mono} returned by the reactive risk calculation.
+ * The cache of the note tokens is bounded by the memory its token hashes take rather than by its number of entries.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * Switches the Caffeine cache manager to async mode.
+     *
+     * @return a customizer enabling async mode on the {@link CaffeineCacheManager}
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> asyncCacheModeCustomizer() {
+        return cacheManager -> cacheManager.setAsyncCacheMode(true);
+    }
+
+    /**
+     * Registers the cache of the note tokens, weighted by the size of the token hashes of each note.
+     *
+     * @param maximumMegabytes the approximate memory the cached token hashes can take, in megabytes
+     * @return a customizer registering the {@link NoteTokenService#NOTE_TOKENS_CACHE} cache on the {@link CaffeineCacheManager}
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> noteTokensCacheCustomizer(
+            @Value("${microrisk.tokens.cache-megabytes:64}") long maximumMegabytes) {
+        return cacheManager -> cacheManager.registerCustomCache(NoteTokenService.NOTE_TOKENS_CACHE, Caffeine.newBuilder()
+                .maximumWeight(maximumMegabytes * 1024 * 1024)
+                .weigher((Object key, Object tokens) -> 64 + ((long[]) tokens).length * Long.BYTES)
+                .recordStats()
+                .buildAsync());
+    }
+}
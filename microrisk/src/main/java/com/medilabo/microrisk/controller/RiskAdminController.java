@@ -0,0 +1,75 @@
+package com.medilabo.microrisk.controller;
+
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.rules.RiskDecisionTable;
+import com.medilabo.microrisk.service.RiskRulesService;
+import com.medilabo.microrisk.service.RiskStoreService;
+import com.medilabo.microrisk.service.RiskVocabularyService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * REST controller for administering the risk microservice.
+ * Provides endpoints to reload the risk rules and the risk vocabulary without a restart, and to rebuild the cohort index.
+ */
+@RequestMapping("/risk/admin")
+@RestController
+public class RiskAdminController {
+
+    @Autowired
+    private RiskRulesService riskRulesService;
+
+    @Autowired
+    private RiskVocabularyService riskVocabularyService;
+
+    @Autowired
+    private ObjectProvider<RiskStoreService> riskStoreService;
+
+    /**
+     * Reloads the risk rules file.
+     * Risk levels already cached are kept until they are evicted or expire.
+     *
+     * @return a ResponseEntity containing the number of rules loaded
+     */
+    @PostMapping("/rules/reload")
+    public ResponseEntity<String> reloadRules() {
+        RiskDecisionTable decisionTable = riskRulesService.reload();
+        return ResponseEntity.ok("Loaded " + decisionTable.size() + " risk rules");
+    }
+
+    /**
+     * Reloads the risk vocabulary file.
+     * Requests already running complete with the vocabulary they started with, and cached risk levels are evicted.
+     *
+     * @return a ResponseEntity containing the version and the size of the current vocabulary
+     */
+    @PostMapping("/vocabulary/reload")
+    public ResponseEntity<String> reloadVocabulary() {
+        RiskVocabulary vocabulary = riskVocabularyService.reload();
+        return ResponseEntity.ok("Risk vocabulary version " + vocabulary.getVersion() + ": "
+                + vocabulary.getRiskWords().size() + " risk words, "
+                + vocabulary.getExclusionWords().size() + " exclusion words");
+    }
+
+    /**
+     * Rebuilds the cohort index from the risk store, for instance so that the patients whose age crossed a threshold
+     * of the risk rules since their last update are found under their new risk level.
+     *
+     * @return a ResponseEntity containing the number of patients indexed, or 503 Service Unavailable when the risk store is disabled
+     */
+    @PostMapping("/cohort/rebuild")
+    public ResponseEntity<String> rebuildCohortIndex() {
+        RiskStoreService store = riskStoreService.getIfAvailable();
+        if (store == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok("Cohort index rebuilt for " + store.rebuildCohortIndex() + " patients");
+    }
+
+}
@@ -1,9 +1,28 @@
 package com.medilabo.microrisk.controller;
 
+import com.medilabo.microrisk.dto.CohortDto;
+import com.medilabo.microrisk.dto.PatientRiskLevelDto;
+import com.medilabo.microrisk.dto.RiskExplanationDto;
+import com.medilabo.microrisk.dto.RiskPreviewDto;
+import com.medilabo.microrisk.dto.RiskPreviewRequestDto;
+import com.medilabo.microrisk.dto.RiskTimelineDto;
+import com.medilabo.microrisk.exception.InvalidRiskBatchException;
+import com.medilabo.microrisk.service.CohortIndexService;
+import com.medilabo.microrisk.service.RiskPreviewService;
 import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskStoreService;
+import com.medilabo.microrisk.service.RiskTimelineService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -17,18 +36,155 @@ public class RiskController {
     @Autowired
     private RiskService riskService;
 
+    @Autowired
+    private RiskPreviewService riskPreviewService;
+
+    @Autowired
+    private RiskTimelineService riskTimelineService;
+
+    @Autowired
+    private ObjectProvider<RiskStoreService> riskStoreService;
+
+    @Autowired
+    private ObjectProvider<CohortIndexService> cohortIndexService;
+
     /**
      * Retrieves the risk level for a patient by their ID.
      *
      * @param id the ID of the patient
      * @param token the authentication token retrieved from the cookie
-     * @return a  ResponseEntity containing the calculated risk level as a String
+     * @return a Mono emitting a ResponseEntity containing the calculated risk level as a String
      */
     @GetMapping("/{id}")
-    public ResponseEntity<String> getRiskForPatient(@PathVariable("id") Long id,
-                                                    @CookieValue(value = "token", required = false) String token) {
-        String risk = riskService.calculateRiskForPatient(id, token);
-        return ResponseEntity.ok(risk);
+    public Mono<ResponseEntity<String>> getRiskForPatient(@PathVariable("id") Long id,
+                                                          @CookieValue(value = "token", required = false) String token) {
+        return riskService.calculateRiskForPatientAsync(id, token)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the risk level for a patient by their ID, along with the notes and risk words it was determined from:
+     * the offsets of the counted risk words in each note, and the exclusions that prevent other risk words from counting.
+     *
+     * @param id    the ID of the patient
+     * @param token the authentication token retrieved from the cookie
+     * @return a Mono emitting a ResponseEntity containing the risk level and its explanation
+     */
+    @GetMapping("/{id}/explain")
+    public Mono<ResponseEntity<RiskExplanationDto>> explainRiskForPatient(@PathVariable("id") Long id,
+                                                                         @CookieValue(value = "token", required = false) String token) {
+        return riskService.explainRiskForPatient(id, token)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the risk levels of several patients at once, at most {@link RiskService#MAX_BATCH_PATIENTS}:
+     * the risk levels of every patient are streamed by {@code /risk/report}.
+     * Patients that do not exist are left out of the response.
+     *
+     * @param ids   the IDs of the patients
+     * @param token the authentication token retrieved from the cookie
+     * @return a Mono emitting a ResponseEntity containing the risk level of each patient, by patient ID
+     * @throws InvalidRiskBatchException if more than {@link RiskService#MAX_BATCH_PATIENTS} IDs are given, answered with 400 Bad Request
+     */
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<Map<Long, String>>> getRiskForPatients(@RequestBody List<Long> ids,
+                                                                      @CookieValue(value = "token", required = false) String token) {
+        if (ids.size() > RiskService.MAX_BATCH_PATIENTS) {
+            throw new InvalidRiskBatchException("At most " + RiskService.MAX_BATCH_PATIENTS + " patients can be requested at once, "
+                    + ids.size() + " were requested");
+        }
+        return riskService.calculateRiskForPatientsAsync(ids, token)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Previews the risk level a patient would have once a draft note is saved, and the risk words found in the draft.
+     * Meant to be called while the note is being typed, only the draft being scanned once the saved notes of the patient are cached.
+     *
+     * @param id      the ID of the patient
+     * @param request the draft content, and the ID of the note it updates if any
+     * @param token   the authentication token retrieved from the cookie
+     * @return a Mono emitting a ResponseEntity containing the previewed risk level, risk words and their occurrences in the draft
+     */
+    @PostMapping("/{id}/preview")
+    public Mono<ResponseEntity<RiskPreviewDto>> previewRiskForPatient(@PathVariable("id") Long id,
+                                                                      @RequestBody RiskPreviewRequestDto request,
+                                                                      @CookieValue(value = "token", required = false) String token) {
+        return riskPreviewService.previewRisk(id, request.getNoteId(), request.getContent(), token)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves a page of the risk timeline of a patient: the risk level they had after each of their notes, oldest first.
+     *
+     * @param id    the ID of the patient
+     * @param page  the number of the page, starting at 0
+     * @param size  the number of entries of the page, at most 100
+     * @param token the authentication token retrieved from the cookie
+     * @return a Mono emitting a ResponseEntity containing the page of the risk timeline
+     */
+    @GetMapping("/{id}/timeline")
+    public Mono<ResponseEntity<RiskTimelineDto>> getRiskTimelineForPatient(@PathVariable("id") Long id,
+                                                                          @RequestParam(value = "page", defaultValue = "0") int page,
+                                                                          @RequestParam(value = "size", defaultValue = "20") int size,
+                                                                          @CookieValue(value = "token", required = false) String token) {
+        return riskTimelineService.getRiskTimeline(id, page, size, token)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Streams the risk level of every patient as newline-delimited JSON, one {@code {"patientId":1,"riskLevel":"None"}}
+     * object per line, in the order they are computed.
+     *
+     * @param token the authentication token retrieved from the cookie
+     * @return a Flux of the risk level of each patient, written as it is computed
+     */
+    @GetMapping(value = "/report", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<PatientRiskLevelDto> getRiskReport(@CookieValue(value = "token", required = false) String token) {
+        return riskService.streamRiskReport(token);
+    }
+
+    /**
+     * Finds the patients matching a combination of risk words and risk levels, from the cohort index of the risk store.
+     * For instance, {@code /risk/cohort?all=Fumeur&all=Cholestérol} finds the smokers with cholesterol, and
+     * {@code /risk/cohort?level=In Danger&level=Early onset&none=Fumeur} the non-smokers at risk.
+     *
+     * @param allOf    the risk words the patients must all have
+     * @param anyOf    the risk words of which the patients must have at least one
+     * @param noneOf   the risk words the patients must not have
+     * @param levelsOf the risk levels of which the patients must have one
+     * @return a ResponseEntity containing the IDs of the matching patients, or 503 Service Unavailable when the risk store is disabled
+     */
+    @GetMapping("/cohort")
+    public ResponseEntity<CohortDto> getCohort(@RequestParam(value = "all", defaultValue = "") List<String> allOf,
+                                               @RequestParam(value = "any", defaultValue = "") List<String> anyOf,
+                                               @RequestParam(value = "none", defaultValue = "") List<String> noneOf,
+                                               @RequestParam(value = "level", defaultValue = "") List<String> levelsOf) {
+        CohortIndexService index = cohortIndexService.getIfAvailable();
+        if (index == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(index.findCohort(allOf, anyOf, noneOf, levelsOf));
+    }
+
+    /**
+     * Evicts the cached risk level of a patient.
+     * Called by the note and patient microservices when the notes or the demographics of the patient change.
+     * When the demographics changed and the risk store is enabled, they are refreshed in the store as well.
+     *
+     * @param id                  the ID of the patient
+     * @param demographicsChanged whether the birthdate or the gender of the patient changed
+     * @return a ResponseEntity with no content
+     */
+    @DeleteMapping("/{id}/cache")
+    public ResponseEntity<Void> evictRiskForPatient(@PathVariable("id") Long id,
+                                                    @RequestParam(value = "demographics", defaultValue = "false") boolean demographicsChanged) {
+        riskService.evictRisk(id);
+        if (demographicsChanged) {
+            riskStoreService.ifAvailable(store -> store.scheduleDemographicsRefresh(id));
+        }
+        return ResponseEntity.noContent().build();
     }
 
 }
@@ -7,10 +7,12 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 /**
  * Represents a note associated with a patient.
  * This class is annotated as a MongoDB document and contains information related to the
- * patient's note, including the patient's ID, last name, and the content of the note.
+ * patient's note, including the patient's ID, last name, the content of the note and the time it was saved.
  */
 @Entity
 @Data
@@ -25,4 +27,26 @@ public class Note {
     private String patientLastName;
     private String content;
 
+    /**
+     * Time the note was saved by the note microservice, null for the notes saved before it was recorded.
+     */
+    private Instant createdAt;
+
+    /**
+     * Version of the content, incremented by the note microservice on each update, null for the notes never updated since
+     * it was recorded.
+     */
+    private Long version;
+
+    /**
+     * Constructs a note whose creation time and version are not known.
+     *
+     * @param id              the ID of the note
+     * @param patientId       the ID of the patient
+     * @param patientLastName the last name of the patient
+     * @param content         the content of the note
+     */
+    public Note(String id, Long patientId, String patientLastName, String content) {
+        this(id, patientId, patientLastName, content, null, null);
+    }
 }
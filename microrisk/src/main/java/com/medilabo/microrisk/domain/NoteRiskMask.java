@@ -0,0 +1,31 @@
+package com.medilabo.microrisk.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Represents the risk words counted for a single note, as maintained by the risk store.
+ * Keeping one mask per note allows a note to be rescanned alone when it is inserted or updated.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "note_risk_masks")
+public class NoteRiskMask {
+
+    @Id
+    private String noteId;
+
+    @Indexed
+    private Long patientId;
+
+    /**
+     * Bit {@code i} is set when the i-th distinct risk word of the vocabulary is counted for the note.
+     */
+    private long mask;
+
+}
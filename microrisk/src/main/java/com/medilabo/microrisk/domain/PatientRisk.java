@@ -0,0 +1,34 @@
+package com.medilabo.microrisk.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Represents the materialized risk of a patient: the risk words counted in all their notes,
+ * the demographics used to classify them and the derived risk level.
+ * The risk level is the one computed at the time of the last update, the age of the patient
+ * being re-evaluated when the risk is read.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "patient_risks")
+public class PatientRisk {
+
+    @Id
+    private Long patientId;
+    private List<String> riskWords;
+    private LocalDate birthdate;
+    private String gender;
+
+    @Indexed
+    private String riskLevel;
+
+}
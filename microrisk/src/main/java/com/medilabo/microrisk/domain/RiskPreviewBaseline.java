@@ -0,0 +1,29 @@
+package com.medilabo.microrisk.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Represents what the risk preview of a patient needs to know besides the draft note: their demographics and the
+ * risk words counted in each of their saved notes, as masks of the vocabulary they were computed with.
+ * It is cached by patient and evicted with their risk level, so that previewing a draft doesn't read the notes again.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RiskPreviewBaseline {
+
+    private long vocabularyVersion;
+    private LocalDate birthdate;
+    private String gender;
+
+    /**
+     * Masks of the counted risk words of the saved notes having some, by note ID.
+     */
+    private Map<String, Long> noteMasks;
+
+}
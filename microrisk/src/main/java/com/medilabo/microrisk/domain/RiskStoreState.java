@@ -0,0 +1,44 @@
+package com.medilabo.microrisk.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Represents the progress of the risk store on the change stream of a collection.
+ * The vocabulary and the matching mode the store was built with are kept so that the store is rebuilt when either changes.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "risk_store_state")
+public class RiskStoreState {
+
+    @Id
+    private String collection;
+
+    /**
+     * Resume token of the last processed change, as extended JSON.
+     */
+    private String resumeToken;
+
+    /**
+     * Operation time the change stream was registered at when the store was last rebuilt, the stream being resumed
+     * from it until a change is processed.
+     */
+    private Instant resumeAt;
+
+    private List<String> riskWords;
+    private List<String> exclusionWords;
+
+    /**
+     * Name of the {@link com.medilabo.microrisk.matching.MatchingMode} the notes were matched in.
+     */
+    private String matchingMode;
+
+}
@@ -0,0 +1,19 @@
+package com.medilabo.microrisk.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for the result of a cohort query.
+ * This class encapsulates the IDs of the patients matching the query, in ascending order, and their count.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CohortDto {
+    private long count;
+    private List<Long> patientIds;
+}
@@ -0,0 +1,25 @@
+package com.medilabo.microrisk.dto;
+
+import com.medilabo.microrisk.matcher.RiskWordExclusion;
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for the explanation of the risk words of a note.
+ * This class encapsulates the risk words counted for the note and their occurrences, the occurrences of the risk words
+ * that are not counted, and the exclusions that prevent them from counting, with offsets in the content of the note.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NoteExplanationDto {
+    private String noteId;
+    private List<String> riskWords;
+    private List<RiskWordSpan> matches;
+    private List<RiskWordSpan> excludedMatches;
+    private List<RiskWordExclusion> exclusions;
+}
@@ -0,0 +1,16 @@
+package com.medilabo.microrisk.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) for the risk level of a patient, as a line of the risk report.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientRiskLevelDto {
+    private Long patientId;
+    private String riskLevel;
+}
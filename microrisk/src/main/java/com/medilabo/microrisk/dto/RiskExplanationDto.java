@@ -0,0 +1,23 @@
+package com.medilabo.microrisk.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for the explanation of the risk level of a patient.
+ * This class encapsulates the risk level, the age and gender it was determined with, the risk words counted in all the notes
+ * of the patient, and the explanation of each note having risk words.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RiskExplanationDto {
+    private String riskLevel;
+    private int age;
+    private String gender;
+    private List<String> riskWords;
+    private List<NoteExplanationDto> notes;
+}
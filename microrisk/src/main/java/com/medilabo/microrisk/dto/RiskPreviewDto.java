@@ -0,0 +1,22 @@
+package com.medilabo.microrisk.dto;
+
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for the result of a risk preview.
+ * This class encapsulates the risk level the patient would have once the draft note is saved, the risk words counted
+ * in all their notes including the draft, and the occurrences of the risk words counted in the draft.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RiskPreviewDto {
+    private String riskLevel;
+    private List<String> riskWords;
+    private List<RiskWordSpan> spans;
+}
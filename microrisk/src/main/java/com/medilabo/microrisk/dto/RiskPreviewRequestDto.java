@@ -0,0 +1,17 @@
+package com.medilabo.microrisk.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) for a risk preview request.
+ * This class encapsulates the draft content of a note and, when the draft updates a saved note, the ID of that note.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RiskPreviewRequestDto {
+    private String noteId;
+    private String content;
+}
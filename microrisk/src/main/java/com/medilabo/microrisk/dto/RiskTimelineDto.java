@@ -0,0 +1,21 @@
+package com.medilabo.microrisk.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for a page of the risk timeline of a patient.
+ * This class encapsulates the steps of the page, oldest first, the page number and size, and the total number of steps.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RiskTimelineDto {
+    private int page;
+    private int size;
+    private long totalEntries;
+    private List<RiskTimelineEntryDto> entries;
+}
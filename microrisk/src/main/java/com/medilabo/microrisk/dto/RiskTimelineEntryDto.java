@@ -0,0 +1,24 @@
+package com.medilabo.microrisk.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for one step of the risk timeline of a patient.
+ * This class encapsulates the note the step stands for, the time and the age of the patient when it was written,
+ * and the risk level of the patient with this note and all the previous ones, along with the risk words they count.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RiskTimelineEntryDto {
+    private String noteId;
+    private Instant createdAt;
+    private int age;
+    private String riskLevel;
+    private List<String> riskWords;
+}
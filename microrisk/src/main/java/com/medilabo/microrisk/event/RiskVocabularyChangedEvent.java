@@ -0,0 +1,11 @@
+package com.medilabo.microrisk.event;
+
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+
+/**
+ * Event published when a new risk vocabulary snapshot replaces the current one.
+ *
+ * @param vocabulary the new vocabulary snapshot
+ */
+public record RiskVocabularyChangedEvent(RiskVocabulary vocabulary) {
+}
@@ -0,0 +1,22 @@
+package com.medilabo.microrisk.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a cohort query refers to a word that is not a risk word of the current vocabulary.
+ * This exception is annotated with {@link ResponseStatus} to indicate that
+ * an HTTP 400 Bad Request status should be returned when this exception is thrown.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCohortQueryException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidCohortQueryException with the specified detail message.
+     *
+     * @param message the detail message explaining the reason for the exception
+     */
+    public InvalidCohortQueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.medilabo.microrisk.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when the risk levels of more patients than allowed are requested at once.
+ * This exception is annotated with {@link ResponseStatus} to indicate that
+ * an HTTP 400 Bad Request status should be returned when this exception is thrown.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidRiskBatchException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidRiskBatchException with the specified detail message.
+     *
+     * @param message the detail message explaining the reason for the exception
+     */
+    public InvalidRiskBatchException(String message) {
+        super(message);
+    }
+}
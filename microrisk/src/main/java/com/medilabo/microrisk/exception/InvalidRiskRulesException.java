@@ -0,0 +1,22 @@
+package com.medilabo.microrisk.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a risk rules table can't be parsed or doesn't cover every case.
+ * This exception is annotated with {@link ResponseStatus} to indicate that
+ * an HTTP 400 Bad Request status should be returned when this exception is thrown.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidRiskRulesException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidRiskRulesException with the specified detail message.
+     *
+     * @param message the detail message explaining the reason for the exception
+     */
+    public InvalidRiskRulesException(String message) {
+        super(message);
+    }
+}
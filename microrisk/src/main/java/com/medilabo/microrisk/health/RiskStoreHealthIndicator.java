@@ -0,0 +1,34 @@
+package com.medilabo.microrisk.health;
+
+import com.medilabo.microrisk.listener.NoteChangeStreamListener;
+import com.medilabo.microrisk.service.RiskStoreService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the state of the risk store on {@code /actuator/health}: down while its last rebuild failed and waits to be
+ * retried, up otherwise, with whether the store is current and whether it is being rebuilt.
+ * Risks are computed from the notes while the store isn't current.
+ */
+@Component
+@ConditionalOnProperty(name = "microrisk.store.enabled", havingValue = "true")
+public class RiskStoreHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private RiskStoreService riskStoreService;
+
+    @Autowired
+    private NoteChangeStreamListener noteChangeStreamListener;
+
+    @Override
+    public Health health() {
+        Throwable failure = noteChangeStreamListener.getLastFailure();
+        Health.Builder health = failure == null ? Health.up() : Health.down(failure);
+        return health.withDetail("current", riskStoreService.isCurrent())
+                .withDetail("rebuilding", noteChangeStreamListener.isRebuilding())
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package com.medilabo.microrisk.index;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Compressed bitmap of patient IDs, backed by a {@link RoaringBitmap}.
+ * Sparse and dense sets of IDs both take little memory, and the intersection, union and difference of two bitmaps
+ * are computed without expanding them.
+ * Patient IDs must be between 0 and {@value #MAX_PATIENT_ID}, being stored as unsigned 32-bit integers.
+ * Instances are not thread safe.
+ */
+public final class PatientBitmap {
+
+    /**
+     * Greatest patient ID that can be stored.
+     */
+    public static final long MAX_PATIENT_ID = 0xFFFFFFFFL;
+
+    private final RoaringBitmap bitmap;
+
+    public PatientBitmap() {
+        this(new RoaringBitmap());
+    }
+
+    private PatientBitmap(RoaringBitmap bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    /**
+     * Creates a bitmap holding the given patient IDs.
+     *
+     * @param patientIds the patient IDs
+     * @return a new bitmap
+     */
+    public static PatientBitmap of(long... patientIds) {
+        PatientBitmap bitmap = new PatientBitmap();
+        for (long patientId : patientIds) {
+            bitmap.add(patientId);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Checks if a patient ID can be stored in a bitmap.
+     *
+     * @param patientId the patient ID
+     * @return true if the ID is between 0 and {@value #MAX_PATIENT_ID}
+     */
+    public static boolean isSupported(Long patientId) {
+        return patientId != null && patientId >= 0 && patientId <= MAX_PATIENT_ID;
+    }
+
+    /**
+     * Adds a patient ID.
+     *
+     * @param patientId the patient ID
+     * @throws IllegalArgumentException if the ID can't be stored
+     */
+    public void add(long patientId) {
+        if (!isSupported(patientId)) {
+            throw new IllegalArgumentException("Patient ID " + patientId + " is out of the range of a patient bitmap");
+        }
+        bitmap.add((int) patientId);
+    }
+
+    /**
+     * Removes a patient ID, if present.
+     *
+     * @param patientId the patient ID
+     */
+    public void remove(long patientId) {
+        if (isSupported(patientId)) {
+            bitmap.remove((int) patientId);
+        }
+    }
+
+    /**
+     * Checks if a patient ID is present.
+     *
+     * @param patientId the patient ID
+     * @return true if the ID was added and not removed since
+     */
+    public boolean contains(long patientId) {
+        return isSupported(patientId) && bitmap.contains((int) patientId);
+    }
+
+    /**
+     * Returns the number of patient IDs.
+     *
+     * @return the number of patient IDs present
+     */
+    public long cardinality() {
+        return bitmap.getLongCardinality();
+    }
+
+    public boolean isEmpty() {
+        return bitmap.isEmpty();
+    }
+
+    /**
+     * Computes the intersection of this bitmap with another one, neither of them being modified.
+     *
+     * @param other the other bitmap
+     * @return a new bitmap holding the IDs present in both bitmaps
+     */
+    public PatientBitmap and(PatientBitmap other) {
+        return new PatientBitmap(RoaringBitmap.and(bitmap, other.bitmap));
+    }
+
+    /**
+     * Computes the union of this bitmap with another one, neither of them being modified.
+     *
+     * @param other the other bitmap
+     * @return a new bitmap holding the IDs present in either bitmap
+     */
+    public PatientBitmap or(PatientBitmap other) {
+        return new PatientBitmap(RoaringBitmap.or(bitmap, other.bitmap));
+    }
+
+    /**
+     * Computes the difference of this bitmap with another one, neither of them being modified.
+     *
+     * @param other the other bitmap
+     * @return a new bitmap holding the IDs present in this bitmap and not in the other one
+     */
+    public PatientBitmap andNot(PatientBitmap other) {
+        return new PatientBitmap(RoaringBitmap.andNot(bitmap, other.bitmap));
+    }
+
+    /**
+     * Performs an action for each patient ID, in ascending order.
+     *
+     * @param action the action to be performed
+     */
+    public void forEach(LongConsumer action) {
+        bitmap.forEach((int patientId) -> action.accept(Integer.toUnsignedLong(patientId)));
+    }
+
+    /**
+     * Returns the patient IDs.
+     *
+     * @return the patient IDs, in ascending order
+     */
+    public long[] toArray() {
+        long[] patientIds = new long[Math.toIntExact(cardinality())];
+        int[] next = {0};
+        forEach(patientId -> patientIds[next[0]++] = patientId);
+        return patientIds;
+    }
+
+    /**
+     * Estimates the memory taken by this bitmap.
+     * A sparse chunk of 65536 IDs takes about 2 bytes per patient ID and a dense chunk 8 KB, i.e. 1 bit per possible ID of the chunk.
+     *
+     * @return the approximate number of bytes retained by this bitmap
+     */
+    public long sizeInBytes() {
+        return bitmap.getLongSizeInBytes();
+    }
+}
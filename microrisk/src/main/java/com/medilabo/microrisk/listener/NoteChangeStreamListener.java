@@ -0,0 +1,319 @@
+package com.medilabo.microrisk.listener;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.NoteRiskMask;
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.domain.RiskStoreState;
+import com.medilabo.microrisk.event.RiskVocabularyChangedEvent;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.repository.RiskStoreStateRepository;
+import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskStoreService;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Listener keeping the risk store up to date with the notes collection, through a MongoDB change stream.
+ * The stream is resumed after the last processed change when the application restarts, or from the operation time it was
+ * registered at when the store was rebuilt if no change was processed since. The store is rebuilt with a full scan when
+ * there is no position to resume from, or when the vocabulary or the matching mode changed since
+ * it was built, including when the vocabulary is reloaded while the application runs. Otherwise, only the cohort index
+ * is rebuilt from the store. Rebuilds, and the resumption of the store, are retried with an exponential backoff until they
+ * succeed, for instance once the patient microservice answers, and a change that can't be applied triggers a rebuild.
+ * Change streams require MongoDB to run as a replica set, which can have a single node.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "microrisk.store.enabled", havingValue = "true")
+public class NoteChangeStreamListener implements SmartLifecycle {
+
+    static final String NOTES = "notes";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RiskStoreService riskStoreService;
+
+    @Autowired
+    private RiskStoreStateRepository riskStoreStateRepository;
+
+    @Autowired
+    private RiskService riskService;
+
+    private MessageListenerContainer container;
+
+    private volatile Subscription subscription;
+
+    /**
+     * Whether the change stream failed and must be registered again before the store is rebuilt.
+     */
+    private volatile boolean streamFailed;
+
+    /**
+     * Operation time the change stream was registered at for a rebuild, or resumed from, persisted once the store is rebuilt.
+     */
+    private volatile Instant registeredAt;
+
+    /**
+     * Whether a rebuild was requested since the last one started, so that requests made meanwhile are coalesced into one rebuild.
+     */
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * Failure of the last attempt to rebuild or resume the store, null once an attempt succeeded.
+     */
+    private volatile Throwable lastFailure;
+
+    @Value("${microrisk.store.retry-backoff:5s}")
+    private Duration retryBackoff;
+
+    @Value("${microrisk.store.max-retry-backoff:5m}")
+    private Duration maxRetryBackoff;
+
+    @Override
+    public void start() {
+        ensureIndexes(NoteRiskMask.class);
+        ensureIndexes(PatientRisk.class);
+
+        RiskVocabulary vocabulary = riskService.getVocabulary();
+        RiskStoreState state = riskStoreStateRepository.findById(NOTES).orElse(null);
+        boolean rebuild = state == null
+                || (state.getResumeToken() == null && state.getResumeAt() == null)
+                || !vocabulary.getRiskWords().equals(state.getRiskWords())
+                || !vocabulary.getExclusionWords().equals(state.getExclusionWords())
+                || !riskService.getMatchingMode().name().equals(state.getMatchingMode());
+
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        container.start();
+        if (!rebuild && state.getResumeToken() != null) {
+            register(state.getResumeToken(), null);
+        } else {
+            registeredAt = rebuild ? currentOperationTime() : state.getResumeAt();
+            register(null, registeredAt);
+        }
+
+        if (rebuild) {
+            scheduleRebuild();
+        } else {
+            retrying(Mono.fromRunnable(() -> riskStoreService.resume(vocabulary))).subscribe();
+        }
+    }
+
+    /**
+     * Rebuilds the risk store with the reloaded vocabulary, the risk words of the stored masks being outdated.
+     *
+     * @param event the event carrying the new vocabulary snapshot
+     */
+    @EventListener
+    public void onVocabularyChanged(RiskVocabularyChangedEvent event) {
+        log.info("Risk vocabulary changed to version {}, rebuilding the risk store", event.vocabulary().getVersion());
+        scheduleRebuild();
+    }
+
+    /**
+     * Tells whether the store is being rebuilt, including while a failed rebuild waits to be retried.
+     *
+     * @return true while a rebuild is scheduled or running
+     */
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * Returns the failure of the last attempt to rebuild or resume the store, retried with an exponential backoff.
+     *
+     * @return the failure, or null if the last attempt succeeded
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Rebuilds the store in the background, the store not being current until then. Rebuilds requested while one waits
+     * or runs are done once after it, and failed rebuilds are retried with an exponential backoff.
+     */
+    void scheduleRebuild() {
+        riskStoreService.invalidate();
+        rebuildRequested.set(true);
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        // Changes received meanwhile wait for the rebuild, updates of the store being serialized
+        retrying(Mono.fromRunnable(() -> {
+                    rebuildRequested.set(false);
+                    rebuild();
+                }))
+                .repeat(rebuildRequested::get)
+                .doFinally(signal -> {
+                    rebuilding.set(false);
+                    if (rebuildRequested.get()) {
+                        scheduleRebuild();
+                    }
+                })
+                .subscribe();
+    }
+
+    private void rebuild() {
+        if (streamFailed) {
+            // The position of the failed stream is lost, the changes made since being covered by the full scan
+            streamFailed = false;
+            container.remove(subscription);
+            registeredAt = currentOperationTime();
+            register(null, registeredAt);
+        }
+        RiskVocabulary vocabulary = riskService.getVocabulary();
+        // The store is rebuilt on the next start if this rebuild doesn't complete
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(NOTES)),
+                new Update().unset("riskWords"),
+                RiskStoreState.class);
+        riskStoreService.rebuild(vocabulary);
+        Update update = new Update().set("riskWords", vocabulary.getRiskWords())
+                .set("exclusionWords", vocabulary.getExclusionWords())
+                .set("matchingMode", riskService.getMatchingMode().name());
+        if (registeredAt != null) {
+            update.set("resumeAt", registeredAt);
+        }
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(NOTES)), update, RiskStoreState.class);
+    }
+
+    private Mono<Void> retrying(Mono<Void> attempt) {
+        // Each attempt blocks on MongoDB and the patient microservice, including the retries delayed on the parallel scheduler
+        return attempt.subscribeOn(Schedulers.boundedElastic())
+                .doOnSuccess(done -> lastFailure = null)
+                .doOnError(error -> lastFailure = error)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, retryBackoff)
+                        .maxBackoff(maxRetryBackoff)
+                        .doBeforeRetry(signal -> log.warn("Risk store could not be updated, retry {}: {}",
+                                signal.totalRetries() + 1, signal.failure().toString())));
+    }
+
+    @Override
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return container != null && container.isRunning();
+    }
+
+    /**
+     * Applies a change of the notes collection to the risk store, then records it as processed.
+     * A change that can't be applied, for instance when the demographics of its patient can't be fetched, isn't recorded
+     * and the store is rebuilt, the risks being computed from the notes until then.
+     *
+     * @param message the change stream message
+     */
+    void onMessage(Message<ChangeStreamDocument<Document>, Note> message) {
+        ChangeStreamDocument<Document> change = message.getRaw();
+        try {
+            switch (change.getOperationType()) {
+                case INSERT, UPDATE, REPLACE -> {
+                    Note note = message.getBody();
+                    if (note != null) {
+                        riskStoreService.onNoteChanged(note);
+                    }
+                }
+                case DELETE -> riskStoreService.onNoteDeleted(idOf(change.getDocumentKey().get("_id")));
+                default -> log.warn("Unexpected change on the notes collection: {}", change.getOperationType());
+            }
+        } catch (RuntimeException error) {
+            log.error("Could not apply a change of the notes collection to the risk store, rebuilding it", error);
+            scheduleRebuild();
+            return;
+        }
+        if (change.getResumeToken() != null) {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(NOTES)),
+                    new Update().set("resumeToken", change.getResumeToken().toJson()),
+                    RiskStoreState.class);
+        }
+    }
+
+    /**
+     * Forgets the position of the change stream when it fails, then registers the stream again and rebuilds the store,
+     * the changes made meanwhile being lost.
+     *
+     * @param error the error raised by the change stream
+     */
+    private void onError(Throwable error) {
+        log.error("Change stream on the notes collection failed, rebuilding the risk store", error);
+        streamFailed = true;
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(NOTES)),
+                    new Update().unset("resumeToken").unset("resumeAt"),
+                    RiskStoreState.class);
+        } catch (DataAccessException e) {
+            log.warn("Could not forget the position of the change stream: {}", e.getMessage());
+        }
+        scheduleRebuild();
+    }
+
+    private void register(String resumeToken, Instant resumeAt) {
+        ChangeStreamRequest.ChangeStreamRequestBuilder<Note> request = ChangeStreamRequest.builder(this::onMessage)
+                .collection(NOTES)
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (resumeToken != null) {
+            request.resumeAfter(BsonDocument.parse(resumeToken));
+        } else if (resumeAt != null) {
+            request.resumeAt(resumeAt);
+        }
+        subscription = container.register(request.build(), Note.class, this::onError);
+    }
+
+    /**
+     * Reads the operation time of the cluster, so that the change stream starts from a position that can be persisted
+     * even if no change is processed before the next restart.
+     *
+     * @return the operation time of the cluster, or null when the server doesn't report it
+     */
+    private Instant currentOperationTime() {
+        Object operationTime = mongoTemplate.executeCommand(new Document("hello", 1)).get("operationTime");
+        return operationTime instanceof BsonTimestamp timestamp ? Instant.ofEpochSecond(timestamp.getTime()) : null;
+    }
+
+    private void ensureIndexes(Class<?> type) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(type);
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        resolver.resolveIndexFor(type).forEach(indexOperations::ensureIndex);
+    }
+
+    private static String idOf(BsonValue id) {
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+}
@@ -0,0 +1,197 @@
+package com.medilabo.microrisk.matcher;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tokenizer turning French text into normalized, stemmed tokens, and the tokens into 64-bit hashes.
+ * A token is a run of letters and digits, so that a risk word is never found inside another word ("taille" in "détaillé").
+ * Tokens are lower-cased and their accents removed ("Cholestérol" and "cholesterol" are the same token), ligatures being
+ * expanded ("œ" into "oe"). A light stemmer then removes the plural and feminine endings, so that "vertige", "vertiges",
+ * "fumeur" and "fumeuse" are matched by a single stem.
+ * The same pipeline is applied to the risk words and to the notes, so that only the token hashes need to be compared.
+ */
+public final class FrenchTokenizer {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long PHRASE_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Lower-cased and accent-free form of the Latin characters, {@code null} for the characters folded to themselves.
+     */
+    private static final String[] FOLDED = new String[0x250];
+
+    static {
+        for (char c = 0; c < FOLDED.length; c++) {
+            String folded = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}", "")
+                    .toLowerCase(Locale.ROOT);
+            if (!folded.equals(String.valueOf(c))) {
+                FOLDED[c] = folded;
+            }
+        }
+        FOLDED['œ'] = "oe";
+        FOLDED['Œ'] = "oe";
+        FOLDED['æ'] = "ae";
+        FOLDED['Æ'] = "ae";
+        FOLDED['ß'] = "ss";
+    }
+
+    private FrenchTokenizer() {
+    }
+
+    /**
+     * Splits a text into its stemmed tokens.
+     *
+     * @param text the text to tokenize
+     * @return the stemmed tokens, in the order they appear in the text
+     */
+    public static List<String> tokens(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                fold(c, token);
+            } else if (!token.isEmpty()) {
+                tokens.add(stem(token.toString()));
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Splits a text into its stemmed tokens and hashes them, as done once per note.
+     *
+     * @param text the text to tokenize
+     * @return the hashes of the stemmed tokens, in the order they appear in the text
+     */
+    public static long[] tokenHashes(CharSequence text) {
+        long[] hashes = new long[16];
+        int count = 0;
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                fold(c, token);
+            } else if (!token.isEmpty()) {
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, count * 2);
+                }
+                hashes[count++] = hash(stem(token.toString()));
+                token.setLength(0);
+            }
+        }
+        return Arrays.copyOf(hashes, count);
+    }
+
+    /**
+     * Locates the tokens of a text, so that the tokens matched can be highlighted in it.
+     *
+     * @param text the text to tokenize
+     * @return the offsets of the tokens, in the order of {@link #tokenHashes(CharSequence)}: the i-th token starts at the
+     * index {@code offsets[2 * i]} of the text and ends before the index {@code offsets[2 * i + 1]}
+     */
+    public static int[] tokenOffsets(CharSequence text) {
+        int[] offsets = new int[32];
+        int count = 0;
+        int start = -1;
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+                fold(c, token);
+            } else {
+                if (!token.isEmpty()) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = start;
+                    offsets[count++] = i;
+                    token.setLength(0);
+                }
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Removes the plural and feminine endings of a lower-cased, accent-free token.
+     * Tokens of less than 4 characters are kept as they are.
+     *
+     * @param token the token to stem
+     * @return the stem of the token
+     */
+    public static String stem(String token) {
+        if (token.length() < 4) {
+            return token;
+        }
+        String stem = token;
+        if (stem.endsWith("aux")) {
+            stem = stem.substring(0, stem.length() - 3) + "al";
+        } else if (stem.endsWith("s") || stem.endsWith("x")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        if (stem.endsWith("euse")) {
+            stem = stem.substring(0, stem.length() - 4) + "eur";
+        } else if (stem.endsWith("ive")) {
+            stem = stem.substring(0, stem.length() - 3) + "if";
+        } else if (stem.endsWith("elle")) {
+            stem = stem.substring(0, stem.length() - 2);
+        }
+        // "ée" and "e" endings, as in "recommandée" and "anormale"
+        for (int i = 0; i < 2 && stem.length() > 3 && stem.endsWith("e"); i++) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        return stem;
+    }
+
+    /**
+     * Hashes a stemmed token with the 64-bit FNV-1a function.
+     *
+     * @param token the stemmed token
+     * @return the hash of the token, never 0
+     */
+    public static long hash(String token) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash == 0L ? 1L : hash;
+    }
+
+    /**
+     * Extends the hash of a phrase with the hash of its next token, the hash of a single token phrase being
+     * {@code phraseHash(0, tokenHash)}.
+     *
+     * @param phraseHash the hash of the phrase, 0 for an empty phrase
+     * @param tokenHash  the hash of the next token
+     * @return the hash of the extended phrase, never 0
+     */
+    public static long phraseHash(long phraseHash, long tokenHash) {
+        long hash = phraseHash * PHRASE_MULTIPLIER + tokenHash;
+        hash ^= hash >>> 29;
+        return hash == 0L ? 1L : hash;
+    }
+
+    private static void fold(char c, StringBuilder token) {
+        String folded = c < FOLDED.length ? FOLDED[c] : null;
+        if (folded != null) {
+            token.append(folded);
+        } else if (c < FOLDED.length) {
+            token.append(c);
+        } else {
+            token.append(Character.toLowerCase(c));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.medilabo.microrisk.matcher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matcher counting risk words in the tokens of a note, as produced by {@link FrenchTokenizer#tokenHashes(CharSequence)}.
+ * Each risk word is tokenized and stemmed like the notes, and the hashes of its phrase and of its exclusion combinations
+ * ("exclusion word + risk word" and "risk word + exclusion word", whatever the punctuation between them) are kept in hash tables,
+ * so that matching a note only looks up the phrases starting at each of its tokens.
+ * Risk words having the same stems, such as "Vertige" and "Vertiges", are a single term reported as the first of them,
+ * bits being the ones of the {@link RiskWordMatcher} compiled from the same vocabulary.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class RiskTokenMatcher {
+
+    private final List<String> distinctRiskWords;
+    private final List<String> exclusionWords;
+    private final LongMaskTable riskPhrases;
+    private final LongMaskTable exclusionPhrases;
+
+    /**
+     * Distinct risk word and exclusion word of each exclusion combination, by phrase hash.
+     * Only read to explain a match, {@link #exclusionPhrases} being enough to count.
+     */
+    private final Map<Long, List<int[]>> exclusionPhraseWords = new HashMap<>();
+
+    /**
+     * Maximum number of tokens of a phrase, exclusion combinations included.
+     */
+    private final int maxPhraseTokens;
+
+    private RiskTokenMatcher(List<String> riskWords, List<String> exclusionWords) {
+        this.distinctRiskWords = List.copyOf(new LinkedHashSet<>(riskWords));
+        this.exclusionWords = List.copyOf(exclusionWords);
+        if (distinctRiskWords.size() > RiskWordMatcher.MAX_RISK_WORDS) {
+            throw new IllegalArgumentException("A matcher supports at most " + RiskWordMatcher.MAX_RISK_WORDS + " risk words, got " + distinctRiskWords.size());
+        }
+
+        Map<Long, Long> risks = new LinkedHashMap<>();
+        Map<Long, Long> exclusions = new LinkedHashMap<>();
+        int maxTokens = 1;
+        for (int i = 0; i < distinctRiskWords.size(); i++) {
+            long[] riskTokens = FrenchTokenizer.tokenHashes(distinctRiskWords.get(i));
+            if (riskTokens.length == 0) {
+                throw new IllegalArgumentException(distinctRiskWords.get(i) + " has no token");
+            }
+            // The first risk word of a stem stands for all the risk words having it
+            risks.putIfAbsent(phraseHash(riskTokens), 1L << i);
+            long bit = risks.get(phraseHash(riskTokens));
+            for (int j = 0; j < exclusionWords.size(); j++) {
+                long[] exclusionTokens = FrenchTokenizer.tokenHashes(exclusionWords.get(j));
+                for (long phrase : List.of(phraseHash(exclusionTokens, riskTokens), phraseHash(riskTokens, exclusionTokens))) {
+                    exclusions.merge(phrase, bit, (first, second) -> first | second);
+                    exclusionPhraseWords.computeIfAbsent(phrase, key -> new ArrayList<>())
+                            .add(new int[]{Long.numberOfTrailingZeros(bit), j});
+                }
+                maxTokens = Math.max(maxTokens, riskTokens.length + exclusionTokens.length);
+            }
+            maxTokens = Math.max(maxTokens, riskTokens.length);
+        }
+        this.riskPhrases = new LongMaskTable(risks);
+        this.exclusionPhrases = new LongMaskTable(exclusions);
+        this.maxPhraseTokens = maxTokens;
+    }
+
+    /**
+     * Compiles a matcher for the given vocabulary.
+     *
+     * @param riskWords      the risk words to count, duplicates and words having the same stems being counted once
+     * @param exclusionWords the exclusion words that prevent a risk word from being counted when adjacent to it
+     * @return the compiled matcher
+     * @throws IllegalArgumentException if a word has no letter nor digit or if there are more than
+     *                                  {@link RiskWordMatcher#MAX_RISK_WORDS} risk words
+     */
+    public static RiskTokenMatcher compile(List<String> riskWords, List<String> exclusionWords) {
+        if (exclusionWords.stream().anyMatch(word -> FrenchTokenizer.tokenHashes(word).length == 0)) {
+            throw new IllegalArgumentException("Exclusion words must have letters or digits");
+        }
+        return new RiskTokenMatcher(riskWords, exclusionWords);
+    }
+
+    /**
+     * Returns the risk words to be counted for the tokens of a note.
+     * A risk word is counted when its phrase is found in the tokens and none of its exclusion combinations is.
+     *
+     * @param tokens the token hashes of the note
+     * @return a mask with bit {@code i} set when the i-th distinct risk word, or the first risk word of its stem, is counted
+     */
+    public long match(long[] tokens) {
+        long found = 0L;
+        long excluded = 0L;
+        for (int start = 0; start < tokens.length; start++) {
+            long hash = 0L;
+            int end = Math.min(tokens.length, start + maxPhraseTokens);
+            for (int i = start; i < end; i++) {
+                hash = FrenchTokenizer.phraseHash(hash, tokens[i]);
+                found |= riskPhrases.get(hash);
+                excluded |= exclusionPhrases.get(hash);
+            }
+        }
+        return found & ~excluded;
+    }
+
+    /**
+     * Tokenizes a note content and returns the risk words to be counted for it.
+     *
+     * @param content the note content
+     * @return a mask of the counted risk words, as returned by {@link #match(long[])}
+     */
+    public long match(CharSequence content) {
+        return match(FrenchTokenizer.tokenHashes(content));
+    }
+
+    /**
+     * Tokenizes a note content and explains the risk words counted for it, as {@link RiskWordMatcher#explain(CharSequence)}
+     * does: the occurrences of the counted risk words, and for the risk words that aren't counted, their occurrences and the
+     * exclusion combinations that prevent them from counting. Occurrences span the tokens of their phrase in the content.
+     *
+     * @param content the note content
+     * @return the explanation of the risk words of the note, with offsets in the original content and the mask returned
+     * by {@link #match(CharSequence)}
+     */
+    public RiskWordExplanation explain(CharSequence content) {
+        long[] tokens = FrenchTokenizer.tokenHashes(content);
+        int[] offsets = FrenchTokenizer.tokenOffsets(content);
+        List<int[]> occurrences = new ArrayList<>();
+        List<RiskWordExclusion> exclusions = new ArrayList<>();
+        long found = 0L;
+        long excluded = 0L;
+        for (int start = 0; start < tokens.length; start++) {
+            long hash = 0L;
+            int end = Math.min(tokens.length, start + maxPhraseTokens);
+            for (int i = start; i < end; i++) {
+                hash = FrenchTokenizer.phraseHash(hash, tokens[i]);
+                long riskWords = riskPhrases.get(hash);
+                found |= riskWords;
+                while (riskWords != 0) {
+                    occurrences.add(new int[]{Long.numberOfTrailingZeros(riskWords), offsets[2 * start], offsets[2 * i + 1]});
+                    riskWords &= riskWords - 1;
+                }
+                if (exclusionPhrases.get(hash) != 0L) {
+                    excluded |= exclusionPhrases.get(hash);
+                    for (int[] words : exclusionPhraseWords.get(hash)) {
+                        exclusions.add(new RiskWordExclusion(offsets[2 * start], offsets[2 * i + 1],
+                                distinctRiskWords.get(words[0]), exclusionWords.get(words[1])));
+                    }
+                }
+            }
+        }
+
+        List<RiskWordSpan> matches = new ArrayList<>();
+        List<RiskWordSpan> excludedMatches = new ArrayList<>();
+        for (int[] occurrence : occurrences) {
+            RiskWordSpan span = new RiskWordSpan(occurrence[1], occurrence[2], distinctRiskWords.get(occurrence[0]));
+            ((excluded & (1L << occurrence[0])) == 0 ? matches : excludedMatches).add(span);
+        }
+        matches.sort(Comparator.comparingInt(RiskWordSpan::start).thenComparingInt(RiskWordSpan::end));
+        excludedMatches.sort(Comparator.comparingInt(RiskWordSpan::start).thenComparingInt(RiskWordSpan::end));
+        exclusions.sort(Comparator.comparingInt(RiskWordExclusion::start).thenComparingInt(RiskWordExclusion::end));
+        return new RiskWordExplanation(found & ~excluded, matches, excludedMatches, exclusions);
+    }
+
+    private static long phraseHash(long[]... phrases) {
+        long hash = 0L;
+        for (long[] phrase : phrases) {
+            for (long token : phrase) {
+                hash = FrenchTokenizer.phraseHash(hash, token);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Open addressing hash table from non-zero phrase hashes to masks, with linear probing.
+     */
+    private static final class LongMaskTable {
+
+        private final long[] keys;
+        private final long[] masks;
+        private final int bitMask;
+
+        private LongMaskTable(Map<Long, Long> entries) {
+            int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 4 - 1) << 1;
+            this.keys = new long[capacity];
+            this.masks = new long[capacity];
+            this.bitMask = capacity - 1;
+            entries.forEach((key, mask) -> {
+                int slot = slot(key);
+                while (keys[slot] != 0L) {
+                    slot = (slot + 1) & bitMask;
+                }
+                keys[slot] = key;
+                masks[slot] = mask;
+            });
+        }
+
+        private long get(long key) {
+            int slot = slot(key);
+            while (keys[slot] != 0L) {
+                if (keys[slot] == key) {
+                    return masks[slot];
+                }
+                slot = (slot + 1) & bitMask;
+            }
+            return 0L;
+        }
+
+        private int slot(long key) {
+            return (int) (key ^ (key >>> 32)) & bitMask;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.medilabo.microrisk.matcher;
+
+import com.medilabo.microrisk.exception.InvalidRiskVocabularyException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the risk vocabulary: the risk words, the exclusion words, and everything derived from them,
+ * namely the compiled {@link RiskWordMatcher}, {@link Utf8RiskWordMatcher} and {@link RiskTokenMatcher}, and the MongoDB text search query.
+ * A request reads the current snapshot once and uses it until it completes, so that a vocabulary reloaded meanwhile
+ * never mixes with the one it started with.
+ */
+public final class RiskVocabulary {
+
+    private static final String RISK = "risk";
+    private static final String EXCLUSION = "exclusion";
+
+    private final long version;
+    private final List<String> riskWords;
+    private final List<String> exclusionWords;
+    private final RiskWordMatcher matcher;
+    private final Utf8RiskWordMatcher utf8Matcher;
+    private final RiskTokenMatcher tokenMatcher;
+    private final String searchQuery;
+    private final String fingerprint;
+
+    private RiskVocabulary(long version, List<String> riskWords, List<String> exclusionWords) {
+        this.version = version;
+        this.riskWords = List.copyOf(riskWords);
+        this.exclusionWords = List.copyOf(exclusionWords);
+        this.matcher = RiskWordMatcher.compile(this.riskWords, this.exclusionWords);
+        this.utf8Matcher = Utf8RiskWordMatcher.compile(this.riskWords, this.exclusionWords);
+        this.tokenMatcher = RiskTokenMatcher.compile(this.riskWords, this.exclusionWords);
+        this.searchQuery = String.join(" ", this.riskWords);
+        this.fingerprint = fingerprint(matcher.getRiskWords(), this.exclusionWords);
+    }
+
+    /**
+     * Compiles a vocabulary snapshot.
+     *
+     * @param version        the version of the snapshot
+     * @param riskWords      the risk words
+     * @param exclusionWords the exclusion words
+     * @return the compiled snapshot
+     * @throws InvalidRiskVocabularyException if the words can't be compiled into a matcher
+     */
+    public static RiskVocabulary compile(long version, List<String> riskWords, List<String> exclusionWords) {
+        if (riskWords.isEmpty()) {
+            throw new InvalidRiskVocabularyException("The risk vocabulary has no risk word");
+        }
+        try {
+            return new RiskVocabulary(version, riskWords, exclusionWords);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRiskVocabularyException(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses and compiles a vocabulary snapshot.
+     * Each line reads {@code risk;word} or {@code exclusion;word}, lines that are blank or start with {@code #} being ignored.
+     *
+     * @param version the version of the snapshot
+     * @param lines   the lines of the vocabulary file
+     * @return the compiled snapshot
+     * @throws InvalidRiskVocabularyException if a line can't be parsed or if the words can't be compiled
+     */
+    public static RiskVocabulary parse(long version, List<String> lines) {
+        List<String> riskWords = new ArrayList<>();
+        List<String> exclusionWords = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf(';');
+            String type = separator < 0 ? line : line.substring(0, separator).strip();
+            String word = separator < 0 ? "" : line.substring(separator + 1).strip();
+            if (word.isEmpty() || !(type.equals(RISK) || type.equals(EXCLUSION))) {
+                throw new InvalidRiskVocabularyException("Line " + (i + 1) + ": expected risk;word or exclusion;word but got " + line);
+            }
+            (type.equals(RISK) ? riskWords : exclusionWords).add(word);
+        }
+        return compile(version, riskWords, exclusionWords);
+    }
+
+    /**
+     * Checks if this snapshot has the same words as another one, whatever their versions.
+     *
+     * @param other the other snapshot
+     * @return true if both snapshots have the same risk words and exclusion words
+     */
+    public boolean hasSameWords(RiskVocabulary other) {
+        return riskWords.equals(other.riskWords) && exclusionWords.equals(other.exclusionWords);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getRiskWords() {
+        return riskWords;
+    }
+
+    public List<String> getExclusionWords() {
+        return exclusionWords;
+    }
+
+    public RiskWordMatcher getMatcher() {
+        return matcher;
+    }
+
+    public Utf8RiskWordMatcher getUtf8Matcher() {
+        return utf8Matcher;
+    }
+
+    public RiskTokenMatcher getTokenMatcher() {
+        return tokenMatcher;
+    }
+
+    /**
+     * Returns the MongoDB text search query selecting the notes that may contain a risk word.
+     *
+     * @return the risk words joined with spaces
+     */
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+
+    /**
+     * Returns the fingerprint of the words of this snapshot, stored with the risk masks of the notes, so that only the
+     * masks computed with the same words are used.
+     *
+     * @return the first 16 hexadecimal digits of the SHA-256 of the distinct risk words and the exclusion words
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    private static String fingerprint(List<String> riskWords, List<String> exclusionWords) {
+        String words = String.join("\n", riskWords) + "\n\n" + String.join("\n", exclusionWords);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(words.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.medilabo.microrisk.matcher;
+
+/**
+ * Occurrence of a risk word next to an exclusion word in a note content, which prevents the risk word from being counted
+ * for the note, as found by the {@code explain} methods of the matchers.
+ *
+ * @param start         the index of the first character of the combination
+ * @param end           the index following the last character of the combination
+ * @param riskWord      the excluded risk word, as written in the vocabulary
+ * @param exclusionWord the exclusion word, as written in the vocabulary
+ */
+public record RiskWordExclusion(int start, int end, String riskWord, String exclusionWord) {
+}
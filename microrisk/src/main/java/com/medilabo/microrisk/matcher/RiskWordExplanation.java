@@ -0,0 +1,18 @@
+package com.medilabo.microrisk.matcher;
+
+import java.util.List;
+
+/**
+ * Result of the scan of a note content by {@link RiskWordMatcher#explain(CharSequence)}, or by the {@code explain} method
+ * of the {@link Utf8RiskWordMatcher} or the {@link RiskTokenMatcher}: the risk words counted for the note
+ * along with the occurrences that make them count, and the occurrences that are not counted along with the exclusions
+ * that prevent them from counting.
+ *
+ * @param mask            the risk words counted for the note, as returned by the {@code match} method of the matcher
+ * @param matches         the occurrences of the counted risk words, ordered by start index
+ * @param excludedMatches the occurrences of the risk words excluded from the note, ordered by start index
+ * @param exclusions      the combinations of a risk word and an exclusion word found in the note, ordered by start index
+ */
+public record RiskWordExplanation(long mask, List<RiskWordSpan> matches, List<RiskWordSpan> excludedMatches,
+                                  List<RiskWordExclusion> exclusions) {
+}
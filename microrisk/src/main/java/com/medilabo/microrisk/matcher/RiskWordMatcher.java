@@ -0,0 +1,401 @@
+package com.medilabo.microrisk.matcher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Compiled Aho-Corasick automaton used to count risk words in note contents.
+ * The automaton is built once from the risk words and the exclusion words, and recognizes in a single
+ * pass over a note every risk word as well as every "exclusion word + risk word" and
+ * "risk word + exclusion word" combination.
+ * Case folding is done character by character while scanning, so no lower-cased copy of the note is allocated.
+ * A risk word is counted for a note when it appears in the note and none of its exclusion combinations does,
+ * which is exactly the rule previously applied with {@code String.contains}.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class RiskWordMatcher {
+
+    /**
+     * Maximum number of distinct risk words, matched words being reported as the bits of a {@code long}.
+     */
+    public static final int MAX_RISK_WORDS = Long.SIZE;
+
+    private static final int ROOT = 0;
+
+    private static final int[] NO_PATTERNS = new int[0];
+
+    private final List<String> riskWords;
+    private final List<String> exclusionWords;
+    private final List<String> distinctRiskWords;
+
+    /**
+     * Maps a lower-cased character to its column in the transition table, 0 meaning "not part of any pattern".
+     */
+    private final char[] charClasses;
+    private final int alphabetSize;
+
+    /**
+     * Deterministic transition table, failure links already resolved: {@code transitions[state * alphabetSize + class]}.
+     */
+    private final int[] transitions;
+
+    /**
+     * Risk words recognized when reaching a state, one bit per distinct risk word.
+     */
+    private final long[] riskWordOutputs;
+
+    /**
+     * Risk words for which an exclusion combination is recognized when reaching a state.
+     */
+    private final long[] exclusionOutputs;
+
+    /**
+     * Exclusion combinations recognized when reaching a state, as indexes of the following arrays.
+     * Only read to explain a match, {@link #exclusionOutputs} being enough to count.
+     */
+    private final int[][] exclusionPatterns;
+
+    /**
+     * Distinct risk word, exclusion word and number of lower-cased characters of each exclusion combination.
+     */
+    private final int[] exclusionPatternRiskWords;
+    private final int[] exclusionPatternWords;
+    private final int[] exclusionPatternLengths;
+
+    /**
+     * Number of lower-cased characters of each distinct risk word.
+     */
+    private final int[] foldedLengths;
+
+    private RiskWordMatcher(List<String> riskWords, List<String> exclusionWords) {
+        this.riskWords = List.copyOf(riskWords);
+        this.exclusionWords = List.copyOf(exclusionWords);
+        this.distinctRiskWords = List.copyOf(new LinkedHashSet<>(riskWords));
+
+        if (distinctRiskWords.size() > MAX_RISK_WORDS) {
+            throw new IllegalArgumentException("A matcher supports at most " + MAX_RISK_WORDS + " risk words, got " + distinctRiskWords.size());
+        }
+
+        List<String> patterns = new ArrayList<>();
+        List<Long> patternRiskWords = new ArrayList<>();
+        List<Boolean> patternExclusions = new ArrayList<>();
+        // Index of each exclusion combination, -1 for the risk words themselves
+        List<Integer> patternExclusionIndexes = new ArrayList<>();
+        int exclusionCombinations = distinctRiskWords.size() * this.exclusionWords.size() * 2;
+        this.exclusionPatternRiskWords = new int[exclusionCombinations];
+        this.exclusionPatternWords = new int[exclusionCombinations];
+        this.exclusionPatternLengths = new int[exclusionCombinations];
+        int exclusionPattern = 0;
+
+        this.foldedLengths = new int[distinctRiskWords.size()];
+        for (int i = 0; i < distinctRiskWords.size(); i++) {
+            String lowerRiskWord = fold(distinctRiskWords.get(i));
+            foldedLengths[i] = lowerRiskWord.length();
+            long bit = 1L << i;
+            patterns.add(lowerRiskWord);
+            patternRiskWords.add(bit);
+            patternExclusions.add(false);
+            patternExclusionIndexes.add(-1);
+            for (int j = 0; j < this.exclusionWords.size(); j++) {
+                String lowerExclusionWord = fold(this.exclusionWords.get(j));
+                for (String pattern : List.of(lowerExclusionWord + " " + lowerRiskWord, lowerRiskWord + " " + lowerExclusionWord)) {
+                    patterns.add(pattern);
+                    patternRiskWords.add(bit);
+                    patternExclusions.add(true);
+                    patternExclusionIndexes.add(exclusionPattern);
+                    exclusionPatternRiskWords[exclusionPattern] = i;
+                    exclusionPatternWords[exclusionPattern] = j;
+                    exclusionPatternLengths[exclusionPattern] = pattern.length();
+                    exclusionPattern++;
+                }
+            }
+        }
+
+        // Alphabet of the patterns, column 0 is shared by every other character
+        this.charClasses = new char[Character.MAX_VALUE + 1];
+        int classes = 1;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (charClasses[c] == 0) {
+                    charClasses[c] = (char) classes++;
+                }
+            }
+        }
+        this.alphabetSize = classes;
+
+        // Trie
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<long[]> outputs = new ArrayList<>();
+        List<List<Integer>> exclusionPatternOutputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        outputs.add(new long[2]);
+        exclusionPatternOutputs.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                int charClass = charClasses[pattern.charAt(i)];
+                Integer next = children.get(state).get(charClass);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(charClass, next);
+                    children.add(new HashMap<>());
+                    outputs.add(new long[2]);
+                    exclusionPatternOutputs.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            outputs.get(state)[patternExclusions.get(p) ? 1 : 0] |= patternRiskWords.get(p);
+            if (patternExclusionIndexes.get(p) >= 0) {
+                exclusionPatternOutputs.get(state).add(patternExclusionIndexes.get(p));
+            }
+        }
+
+        // Failure links resolved breadth first into a full transition table
+        int states = children.size();
+        this.transitions = new int[states * alphabetSize];
+        this.riskWordOutputs = new long[states];
+        this.exclusionOutputs = new long[states];
+        this.exclusionPatterns = new int[states][];
+        int[] failures = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        for (int charClass = 0; charClass < alphabetSize; charClass++) {
+            Integer child = children.get(ROOT).get(charClass);
+            if (child != null) {
+                transitions[charClass] = child;
+                failures[child] = ROOT;
+                queue.add(child);
+            }
+        }
+        riskWordOutputs[ROOT] = outputs.get(ROOT)[0];
+        exclusionOutputs[ROOT] = outputs.get(ROOT)[1];
+        exclusionPatterns[ROOT] = NO_PATTERNS;
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            riskWordOutputs[state] = outputs.get(state)[0] | riskWordOutputs[failures[state]];
+            exclusionOutputs[state] = outputs.get(state)[1] | exclusionOutputs[failures[state]];
+            exclusionPatterns[state] = concat(exclusionPatternOutputs.get(state), exclusionPatterns[failures[state]]);
+            for (int charClass = 0; charClass < alphabetSize; charClass++) {
+                Integer child = children.get(state).get(charClass);
+                int fallback = transitions[failures[state] * alphabetSize + charClass];
+                if (child != null) {
+                    transitions[state * alphabetSize + charClass] = child;
+                    failures[child] = fallback;
+                    queue.add(child);
+                } else {
+                    transitions[state * alphabetSize + charClass] = fallback;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles a matcher for the given vocabulary.
+     *
+     * @param riskWords      the risk words to count, duplicates being counted once
+     * @param exclusionWords the exclusion words that prevent a risk word from being counted when adjacent to it
+     * @return the compiled matcher
+     * @throws IllegalArgumentException if a word is blank or if there are more than {@link #MAX_RISK_WORDS} risk words
+     */
+    public static RiskWordMatcher compile(List<String> riskWords, List<String> exclusionWords) {
+        if (riskWords.stream().anyMatch(String::isBlank) || exclusionWords.stream().anyMatch(String::isBlank)) {
+            throw new IllegalArgumentException("Risk words and exclusion words can't be blank");
+        }
+        return new RiskWordMatcher(riskWords, exclusionWords);
+    }
+
+    /**
+     * Scans a note content and returns the risk words to be counted for it.
+     *
+     * @param content the note content
+     * @return a mask with bit {@code i} set when the i-th distinct risk word is present and not excluded
+     */
+    public long match(CharSequence content) {
+        int state = ROOT;
+        long found = 0L;
+        long excluded = 0L;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\u0130') {
+                // String.toLowerCase turns the dotted capital I into two characters
+                state = transitions[state * alphabetSize + charClasses['i']];
+                found |= riskWordOutputs[state];
+                excluded |= exclusionOutputs[state];
+                c = '\u0307';
+            } else {
+                c = Character.toLowerCase(c);
+            }
+            state = transitions[state * alphabetSize + charClasses[c]];
+            found |= riskWordOutputs[state];
+            excluded |= exclusionOutputs[state];
+        }
+        return found & ~excluded;
+    }
+
+    /**
+     * Scans a note content and returns every occurrence of the risk words to be counted for it, so that they can be highlighted.
+     * A risk word excluded somewhere in the content has none of its occurrences returned, as it isn't counted by {@link #match(CharSequence)}.
+     *
+     * @param content the note content
+     * @return the occurrences of the counted risk words, ordered by start index
+     */
+    public List<RiskWordSpan> spans(CharSequence content) {
+        return explain(content).matches();
+    }
+
+    /**
+     * Scans a note content and explains the risk words counted for it: the occurrences of the counted risk words, and for the
+     * risk words that aren't counted, their occurrences and the exclusion combinations that prevent them from counting.
+     * The content is scanned once, as by {@link #match(CharSequence)}, the offsets being recorded along the way.
+     *
+     * @param content the note content
+     * @return the explanation of the risk words of the note, with offsets in the original content
+     */
+    public RiskWordExplanation explain(CharSequence content) {
+        // Index in the content of each lower-cased character, the dotted capital I being lower-cased into two characters
+        int[] origins = new int[content.length() * 2];
+        int folded = 0;
+        List<int[]> occurrences = new ArrayList<>();
+        List<int[]> exclusionOccurrences = new ArrayList<>();
+        int state = ROOT;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\u0130') {
+                origins[folded] = i;
+                state = transitions[state * alphabetSize + charClasses['i']];
+                collect(state, folded++, occurrences, exclusionOccurrences);
+                c = '\u0307';
+            } else {
+                c = Character.toLowerCase(c);
+            }
+            origins[folded] = i;
+            state = transitions[state * alphabetSize + charClasses[c]];
+            collect(state, folded++, occurrences, exclusionOccurrences);
+        }
+
+        long excluded = 0L;
+        List<RiskWordExclusion> exclusions = new ArrayList<>(exclusionOccurrences.size());
+        for (int[] occurrence : exclusionOccurrences) {
+            int pattern = occurrence[0];
+            int last = occurrence[1];
+            excluded |= 1L << exclusionPatternRiskWords[pattern];
+            exclusions.add(new RiskWordExclusion(origins[last - exclusionPatternLengths[pattern] + 1], origins[last] + 1,
+                    distinctRiskWords.get(exclusionPatternRiskWords[pattern]), exclusionWords.get(exclusionPatternWords[pattern])));
+        }
+
+        long found = 0L;
+        List<RiskWordSpan> matches = new ArrayList<>();
+        List<RiskWordSpan> excludedMatches = new ArrayList<>();
+        for (int[] occurrence : occurrences) {
+            int riskWord = occurrence[0];
+            int last = occurrence[1];
+            found |= 1L << riskWord;
+            RiskWordSpan span = new RiskWordSpan(origins[last - foldedLengths[riskWord] + 1], origins[last] + 1, distinctRiskWords.get(riskWord));
+            ((excluded & (1L << riskWord)) == 0 ? matches : excludedMatches).add(span);
+        }
+        matches.sort(Comparator.comparingInt(RiskWordSpan::start).thenComparingInt(RiskWordSpan::end));
+        excludedMatches.sort(Comparator.comparingInt(RiskWordSpan::start).thenComparingInt(RiskWordSpan::end));
+        exclusions.sort(Comparator.comparingInt(RiskWordExclusion::start).thenComparingInt(RiskWordExclusion::end));
+        return new RiskWordExplanation(found & ~excluded, matches, excludedMatches, exclusions);
+    }
+
+    private void collect(int state, int last, List<int[]> occurrences, List<int[]> exclusionOccurrences) {
+        long riskWords = riskWordOutputs[state];
+        while (riskWords != 0) {
+            occurrences.add(new int[]{Long.numberOfTrailingZeros(riskWords), last});
+            riskWords &= riskWords - 1;
+        }
+        for (int pattern : exclusionPatterns[state]) {
+            exclusionOccurrences.add(new int[]{pattern, last});
+        }
+    }
+
+    private static int[] concat(List<Integer> patterns, int[] inherited) {
+        if (patterns.isEmpty()) {
+            return inherited;
+        }
+        int[] concatenated = new int[patterns.size() + inherited.length];
+        for (int i = 0; i < patterns.size(); i++) {
+            concatenated[i] = patterns.get(i);
+        }
+        System.arraycopy(inherited, 0, concatenated, patterns.size(), inherited.length);
+        return concatenated;
+    }
+
+    /**
+     * Returns the risk words corresponding to the bits of a mask returned by {@link #match(CharSequence)}.
+     *
+     * @param mask the mask of matched risk words
+     * @return the matched risk words, in vocabulary order
+     */
+    public List<String> riskWordsOf(long mask) {
+        List<String> matched = new ArrayList<>(Long.bitCount(mask));
+        for (int i = 0; i < distinctRiskWords.size(); i++) {
+            if ((mask & (1L << i)) != 0) {
+                matched.add(distinctRiskWords.get(i));
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Returns the mask corresponding to risk words, as the reverse of {@link #riskWordsOf(long)}.
+     *
+     * @param riskWords the matched risk words, words that are not risk words of this matcher being ignored
+     * @return a mask with bit {@code i} set when the i-th distinct risk word is one of the given words
+     */
+    public long maskOf(Collection<String> riskWords) {
+        long mask = 0L;
+        for (String riskWord : riskWords) {
+            int i = distinctRiskWords.indexOf(riskWord);
+            if (i >= 0) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Checks if this matcher was compiled from the given vocabulary.
+     *
+     * @param riskWords      the risk words
+     * @param exclusionWords the exclusion words
+     * @return true if both lists are equal to the ones this matcher was compiled from
+     */
+    public boolean isCompiledFrom(List<String> riskWords, List<String> exclusionWords) {
+        return this.riskWords.equals(riskWords) && this.exclusionWords.equals(exclusionWords);
+    }
+
+    /**
+     * Returns the distinct risk words of this matcher, bit {@code i} of a match mask standing for the i-th one.
+     *
+     * @return the distinct risk words
+     */
+    public List<String> getRiskWords() {
+        return distinctRiskWords;
+    }
+
+    /**
+     * Returns the exclusion words of this matcher.
+     *
+     * @return the exclusion words
+     */
+    public List<String> getExclusionWords() {
+        return exclusionWords;
+    }
+
+    private static String fold(String word) {
+        return word.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,12 @@
+package com.medilabo.microrisk.matcher;
+
+/**
+ * Occurrence of a risk word in a note content, as found by {@link RiskWordMatcher#spans(CharSequence)}
+ * and the {@code explain} methods of the matchers, an occurrence matched on tokens spanning the tokens of its phrase.
+ *
+ * @param start    the index of the first character of the occurrence
+ * @param end      the index following the last character of the occurrence
+ * @param riskWord the risk word, as written in the vocabulary
+ */
+public record RiskWordSpan(int start, int end, String riskWord) {
+}
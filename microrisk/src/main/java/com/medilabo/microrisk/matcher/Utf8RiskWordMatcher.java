@@ -0,0 +1,472 @@
+package com.medilabo.microrisk.matcher;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Compiled Aho-Corasick automaton counting risk words directly in the UTF-8 bytes of note contents, so that
+ * notes read as raw BSON are scanned without being decoded into a {@code String}.
+ * Bytes are folded while scanning: ASCII letters to lower case, and the letters of the Latin-1 supplement
+ * (the two-byte sequences starting with {@code 0xC3}) to lower case without their accent, so that "hemoglobine"
+ * and "HÉMOGLOBINE" both match "Hémoglobine". Other bytes are matched as they are.
+ * Blocks of 8 ASCII bytes are detected a {@code long} at a time and stepped through without any UTF-8 decoding,
+ * and only the states recognizing a pattern are flagged in the transition table, so that the scanning loop is a
+ * single table lookup per byte in the common case.
+ * Risk words are counted with the rule of {@link RiskWordMatcher}, with the same bit for each distinct risk word, but on
+ * the folded bytes: unlike {@link RiskWordMatcher}, which only folds case, a risk word written with other accents is
+ * counted, and letters beyond the Latin-1 supplement keep their case. The masks of both matchers may thus differ for
+ * the same content, so that notes are matched by a single one of them, see {@code RiskService.getMatchingMode()}.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class Utf8RiskWordMatcher {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ASCII_MASK = 0x8080808080808080L;
+    private static final int LATIN1_LEAD = 0xC3;
+    private static final int OUTPUT = 1;
+
+    /**
+     * Folded symbols of the second byte of {@code 0xC3} sequences: an ASCII letter, or the second byte of the
+     * lower-cased character when it has no accent to remove (e.g. "æ").
+     */
+    private static final int[] LATIN1_FOLDS = new int[64];
+
+    static {
+        for (int i = 0; i < LATIN1_FOLDS.length; i++) {
+            char c = (char) (0xC0 + i);
+            String folded = Normalizer.normalize(String.valueOf(Character.toLowerCase(c)), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}", "");
+            char f = folded.length() == 1 ? folded.charAt(0) : Character.toLowerCase(c);
+            LATIN1_FOLDS[i] = f < 0x80 ? f : 0x80 | (f & 0x3F);
+        }
+    }
+
+    private static final int ROOT = 0;
+
+    private static final int[] NO_PATTERNS = new int[0];
+
+    private final List<String> distinctRiskWords;
+    private final List<String> exclusionWords;
+    private final int alphabetSize;
+
+    /**
+     * Class of each ASCII byte, already folded.
+     */
+    private final int[] asciiClasses = new int[128];
+
+    /**
+     * Class of each byte that is neither ASCII nor a folded {@code 0xC3} sequence.
+     */
+    private final int[] byteClasses = new int[256];
+
+    /**
+     * Classes of the folded {@code 0xC3} sequences, by second byte: the class of their ASCII letter, or -1 when
+     * the sequence is matched as the lead byte followed by {@link #latin1SecondClasses}.
+     */
+    private final int[] latin1Classes = new int[64];
+    private final int[] latin1SecondClasses = new int[64];
+
+    /**
+     * Deterministic transition table, failure links already resolved. Entries are the offset of the target state
+     * ({@code state * alphabetSize}), with {@link #OUTPUT} set when the target state recognizes a pattern.
+     */
+    private final int[] transitions;
+    private final long[] riskWordOutputs;
+    private final long[] exclusionOutputs;
+
+    /**
+     * Exclusion combinations recognized when reaching a state, as indexes of the following arrays.
+     * Only read to explain a match, {@link #exclusionOutputs} being enough to count.
+     */
+    private final int[][] exclusionPatterns;
+
+    /**
+     * Distinct risk word, exclusion word and number of folded bytes of each exclusion combination.
+     */
+    private final int[] exclusionPatternRiskWords;
+    private final int[] exclusionPatternWords;
+    private final int[] exclusionPatternLengths;
+
+    /**
+     * Number of folded bytes of each distinct risk word.
+     */
+    private final int[] foldedLengths;
+
+    private Utf8RiskWordMatcher(List<String> riskWords, List<String> exclusionWords) {
+        this.distinctRiskWords = List.copyOf(new LinkedHashSet<>(riskWords));
+        this.exclusionWords = List.copyOf(exclusionWords);
+        if (distinctRiskWords.size() > RiskWordMatcher.MAX_RISK_WORDS) {
+            throw new IllegalArgumentException("A matcher supports at most " + RiskWordMatcher.MAX_RISK_WORDS + " risk words, got " + distinctRiskWords.size());
+        }
+
+        List<byte[]> patterns = new ArrayList<>();
+        List<Long> patternRiskWords = new ArrayList<>();
+        List<Boolean> patternExclusions = new ArrayList<>();
+        // Index of each exclusion combination, -1 for the risk words themselves
+        List<Integer> patternExclusionIndexes = new ArrayList<>();
+        int exclusionCombinations = distinctRiskWords.size() * this.exclusionWords.size() * 2;
+        this.exclusionPatternRiskWords = new int[exclusionCombinations];
+        this.exclusionPatternWords = new int[exclusionCombinations];
+        this.exclusionPatternLengths = new int[exclusionCombinations];
+        int exclusionPattern = 0;
+        this.foldedLengths = new int[distinctRiskWords.size()];
+        for (int i = 0; i < distinctRiskWords.size(); i++) {
+            String riskWord = distinctRiskWords.get(i);
+            long bit = 1L << i;
+            byte[] foldedRiskWord = fold(riskWord);
+            foldedLengths[i] = foldedRiskWord.length;
+            patterns.add(foldedRiskWord);
+            patternRiskWords.add(bit);
+            patternExclusions.add(false);
+            patternExclusionIndexes.add(-1);
+            for (int j = 0; j < this.exclusionWords.size(); j++) {
+                String exclusionWord = this.exclusionWords.get(j);
+                for (byte[] pattern : List.of(fold(exclusionWord + " " + riskWord), fold(riskWord + " " + exclusionWord))) {
+                    patterns.add(pattern);
+                    patternRiskWords.add(bit);
+                    patternExclusions.add(true);
+                    patternExclusionIndexes.add(exclusionPattern);
+                    exclusionPatternRiskWords[exclusionPattern] = i;
+                    exclusionPatternWords[exclusionPattern] = j;
+                    exclusionPatternLengths[exclusionPattern] = pattern.length;
+                    exclusionPattern++;
+                }
+            }
+        }
+
+        // Alphabet of the patterns, class 0 is shared by every other symbol
+        int[] symbolClasses = new int[256];
+        int classes = 1;
+        for (byte[] pattern : patterns) {
+            for (byte symbol : pattern) {
+                if (symbolClasses[symbol & 0xFF] == 0) {
+                    symbolClasses[symbol & 0xFF] = classes++;
+                }
+            }
+        }
+        // Even, so that the lowest bit of the state offsets is free for the OUTPUT flag
+        this.alphabetSize = classes + (classes & 1);
+        for (int b = 0; b < 128; b++) {
+            asciiClasses[b] = symbolClasses[Character.toLowerCase((char) b)];
+        }
+        System.arraycopy(symbolClasses, 0, byteClasses, 0, 256);
+        for (int i = 0; i < 64; i++) {
+            int fold = LATIN1_FOLDS[i];
+            latin1Classes[i] = fold < 0x80 ? symbolClasses[fold] : -1;
+            latin1SecondClasses[i] = fold < 0x80 ? 0 : symbolClasses[fold];
+        }
+
+        // Trie
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<long[]> outputs = new ArrayList<>();
+        List<List<Integer>> exclusionPatternOutputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        outputs.add(new long[2]);
+        exclusionPatternOutputs.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            int state = ROOT;
+            for (byte symbol : patterns.get(p)) {
+                int symbolClass = symbolClasses[symbol & 0xFF];
+                Integer next = children.get(state).get(symbolClass);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(symbolClass, next);
+                    children.add(new HashMap<>());
+                    outputs.add(new long[2]);
+                    exclusionPatternOutputs.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            outputs.get(state)[patternExclusions.get(p) ? 1 : 0] |= patternRiskWords.get(p);
+            if (patternExclusionIndexes.get(p) >= 0) {
+                exclusionPatternOutputs.get(state).add(patternExclusionIndexes.get(p));
+            }
+        }
+
+        // Failure links resolved breadth first into a full transition table of target states
+        int states = children.size();
+        int[] targets = new int[states * alphabetSize];
+        this.riskWordOutputs = new long[states];
+        this.exclusionOutputs = new long[states];
+        this.exclusionPatterns = new int[states][];
+        exclusionPatterns[ROOT] = NO_PATTERNS;
+        int[] failures = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbolClass = 0; symbolClass < alphabetSize; symbolClass++) {
+            Integer child = children.get(ROOT).get(symbolClass);
+            if (child != null) {
+                targets[symbolClass] = child;
+                failures[child] = ROOT;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            riskWordOutputs[state] = outputs.get(state)[0] | riskWordOutputs[failures[state]];
+            exclusionOutputs[state] = outputs.get(state)[1] | exclusionOutputs[failures[state]];
+            exclusionPatterns[state] = concat(exclusionPatternOutputs.get(state), exclusionPatterns[failures[state]]);
+            for (int symbolClass = 0; symbolClass < alphabetSize; symbolClass++) {
+                Integer child = children.get(state).get(symbolClass);
+                int fallback = targets[failures[state] * alphabetSize + symbolClass];
+                if (child != null) {
+                    targets[state * alphabetSize + symbolClass] = child;
+                    failures[child] = fallback;
+                    queue.add(child);
+                } else {
+                    targets[state * alphabetSize + symbolClass] = fallback;
+                }
+            }
+        }
+
+        this.transitions = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            int target = targets[i];
+            boolean output = riskWordOutputs[target] != 0 || exclusionOutputs[target] != 0;
+            transitions[i] = target * alphabetSize | (output ? OUTPUT : 0);
+        }
+    }
+
+    /**
+     * Compiles a matcher for the given vocabulary.
+     *
+     * @param riskWords      the risk words to count, duplicates being counted once
+     * @param exclusionWords the exclusion words that prevent a risk word from being counted when adjacent to it
+     * @return the compiled matcher
+     * @throws IllegalArgumentException if a word is blank or if there are more than {@link RiskWordMatcher#MAX_RISK_WORDS} risk words
+     */
+    public static Utf8RiskWordMatcher compile(List<String> riskWords, List<String> exclusionWords) {
+        if (riskWords.stream().anyMatch(String::isBlank) || exclusionWords.stream().anyMatch(String::isBlank)) {
+            throw new IllegalArgumentException("Risk words and exclusion words can't be blank");
+        }
+        return new Utf8RiskWordMatcher(riskWords, exclusionWords);
+    }
+
+    /**
+     * Scans UTF-8 bytes and returns the risk words to be counted for them.
+     *
+     * @param utf8 the UTF-8 bytes of the note content
+     * @return a mask with bit {@code i} set when the i-th distinct risk word is present and not excluded
+     */
+    public long match(byte[] utf8) {
+        return match(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Scans the remaining UTF-8 bytes of a buffer, without changing its position, and returns the risk words to be counted for them.
+     *
+     * @param utf8 the buffer of the UTF-8 bytes of the note content
+     * @return a mask with bit {@code i} set when the i-th distinct risk word is present and not excluded
+     */
+    public long match(ByteBuffer utf8) {
+        if (utf8.hasArray()) {
+            int from = utf8.arrayOffset() + utf8.position();
+            return match(utf8.array(), from, from + utf8.remaining());
+        }
+        byte[] bytes = new byte[utf8.remaining()];
+        utf8.duplicate().get(bytes);
+        return match(bytes);
+    }
+
+    /**
+     * Scans a range of UTF-8 bytes and returns the risk words to be counted for it.
+     *
+     * @param utf8 the bytes
+     * @param from the index of the first byte, inclusive
+     * @param to   the index of the last byte, exclusive
+     * @return a mask with bit {@code i} set when the i-th distinct risk word is present and not excluded
+     */
+    public long match(byte[] utf8, int from, int to) {
+        int offset = ROOT;
+        long found = 0L;
+        long excluded = 0L;
+        int i = from;
+        while (i < to) {
+            if (i + Long.BYTES <= to && ((long) LONGS.get(utf8, i) & ASCII_MASK) == 0) {
+                for (int end = i + Long.BYTES; i < end; i++) {
+                    int entry = transitions[offset + asciiClasses[utf8[i]]];
+                    offset = entry & ~OUTPUT;
+                    if (entry != offset) {
+                        found |= riskWordOutputs[offset / alphabetSize];
+                        excluded |= exclusionOutputs[offset / alphabetSize];
+                    }
+                }
+                continue;
+            }
+
+            int b = utf8[i] & 0xFF;
+            int symbolClass;
+            if (b < 0x80) {
+                symbolClass = asciiClasses[b];
+                i++;
+            } else if (b == LATIN1_LEAD && i + 1 < to && (utf8[i + 1] & 0xC0) == 0x80) {
+                int second = utf8[i + 1] & 0x3F;
+                symbolClass = latin1Classes[second];
+                if (symbolClass < 0) {
+                    int entry = transitions[offset + byteClasses[LATIN1_LEAD]];
+                    offset = entry & ~OUTPUT;
+                    if (entry != offset) {
+                        found |= riskWordOutputs[offset / alphabetSize];
+                        excluded |= exclusionOutputs[offset / alphabetSize];
+                    }
+                    symbolClass = latin1SecondClasses[second];
+                }
+                i += 2;
+            } else {
+                symbolClass = byteClasses[b];
+                i++;
+            }
+            int entry = transitions[offset + symbolClass];
+            offset = entry & ~OUTPUT;
+            if (entry != offset) {
+                found |= riskWordOutputs[offset / alphabetSize];
+                excluded |= exclusionOutputs[offset / alphabetSize];
+            }
+        }
+        return found & ~excluded;
+    }
+
+    /**
+     * Scans a note content and explains the risk words counted for it, as {@link RiskWordMatcher#explain(CharSequence)}
+     * does, but with the rule of this matcher: the content is stepped through as its UTF-8 bytes would be by
+     * {@link #match(byte[])}, the offsets of the characters being recorded along the way.
+     *
+     * @param content the note content
+     * @return the explanation of the risk words of the note, with offsets in the original content and the mask returned
+     * by {@link #match(byte[])} for the UTF-8 bytes of the content
+     */
+    public RiskWordExplanation explain(CharSequence content) {
+        // Symbol class of each step of the automaton, and index in the content of the character it comes from
+        int[] symbols = new int[content.length() * 3];
+        int[] origins = new int[symbols.length];
+        int steps = 0;
+        for (int i = 0; i < content.length(); ) {
+            int codePoint = Character.codePointAt(content, i);
+            if (codePoint < 0x80) {
+                origins[steps] = i;
+                symbols[steps++] = asciiClasses[codePoint];
+            } else if (codePoint >= 0xC0 && codePoint <= 0xFF) {
+                int second = codePoint & 0x3F;
+                if (latin1Classes[second] >= 0) {
+                    origins[steps] = i;
+                    symbols[steps++] = latin1Classes[second];
+                } else {
+                    origins[steps] = i;
+                    symbols[steps++] = byteClasses[LATIN1_LEAD];
+                    origins[steps] = i;
+                    symbols[steps++] = latin1SecondClasses[second];
+                }
+            } else {
+                for (byte b : Character.toString(codePoint).getBytes(StandardCharsets.UTF_8)) {
+                    origins[steps] = i;
+                    symbols[steps++] = byteClasses[b & 0xFF];
+                }
+            }
+            i += Character.charCount(codePoint);
+        }
+
+        List<int[]> occurrences = new ArrayList<>();
+        List<int[]> exclusionOccurrences = new ArrayList<>();
+        int offset = ROOT;
+        for (int step = 0; step < steps; step++) {
+            offset = transitions[offset + symbols[step]] & ~OUTPUT;
+            int state = offset / alphabetSize;
+            long riskWords = riskWordOutputs[state];
+            while (riskWords != 0) {
+                occurrences.add(new int[]{Long.numberOfTrailingZeros(riskWords), step});
+                riskWords &= riskWords - 1;
+            }
+            for (int pattern : exclusionPatterns[state]) {
+                exclusionOccurrences.add(new int[]{pattern, step});
+            }
+        }
+
+        long excluded = 0L;
+        List<RiskWordExclusion> exclusions = new ArrayList<>(exclusionOccurrences.size());
+        for (int[] occurrence : exclusionOccurrences) {
+            int pattern = occurrence[0];
+            int last = occurrence[1];
+            excluded |= 1L << exclusionPatternRiskWords[pattern];
+            exclusions.add(new RiskWordExclusion(origins[last - exclusionPatternLengths[pattern] + 1], end(content, origins[last]),
+                    distinctRiskWords.get(exclusionPatternRiskWords[pattern]), exclusionWords.get(exclusionPatternWords[pattern])));
+        }
+
+        long found = 0L;
+        List<RiskWordSpan> matches = new ArrayList<>();
+        List<RiskWordSpan> excludedMatches = new ArrayList<>();
+        for (int[] occurrence : occurrences) {
+            int riskWord = occurrence[0];
+            int last = occurrence[1];
+            found |= 1L << riskWord;
+            RiskWordSpan span = new RiskWordSpan(origins[last - foldedLengths[riskWord] + 1], end(content, origins[last]), distinctRiskWords.get(riskWord));
+            ((excluded & (1L << riskWord)) == 0 ? matches : excludedMatches).add(span);
+        }
+        matches.sort(Comparator.comparingInt(RiskWordSpan::start).thenComparingInt(RiskWordSpan::end));
+        excludedMatches.sort(Comparator.comparingInt(RiskWordSpan::start).thenComparingInt(RiskWordSpan::end));
+        exclusions.sort(Comparator.comparingInt(RiskWordExclusion::start).thenComparingInt(RiskWordExclusion::end));
+        return new RiskWordExplanation(found & ~excluded, matches, excludedMatches, exclusions);
+    }
+
+    /**
+     * Returns the index following the character starting at an index, a supplementary character spanning two chars.
+     */
+    private static int end(CharSequence content, int start) {
+        return start + Character.charCount(Character.codePointAt(content, start));
+    }
+
+    private static int[] concat(List<Integer> patterns, int[] inherited) {
+        if (patterns.isEmpty()) {
+            return inherited;
+        }
+        int[] concatenated = new int[patterns.size() + inherited.length];
+        for (int i = 0; i < patterns.size(); i++) {
+            concatenated[i] = patterns.get(i);
+        }
+        System.arraycopy(inherited, 0, concatenated, patterns.size(), inherited.length);
+        return concatenated;
+    }
+
+    /**
+     * Returns the distinct risk words of this matcher, bit {@code i} of a match mask standing for the i-th one.
+     *
+     * @return the distinct risk words
+     */
+    public List<String> getRiskWords() {
+        return distinctRiskWords;
+    }
+
+    /**
+     * Folds a word the way the scanned bytes are folded, so that it is matched by its folded UTF-8 bytes.
+     */
+    private static byte[] fold(String word) {
+        byte[] utf8 = word.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream folded = new ByteArrayOutputStream(utf8.length);
+        for (int i = 0; i < utf8.length; i++) {
+            int b = utf8[i] & 0xFF;
+            if (b < 0x80) {
+                folded.write(Character.toLowerCase((char) b));
+            } else if (b == LATIN1_LEAD && i + 1 < utf8.length && (utf8[i + 1] & 0xC0) == 0x80) {
+                int fold = LATIN1_FOLDS[utf8[++i] & 0x3F];
+                if (fold >= 0x80) {
+                    folded.write(LATIN1_LEAD);
+                }
+                folded.write(fold);
+            } else {
+                folded.write(b);
+            }
+        }
+        return folded.toByteArray();
+    }
+}
@@ -0,0 +1,40 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link MatchingMode#AGGREGATION} strategy: the rule of the {@link RiskWordMatcher} is evaluated by a MongoDB
+ * aggregation and only the matched risk words are transferred, instead of the note contents.
+ */
+@Component
+public class AggregationMatching extends TextSearchMatching {
+
+    @Override
+    public MatchingMode getMode() {
+        return MatchingMode.AGGREGATION;
+    }
+
+    /**
+     * Evaluates all the notes of the patient in a single aggregation, regardless of the saturation count.
+     */
+    @Override
+    public long findRiskWordsMask(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation) {
+        return vocabulary.getMatcher().maskOf(noteRepository.findRiskTermsByPatientId(vocabulary, patientId));
+    }
+
+    @Override
+    public Map<Long, Long> findRiskWordsMasks(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        Map<Long, Long> masks = new HashMap<>();
+        noteRepository.findRiskTermsByPatientIdIn(vocabulary, patientIds)
+                .forEach((patientId, riskTerms) -> masks.put(patientId, matcher.maskOf(riskTerms)));
+        return masks;
+    }
+}
@@ -0,0 +1,101 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.repository.ReactiveNoteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link MatchingMode#CONTENTS} strategy: the notes found by the text search are read from a cursor and each of them is
+ * scanned once by the {@link RiskWordMatcher}, looking for all the risk words and exclusion combinations at the same time.
+ * The notes are streamed from the {@link ReactiveNoteRepository} when reactive mode is enabled, as done with the
+ * {@code reactive} profile.
+ */
+@Component
+public class ContentsMatching extends TextSearchMatching {
+
+    @Autowired
+    private ReactiveNoteRepository reactiveNoteRepository;
+
+    /**
+     * Whether notes are read with the non-blocking {@link ReactiveNoteRepository}, as done with the {@code reactive} profile.
+     */
+    @Value("${microrisk.reactive.enabled:false}")
+    private boolean reactiveEnabled;
+
+    @Override
+    public MatchingMode getMode() {
+        return MatchingMode.CONTENTS;
+    }
+
+    /**
+     * Matches the notes of a patient from a cursor, which is closed as soon as the saturation count is reached, so that
+     * only the notes needed to classify the patient are read and a single note is held in memory at a time.
+     */
+    @Override
+    public long findRiskWordsMask(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation) {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        long mask = 0L;
+        try (Stream<Note> notes = noteRepository.streamNotesByContentAndPatientId(vocabulary.getSearchQuery(), patientId)) {
+            Iterator<Note> iterator = notes.iterator();
+            while (Long.bitCount(mask) < saturation.getAsLong() && iterator.hasNext()) {
+                mask |= matcher.match(iterator.next().getContent());
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public Map<Long, Long> findRiskWordsMasks(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        Map<Long, Long> masks = new HashMap<>();
+        for (Note note : noteRepository.findNotesByContentAndPatientIdIn(vocabulary.getSearchQuery(), patientIds)) {
+            masks.merge(note.getPatientId(), matcher.match(note.getContent()), (first, second) -> first | second);
+        }
+        return masks;
+    }
+
+    /**
+     * Streams the notes from the {@link ReactiveNoteRepository} in reactive mode, the subscription to the notes being
+     * cancelled once the saturation count is reached.
+     */
+    @Override
+    public Mono<Long> findRiskWordsMaskAsync(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation) {
+        if (!reactiveEnabled) {
+            return Mono.fromCallable(() -> findRiskWordsMask(vocabulary, patientId, saturation))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        return reactiveNoteRepository.findNotesByContentAndPatientId(vocabulary.getSearchQuery(), patientId)
+                .scan(0L, (mask, note) -> mask | matcher.match(note.getContent()))
+                .takeUntil(mask -> Long.bitCount(mask) >= saturation.getAsLong())
+                .last();
+    }
+
+    /**
+     * Streams the notes from the {@link ReactiveNoteRepository} in reactive mode.
+     */
+    @Override
+    public Mono<Map<Long, Long>> findRiskWordsMasksAsync(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        if (!reactiveEnabled) {
+            return Mono.fromCallable(() -> findRiskWordsMasks(vocabulary, patientIds))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        return reactiveNoteRepository.findNotesByContentAndPatientIdIn(vocabulary.getSearchQuery(), patientIds)
+                .collect(HashMap::new, (Map<Long, Long> masks, Note note) ->
+                        masks.merge(note.getPatientId(), matcher.match(note.getContent()), (first, second) -> first | second));
+    }
+}
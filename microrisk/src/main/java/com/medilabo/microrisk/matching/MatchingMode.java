@@ -0,0 +1,34 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.matcher.RiskTokenMatcher;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.matcher.Utf8RiskWordMatcher;
+
+/**
+ * How the risk words of the notes are matched, selected by the {@code microrisk.matching-mode} property.
+ * Each mode is implemented by a {@link RiskWordMatching}, which every path matching notes goes through, so that they all
+ * count the same risk words for the same notes.
+ */
+public enum MatchingMode {
+    /**
+     * Evaluated by a MongoDB aggregation, with the rule of the {@link RiskWordMatcher}.
+     */
+    AGGREGATION,
+    /**
+     * Matched on the stemmed, accent-free tokens of the notes by the {@link RiskTokenMatcher}.
+     */
+    TOKENS,
+    /**
+     * Matched in the UTF-8 bytes of the contents, regardless of accents, by the {@link Utf8RiskWordMatcher}.
+     */
+    UTF8,
+    /**
+     * Read from the risk masks stored with the notes, the notes without a mask of the current vocabulary being matched
+     * by the {@link RiskWordMatcher} and their masks being stored for the next reads.
+     */
+    NOTE_MASKS,
+    /**
+     * Matched in the contents by the {@link RiskWordMatcher}.
+     */
+    CONTENTS
+}
@@ -0,0 +1,75 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link MatchingMode#NOTE_MASKS} strategy: the risk masks stored with the notes are combined by a query covered by the
+ * {@code patientId_riskVocabulary_riskMask} index, and only the notes without a mask computed with the current vocabulary
+ * are read and matched by the {@link RiskWordMatcher}, their masks being stored for the next reads.
+ */
+@Component
+public class NoteMasksMatching extends TextSearchMatching {
+
+    @Override
+    public MatchingMode getMode() {
+        return MatchingMode.NOTE_MASKS;
+    }
+
+    /**
+     * Combines the stored masks first, the notes without a mask being only read if the combined masks don't already
+     * saturate the risk level.
+     */
+    @Override
+    public long findRiskWordsMask(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation) {
+        long mask = noteRepository.findRiskMaskByPatientId(vocabulary, patientId);
+        if (Long.bitCount(mask) >= saturation.getAsLong()) {
+            return mask;
+        }
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        Map<Note, Long> noteMasks = new LinkedHashMap<>();
+        try (Stream<Note> notes = noteRepository.streamUnmaskedNotesByContentAndPatientId(
+                vocabulary.getSearchQuery(), patientId, vocabulary.getFingerprint())) {
+            Iterator<Note> iterator = notes.iterator();
+            while (Long.bitCount(mask) < saturation.getAsLong() && iterator.hasNext()) {
+                Note note = iterator.next();
+                long noteMask = matcher.match(note.getContent());
+                mask |= noteMask;
+                noteMasks.put(note, noteMask);
+            }
+        }
+        if (!noteMasks.isEmpty()) {
+            noteRepository.saveRiskMasks(vocabulary, noteMasks);
+        }
+        return mask;
+    }
+
+    @Override
+    public Map<Long, Long> findRiskWordsMasks(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        Map<Long, Long> masks = new HashMap<>(noteRepository.findRiskMasksByPatientIdIn(vocabulary, patientIds));
+        List<Note> notes = noteRepository.findUnmaskedNotesByContentAndPatientIdIn(
+                vocabulary.getSearchQuery(), patientIds, vocabulary.getFingerprint());
+        Map<Note, Long> noteMasks = new LinkedHashMap<>();
+        for (Note note : notes) {
+            long noteMask = matcher.match(note.getContent());
+            masks.merge(note.getPatientId(), noteMask, (first, second) -> first | second);
+            noteMasks.put(note, noteMask);
+        }
+        if (!noteMasks.isEmpty()) {
+            noteRepository.saveRiskMasks(vocabulary, noteMasks);
+        }
+        return masks;
+    }
+}
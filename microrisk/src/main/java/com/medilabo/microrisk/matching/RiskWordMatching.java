@@ -0,0 +1,115 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Strategy matching the risk words of the notes in one {@link MatchingMode}, the one selected being used by every
+ * computation of the risk service.
+ * All the masks returned have bit {@code i} standing for the i-th distinct risk word of the {@link RiskWordMatcher}
+ * of the vocabulary, whatever the mode.
+ */
+public interface RiskWordMatching {
+
+    /**
+     * Returns the mode implemented by this strategy.
+     *
+     * @return the {@link MatchingMode} selecting this strategy
+     */
+    MatchingMode getMode();
+
+    /**
+     * Returns the risk words to be counted for a content, matched as the notes are in this mode.
+     *
+     * @param vocabulary the vocabulary snapshot to match the content with
+     * @param content    the content to match
+     * @return a mask of the counted risk words
+     */
+    long match(RiskVocabulary vocabulary, CharSequence content);
+
+    /**
+     * Explains the risk words to be counted for a content, matched as by {@link #match(RiskVocabulary, CharSequence)},
+     * so that the explained mask is the counted one.
+     *
+     * @param vocabulary the vocabulary snapshot to match the content with
+     * @param content    the content to explain
+     * @return the explanation of the risk words of the content, with offsets in the content
+     */
+    RiskWordExplanation explain(RiskVocabulary vocabulary, CharSequence content);
+
+    /**
+     * Finds the risk words to be counted in the notes of a patient, until the risk level of the patient is saturated.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     * @param patientId  the ID of the patient whose notes will be analyzed
+     * @param saturation supplies the count of risk words from which the risk level of the patient can't change anymore,
+     *                   read after each note so that it can be lowered once the demographics of the patient are known
+     * @return the mask of the counted risk words, complete as long as it has fewer risk words than the saturation count
+     */
+    long findRiskWordsMask(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation);
+
+    /**
+     * Finds the risk words to be counted for several patients, loading the notes of all the patients at once.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     * @param patientIds the IDs of the patients whose notes will be analyzed
+     * @return the mask of the counted risk words by patient ID, patients without any note that may have a risk word being absent
+     */
+    Map<Long, Long> findRiskWordsMasks(RiskVocabulary vocabulary, Collection<Long> patientIds);
+
+    /**
+     * Finds the risk words to be counted in each note of a patient.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     * @param patientId  the ID of the patient
+     * @return the masks of the counted risk words of the notes having some, by note ID
+     */
+    Map<String, Long> findNoteMasks(RiskVocabulary vocabulary, Long patientId);
+
+    /**
+     * Streams the notes of a patient that may have risk words or exclusions, to be explained. The stream must be closed after use.
+     *
+     * @param vocabulary the vocabulary snapshot the notes will be explained with
+     * @param patientId  the ID of the patient
+     * @return a stream of the notes to be explained
+     */
+    Stream<Note> streamNotesToExplain(RiskVocabulary vocabulary, Long patientId);
+
+    /**
+     * Finds the risk words to be counted in the notes of a patient without blocking the caller, as
+     * {@link #findRiskWordsMask(RiskVocabulary, Long, LongSupplier)} does.
+     * The blocking matching is run on the bounded elastic scheduler once the returned {@link Mono} is subscribed to.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     * @param patientId  the ID of the patient whose notes will be analyzed
+     * @param saturation supplies the count of risk words from which the risk level of the patient can't change anymore
+     * @return a Mono emitting the mask of the counted risk words
+     */
+    default Mono<Long> findRiskWordsMaskAsync(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation) {
+        return Mono.fromCallable(() -> findRiskWordsMask(vocabulary, patientId, saturation))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Finds the risk words to be counted for several patients without blocking the caller, as
+     * {@link #findRiskWordsMasks(RiskVocabulary, Collection)} does.
+     * The blocking matching is run on the bounded elastic scheduler once the returned {@link Mono} is subscribed to.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     * @param patientIds the IDs of the patients whose notes will be analyzed
+     * @return a Mono emitting the mask of the counted risk words by patient ID
+     */
+    default Mono<Map<Long, Long>> findRiskWordsMasksAsync(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        return Mono.fromCallable(() -> findRiskWordsMasks(vocabulary, patientIds))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
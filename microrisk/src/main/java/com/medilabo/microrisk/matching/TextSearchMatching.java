@@ -0,0 +1,51 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.repository.NoteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Base of the {@link RiskWordMatching} strategies reading the notes found by the MongoDB text search of the risk words,
+ * whose contents are matched by the {@link com.medilabo.microrisk.matcher.RiskWordMatcher} of the vocabulary unless
+ * {@link #match(RiskVocabulary, CharSequence)} and {@link #explain(RiskVocabulary, CharSequence)} are overridden.
+ */
+public abstract class TextSearchMatching implements RiskWordMatching {
+
+    @Autowired
+    protected NoteRepository noteRepository;
+
+    @Override
+    public long match(RiskVocabulary vocabulary, CharSequence content) {
+        return vocabulary.getMatcher().match(content);
+    }
+
+    @Override
+    public RiskWordExplanation explain(RiskVocabulary vocabulary, CharSequence content) {
+        return vocabulary.getMatcher().explain(content);
+    }
+
+    @Override
+    public Map<String, Long> findNoteMasks(RiskVocabulary vocabulary, Long patientId) {
+        Map<String, Long> noteMasks = new HashMap<>();
+        try (Stream<Note> notes = noteRepository.streamNotesByContentAndPatientId(vocabulary.getSearchQuery(), patientId)) {
+            notes.forEach(note -> {
+                long mask = match(vocabulary, note.getContent() == null ? "" : note.getContent());
+                if (mask != 0L) {
+                    noteMasks.put(note.getId(), mask);
+                }
+            });
+        }
+        return noteMasks;
+    }
+
+    @Override
+    public Stream<Note> streamNotesToExplain(RiskVocabulary vocabulary, Long patientId) {
+        return noteRepository.streamNotesByContentAndPatientId(vocabulary.getSearchQuery(), patientId);
+    }
+}
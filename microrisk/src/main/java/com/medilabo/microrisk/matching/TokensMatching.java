@@ -0,0 +1,94 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskTokenMatcher;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.repository.NoteRepository;
+import com.medilabo.microrisk.service.NoteTokenService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link MatchingMode#TOKENS} strategy: risk words are matched on the stemmed, accent-free tokens of the notes by the
+ * {@link RiskTokenMatcher}, the tokens of each version of a note being cached by the {@link NoteTokenService}, so that
+ * only the notes whose current version isn't tokenized yet are read, without any text search.
+ */
+@Component
+public class TokensMatching implements RiskWordMatching {
+
+    @Autowired
+    private NoteTokenService noteTokenService;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Override
+    public MatchingMode getMode() {
+        return MatchingMode.TOKENS;
+    }
+
+    @Override
+    public long match(RiskVocabulary vocabulary, CharSequence content) {
+        return vocabulary.getTokenMatcher().match(content);
+    }
+
+    @Override
+    public RiskWordExplanation explain(RiskVocabulary vocabulary, CharSequence content) {
+        return vocabulary.getTokenMatcher().explain(content);
+    }
+
+    /**
+     * Matches the cached tokens of all the notes of the patient, regardless of the saturation count.
+     */
+    @Override
+    public long findRiskWordsMask(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation) {
+        RiskTokenMatcher tokenMatcher = vocabulary.getTokenMatcher();
+        long mask = 0L;
+        for (long[] tokens : noteTokenService.getNoteTokens(patientId).values()) {
+            mask |= tokenMatcher.match(tokens);
+        }
+        return mask;
+    }
+
+    @Override
+    public Map<Long, Long> findRiskWordsMasks(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        RiskTokenMatcher tokenMatcher = vocabulary.getTokenMatcher();
+        Map<Long, Long> masks = new HashMap<>();
+        noteTokenService.getNoteTokens(patientIds).forEach((patientId, noteTokens) -> {
+            long mask = 0L;
+            for (long[] tokens : noteTokens.values()) {
+                mask |= tokenMatcher.match(tokens);
+            }
+            masks.put(patientId, mask);
+        });
+        return masks;
+    }
+
+    @Override
+    public Map<String, Long> findNoteMasks(RiskVocabulary vocabulary, Long patientId) {
+        RiskTokenMatcher tokenMatcher = vocabulary.getTokenMatcher();
+        Map<String, Long> noteMasks = new HashMap<>();
+        noteTokenService.getNoteTokens(patientId).forEach((noteId, tokens) -> {
+            long mask = tokenMatcher.match(tokens);
+            if (mask != 0L) {
+                noteMasks.put(noteId, mask);
+            }
+        });
+        return noteMasks;
+    }
+
+    /**
+     * Streams all the notes of the patient, the tokens of the risk words not being searchable by the text index.
+     */
+    @Override
+    public Stream<Note> streamNotesToExplain(RiskVocabulary vocabulary, Long patientId) {
+        return noteRepository.streamNotesByPatientId(patientId);
+    }
+}
@@ -0,0 +1,63 @@
+package com.medilabo.microrisk.matching;
+
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.matcher.Utf8RiskWordMatcher;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link MatchingMode#UTF8} strategy: the notes found by the text search are read as raw BSON and their UTF-8 contents
+ * are scanned by the {@link Utf8RiskWordMatcher} without being decoded, which also matches risk words regardless of their
+ * accents.
+ */
+@Component
+public class Utf8Matching extends TextSearchMatching {
+
+    @Override
+    public MatchingMode getMode() {
+        return MatchingMode.UTF8;
+    }
+
+    @Override
+    public long match(RiskVocabulary vocabulary, CharSequence content) {
+        return vocabulary.getUtf8Matcher().match(content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public RiskWordExplanation explain(RiskVocabulary vocabulary, CharSequence content) {
+        return vocabulary.getUtf8Matcher().explain(content);
+    }
+
+    @Override
+    public long findRiskWordsMask(RiskVocabulary vocabulary, Long patientId, LongSupplier saturation) {
+        Utf8RiskWordMatcher utf8Matcher = vocabulary.getUtf8Matcher();
+        long mask = 0L;
+        try (Stream<ByteBuffer> contents = noteRepository.streamNoteContentsByContentAndPatientId(vocabulary.getSearchQuery(), patientId)) {
+            Iterator<ByteBuffer> iterator = contents.iterator();
+            while (Long.bitCount(mask) < saturation.getAsLong() && iterator.hasNext()) {
+                mask |= utf8Matcher.match(iterator.next());
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public Map<Long, Long> findRiskWordsMasks(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        Utf8RiskWordMatcher utf8Matcher = vocabulary.getUtf8Matcher();
+        Map<Long, Long> masks = new HashMap<>();
+        try (Stream<Map.Entry<Long, ByteBuffer>> contents =
+                     noteRepository.streamNoteContentsByContentAndPatientIdIn(vocabulary.getSearchQuery(), patientIds)) {
+            contents.forEach(content -> masks.merge(content.getKey(), utf8Matcher.match(content.getValue()), (first, second) -> first | second));
+        }
+        return masks;
+    }
+}
@@ -1,29 +1,114 @@
 package com.medilabo.microrisk.repository;
 
 import com.medilabo.microrisk.domain.Note;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for accessing {@link Note} documents in the MongoDB database.
  * This interface extends {@link MongoRepository} to provide CRUD operations
- * and custom query methods for {@link Note} entities.
+ * and custom query methods for {@link Note} entities, as well as the aggregations of {@link NoteRiskTermRepository}.
  */
 @Repository
-public interface NoteRepository extends MongoRepository<Note, String> {
+public interface NoteRepository extends MongoRepository<Note, String>, NoteRiskTermRepository {
 
     /**
-     * Finds the contents of notes that match the specified search query
-     * for a given patient ID.
+     * Streams the notes that match the specified search query for a given patient ID.
+     * Only the content of the notes is retrieved. Notes are read from a cursor as the stream is consumed,
+     * in small batches so that closing the stream early spares reading the remaining notes.
+     * The stream must be closed after use.
      *
      * @param searchQuery the search query to match against note contents.
      * @param patientId   the ID of the patient whose notes are to be searched.
-     * @return a list of note contents that match the search criteria.
+     * @return a stream of the notes that match the search criteria.
      */
+    @Meta(cursorBatchSize = 100)
     @Query(value = "{ $text: { $search: ?0 }, patientId: ?1 }", fields = "{ 'content' : 1 }")
-    List<String> findNoteContentsByContentAndPatientId(String searchQuery, Long patientId);
+    Stream<Note> streamNotesByContentAndPatientId(String searchQuery, Long patientId);
+
+    /**
+     * Streams all the notes of a patient, for the risk words matched on tokens, which the text search of MongoDB
+     * doesn't stem the same way. Only the content of the notes is retrieved. The stream must be closed after use.
+     *
+     * @param patientId the ID of the patient whose notes are to be read.
+     * @return a stream of the notes of the patient.
+     */
+    @Meta(cursorBatchSize = 100)
+    @Query(value = "{ patientId: ?0 }", fields = "{ 'content' : 1 }")
+    Stream<Note> streamNotesByPatientId(Long patientId);
+
+    /**
+     * Streams the notes that match the specified search query for a given patient ID and whose risk mask
+     * was not computed with the given vocabulary, such as the notes written before risk masks existed.
+     * Only the content of the notes is retrieved. The stream must be closed after use.
+     *
+     * @param searchQuery    the search query to match against note contents.
+     * @param patientId      the ID of the patient whose notes are to be searched.
+     * @param riskVocabulary the fingerprint of the vocabulary of the risk masks that can be used instead of the contents.
+     * @return a stream of the notes that match the search criteria without a usable risk mask.
+     */
+    @Meta(cursorBatchSize = 100)
+    @Query(value = "{ $text: { $search: ?0 }, patientId: ?1, riskVocabulary: { $ne: ?2 } }", fields = "{ 'content' : 1 }")
+    Stream<Note> streamUnmaskedNotesByContentAndPatientId(String searchQuery, Long patientId, String riskVocabulary);
+
+    /**
+     * Finds all the notes of a patient, for the replay of their risk timeline.
+     * Only the content and the creation time of the notes are retrieved.
+     *
+     * @param patientId the ID of the patient whose notes are to be retrieved.
+     * @return a list of the notes of the patient, in no particular order.
+     */
+    @Query(value = "{ patientId: ?0 }", fields = "{ 'content' : 1, 'createdAt' : 1 }")
+    List<Note> findTimelineNotesByPatientId(Long patientId);
+
+    /**
+     * Finds the versions of the notes of several patients, to find the notes whose tokens aren't cached.
+     * Only the ID, the patient ID and the version of the notes are retrieved.
+     *
+     * @param patientIds the IDs of the patients whose notes are to be retrieved.
+     * @return a list of the notes of the patients, without their contents.
+     */
+    @Query(value = "{ patientId: { $in: ?0 } }", fields = "{ 'patientId' : 1, 'version' : 1 }")
+    List<Note> findNoteVersionsByPatientIdIn(Collection<Long> patientIds);
+
+    /**
+     * Finds notes by their IDs, to tokenize their contents.
+     * Only the content and the version of the notes are retrieved.
+     *
+     * @param ids the IDs of the notes.
+     * @return a list of the notes found.
+     */
+    @Query(value = "{ _id: { $in: ?0 } }", fields = "{ 'content' : 1, 'version' : 1 }")
+    List<Note> findNoteContentsByIdIn(Collection<String> ids);
+
+    /**
+     * Finds the notes that match the specified search query for several patients in a single query.
+     * Only the patient ID and the content of the notes are retrieved.
+     *
+     * @param searchQuery the search query to match against note contents.
+     * @param patientIds  the IDs of the patients whose notes are to be searched.
+     * @return a list of notes that match the search criteria.
+     */
+    @Query(value = "{ $text: { $search: ?0 }, patientId: { $in: ?1 } }", fields = "{ 'patientId' : 1, 'content' : 1 }")
+    List<Note> findNotesByContentAndPatientIdIn(String searchQuery, Collection<Long> patientIds);
+
+    /**
+     * Finds the notes that match the specified search query for several patients and whose risk mask
+     * was not computed with the given vocabulary, in a single query.
+     * Only the patient ID and the content of the notes are retrieved.
+     *
+     * @param searchQuery    the search query to match against note contents.
+     * @param patientIds     the IDs of the patients whose notes are to be searched.
+     * @param riskVocabulary the fingerprint of the vocabulary of the risk masks that can be used instead of the contents.
+     * @return a list of notes that match the search criteria without a usable risk mask.
+     */
+    @Query(value = "{ $text: { $search: ?0 }, patientId: { $in: ?1 }, riskVocabulary: { $ne: ?2 } }", fields = "{ 'patientId' : 1, 'content' : 1 }")
+    List<Note> findUnmaskedNotesByContentAndPatientIdIn(String searchQuery, Collection<Long> patientIds, String riskVocabulary);
 }
 
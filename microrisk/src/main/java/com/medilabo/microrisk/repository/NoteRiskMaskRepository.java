@@ -0,0 +1,22 @@
+package com.medilabo.microrisk.repository;
+
+import com.medilabo.microrisk.domain.NoteRiskMask;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for accessing {@link NoteRiskMask} documents in the MongoDB database.
+ */
+@Repository
+public interface NoteRiskMaskRepository extends MongoRepository<NoteRiskMask, String> {
+
+    /**
+     * Finds the masks of all the notes of a patient.
+     *
+     * @param patientId the ID of the patient
+     * @return the masks of the notes of the patient
+     */
+    List<NoteRiskMask> findByPatientId(Long patientId);
+}
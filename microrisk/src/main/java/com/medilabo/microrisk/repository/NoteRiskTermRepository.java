@@ -0,0 +1,89 @@
+package com.medilabo.microrisk.repository;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Custom queries of the {@link NoteRepository} evaluating the risk words inside MongoDB.
+ * Instead of returning the note contents to be matched by microrisk, the risk words and their exclusion
+ * combinations are evaluated by an aggregation pipeline, and only the distinct matched risk words are returned.
+ * The risk masks stored with each note by microrisk, the only service knowing the vocabulary, can also be read, covered
+ * by the {@code patientId_riskVocabulary_riskMask} index, without reading the note contents at all.
+ * Finally, the note contents can be read as raw BSON, to be scanned by a {@link com.medilabo.microrisk.matcher.Utf8RiskWordMatcher}
+ * without being decoded.
+ */
+public interface NoteRiskTermRepository {
+
+    /**
+     * Finds the distinct risk words counted in the notes of a patient.
+     *
+     * @param vocabulary the vocabulary whose risk words and exclusion words are evaluated
+     * @param patientId  the ID of the patient whose notes are to be searched
+     * @return the distinct risk words present in at least one note without being excluded in it
+     */
+    List<String> findRiskTermsByPatientId(RiskVocabulary vocabulary, Long patientId);
+
+    /**
+     * Finds the distinct risk words counted in the notes of several patients in a single aggregation.
+     *
+     * @param vocabulary the vocabulary whose risk words and exclusion words are evaluated
+     * @param patientIds the IDs of the patients whose notes are to be searched
+     * @return the distinct risk words by patient ID, patients without any counted risk word being absent
+     */
+    Map<Long, List<String>> findRiskTermsByPatientIdIn(RiskVocabulary vocabulary, Collection<Long> patientIds);
+
+    /**
+     * Combines the risk masks of the notes of a patient that were computed with the given vocabulary.
+     *
+     * @param vocabulary the vocabulary whose fingerprint the masks must have been computed with
+     * @param patientId  the ID of the patient whose notes are to be read
+     * @return the bitwise OR of the masks, bit {@code i} standing for the i-th distinct risk word of the vocabulary
+     */
+    long findRiskMaskByPatientId(RiskVocabulary vocabulary, Long patientId);
+
+    /**
+     * Combines the risk masks of the notes of several patients that were computed with the given vocabulary, in a single query.
+     *
+     * @param vocabulary the vocabulary whose fingerprint the masks must have been computed with
+     * @param patientIds the IDs of the patients whose notes are to be read
+     * @return the bitwise OR of the masks by patient ID, patients without any such note being absent
+     */
+    Map<Long, Long> findRiskMasksByPatientIdIn(RiskVocabulary vocabulary, Collection<Long> patientIds);
+
+    /**
+     * Stores the risk masks computed for notes with the given vocabulary, in a single unordered bulk write.
+     * A mask is only stored while the content of its note is still the one it was computed from, the note microservice
+     * (micronotes) dropping the mask whenever it writes a note.
+     *
+     * @param vocabulary the vocabulary whose fingerprint is stored with the masks
+     * @param riskMasks  the mask of each note, computed from the content of the note
+     */
+    void saveRiskMasks(RiskVocabulary vocabulary, Map<Note, Long> riskMasks);
+
+    /**
+     * Streams the UTF-8 contents of the notes that match the specified search query for a given patient ID.
+     * Notes are read as raw BSON from a cursor, in small batches, and each content is a view of the bytes of its
+     * document, no {@code String} being decoded. The stream must be closed after use.
+     *
+     * @param searchQuery the search query to match against note contents
+     * @param patientId   the ID of the patient whose notes are to be searched
+     * @return a stream of buffers holding the UTF-8 bytes of the contents between their position and limit
+     */
+    Stream<ByteBuffer> streamNoteContentsByContentAndPatientId(String searchQuery, Long patientId);
+
+    /**
+     * Streams the UTF-8 contents of the notes that match the specified search query for several patients, read as
+     * {@link #streamNoteContentsByContentAndPatientId(String, Long)} does. The stream must be closed after use.
+     *
+     * @param searchQuery the search query to match against note contents
+     * @param patientIds  the IDs of the patients whose notes are to be searched
+     * @return a stream of the patient ID of each note found, with a buffer holding the UTF-8 bytes of its content
+     */
+    Stream<Map.Entry<Long, ByteBuffer>> streamNoteContentsByContentAndPatientIdIn(String searchQuery, Collection<Long> patientIds);
+}
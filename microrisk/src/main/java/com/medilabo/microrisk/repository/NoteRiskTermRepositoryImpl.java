@@ -0,0 +1,228 @@
+package com.medilabo.microrisk.repository;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.mongodb.client.MongoCursor;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementation of the {@link NoteRiskTermRepository} fragment with a {@link MongoTemplate}.
+ * The pipeline reproduces the rule of {@link com.medilabo.microrisk.matcher.RiskWordMatcher}: a risk word is counted
+ * for a note when it appears in it, case insensitively, and neither "exclusion word + risk word" nor
+ * "risk word + exclusion word" does.
+ */
+public class NoteRiskTermRepositoryImpl implements NoteRiskTermRepository {
+
+    private static final String NOTES = "notes";
+    private static final String CONTENT = "content";
+    private static final String PATIENT_ID = "patientId";
+    private static final byte[] CONTENT_NAME = CONTENT.getBytes(StandardCharsets.UTF_8);
+    private static final int CURSOR_BATCH_SIZE = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<String> findRiskTermsByPatientId(RiskVocabulary vocabulary, Long patientId) {
+        List<String> riskTerms = findRiskTerms(vocabulary, patientId).get(patientId);
+        return riskTerms == null ? List.of() : riskTerms;
+    }
+
+    @Override
+    public Map<Long, List<String>> findRiskTermsByPatientIdIn(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        return findRiskTerms(vocabulary, new Document("$in", patientIds));
+    }
+
+    @Override
+    public long findRiskMaskByPatientId(RiskVocabulary vocabulary, Long patientId) {
+        return findRiskMasks(vocabulary, patientId).getOrDefault(patientId, 0L);
+    }
+
+    @Override
+    public Map<Long, Long> findRiskMasksByPatientIdIn(RiskVocabulary vocabulary, Collection<Long> patientIds) {
+        return findRiskMasks(vocabulary, new Document("$in", patientIds));
+    }
+
+    @Override
+    public void saveRiskMasks(RiskVocabulary vocabulary, Map<Note, Long> riskMasks) {
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+        riskMasks.forEach((note, riskMask) -> bulkOperations.updateOne(
+                new Query(Criteria.where("id").is(note.getId()).and(CONTENT).is(note.getContent())),
+                new Update().set("riskMask", riskMask).set("riskVocabulary", vocabulary.getFingerprint())));
+        bulkOperations.execute();
+    }
+
+    @Override
+    public Stream<ByteBuffer> streamNoteContentsByContentAndPatientId(String searchQuery, Long patientId) {
+        return streamRawNotes(new Document("$text", new Document("$search", searchQuery)).append("patientId", patientId),
+                new Document(CONTENT, 1))
+                .map(NoteRiskTermRepositoryImpl::contentOf);
+    }
+
+    @Override
+    public Stream<Map.Entry<Long, ByteBuffer>> streamNoteContentsByContentAndPatientIdIn(String searchQuery, Collection<Long> patientIds) {
+        return streamRawNotes(new Document("$text", new Document("$search", searchQuery)).append("patientId", new Document("$in", patientIds)),
+                new Document(PATIENT_ID, 1).append(CONTENT, 1))
+                .map(note -> Map.entry(note.getNumber(PATIENT_ID).longValue(), contentOf(note)));
+    }
+
+    private Stream<RawBsonDocument> streamRawNotes(Document filter, Document projection) {
+        MongoCursor<RawBsonDocument> cursor = mongoTemplate.getCollection(NOTES)
+                .withDocumentClass(RawBsonDocument.class)
+                .find(filter)
+                .projection(projection)
+                .batchSize(CURSOR_BATCH_SIZE)
+                .cursor();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
+    /**
+     * Locates the content string in the bytes of a raw note: the document is walked field by field, from its
+     * length-prefixed layout, and a view of the UTF-8 bytes of the content is returned.
+     * Notes without a content, or whose fields can't be walked, are decoded the usual way.
+     */
+    private static ByteBuffer contentOf(RawBsonDocument note) {
+        ByteBuffer bson = note.getByteBuffer().asNIO().order(ByteOrder.LITTLE_ENDIAN);
+        int start = bson.position();
+        int end = start + bson.getInt(start) - 1;
+        int i = start + Integer.BYTES;
+        while (i < end) {
+            byte type = bson.get(i++);
+            int nameStart = i;
+            while (bson.get(i) != 0) {
+                i++;
+            }
+            boolean content = isName(bson, nameStart, i, CONTENT_NAME);
+            i++;
+            if (type == BsonType.STRING.getValue()) {
+                int length = bson.getInt(i);
+                if (content) {
+                    return bson.duplicate().limit(i + Integer.BYTES + length - 1).position(i + Integer.BYTES);
+                }
+                i += Integer.BYTES + length;
+            } else if (type == BsonType.OBJECT_ID.getValue()) {
+                i += 12;
+            } else if (type == BsonType.INT32.getValue()) {
+                i += Integer.BYTES;
+            } else if (type == BsonType.INT64.getValue() || type == BsonType.DOUBLE.getValue()) {
+                i += Long.BYTES;
+            } else if (type == BsonType.DOCUMENT.getValue() || type == BsonType.ARRAY.getValue()) {
+                i += bson.getInt(i);
+            } else {
+                break;
+            }
+        }
+        String decoded = note.containsKey(CONTENT) && note.get(CONTENT).isString() ? note.getString(CONTENT).getValue() : "";
+        return ByteBuffer.wrap(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isName(ByteBuffer bson, int from, int to, byte[] name) {
+        if (to - from != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (bson.get(from + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the masks with a query covered by the {@code patientId_riskVocabulary_riskMask} index. The masks are combined
+     * here rather than with {@code $bitOr}, which requires MongoDB 7.
+     */
+    private Map<Long, Long> findRiskMasks(RiskVocabulary vocabulary, Object patientIdFilter) {
+        BasicQuery query = new BasicQuery(
+                new Document("patientId", patientIdFilter).append("riskVocabulary", vocabulary.getFingerprint()),
+                new Document("_id", 0).append("patientId", 1).append("riskMask", 1));
+
+        Map<Long, Long> riskMasksByPatient = new HashMap<>();
+        for (Document result : mongoTemplate.find(query, Document.class, NOTES)) {
+            Number riskMask = (Number) result.get("riskMask");
+            if (riskMask != null) {
+                riskMasksByPatient.merge(((Number) result.get("patientId")).longValue(), riskMask.longValue(),
+                        (first, second) -> first | second);
+            }
+        }
+        return riskMasksByPatient;
+    }
+
+    private Map<Long, List<String>> findRiskTerms(RiskVocabulary vocabulary, Object patientIdFilter) {
+        Document match = new Document("$text", new Document("$search", vocabulary.getSearchQuery()))
+                .append("patientId", patientIdFilter);
+        Document riskTerms = new Document("$filter", new Document("input", riskTermExpressions(vocabulary))
+                .append("cond", new Document("$ne", Arrays.asList("$$this", null))));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                stage("$match", match),
+                stage("$project", new Document("_id", 0).append("patientId", 1).append("riskTerms", riskTerms)),
+                stage("$unwind", "$riskTerms"),
+                stage("$group", new Document("_id", "$patientId").append("riskTerms", new Document("$addToSet", "$riskTerms"))));
+
+        Map<Long, List<String>> riskTermsByPatient = new HashMap<>();
+        for (Document result : mongoTemplate.aggregate(aggregation, NOTES, Document.class)) {
+            riskTermsByPatient.put(((Number) result.get("_id")).longValue(), result.getList("riskTerms", String.class));
+        }
+        return riskTermsByPatient;
+    }
+
+    /**
+     * Builds one expression per distinct risk word, evaluating to the risk word when it is counted for the note
+     * and to null otherwise.
+     */
+    private static List<Document> riskTermExpressions(RiskVocabulary vocabulary) {
+        List<Document> expressions = new ArrayList<>();
+        for (String riskWord : vocabulary.getMatcher().getRiskWords()) {
+            Document counted = regexMatch(Pattern.quote(riskWord));
+            if (!vocabulary.getExclusionWords().isEmpty()) {
+                List<String> combinations = new ArrayList<>();
+                for (String exclusionWord : vocabulary.getExclusionWords()) {
+                    combinations.add(Pattern.quote(exclusionWord + " " + riskWord));
+                    combinations.add(Pattern.quote(riskWord + " " + exclusionWord));
+                }
+                Document excluded = regexMatch(String.join("|", combinations));
+                counted = new Document("$and", List.of(counted, new Document("$not", List.of(excluded))));
+            }
+            expressions.add(new Document("$cond", List.of(counted, riskWord, new Document("$literal", null))));
+        }
+        return expressions;
+    }
+
+    private static Document regexMatch(String regex) {
+        return new Document("$regexMatch", new Document("input", "$content")
+                .append("regex", regex)
+                .append("options", "i"));
+    }
+
+    private static AggregationOperation stage(String operator, Object specification) {
+        return context -> new Document(operator, specification);
+    }
+}
@@ -0,0 +1,40 @@
+package com.medilabo.microrisk.repository;
+
+import com.medilabo.microrisk.domain.Note;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * Non-blocking repository interface for accessing {@link Note} documents in the MongoDB database.
+ * This interface extends {@link ReactiveMongoRepository} and mirrors the queries of {@link NoteRepository}
+ * for when microrisk runs with the {@code reactive} profile.
+ */
+@Repository
+public interface ReactiveNoteRepository extends ReactiveMongoRepository<Note, String> {
+
+    /**
+     * Finds the notes that match the specified search query for a given patient ID.
+     * Only the content of the notes is retrieved.
+     *
+     * @param searchQuery the search query to match against note contents.
+     * @param patientId   the ID of the patient whose notes are to be searched.
+     * @return a Flux of the notes that match the search criteria.
+     */
+    @Query(value = "{ $text: { $search: ?0 }, patientId: ?1 }", fields = "{ 'content' : 1 }")
+    Flux<Note> findNotesByContentAndPatientId(String searchQuery, Long patientId);
+
+    /**
+     * Finds the notes that match the specified search query for several patients in a single query.
+     * Only the patient ID and the content of the notes are retrieved.
+     *
+     * @param searchQuery the search query to match against note contents.
+     * @param patientIds  the IDs of the patients whose notes are to be searched.
+     * @return a Flux of the notes that match the search criteria.
+     */
+    @Query(value = "{ $text: { $search: ?0 }, patientId: { $in: ?1 } }", fields = "{ 'patientId' : 1, 'content' : 1 }")
+    Flux<Note> findNotesByContentAndPatientIdIn(String searchQuery, Collection<Long> patientIds);
+}
@@ -0,0 +1,12 @@
+package com.medilabo.microrisk.repository;
+
+import com.medilabo.microrisk.domain.RiskStoreState;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for accessing {@link RiskStoreState} documents in the MongoDB database.
+ */
+@Repository
+public interface RiskStoreStateRepository extends MongoRepository<RiskStoreState, String> {
+}
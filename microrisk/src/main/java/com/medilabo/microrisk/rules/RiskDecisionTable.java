@@ -0,0 +1,264 @@
+package com.medilabo.microrisk.rules;
+
+import com.medilabo.microrisk.exception.InvalidRiskRulesException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Risk decision table compiled from declarative rules.
+ * Each rule reads {@code gender;age;count;level} and the first rule matching a patient gives their risk level.
+ * The gender is a single letter, compared regardless of case, and the age and the count of risk words are either
+ * a value ({@code 7}), a range ({@code 2-5}), an open range ({@code 31+}) or any value ({@code *}).
+ * Lines that are blank or start with {@code #} are ignored.
+ * <p>
+ * At compile time, every rule is evaluated once per (gender, age bucket, count) cell, ages being grouped into the buckets
+ * delimited by the bounds used in the rules and counts being capped above the highest bound. Classifying a patient is then
+ * a lookup in a flat array, without evaluating any rule nor allocating.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class RiskDecisionTable {
+
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+    private static final char ANY_GENDER = '*';
+
+    private final List<Rule> rules;
+
+    /**
+     * Maps an ASCII character to the index of the gender it stands for, 0 standing for every other gender.
+     */
+    private final int[] genderIndexes = new int[128];
+    private final int genders;
+
+    /**
+     * Maps an age, clamped to {@code [0, maxAge]}, to its bucket.
+     */
+    private final int[] ageBuckets;
+    private final int maxAge;
+    private final int buckets;
+
+    private final int countCap;
+
+    /**
+     * Risk levels, indexed by {@code (gender * buckets + bucket) * (countCap + 1) + count}.
+     */
+    private final String[] levels;
+
+    /**
+     * Lowest count from which the risk level doesn't change anymore, indexed by {@code gender * buckets + bucket}.
+     */
+    private final int[] saturations;
+
+    /**
+     * Risk level of the patients without any risk word when it is the same whatever their age and gender, null otherwise.
+     */
+    private final String levelWithoutRiskWords;
+
+    private RiskDecisionTable(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+
+        List<Character> genderCodes = new ArrayList<>();
+        genderCodes.add(null);
+        TreeSet<Integer> ageBounds = new TreeSet<>(List.of(0));
+        int countCap = 0;
+        for (Rule rule : rules) {
+            if (rule.gender() != ANY_GENDER && !genderCodes.contains(rule.gender())) {
+                genderIndexes[rule.gender()] = genderCodes.size();
+                genderIndexes[Character.toLowerCase(rule.gender())] = genderCodes.size();
+                genderCodes.add(rule.gender());
+            }
+            ageBounds.add(rule.minAge());
+            if (rule.maxAge() != UNBOUNDED) {
+                ageBounds.add(rule.maxAge() + 1);
+            }
+            countCap = Math.max(countCap, rule.minCount());
+            if (rule.maxCount() != UNBOUNDED) {
+                countCap = Math.max(countCap, rule.maxCount() + 1);
+            }
+        }
+        this.genders = genderCodes.size();
+        this.countCap = countCap;
+
+        // One bucket starts at each bound, the last one being open ended
+        List<Integer> bucketStarts = List.copyOf(ageBounds);
+        this.maxAge = ageBounds.last();
+        this.buckets = bucketStarts.size();
+        this.ageBuckets = new int[maxAge + 1];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int end = bucket + 1 < buckets ? bucketStarts.get(bucket + 1) : maxAge + 1;
+            for (int age = bucketStarts.get(bucket); age < end; age++) {
+                ageBuckets[age] = bucket;
+            }
+        }
+
+        this.levels = new String[genders * buckets * (countCap + 1)];
+        for (int gender = 0; gender < genders; gender++) {
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                for (int count = 0; count <= countCap; count++) {
+                    levels[(gender * buckets + bucket) * (countCap + 1) + count] =
+                            evaluate(genderCodes.get(gender), bucketStarts.get(bucket), count);
+                }
+            }
+        }
+
+        this.saturations = new int[genders * buckets];
+        for (int cell = 0; cell < genders * buckets; cell++) {
+            int offset = cell * (countCap + 1);
+            int saturation = countCap;
+            while (saturation > 0 && levels[offset + saturation - 1].equals(levels[offset + countCap])) {
+                saturation--;
+            }
+            saturations[cell] = saturation;
+        }
+
+        String levelWithoutRiskWords = levels[0];
+        for (int cell = 1; cell < genders * buckets && levelWithoutRiskWords != null; cell++) {
+            if (!levels[cell * (countCap + 1)].equals(levelWithoutRiskWords)) {
+                levelWithoutRiskWords = null;
+            }
+        }
+        this.levelWithoutRiskWords = levelWithoutRiskWords;
+    }
+
+    /**
+     * Parses and compiles a decision table.
+     *
+     * @param lines the lines of the rules table
+     * @return the compiled decision table
+     * @throws InvalidRiskRulesException if a line can't be parsed, or if no rule matches some patients
+     */
+    public static RiskDecisionTable parse(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                rules.add(parseRule(line, i + 1));
+            }
+        }
+        if (rules.isEmpty()) {
+            throw new InvalidRiskRulesException("The risk rules table has no rule");
+        }
+        return new RiskDecisionTable(rules);
+    }
+
+    /**
+     * Determines a risk level from the age and gender of a patient and the number of distinct risk words found in their notes.
+     *
+     * @param age                 the age of the patient
+     * @param gender              the gender of the patient
+     * @param riskWordOccurrences the number of distinct risk words found in the notes of the patient
+     * @return the risk level given by the first matching rule
+     */
+    public String classify(int age, String gender, long riskWordOccurrences) {
+        int count = (int) Math.min(Math.max(riskWordOccurrences, 0L), countCap);
+        return levels[cell(age, gender) * (countCap + 1) + count];
+    }
+
+    /**
+     * Returns the lowest number of risk words from which adding risk words doesn't change the risk level of a patient,
+     * so that counting the risk words of the patient can stop once it is reached.
+     *
+     * @param age    the age of the patient
+     * @param gender the gender of the patient
+     * @return the count from which the risk level of the patient is saturated, at most {@link #getCountCap()}
+     */
+    public int saturationCount(int age, String gender) {
+        return saturations[cell(age, gender)];
+    }
+
+    /**
+     * Returns the risk level of the patients whose notes contain no risk word, when it doesn't depend on their age and gender,
+     * so that it can be given without knowing their demographics.
+     *
+     * @return the risk level of the patients without any risk word, or null if it depends on their age or gender
+     */
+    public String getLevelWithoutRiskWords() {
+        return levelWithoutRiskWords;
+    }
+
+    /**
+     * Returns the number of rules of this table.
+     *
+     * @return the number of rules
+     */
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * Returns the lowest number of risk words from which adding risk words doesn't change the risk level anymore,
+     * whatever the age and gender of the patient.
+     *
+     * @return the count above which the table is capped
+     */
+    public int getCountCap() {
+        return countCap;
+    }
+
+    private int cell(int age, String gender) {
+        int genderIndex = gender != null && gender.length() == 1 && gender.charAt(0) < 128 ? genderIndexes[gender.charAt(0)] : 0;
+        int bucket = ageBuckets[Math.min(Math.max(age, 0), maxAge)];
+        return genderIndex * buckets + bucket;
+    }
+
+    private String evaluate(Character gender, int age, int count) {
+        for (Rule rule : rules) {
+            if (rule.matches(gender, age, count)) {
+                return rule.level();
+            }
+        }
+        throw new InvalidRiskRulesException("No risk rule matches gender " + (gender == null ? "other" : gender)
+                + ", age " + age + " and " + count + " risk words");
+    }
+
+    private static Rule parseRule(String line, int lineNumber) {
+        String[] fields = line.split(";", -1);
+        if (fields.length != 4) {
+            throw new InvalidRiskRulesException("Line " + lineNumber + ": expected gender;age;count;level but got " + line);
+        }
+        String gender = fields[0].strip();
+        if (!gender.equals(String.valueOf(ANY_GENDER)) && !(gender.length() == 1 && Character.isLetter(gender.charAt(0)) && gender.charAt(0) < 128)) {
+            throw new InvalidRiskRulesException("Line " + lineNumber + ": gender must be a single letter or *, got " + gender);
+        }
+        String level = fields[3].strip();
+        if (level.isEmpty()) {
+            throw new InvalidRiskRulesException("Line " + lineNumber + ": level can't be blank");
+        }
+        int[] age = parseRange(fields[1].strip(), lineNumber);
+        int[] count = parseRange(fields[2].strip(), lineNumber);
+        return new Rule(Character.toUpperCase(gender.charAt(0)), age[0], age[1], count[0], count[1], level);
+    }
+
+    private static int[] parseRange(String range, int lineNumber) {
+        try {
+            if (range.equals("*")) {
+                return new int[]{0, UNBOUNDED};
+            } else if (range.endsWith("+")) {
+                return new int[]{Integer.parseInt(range.substring(0, range.length() - 1)), UNBOUNDED};
+            } else if (range.contains("-")) {
+                String[] bounds = range.split("-");
+                int min = Integer.parseInt(bounds[0]);
+                int max = Integer.parseInt(bounds[1]);
+                if (min <= max) {
+                    return new int[]{min, max};
+                }
+            } else {
+                int value = Integer.parseInt(range);
+                return new int[]{value, value};
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            // Reported below
+        }
+        throw new InvalidRiskRulesException("Line " + lineNumber + ": invalid range " + range);
+    }
+
+    private record Rule(char gender, int minAge, int maxAge, int minCount, int maxCount, String level) {
+
+        boolean matches(Character patientGender, int age, int count) {
+            return (gender == ANY_GENDER || (patientGender != null && gender == patientGender))
+                    && age >= minAge && age <= maxAge
+                    && count >= minCount && count <= maxCount;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.medilabo.microrisk.service;
+
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.dto.CohortDto;
+import com.medilabo.microrisk.exception.InvalidCohortQueryException;
+import com.medilabo.microrisk.index.PatientBitmap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service class maintaining an in-memory inverted index of the risk store, from each risk word and from each risk level
+ * to the {@link PatientBitmap} of the patients having it, so that cohorts are found without computing the risk of every patient.
+ * The index is rebuilt from the materialized risks of the patients when the application starts and when the store is rebuilt,
+ * and is updated by the {@link RiskStoreService} each time the risk of a patient is saved.
+ * Risk levels are the ones computed at the time of the last update or rebuild, a patient whose age crosses a threshold of
+ * the risk rules moving to their new level at the next update of their risk or rebuild of the index.
+ * The index also keeps the bitmap of the patients having at least one risk word, so that the {@link RiskService} can tell
+ * the patients without any, whose risk level doesn't need their demographics nor their notes.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "microrisk.store.enabled", havingValue = "true")
+public class CohortIndexService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RiskService riskService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, PatientBitmap> patientsByRiskWord = new HashMap<>();
+    private Map<String, PatientBitmap> patientsByRiskLevel = new HashMap<>();
+    private PatientBitmap patients = new PatientBitmap();
+    private PatientBitmap patientsWithRiskWords = new PatientBitmap();
+
+    /**
+     * Whether the index was built once, patients being unknown until then.
+     */
+    private volatile boolean built;
+
+    /**
+     * Rebuilds the index from the materialized risks of the patients, the risk level of each patient being evaluated today.
+     * The current index keeps answering queries until the new one replaces it.
+     *
+     * @return the number of patients indexed
+     */
+    public long rebuild() {
+        Map<String, PatientBitmap> riskWordIndex = new HashMap<>();
+        Map<String, PatientBitmap> riskLevelIndex = new HashMap<>();
+        PatientBitmap indexedPatients = new PatientBitmap();
+        PatientBitmap indexedPatientsWithRiskWords = new PatientBitmap();
+        try (Stream<PatientRisk> risks = mongoTemplate.stream(new Query(), PatientRisk.class)) {
+            risks.forEach(risk -> index(risk, riskService.determineRiskLevel(risk), riskWordIndex, riskLevelIndex,
+                    indexedPatients, indexedPatientsWithRiskWords));
+        }
+
+        lock.writeLock().lock();
+        try {
+            patientsByRiskWord = riskWordIndex;
+            patientsByRiskLevel = riskLevelIndex;
+            patients = indexedPatients;
+            patientsWithRiskWords = indexedPatientsWithRiskWords;
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Cohort index rebuilt for {} patients, {} of them with risk words, taking about {} bytes",
+                indexedPatients.cardinality(), indexedPatientsWithRiskWords.cardinality(), sizeInBytes());
+        return indexedPatients.cardinality();
+    }
+
+    /**
+     * Moves a patient to the bitmaps of their current risk words and risk level.
+     *
+     * @param risk the materialized risk of the patient, as just saved in the risk store
+     */
+    public void update(PatientRisk risk) {
+        if (!PatientBitmap.isSupported(risk.getPatientId())) {
+            log.warn("Patient {} can't be indexed, its ID being out of the range of a patient bitmap", risk.getPatientId());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            patientsByRiskWord.values().forEach(bitmap -> bitmap.remove(risk.getPatientId()));
+            patientsByRiskLevel.values().forEach(bitmap -> bitmap.remove(risk.getPatientId()));
+            patientsWithRiskWords.remove(risk.getPatientId());
+            index(risk, risk.getRiskLevel(), patientsByRiskWord, patientsByRiskLevel, patients, patientsWithRiskWords);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the patients whose notes mention all the given risk words, at least one of the "any" risk words if given,
+     * none of the excluded risk words, and whose risk level is one of the given levels if given.
+     * Words and levels are compared regardless of case. Without any word or level to match, the query starts from all the
+     * indexed patients, i.e. the patients having at least one note.
+     *
+     * @param allOf    the risk words the patients must all have
+     * @param anyOf    the risk words of which the patients must have at least one, ignored if empty
+     * @param noneOf   the risk words the patients must not have
+     * @param levelsOf the risk levels of which the patients must have one, ignored if empty
+     * @return the IDs of the matching patients, in ascending order
+     * @throws InvalidCohortQueryException if a word is not a risk word of the current vocabulary
+     */
+    public CohortDto findCohort(List<String> allOf, List<String> anyOf, List<String> noneOf, List<String> levelsOf) {
+        List<String> riskWords = normalize(riskService.getRiskWords());
+        Stream.of(allOf, anyOf, noneOf).flatMap(List::stream)
+                .filter(word -> !riskWords.contains(normalize(word)))
+                .findFirst()
+                .ifPresent(word -> {
+                    throw new InvalidCohortQueryException(word + " is not a risk word");
+                });
+
+        lock.readLock().lock();
+        try {
+            PatientBitmap cohort = null;
+            for (String word : allOf) {
+                cohort = and(cohort, lookup(patientsByRiskWord, word));
+            }
+            if (!anyOf.isEmpty()) {
+                cohort = and(cohort, union(patientsByRiskWord, anyOf));
+            }
+            if (!levelsOf.isEmpty()) {
+                cohort = and(cohort, union(patientsByRiskLevel, levelsOf));
+            }
+            if (cohort == null) {
+                cohort = patients;
+            }
+            for (String word : noneOf) {
+                cohort = cohort.andNot(lookup(patientsByRiskWord, word));
+            }
+            long[] patientIds = cohort.toArray();
+            return new CohortDto(patientIds.length, Arrays.stream(patientIds).boxed().toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the notes of a patient have no risk word, as of the last update of their risk.
+     * Only the patients of the risk store, i.e. the patients having notes, are known: nothing is told of the patients
+     * without notes, nor of the IDs of patients that don't exist. Nothing is known until the index is built once.
+     *
+     * @param patientId the ID of the patient
+     * @return true if the patient is known to have no risk word, false if they have some or if they aren't known
+     */
+    public boolean hasNoRiskWords(Long patientId) {
+        if (!built || !PatientBitmap.isSupported(patientId)) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return patients.contains(patientId) && !patientsWithRiskWords.contains(patientId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the memory taken by the bitmaps of the index.
+     *
+     * @return the approximate number of bytes retained by the index
+     */
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            return Stream.concat(patientsByRiskWord.values().stream(), patientsByRiskLevel.values().stream())
+                    .mapToLong(PatientBitmap::sizeInBytes)
+                    .sum() + patients.sizeInBytes() + patientsWithRiskWords.sizeInBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void index(PatientRisk risk, String riskLevel, Map<String, PatientBitmap> riskWordIndex,
+                              Map<String, PatientBitmap> riskLevelIndex, PatientBitmap indexedPatients,
+                              PatientBitmap indexedPatientsWithRiskWords) {
+        if (!PatientBitmap.isSupported(risk.getPatientId())) {
+            return;
+        }
+        indexedPatients.add(risk.getPatientId());
+        if (risk.getRiskWords() != null && !risk.getRiskWords().isEmpty()) {
+            indexedPatientsWithRiskWords.add(risk.getPatientId());
+            for (String riskWord : risk.getRiskWords()) {
+                riskWordIndex.computeIfAbsent(normalize(riskWord), word -> new PatientBitmap()).add(risk.getPatientId());
+            }
+        }
+        if (riskLevel != null) {
+            riskLevelIndex.computeIfAbsent(normalize(riskLevel), level -> new PatientBitmap()).add(risk.getPatientId());
+        }
+    }
+
+    private static PatientBitmap and(PatientBitmap cohort, PatientBitmap bitmap) {
+        return cohort == null ? bitmap : cohort.and(bitmap);
+    }
+
+    private static PatientBitmap union(Map<String, PatientBitmap> index, List<String> keys) {
+        PatientBitmap union = new PatientBitmap();
+        for (String key : keys) {
+            union = union.or(lookup(index, key));
+        }
+        return union;
+    }
+
+    private static PatientBitmap lookup(Map<String, PatientBitmap> index, String key) {
+        return index.getOrDefault(normalize(key), new PatientBitmap());
+    }
+
+    private static String normalize(String key) {
+        return key.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> normalize(List<String> keys) {
+        return keys.stream().map(CohortIndexService::normalize).collect(Collectors.toList());
+    }
+}
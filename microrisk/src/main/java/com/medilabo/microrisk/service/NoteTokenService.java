@@ -0,0 +1,79 @@
+package com.medilabo.microrisk.service;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.FrenchTokenizer;
+import com.medilabo.microrisk.repository.NoteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service class providing the token hashes of the notes, as produced by {@link FrenchTokenizer#tokenHashes(CharSequence)}.
+ * The tokens of each version of a note are cached, so that the notes are tokenized once and scoring them again, after a note
+ * of the patient changed or the vocabulary was reloaded, only reads the versions of the notes and the contents of the new ones.
+ * The tokens don't depend on the vocabulary and stay valid when it is reloaded.
+ */
+@Service
+public class NoteTokenService {
+
+    /**
+     * Name of the cache holding the token hashes of each version of a note, by note ID and version.
+     */
+    public static final String NOTE_TOKENS_CACHE = "noteTokens";
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Retrieves the token hashes of the notes of a patient.
+     *
+     * @param patientId the ID of the patient
+     * @return the token hashes of each note of the patient, by note ID
+     */
+    public Map<String, long[]> getNoteTokens(Long patientId) {
+        return getNoteTokens(List.of(patientId)).getOrDefault(patientId, Map.of());
+    }
+
+    /**
+     * Retrieves the token hashes of the notes of several patients with a query on the versions of their notes, and a query
+     * on the contents of the notes whose current version isn't cached yet, if any.
+     *
+     * @param patientIds the IDs of the patients
+     * @return for each patient having notes, the token hashes of each note, by note ID
+     */
+    public Map<Long, Map<String, long[]>> getNoteTokens(Collection<Long> patientIds) {
+        Cache cache = cacheManager.getCache(NOTE_TOKENS_CACHE);
+        Map<Long, Map<String, long[]>> noteTokens = new HashMap<>();
+        Map<String, Long> uncachedNotes = new HashMap<>();
+        for (Note note : noteRepository.findNoteVersionsByPatientIdIn(patientIds)) {
+            long[] tokens = cache.get(keyOf(note), long[].class);
+            if (tokens == null) {
+                uncachedNotes.put(note.getId(), note.getPatientId());
+            } else {
+                noteTokens.computeIfAbsent(note.getPatientId(), patientId -> new LinkedHashMap<>()).put(note.getId(), tokens);
+            }
+        }
+        if (!uncachedNotes.isEmpty()) {
+            for (Note note : noteRepository.findNoteContentsByIdIn(uncachedNotes.keySet())) {
+                long[] tokens = FrenchTokenizer.tokenHashes(note.getContent() == null ? "" : note.getContent());
+                cache.put(keyOf(note), tokens);
+                noteTokens.computeIfAbsent(uncachedNotes.get(note.getId()), patientId -> new LinkedHashMap<>()).put(note.getId(), tokens);
+            }
+        }
+        return noteTokens;
+    }
+
+    private static String keyOf(Note note) {
+        return note.getId() + ":" + (note.getVersion() == null ? 0L : note.getVersion());
+    }
+}
@@ -0,0 +1,64 @@
+package com.medilabo.microrisk.service;
+
+import com.medilabo.microrisk.domain.RiskPreviewBaseline;
+import com.medilabo.microrisk.dto.RiskPreviewDto;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.CookieValue;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Service class previewing the risk level a patient would have once a draft note is saved.
+ * The draft is matched on its own and combined with the risk words of the saved notes of the patient, which are loaded once
+ * and cached with their demographics by the {@link RiskService}, so that previewing a draft at typing rate only scans the draft.
+ */
+@Service
+public class RiskPreviewService {
+
+    @Autowired
+    private RiskService riskService;
+
+    /**
+     * Previews the risk level of a patient with a draft note.
+     * When the draft updates a saved note, the risk words of the saved version of the note are replaced by the ones of the draft.
+     *
+     * @param patientId the ID of the patient
+     * @param noteId    the ID of the note updated by the draft, or null for a new note
+     * @param content   the content of the draft
+     * @param token     the authentication token retrieved from the cookie
+     * @return a Mono emitting the risk level of the patient with the draft, the risk words counted and their occurrences in the draft
+     */
+    public Mono<RiskPreviewDto> previewRisk(Long patientId, String noteId, String content,
+                                            @CookieValue(value = "token", required = false) String token) {
+        RiskVocabulary vocabulary = riskService.getVocabulary();
+        String draft = content == null ? "" : content;
+        return riskService.loadRiskPreviewBaseline(patientId, token)
+                .flatMap(baseline -> {
+                    if (baseline.getVocabularyVersion() == vocabulary.getVersion()) {
+                        return Mono.just(baseline);
+                    }
+                    // Loaded while the vocabulary was being reloaded, its masks don't match the current matcher
+                    riskService.evictRisk(patientId);
+                    return riskService.loadRiskPreviewBaseline(patientId, token);
+                })
+                .map(baseline -> preview(baseline, vocabulary, noteId, draft));
+    }
+
+    private RiskPreviewDto preview(RiskPreviewBaseline baseline, RiskVocabulary vocabulary, String noteId, String draft) {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        RiskWordExplanation explanation = riskService.explainRiskWords(vocabulary, draft);
+        long mask = explanation.mask();
+        for (Map.Entry<String, Long> noteMask : baseline.getNoteMasks().entrySet()) {
+            if (!noteMask.getKey().equals(noteId)) {
+                mask |= noteMask.getValue();
+            }
+        }
+        String riskLevel = riskService.determineRiskLevel(riskService.calculateAge(baseline.getBirthdate()), baseline.getGender(), Long.bitCount(mask));
+        return new RiskPreviewDto(riskLevel, matcher.riskWordsOf(mask), explanation.matches());
+    }
+}
@@ -0,0 +1,76 @@
+package com.medilabo.microrisk.service;
+
+import com.medilabo.microrisk.exception.InvalidRiskRulesException;
+import com.medilabo.microrisk.rules.RiskDecisionTable;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Service class holding the risk decision table used to classify patients.
+ * The table is loaded from the rules file at startup and can be reloaded without a restart:
+ * the new table is compiled first and then swapped, so classifications never see a partially loaded table,
+ * and an invalid file leaves the current table in place.
+ */
+@Service
+public class RiskRulesService {
+
+    static final String DEFAULT_RULES = "risk-rules.csv";
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Value("${microrisk.rules.location:classpath:" + DEFAULT_RULES + "}")
+    private String rulesLocation;
+
+    private volatile RiskDecisionTable decisionTable = load(new ClassPathResource(DEFAULT_RULES));
+
+    /**
+     * Loads the rules file configured with {@code microrisk.rules.location}.
+     */
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Returns the current decision table.
+     *
+     * @return the current {@link RiskDecisionTable}
+     */
+    public RiskDecisionTable getDecisionTable() {
+        return decisionTable;
+    }
+
+    /**
+     * Reloads the rules file and swaps the decision table.
+     *
+     * @return the new decision table
+     * @throws InvalidRiskRulesException if the rules file is invalid, the current table being kept
+     */
+    public RiskDecisionTable reload() {
+        RiskDecisionTable reloaded = load(resourceLoader.getResource(rulesLocation));
+        decisionTable = reloaded;
+        return reloaded;
+    }
+
+    private static RiskDecisionTable load(Resource resource) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            List<String> lines = reader.lines().toList();
+            return RiskDecisionTable.parse(lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the risk rules from " + resource.getDescription(), e);
+        }
+    }
+}
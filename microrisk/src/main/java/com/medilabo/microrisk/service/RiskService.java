@@ -1,19 +1,49 @@
 package com.medilabo.microrisk.service;
 
-import com.medilabo.microrisk.domain.ExclusionWord;
-import com.medilabo.microrisk.domain.RiskWord;
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.domain.RiskPreviewBaseline;
+import com.medilabo.microrisk.dto.NoteExplanationDto;
+import com.medilabo.microrisk.dto.PatientDemographicsDto;
+import com.medilabo.microrisk.dto.PatientRiskLevelDto;
+import com.medilabo.microrisk.dto.RiskExplanationDto;
+import com.medilabo.microrisk.dto.RiskTimelineEntryDto;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.matching.MatchingMode;
+import com.medilabo.microrisk.matching.RiskWordMatching;
 import com.medilabo.microrisk.repository.NoteRepository;
+import com.medilabo.microrisk.repository.PatientRiskRepository;
+import com.medilabo.microrisk.rules.RiskDecisionTable;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import java.util.stream.Stream;
 
 
@@ -24,66 +54,171 @@ import java.util.stream.Stream;
 @Service
 public class RiskService {
 
+    /**
+     * Maximum number of patients whose demographics and notes are loaded with a single request.
+     */
+    static final int BATCH_SIZE = 1000;
+
+    /**
+     * Maximum number of patients whose risk levels are requested at once, the risk report streaming those of every patient.
+     */
+    public static final int MAX_BATCH_PATIENTS = 10 * BATCH_SIZE;
+
+    /**
+     * Maximum number of chunks of patients whose risk levels are computed at the same time by the risk report.
+     */
+    static final int REPORT_CONCURRENCY = 4;
+
+    /**
+     * Name of the cache holding the computed risk level of each patient, by patient ID.
+     */
+    public static final String RISK_CACHE = "risk";
+
+    /**
+     * Name of the cache holding the baseline of the risk preview of each patient, by patient ID.
+     */
+    public static final String RISK_PREVIEW_CACHE = "riskPreview";
+
+    /**
+     * Name of the cache holding the risk timeline of each patient, by patient ID.
+     */
+    public static final String RISK_TIMELINE_CACHE = "riskTimeline";
+
     @Autowired
     private WebClient.Builder webClientBuilder;
 
     @Autowired
     private NoteRepository noteRepository;
 
+    /**
+     * How the risk words of the notes are matched, by the {@link RiskWordMatching} strategy of this mode.
+     */
+    @Value("${microrisk.matching-mode:contents}")
+    private MatchingMode matchingMode;
+
+    @Autowired
+    private List<RiskWordMatching> matchings;
+
+    @Autowired
+    private PatientRiskRepository patientRiskRepository;
+
+    @Autowired
+    private RiskRulesService riskRulesService;
+
+    /**
+     * Whether risks are read from the store maintained by the {@link RiskStoreService}.
+     */
+    @Value("${microrisk.store.enabled:false}")
+    private boolean storeEnabled;
 
     /**
-     * Fetches the birthdate of a patient by making a REST call to the patient microservice (microlabo) through the gateway.
+     * Index of the risk store, telling the patients without any risk word. Only available with the risk store.
+     */
+    @Autowired
+    private ObjectProvider<CohortIndexService> cohortIndexService;
+
+    /**
+     * Risk store, telling whether it is current. Only available with the risk store.
+     */
+    @Autowired
+    private ObjectProvider<RiskStoreService> riskStoreService;
+
+    @Autowired
+    private RiskVocabularyService riskVocabularyService;
+
+    /**
+     * Fetches the birthdate and gender of a patient with a single REST call to the patient microservice (microlabo)
+     * through the gateway.
      * The request is authenticated using a cookie containing the token.
+     * The call is only made once the returned {@link Mono} is subscribed to.
      *
      * @param id    the ID of the patient
      * @param token the authentication token retrieved from the cookie
-     * @return the birthdate of the patient
+     * @return a Mono emitting the demographics of the patient
      */
-    public LocalDate fetchBirthDate(@PathVariable Long id,
-                                    @CookieValue(value = "token", required = false) String token) {
+    public Mono<PatientDemographicsDto> fetchDemographics(@PathVariable Long id,
+                                                          @CookieValue(value = "token", required = false) String token) {
         return webClientBuilder.build()
                 .get()
-                .uri("http://gateway:8080/patients/{id}/birthdate", id)
+                .uri("http://gateway:8080/patients/{id}/demographics", id)
                 .cookie("token", token)
                 .retrieve()
-                .bodyToMono(LocalDate.class)
-                .block();
+                .bodyToMono(PatientDemographicsDto.class);
     }
 
     /**
-     * Fetches the gender of a patient by making a REST call to the patient microservice (microlabo) through the gateway.
+     * Fetches the birthdate and gender of several patients with a single REST call to the patient microservice (microlabo)
+     * through the gateway.
      * The request is authenticated using a cookie containing the token.
      *
-     * @param id    the ID of the patient
+     * @param ids   the IDs of the patients
      * @param token the authentication token retrieved from the cookie
-     * @return the gender of the patient
+     * @return a Flux of the demographics of the patients found
+     */
+    public Flux<PatientDemographicsDto> fetchDemographics(Collection<Long> ids,
+                                                          @CookieValue(value = "token", required = false) String token) {
+        return webClientBuilder.build()
+                .post()
+                .uri("http://gateway:8080/patients/demographics")
+                .cookie("token", token)
+                .bodyValue(ids)
+                .retrieve()
+                .bodyToFlux(PatientDemographicsDto.class);
+    }
+
+    /**
+     * Fetches the birthdate and gender of the patients following a given ID, in ascending order of ID, with a single REST call
+     * to the patient microservice (microlabo) through the gateway.
+     * The request is authenticated using a cookie containing the token.
+     *
+     * @param afterId the ID after which the patients are read, 0 for the first page
+     * @param size    the number of patients to read
+     * @param token   the authentication token retrieved from the cookie
+     * @return a Flux of the demographics of the patients of the page, the last page holding less than the requested size
      */
-    public String fetchGender(@PathVariable Long id,
-                              @CookieValue(value = "token", required = false) String token) {
+    public Flux<PatientDemographicsDto> fetchDemographicsPage(long afterId, int size,
+                                                              @CookieValue(value = "token", required = false) String token) {
         return webClientBuilder.build()
                 .get()
-                .uri("http://gateway:8080/patients/{id}/gender", id)
+                .uri("http://gateway:8080/patients/demographics?afterId={afterId}&size={size}", afterId, size)
                 .cookie("token", token)
                 .retrieve()
-                .bodyToMono(String.class)
-                .block();
+                .bodyToFlux(PatientDemographicsDto.class);
     }
 
     /**
      * Calculates the age of a patient based on their birthdate.
-     * The method retrieves the birthdate using the authentication token from the cookie.
      *
-     * @param patientId the ID of the patient
-     * @param token     the authentication token retrieved from the cookie
+     * @param birthDate the birthdate of the patient
      * @return the age of the patient, or 0 if birthdate is not available
      */
-    public int calculateAge(Long patientId,
-                            @CookieValue(value = "token", required = false) String token) {
-        LocalDate birthDate = fetchBirthDate(patientId, token);
+    public int calculateAge(LocalDate birthDate) {
+        return calculateAge(birthDate, LocalDate.now());
+    }
+
+    /**
+     * Calculates the age a patient had at a given date based on their birthdate.
+     *
+     * @param birthDate the birthdate of the patient
+     * @param date      the date the age is evaluated at
+     * @return the age of the patient at that date, or 0 if birthdate is not available
+     */
+    public int calculateAge(LocalDate birthDate, LocalDate date) {
         if (birthDate == null) {
             return 0;
         }
-        return Period.between(birthDate, LocalDate.now()).getYears();
+        return Period.between(birthDate, date).getYears();
+    }
+
+    /**
+     * Returns the current risk vocabulary snapshot.
+     * Callers should read it once per computation, so that the risk words, the matcher and the search query they use
+     * always come from the same snapshot.
+     *
+     * @return the current {@link RiskVocabulary}
+     */
+    public RiskVocabulary getVocabulary() {
+        return riskVocabularyService.getVocabulary();
     }
 
     /**
@@ -92,9 +227,7 @@ public class RiskService {
      * @return a list of risk words
      */
     public List<String> getRiskWords() {
-        return Stream.of(RiskWord.values())
-                .map(RiskWord::getRiskWord)
-                .toList();
+        return getVocabulary().getRiskWords();
     }
 
     /**
@@ -104,123 +237,456 @@ public class RiskService {
      * @return a list of exclusion words
      */
     public List<String> getExclusionWords() {
-        return Stream.of(ExclusionWord.values())
-                .map(ExclusionWord::getExclusionWord)
-                .toList();
+        return getVocabulary().getExclusionWords();
+    }
+
+    /**
+     * Returns the matcher compiled for the current vocabulary.
+     *
+     * @return a {@link RiskWordMatcher} compiled from the current risk words and exclusion words
+     */
+    public RiskWordMatcher getRiskWordMatcher() {
+        return getVocabulary().getMatcher();
+    }
+
+    /**
+     * Returns how the risk words of the notes are matched, as set by {@code microrisk.matching-mode}. Every path matching
+     * notes follows this mode, so that they all count the same risk words for the same notes.
+     *
+     * @return the configured matching mode
+     */
+    public MatchingMode getMatchingMode() {
+        return matchingMode;
+    }
+
+    /**
+     * Returns the strategy implementing the current {@link #getMatchingMode()}.
+     *
+     * @return the {@link RiskWordMatching} of the matching mode
+     */
+    private RiskWordMatching getMatching() {
+        for (RiskWordMatching matching : matchings) {
+            if (matching.getMode() == matchingMode) {
+                return matching;
+            }
+        }
+        throw new IllegalStateException("No matching strategy for the matching mode " + matchingMode);
     }
 
     /**
-     * Builds a search query string by joining the list of risk words with a space.
-     * This query is used for performing text search in MongoDB.
+     * Returns the risk words to be counted for a content, matched as the notes are in the current {@link #getMatchingMode()}:
+     * on its tokens, on its UTF-8 bytes, or by the {@link RiskWordMatcher} of the vocabulary, whose rule the aggregation
+     * and the note masks follow.
      *
-     * @param riskWords the list of risk words to be joined into a search query
-     * @return a string representing the search query for MongoDB text search
+     * @param vocabulary the vocabulary snapshot to match the content with
+     * @param content    the content to match
+     * @return a mask of the counted risk words, bit {@code i} standing for the i-th risk word of the {@link RiskWordMatcher}
      */
-    private String buildSearchQuery(List<String> riskWords) {
-        return String.join(" ", riskWords);
+    public long matchRiskWords(RiskVocabulary vocabulary, CharSequence content) {
+        return getMatching().match(vocabulary, content);
+    }
+
+    /**
+     * Explains the risk words to be counted for a content, matched as by {@link #matchRiskWords(RiskVocabulary, CharSequence)}
+     * in the current {@link #getMatchingMode()}, so that the explained mask is the counted one: the offsets are the ones of
+     * the phrases of tokens matched, of the characters matched regardless of accents, or of the characters matched by the
+     * {@link RiskWordMatcher}.
+     *
+     * @param vocabulary the vocabulary snapshot to match the content with
+     * @param content    the content to explain
+     * @return the explanation of the risk words of the content, with offsets in the content
+     */
+    public RiskWordExplanation explainRiskWords(RiskVocabulary vocabulary, CharSequence content) {
+        return getMatching().explain(vocabulary, content);
     }
 
     /**
      * Counts the occurrences of risk words in the contents of the notes of a specific patient, excluding
      * occurrences where exclusion words are present.
+     * Counting stops at the count cap of the risk rules, from which no risk level changes anymore.
      *
      * @param patientId the ID of the patient whose notes will be analyzed
-     * @return the count of risk words in the patient's notes after applying exclusion logic
+     * @return the count of distinct risk words in the patient's notes after applying exclusion logic, exact below the count cap
+     * of the risk rules and at least this cap otherwise
      */
     public long getRiskWordsOccurrences(Long patientId) {
-        List<String> riskWords = getRiskWords();
-        String query = buildSearchQuery(riskWords);
-        List<String> exclusionWords = getExclusionWords();
-        List<String> contents = noteRepository.findNoteContentsByContentAndPatientId(query, patientId);
-
-        Set<String> countedRiskWords = contents.stream()
-                .flatMap(content -> riskWords.stream()
-                        .filter(riskWord -> isToBeCountedRiskWord(content, riskWord, exclusionWords)))
-                .collect(Collectors.toSet());
-        return countedRiskWords.size();
+        int countCap = riskRulesService.getDecisionTable().getCountCap();
+        return getRiskWordsOccurrences(patientId, () -> countCap);
     }
 
     /**
-     * Checks if a note content contains any risk word and is not excluded by exclusion words.
+     * Counts the occurrences of risk words in the contents of the notes of a specific patient, excluding
+     * occurrences where exclusion words are present, until the risk level of the patient is saturated.
+     * The notes are matched by the {@link RiskWordMatching} of the current {@link #getMatchingMode()}, which stops reading
+     * them once the saturation count is reached when it reads them one by one.
      *
-     * @param content        the content to search in
-     * @param riskWord       riskWord to match
-     * @param exclusionWords the list of exclusion words to consider
-     * @return true if the content contains a risk word that is not excluded, false otherwise
+     * @param patientId  the ID of the patient whose notes will be analyzed
+     * @param saturation supplies the count of risk words from which the risk level of the patient can't change anymore,
+     *                   read after each note so that it can be lowered once the demographics of the patient are known
+     * @return the count of distinct risk words in the patient's notes after applying exclusion logic, exact below the saturation count
      */
-    private boolean isToBeCountedRiskWord(String content, String riskWord, List<String> exclusionWords) {
-        String lowerContent = content.toLowerCase();
-        String lowerRiskWord = riskWord.toLowerCase();
+    public long getRiskWordsOccurrences(Long patientId, LongSupplier saturation) {
+        return Long.bitCount(getMatching().findRiskWordsMask(getVocabulary(), patientId, saturation));
+    }
 
-        return lowerContent.contains(lowerRiskWord) && !isToBeExcludedRiskWord(lowerContent, lowerRiskWord, exclusionWords);
+    /**
+     * Finds the risk words to be counted for several patients, loading the notes of all the patients with a single query,
+     * in the current {@link #getMatchingMode()}.
+     *
+     * @param patientIds the IDs of the patients whose notes will be analyzed
+     * @return for each patient having at least one note matching the search query, the mask of its counted risk words
+     * as returned by {@link RiskWordMatcher#match(CharSequence)}
+     */
+    public Map<Long, Long> getRiskWordsMasks(Collection<Long> patientIds) {
+        return getMatching().findRiskWordsMasks(getVocabulary(), patientIds);
     }
 
     /**
-     * Checks if a risk word should be excluded based on the presence of exclusion words.
+     * Counts the occurrences of risk words in the notes of a patient without blocking the caller, until the risk level
+     * of the patient is saturated, see {@link RiskWordMatching#findRiskWordsMaskAsync(RiskVocabulary, Long, LongSupplier)}.
      *
-     * @param content        the content to search in
-     * @param riskWord       the risk word to look for
-     * @param exclusionWords the list of exclusion words
-     * @return true if the risk word should be excluded, false otherwise
+     * @param patientId  the ID of the patient whose notes will be analyzed
+     * @param saturation supplies the count of risk words from which the risk level of the patient can't change anymore
+     * @return a Mono emitting the count of distinct risk words in the patient's notes, exact below the saturation count
      */
-    private boolean isToBeExcludedRiskWord(String content, String riskWord, List<String> exclusionWords) {
-        String lowerContent = content.toLowerCase();
-        String lowerRiskWord = riskWord.toLowerCase();
+    private Mono<Long> countRiskWordsOccurrences(Long patientId, LongSupplier saturation) {
+        return Mono.defer(() -> getMatching().findRiskWordsMaskAsync(getVocabulary(), patientId, saturation))
+                .map(mask -> (long) Long.bitCount(mask));
+    }
 
-        return exclusionWords.stream()
-                .map(String::toLowerCase)
-                .anyMatch(lowerExclusionWord ->
-                        lowerContent.contains(lowerExclusionWord + " " + lowerRiskWord) ||
-                                lowerContent.contains(lowerRiskWord + " " + lowerExclusionWord));
+    /**
+     * Finds the risk words to be counted for several patients without blocking the caller, see
+     * {@link RiskWordMatching#findRiskWordsMasksAsync(RiskVocabulary, Collection)}.
+     *
+     * @param patientIds the IDs of the patients whose notes will be analyzed
+     * @return a Mono emitting the masks of counted risk words by patient ID, as returned by {@link #getRiskWordsMasks(Collection)}
+     */
+    private Mono<Map<Long, Long>> findRiskWordsMasks(Collection<Long> patientIds) {
+        return Mono.defer(() -> getMatching().findRiskWordsMasksAsync(getVocabulary(), patientIds));
     }
 
     /**
      * Determines the risk level for a patient based on their age, gender, and the risk words found in their notes.
-     * The method retrieves the necessary patient information using the authentication token from the cookie.
+     * The demographics of the patient are fetched, using the authentication token from the cookie, while their notes are queried,
+     * so that the latency is the one of the slowest of the two rather than their sum.
+     * When the risk store is enabled, the risk is read from it with a single query, and only computed
+     * for patients that are not materialized yet. Patients of the store known by the cohort index to have no risk word are answered
+     * without any query nor remote call, when the risk rules give the same level to all the patients without risk words.
+     * While the store is not current, being built or outdated by a vocabulary reload, the risk is computed from the notes.
+     * The result is cached until the notes or the demographics of the patient change, see {@link #evictRisk(Long)}.
      *
      * @param patientId the ID of the patient
      * @param token     the authentication token retrieved from the cookie
-     * @return a string representing the risk level ("None", "Borderline", "In Danger", "Early onset")
+     * @return a Mono emitting a string representing the risk level ("None", "Borderline", "In Danger", "Early onset")
      */
-    public String calculateRiskForPatient(Long patientId,
-                                          @CookieValue(value = "token", required = false) String token) {
-        int age = calculateAge(patientId, token);
-        String gender = fetchGender(patientId, token);
-        long riskWordOccurrences = getRiskWordsOccurrences(patientId);
-
-        if (riskWordOccurrences == 0) {
-            return "None";
-        } else if (riskWordOccurrences >= 2 && riskWordOccurrences <= 5) {
-            if (age > 30) {
-                return "Borderline";
-            }
+    @Cacheable(cacheNames = RISK_CACHE, key = "#patientId")
+    public Mono<String> calculateRiskForPatientAsync(Long patientId,
+                                                     @CookieValue(value = "token", required = false) String token) {
+        RiskStoreService store = storeEnabled ? riskStoreService.getIfAvailable() : null;
+        if (store == null || !store.isCurrent()) {
+            return computeRiskForPatient(patientId, token);
         }
-        if (gender.equalsIgnoreCase("m")) {
-            if (age < 30) {
-                if (riskWordOccurrences >= 3 && riskWordOccurrences < 5) {
-                    return "In Danger";
-
-                } else if (riskWordOccurrences < 3) {
-                    return "None";
-                } else return "Early onset";
-            }
-            if (riskWordOccurrences >= 6 && riskWordOccurrences < 8) {
-                return "In Danger";
-            } else return "Early onset";
+        String levelWithoutRiskWords = riskRulesService.getDecisionTable().getLevelWithoutRiskWords();
+        CohortIndexService cohortIndex = cohortIndexService.getIfAvailable();
+        if (levelWithoutRiskWords != null && cohortIndex != null && cohortIndex.hasNoRiskWords(patientId)) {
+            return Mono.just(levelWithoutRiskWords);
+        }
+        return Mono.fromCallable(() -> patientRiskRepository.findById(patientId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(patientRisk -> patientRisk
+                        .map(risk -> Mono.just(determineRiskLevel(risk)))
+                        .orElseGet(() -> computeRiskForPatient(patientId, token)));
+    }
+
+    /**
+     * Computes the risk level of a patient from their demographics and notes, both being loaded concurrently.
+     * Notes are read until the count cap of the risk rules is reached, or once the demographics are known, until
+     * the lower count from which the risk level can't change anymore for the age and gender of the patient.
+     *
+     * @param patientId the ID of the patient
+     * @param token     the authentication token retrieved from the cookie
+     * @return a Mono emitting a string representing the risk level
+     */
+    private Mono<String> computeRiskForPatient(Long patientId, String token) {
+        return Mono.defer(() -> {
+            RiskDecisionTable decisionTable = riskRulesService.getDecisionTable();
+            AtomicLong saturation = new AtomicLong(decisionTable.getCountCap());
+            Mono<PatientDemographicsDto> demographics = fetchDemographics(patientId, token)
+                    .defaultIfEmpty(new PatientDemographicsDto(patientId, null, null))
+                    .doOnNext(patient -> saturation.set(
+                            decisionTable.saturationCount(calculateAge(patient.getBirthdate()), patient.getGender())));
+            return Mono.zip(demographics, countRiskWordsOccurrences(patientId, saturation::get))
+                    .map(tuple -> decisionTable.classify(
+                            calculateAge(tuple.getT1().getBirthdate()),
+                            tuple.getT1().getGender(),
+                            tuple.getT2()));
+        });
+    }
+
+    /**
+     * Determines the risk level of a patient as {@link #calculateRiskForPatientAsync(Long, String)} does, and explains it:
+     * for each note having risk words, the counted risk words and their offsets, and the exclusions that prevent risk words
+     * from counting. Each note is scanned once by {@link #explainRiskWords(RiskVocabulary, CharSequence)}, which both counts
+     * the risk words in the current {@link #getMatchingMode()} and records their offsets, all the notes of the patient being
+     * read when matching tokens. The demographics of the patient, fetched using the authentication token from the cookie,
+     * and their notes are loaded concurrently. Explanations are computed from the notes and aren't cached.
+     *
+     * @param patientId the ID of the patient
+     * @param token     the authentication token retrieved from the cookie
+     * @return a Mono emitting the risk level of the patient and its explanation
+     */
+    public Mono<RiskExplanationDto> explainRiskForPatient(Long patientId,
+                                                          @CookieValue(value = "token", required = false) String token) {
+        return Mono.defer(() -> {
+            RiskVocabulary vocabulary = getVocabulary();
+            Mono<PatientDemographicsDto> demographics = fetchDemographics(patientId, token)
+                    .defaultIfEmpty(new PatientDemographicsDto(patientId, null, null));
+            Mono<List<NoteExplanationDto>> notes = Mono.fromCallable(() -> explainNotes(vocabulary, patientId))
+                    .subscribeOn(Schedulers.boundedElastic());
+            return Mono.zip(demographics, notes)
+                    .map(tuple -> {
+                        RiskWordMatcher matcher = vocabulary.getMatcher();
+                        long mask = 0L;
+                        for (NoteExplanationDto note : tuple.getT2()) {
+                            mask |= matcher.maskOf(note.getRiskWords());
+                        }
+                        int age = calculateAge(tuple.getT1().getBirthdate());
+                        String riskLevel = determineRiskLevel(age, tuple.getT1().getGender(), Long.bitCount(mask));
+                        return new RiskExplanationDto(riskLevel, age, tuple.getT1().getGender(), matcher.riskWordsOf(mask), tuple.getT2());
+                    });
+        });
+    }
+
+    /**
+     * Explains the risk words of each note of a patient containing risk words or exclusions.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     * @param patientId  the ID of the patient
+     * @return the explanations of the notes having risk words, in the order they are read
+     */
+    private List<NoteExplanationDto> explainNotes(RiskVocabulary vocabulary, Long patientId) {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        List<NoteExplanationDto> explanations = new ArrayList<>();
+        try (Stream<Note> notes = getMatching().streamNotesToExplain(vocabulary, patientId)) {
+            notes.forEach(note -> {
+                RiskWordExplanation explanation = explainRiskWords(vocabulary, note.getContent() == null ? "" : note.getContent());
+                if (!explanation.matches().isEmpty() || !explanation.excludedMatches().isEmpty()) {
+                    explanations.add(new NoteExplanationDto(note.getId(), matcher.riskWordsOf(explanation.mask()),
+                            explanation.matches(), explanation.excludedMatches(), explanation.exclusions()));
+                }
+            });
         }
-        if (gender.equalsIgnoreCase("f")) {
-            if (age < 30) {
-                if (riskWordOccurrences >= 4 && riskWordOccurrences < 7) {
-                    return "In Danger";
-
-                } else if (riskWordOccurrences < 4) {
-                    return "None";
-                } else return "Early onset";
+        return explanations;
+    }
+
+    /**
+     * Evicts the cached risk level, risk preview baseline and risk timeline of a patient.
+     * Called when the notes of the patient are saved, updated or deleted, and when their birthdate or gender changes.
+     *
+     * @param patientId the ID of the patient
+     */
+    @CacheEvict(cacheNames = {RISK_CACHE, RISK_PREVIEW_CACHE, RISK_TIMELINE_CACHE}, key = "#patientId")
+    public void evictRisk(Long patientId) {
+    }
+
+    /**
+     * Loads what the risk preview of a patient needs besides the draft note: their demographics, fetched using the
+     * authentication token from the cookie, and the mask of the risk words counted in each of their notes, both being
+     * loaded concurrently.
+     * The result is cached until the notes or the demographics of the patient change, see {@link #evictRisk(Long)}.
+     *
+     * @param patientId the ID of the patient
+     * @param token     the authentication token retrieved from the cookie
+     * @return a Mono emitting the baseline of the risk preview of the patient
+     */
+    @Cacheable(cacheNames = RISK_PREVIEW_CACHE, key = "#patientId")
+    public Mono<RiskPreviewBaseline> loadRiskPreviewBaseline(Long patientId,
+                                                             @CookieValue(value = "token", required = false) String token) {
+        return Mono.defer(() -> {
+            RiskVocabulary vocabulary = getVocabulary();
+            Mono<PatientDemographicsDto> demographics = fetchDemographics(patientId, token)
+                    .defaultIfEmpty(new PatientDemographicsDto(patientId, null, null));
+            Mono<Map<String, Long>> noteMasks = Mono.fromCallable(() -> findNoteMasks(vocabulary, patientId))
+                    .subscribeOn(Schedulers.boundedElastic());
+            return Mono.zip(demographics, noteMasks)
+                    .map(tuple -> new RiskPreviewBaseline(vocabulary.getVersion(),
+                            tuple.getT1().getBirthdate(), tuple.getT1().getGender(), tuple.getT2()));
+        });
+    }
+
+    /**
+     * Matches each note of a patient containing risk words in the current {@link #getMatchingMode()}.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     * @param patientId  the ID of the patient
+     * @return the masks of the counted risk words of the notes having some, by note ID
+     */
+    private Map<String, Long> findNoteMasks(RiskVocabulary vocabulary, Long patientId) {
+        return getMatching().findNoteMasks(vocabulary, patientId);
+    }
+
+    /**
+     * Computes the risk level a patient had after each of their notes, oldest first, in a single pass over their notes:
+     * the risk words of each note are added to the ones of the previous notes, and the age of the patient is evaluated
+     * at the date of the note. The demographics of the patient, fetched using the authentication token from the cookie,
+     * and their notes are loaded concurrently.
+     * Notes saved before their creation time was recorded are dated by their ObjectId.
+     * The result is cached until the notes or the demographics of the patient change, see {@link #evictRisk(Long)}.
+     *
+     * @param patientId the ID of the patient
+     * @param token     the authentication token retrieved from the cookie
+     * @return a Mono emitting the risk timeline of the patient, one entry per note
+     */
+    @Cacheable(cacheNames = RISK_TIMELINE_CACHE, key = "#patientId")
+    public Mono<List<RiskTimelineEntryDto>> calculateRiskTimeline(Long patientId,
+                                                                  @CookieValue(value = "token", required = false) String token) {
+        return Mono.defer(() -> {
+            RiskVocabulary vocabulary = getVocabulary();
+            Mono<PatientDemographicsDto> demographics = fetchDemographics(patientId, token)
+                    .defaultIfEmpty(new PatientDemographicsDto(patientId, null, null));
+            Mono<List<Note>> notes = Mono.fromCallable(() -> noteRepository.findTimelineNotesByPatientId(patientId))
+                    .subscribeOn(Schedulers.boundedElastic());
+            return Mono.zip(demographics, notes)
+                    .map(tuple -> replayNotes(vocabulary, tuple.getT1(), tuple.getT2()));
+        });
+    }
+
+    private List<RiskTimelineEntryDto> replayNotes(RiskVocabulary vocabulary, PatientDemographicsDto demographics, List<Note> notes) {
+        RiskWordMatcher matcher = vocabulary.getMatcher();
+        List<Note> sortedNotes = new ArrayList<>(notes);
+        sortedNotes.sort(Comparator.comparing(RiskService::creationTimeOf, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Note::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        List<RiskTimelineEntryDto> timeline = new ArrayList<>(sortedNotes.size());
+        long mask = 0L;
+        for (Note note : sortedNotes) {
+            mask |= matchRiskWords(vocabulary, note.getContent() == null ? "" : note.getContent());
+            Instant createdAt = creationTimeOf(note);
+            LocalDate date = createdAt == null ? LocalDate.now() : LocalDate.ofInstant(createdAt, ZoneId.systemDefault());
+            int age = calculateAge(demographics.getBirthdate(), date);
+            String riskLevel = determineRiskLevel(age, demographics.getGender(), Long.bitCount(mask));
+            timeline.add(new RiskTimelineEntryDto(note.getId(), createdAt, age, riskLevel, matcher.riskWordsOf(mask)));
+        }
+        return timeline;
+    }
+
+    private static Instant creationTimeOf(Note note) {
+        if (note.getCreatedAt() != null) {
+            return note.getCreatedAt();
+        }
+        return note.getId() != null && ObjectId.isValid(note.getId()) ? new ObjectId(note.getId()).getDate().toInstant() : null;
+    }
+
+    /**
+     * Determines the risk levels of several patients.
+     * Demographics and notes are loaded for chunks of {@link #BATCH_SIZE} patients at a time, with one request to the
+     * patient microservice and one query to the database per chunk, both being run concurrently.
+     * Patients that are not found by the patient microservice are left out of the result.
+     *
+     * @param patientIds the IDs of the patients
+     * @param token      the authentication token retrieved from the cookie
+     * @return a Mono emitting the risk level of each patient found, by patient ID and in the order of the given IDs
+     */
+    public Mono<Map<Long, String>> calculateRiskForPatientsAsync(List<Long> patientIds,
+                                                                 @CookieValue(value = "token", required = false) String token) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(patientIds));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += BATCH_SIZE) {
+            chunks.add(distinctIds.subList(from, Math.min(from + BATCH_SIZE, distinctIds.size())));
+        }
+
+        return Flux.fromIterable(chunks)
+                .concatMap(chunk -> Mono.zip(
+                                fetchDemographics(chunk, token).collectMap(PatientDemographicsDto::getId),
+                                findRiskWordsMasks(chunk))
+                        .map(tuple -> determineRiskLevels(chunk, tuple.getT1(), tuple.getT2())))
+                .collect(LinkedHashMap::new, Map::putAll);
+    }
+
+    /**
+     * Determines the risk levels of several patients.
+     * Blocking variant of {@link #calculateRiskForPatientsAsync(List, String)}.
+     *
+     * @param patientIds the IDs of the patients
+     * @param token      the authentication token retrieved from the cookie
+     * @return the risk level of each patient found, by patient ID and in the order of the given IDs
+     */
+    public Map<Long, String> calculateRiskForPatients(List<Long> patientIds,
+                                                      @CookieValue(value = "token", required = false) String token) {
+        return calculateRiskForPatientsAsync(patientIds, token).block();
+    }
+
+    /**
+     * Streams the risk level of every patient, in the order they are computed.
+     * Patients are paged from the patient microservice by {@link #BATCH_SIZE}, each page following the last ID of the previous one,
+     * until an empty page: a page may hold less patients than requested when the patient microservice caps its size,
+     * without being the last one. The notes of each page are loaded with a single query, as done by {@link #calculateRiskForPatientsAsync(List, String)}.
+     * At most {@link #REPORT_CONCURRENCY} pages are computed at the same time and the next pages are only fetched as the
+     * subscriber consumes the report, so that memory doesn't grow with the number of patients.
+     *
+     * @param token the authentication token retrieved from the cookie
+     * @return a Flux of the risk level of each patient
+     */
+    public Flux<PatientRiskLevelDto> streamRiskReport(@CookieValue(value = "token", required = false) String token) {
+        return fetchDemographicsPage(0L, BATCH_SIZE, token).collectList()
+                .expand(page -> page.isEmpty()
+                        ? Mono.empty()
+                        : fetchDemographicsPage(page.get(page.size() - 1).getId(), BATCH_SIZE, token).collectList())
+                .filter(page -> !page.isEmpty())
+                .flatMap(page -> {
+                    List<Long> patientIds = page.stream().map(PatientDemographicsDto::getId).toList();
+                    Map<Long, PatientDemographicsDto> demographics = new HashMap<>();
+                    page.forEach(patient -> demographics.put(patient.getId(), patient));
+                    return findRiskWordsMasks(patientIds)
+                            .map(masks -> determineRiskLevels(patientIds, demographics, masks));
+                }, REPORT_CONCURRENCY, 1)
+                .concatMapIterable(risks -> risks.entrySet().stream()
+                        .map(risk -> new PatientRiskLevelDto(risk.getKey(), risk.getValue()))
+                        .toList());
+    }
+
+    /**
+     * Determines the risk levels of the patients of a chunk from their demographics and their masks of counted risk words.
+     *
+     * @param patientIds   the IDs of the patients
+     * @param demographics the demographics of the patients found, by patient ID
+     * @param masks        the masks of counted risk words, by patient ID
+     * @return the risk level of each patient found, by patient ID and in the order of the given IDs
+     */
+    private Map<Long, String> determineRiskLevels(List<Long> patientIds,
+                                                  Map<Long, PatientDemographicsDto> demographics,
+                                                  Map<Long, Long> masks) {
+        Map<Long, String> risks = new LinkedHashMap<>();
+        for (Long patientId : patientIds) {
+            PatientDemographicsDto patient = demographics.get(patientId);
+            if (patient != null) {
+                long riskWordOccurrences = Long.bitCount(masks.getOrDefault(patientId, 0L));
+                risks.put(patientId, determineRiskLevel(calculateAge(patient.getBirthdate()), patient.getGender(), riskWordOccurrences));
             }
-            if (riskWordOccurrences == 7) {
-                return "In Danger";
-            } else return "Early onset";
         }
-        return "None";
+        return risks;
+    }
+
+    /**
+     * Determines the current risk level of a patient materialized in the risk store, their age being evaluated today.
+     *
+     * @param risk the materialized risk of the patient
+     * @return a string representing the risk level ("None", "Borderline", "In Danger", "Early onset")
+     */
+    public String determineRiskLevel(PatientRisk risk) {
+        return determineRiskLevel(calculateAge(risk.getBirthdate()), risk.getGender(), risk.getRiskWords().size());
+    }
+
+    /**
+     * Determines a risk level from the age and gender of a patient and the number of distinct risk words found in their notes.
+     * The level is looked up in the decision table compiled from the risk rules, see {@link RiskRulesService}.
+     *
+     * @param age                 the age of the patient
+     * @param gender              the gender of the patient
+     * @param riskWordOccurrences the number of distinct risk words found in the notes of the patient
+     * @return a string representing the risk level ("None", "Borderline", "In Danger", "Early onset")
+     */
+    public String determineRiskLevel(int age, String gender, long riskWordOccurrences) {
+        return riskRulesService.getDecisionTable().classify(age, gender, riskWordOccurrences);
     }
 }
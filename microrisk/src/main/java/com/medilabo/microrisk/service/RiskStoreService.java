@@ -0,0 +1,286 @@
+package com.medilabo.microrisk.service;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.NoteRiskMask;
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.dto.PatientDemographicsDto;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.repository.NoteRiskMaskRepository;
+import com.medilabo.microrisk.repository.PatientRiskRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Service class maintaining the risk store: the risk words counted for each note and the materialized risk of each patient.
+ * The store is updated incrementally from the changes of the notes, only the changed note being rescanned, and from the
+ * changes of the demographics of the patients. It can also be rebuilt from scratch with a full scan of the notes.
+ * Notes are matched as the other paths match them, in the matching mode of the {@link RiskService}, and the store is only
+ * read while it is current, that is once it was built or resumed with the current vocabulary.
+ * Updates are serialized, so that changes coming from the change stream and from the patient microservice don't overwrite each other.
+ * Demographics are fetched from the patient microservice through the gateway, like the other calls of microrisk, with the
+ * token of the {@link ServiceTokenService}, updates not being bound to a user request.
+ * Each saved risk is also applied to the in-memory cohort index of the {@link CohortIndexService}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "microrisk.store.enabled", havingValue = "true")
+public class RiskStoreService {
+
+    @Autowired
+    private RiskService riskService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteRiskMaskRepository noteRiskMaskRepository;
+
+    @Autowired
+    private PatientRiskRepository patientRiskRepository;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Autowired
+    private CohortIndexService cohortIndexService;
+
+    @Autowired
+    private ServiceTokenService serviceTokenService;
+
+    @Value("${gateway.url:http://gateway:8080}")
+    private String gatewayUrl;
+
+    /**
+     * Vocabulary snapshot the store was built with, null until it is built or resumed, and while it is rebuilt.
+     */
+    private volatile RiskVocabulary vocabulary;
+
+    /**
+     * Rescans a note that was inserted or updated, and updates the risk of its patient when the counted risk words changed.
+     *
+     * @param note the inserted or updated note
+     */
+    public synchronized void onNoteChanged(Note note) {
+        long mask = riskService.matchRiskWords(riskService.getVocabulary(), note.getContent() == null ? "" : note.getContent());
+        Optional<NoteRiskMask> previous = noteRiskMaskRepository.findById(note.getId());
+        noteRiskMaskRepository.save(new NoteRiskMask(note.getId(), note.getPatientId(), mask));
+
+        if (previous.isPresent() && !Objects.equals(previous.get().getPatientId(), note.getPatientId())) {
+            updateRiskWords(previous.get().getPatientId());
+            updateRiskWords(note.getPatientId());
+        } else if (previous.isEmpty() || previous.get().getMask() != mask) {
+            updateRiskWords(note.getPatientId());
+        }
+    }
+
+    /**
+     * Forgets a deleted note and updates the risk of its patient.
+     *
+     * @param noteId the ID of the deleted note
+     */
+    public synchronized void onNoteDeleted(String noteId) {
+        noteRiskMaskRepository.findById(noteId).ifPresent(noteRiskMask -> {
+            noteRiskMaskRepository.deleteById(noteId);
+            updateRiskWords(noteRiskMask.getPatientId());
+        });
+    }
+
+    /**
+     * Fetches the demographics of a patient again and reclassifies them.
+     *
+     * @param patientId the ID of the patient whose birthdate or gender changed
+     */
+    public void refreshDemographics(Long patientId) {
+        PatientDemographicsDto demographics = fetchDemographics(patientId);
+        synchronized (this) {
+            Optional<PatientRisk> patientRisk = patientRiskRepository.findById(patientId);
+            if (patientRisk.isEmpty()) {
+                return;
+            }
+            PatientRisk risk = patientRisk.get();
+            risk.setBirthdate(demographics == null ? null : demographics.getBirthdate());
+            risk.setGender(demographics == null ? null : demographics.getGender());
+            save(risk);
+        }
+    }
+
+    /**
+     * Refreshes the demographics of a patient in the background, see {@link #refreshDemographics(Long)}.
+     *
+     * @param patientId the ID of the patient whose birthdate or gender changed
+     */
+    public void scheduleDemographicsRefresh(Long patientId) {
+        Mono.fromRunnable(() -> refreshDemographics(patientId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, error -> log.warn("Could not refresh demographics of patient {}: {}", patientId, error.getMessage()));
+    }
+
+    /**
+     * Rebuilds the whole store from a full scan of the notes collection, the notes being matched with the given vocabulary.
+     * The store isn't current until the rebuild completes.
+     *
+     * @param vocabulary the vocabulary snapshot to match the notes with
+     */
+    public synchronized void rebuild(RiskVocabulary vocabulary) {
+        this.vocabulary = null;
+        noteRiskMaskRepository.deleteAll();
+        patientRiskRepository.deleteAll();
+
+        Map<Long, Long> patientMasks = new HashMap<>();
+        List<NoteRiskMask> noteRiskMasks = new ArrayList<>(RiskService.BATCH_SIZE);
+        try (Stream<Note> notes = mongoTemplate.stream(new Query(), Note.class)) {
+            notes.forEach(note -> {
+                long mask = riskService.matchRiskWords(vocabulary, note.getContent() == null ? "" : note.getContent());
+                noteRiskMasks.add(new NoteRiskMask(note.getId(), note.getPatientId(), mask));
+                patientMasks.merge(note.getPatientId(), mask, (first, second) -> first | second);
+                if (noteRiskMasks.size() == RiskService.BATCH_SIZE) {
+                    noteRiskMaskRepository.saveAll(noteRiskMasks);
+                    noteRiskMasks.clear();
+                }
+            });
+        }
+        noteRiskMaskRepository.saveAll(noteRiskMasks);
+
+        List<Long> patientIds = new ArrayList<>(patientMasks.keySet());
+        for (int from = 0; from < patientIds.size(); from += RiskService.BATCH_SIZE) {
+            List<Long> chunk = patientIds.subList(from, Math.min(from + RiskService.BATCH_SIZE, patientIds.size()));
+            Map<Long, PatientDemographicsDto> demographics = fetchDemographics(chunk);
+            List<PatientRisk> risks = new ArrayList<>(chunk.size());
+            for (Long patientId : chunk) {
+                PatientDemographicsDto patient = demographics.get(patientId);
+                risks.add(classify(new PatientRisk(patientId, vocabulary.getMatcher().riskWordsOf(patientMasks.get(patientId)),
+                        patient == null ? null : patient.getBirthdate(),
+                        patient == null ? null : patient.getGender(),
+                        null)));
+            }
+            patientRiskRepository.saveAll(risks);
+        }
+        log.info("Risk store rebuilt for {} patients", patientIds.size());
+        cohortIndexService.rebuild();
+        this.vocabulary = vocabulary;
+    }
+
+    /**
+     * Resumes the store built with the given vocabulary, rebuilding the cohort index from it.
+     *
+     * @param vocabulary the vocabulary snapshot the store was built with
+     */
+    public synchronized void resume(RiskVocabulary vocabulary) {
+        cohortIndexService.rebuild();
+        this.vocabulary = vocabulary;
+    }
+
+    /**
+     * Marks the store as not current until it is rebuilt, for instance when a change of the notes couldn't be applied to it.
+     */
+    public void invalidate() {
+        this.vocabulary = null;
+    }
+
+    /**
+     * Tells whether the store was built or resumed with the current vocabulary, so that its risks can be read.
+     *
+     * @return true when the store is current, false while it is built or rebuilt
+     */
+    public boolean isCurrent() {
+        RiskVocabulary builtWith = vocabulary;
+        return builtWith != null && builtWith == riskService.getVocabulary();
+    }
+
+    /**
+     * Rebuilds the cohort index from the risk store, updates of the store waiting for it so that none of them is lost.
+     *
+     * @return the number of patients indexed
+     */
+    public synchronized long rebuildCohortIndex() {
+        return cohortIndexService.rebuild();
+    }
+
+    /**
+     * Merges the masks of the notes of a patient and saves the resulting risk.
+     *
+     * @param patientId the ID of the patient
+     */
+    private void updateRiskWords(Long patientId) {
+        long mask = 0L;
+        for (NoteRiskMask noteRiskMask : noteRiskMaskRepository.findByPatientId(patientId)) {
+            mask |= noteRiskMask.getMask();
+        }
+        List<String> riskWords = riskService.getRiskWordMatcher().riskWordsOf(mask);
+
+        PatientRisk risk = patientRiskRepository.findById(patientId).orElseGet(() -> {
+            PatientDemographicsDto demographics = fetchDemographics(patientId);
+            return new PatientRisk(patientId, riskWords,
+                    demographics == null ? null : demographics.getBirthdate(),
+                    demographics == null ? null : demographics.getGender(),
+                    null);
+        });
+        risk.setRiskWords(riskWords);
+        save(risk);
+    }
+
+    private void save(PatientRisk risk) {
+        patientRiskRepository.save(classify(risk));
+        cohortIndexService.update(risk);
+        riskService.evictRisk(risk.getPatientId());
+    }
+
+    private PatientRisk classify(PatientRisk risk) {
+        risk.setRiskLevel(riskService.determineRiskLevel(risk));
+        return risk;
+    }
+
+    private PatientDemographicsDto fetchDemographics(Long patientId) {
+        return webClientBuilder.build()
+                .get()
+                .uri(gatewayUrl + "/patients/{id}/demographics", patientId)
+                .cookie("token", serviceTokenService.getToken())
+                .retrieve()
+                .onStatus(HttpStatusCode::is3xxRedirection, RiskStoreService::rejectedToken)
+                .bodyToMono(PatientDemographicsDto.class)
+                .onErrorResume(WebClientResponseException.NotFound.class, error -> Mono.empty())
+                .block();
+    }
+
+    private Map<Long, PatientDemographicsDto> fetchDemographics(List<Long> patientIds) {
+        return webClientBuilder.build()
+                .post()
+                .uri(gatewayUrl + "/patients/demographics")
+                .cookie("token", serviceTokenService.getToken())
+                .bodyValue(patientIds)
+                .retrieve()
+                .onStatus(HttpStatusCode::is3xxRedirection, RiskStoreService::rejectedToken)
+                .bodyToFlux(PatientDemographicsDto.class)
+                .collectMap(PatientDemographicsDto::getId)
+                .block();
+    }
+
+    /**
+     * Fails a call the gateway redirected to the login page, rather than reading the demographics as missing.
+     *
+     * @param response the redirection to the login page
+     * @return the error failing the call
+     */
+    private static Mono<Throwable> rejectedToken(ClientResponse response) {
+        return Mono.error(new IllegalStateException("The gateway rejected the service token of microrisk"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.medilabo.microrisk.service;
+
+import com.medilabo.microrisk.dto.RiskTimelineDto;
+import com.medilabo.microrisk.dto.RiskTimelineEntryDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.CookieValue;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Service class serving the risk timeline of a patient by pages.
+ * The whole timeline is computed in a single pass over the notes of the patient and cached by the {@link RiskService},
+ * so that reading the following pages doesn't replay the notes again.
+ */
+@Service
+public class RiskTimelineService {
+
+    /**
+     * Maximum number of entries of a page of the risk timeline.
+     */
+    public static final int MAX_TIMELINE_PAGE_SIZE = 100;
+
+    @Autowired
+    private RiskService riskService;
+
+    /**
+     * Retrieves a page of the risk timeline of a patient, oldest entries first.
+     * The page size is bounded by {@link #MAX_TIMELINE_PAGE_SIZE}.
+     *
+     * @param patientId the ID of the patient
+     * @param page      the number of the page, starting at 0
+     * @param size      the number of entries of the page
+     * @param token     the authentication token retrieved from the cookie
+     * @return a Mono emitting the page of the risk timeline, empty past the last entry
+     */
+    public Mono<RiskTimelineDto> getRiskTimeline(Long patientId, int page, int size,
+                                                 @CookieValue(value = "token", required = false) String token) {
+        int pageNumber = Math.max(page, 0);
+        int pageSize = Math.min(Math.max(size, 1), MAX_TIMELINE_PAGE_SIZE);
+        return riskService.calculateRiskTimeline(patientId, token)
+                .map(timeline -> {
+                    int from = (int) Math.min((long) pageNumber * pageSize, timeline.size());
+                    int to = Math.min(from + pageSize, timeline.size());
+                    List<RiskTimelineEntryDto> entries = List.copyOf(timeline.subList(from, to));
+                    return new RiskTimelineDto(pageNumber, pageSize, timeline.size(), entries);
+                });
+    }
+}
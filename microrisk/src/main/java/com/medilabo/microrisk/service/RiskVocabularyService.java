@@ -0,0 +1,95 @@
+package com.medilabo.microrisk.service;
+
+import com.medilabo.microrisk.domain.ExclusionWord;
+import com.medilabo.microrisk.domain.RiskWord;
+import com.medilabo.microrisk.event.RiskVocabularyChangedEvent;
+import com.medilabo.microrisk.exception.InvalidRiskVocabularyException;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Service class holding the current risk vocabulary snapshot.
+ * The vocabulary is loaded from the file configured with {@code microrisk.vocabulary.location}, the {@link RiskWord}
+ * and {@link ExclusionWord} enums being used when no file is configured. Reloading compiles a new snapshot first and then
+ * publishes it with a single volatile write: readers never wait, and keep the snapshot they already got.
+ */
+@Service
+public class RiskVocabularyService {
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${microrisk.vocabulary.location:}")
+    private String vocabularyLocation;
+
+    private volatile RiskVocabulary vocabulary = RiskVocabulary.compile(0,
+            Stream.of(RiskWord.values()).map(RiskWord::getRiskWord).toList(),
+            Stream.of(ExclusionWord.values()).map(ExclusionWord::getExclusionWord).toList());
+
+    /**
+     * Loads the vocabulary file when one is configured.
+     */
+    @PostConstruct
+    public void init() {
+        if (!vocabularyLocation.isBlank()) {
+            vocabulary = load(1);
+        }
+    }
+
+    /**
+     * Returns the current vocabulary snapshot.
+     *
+     * @return the current {@link RiskVocabulary}
+     */
+    public RiskVocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Reloads the vocabulary file and swaps the vocabulary snapshot when its words changed.
+     * Cached risk levels, risk preview baselines and risk timelines are evicted and a {@link RiskVocabularyChangedEvent} is published for the new snapshot.
+     *
+     * @return the current vocabulary snapshot once reloaded
+     * @throws InvalidRiskVocabularyException if no file is configured or if the file is invalid, the current snapshot being kept
+     */
+    @CacheEvict(cacheNames = {RiskService.RISK_CACHE, RiskService.RISK_PREVIEW_CACHE, RiskService.RISK_TIMELINE_CACHE}, allEntries = true)
+    public synchronized RiskVocabulary reload() {
+        if (vocabularyLocation.isBlank()) {
+            throw new InvalidRiskVocabularyException("No vocabulary file is configured with microrisk.vocabulary.location");
+        }
+        RiskVocabulary current = vocabulary;
+        RiskVocabulary reloaded = load(current.getVersion() + 1);
+        if (reloaded.hasSameWords(current)) {
+            return current;
+        }
+        vocabulary = reloaded;
+        eventPublisher.publishEvent(new RiskVocabularyChangedEvent(reloaded));
+        return reloaded;
+    }
+
+    private RiskVocabulary load(long version) {
+        Resource resource = resourceLoader.getResource(vocabularyLocation);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            return RiskVocabulary.parse(version, reader.lines().toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the risk vocabulary from " + resource.getDescription(), e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.medilabo.microrisk.service;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.Key;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Service class issuing the token microrisk authenticates with through the gateway when no user request is involved,
+ * for instance when the risk store fetches demographics while following the changes of the notes.
+ * The token is a JWT signed with the secret shared with microauth and the gateway, whose subject is the microservice.
+ * It is renewed a minute before it expires.
+ */
+@Service
+public class ServiceTokenService {
+
+    static final String SUBJECT = "microrisk";
+
+    private static final Duration VALIDITY = Duration.ofMinutes(30);
+    private static final Duration RENEWAL_MARGIN = Duration.ofMinutes(1);
+
+    /**
+     * The secret key used for signing the tokens, shared with microauth and the gateway.
+     */
+    @Value("${JWT_SECRET:5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437}")
+    private String secret;
+
+    private String token;
+    private Instant expiresAt = Instant.EPOCH;
+
+    /**
+     * Returns a valid token for the calls of microrisk through the gateway.
+     *
+     * @return a signed JWT, valid for at least a minute
+     */
+    public synchronized String getToken() {
+        Instant now = Instant.now();
+        if (now.isAfter(expiresAt.minus(RENEWAL_MARGIN))) {
+            expiresAt = now.plus(VALIDITY);
+            token = Jwts.builder()
+                    .setSubject(SUBJECT)
+                    .setIssuedAt(Date.from(now))
+                    .setExpiration(Date.from(expiresAt))
+                    .signWith(getSignKey(), SignatureAlgorithm.HS256).compact();
+        }
+        return token;
+    }
+
+    private Key getSignKey() {
+        byte[] keyBytes = Decoders.BASE64.decode(secret.strip());
+        return Keys.hmacShaKeyFor(keyBytes);
+    }
+}
@@ -0,0 +1,119 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.dto.CohortDto;
+import com.medilabo.microrisk.exception.InvalidCohortQueryException;
+import com.medilabo.microrisk.service.CohortIndexService;
+import com.medilabo.microrisk.service.RiskService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CohortIndexServiceTest {
+
+    @InjectMocks
+    private CohortIndexService cohortIndexService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private RiskService riskService;
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(riskService.getRiskWords()).thenReturn(List.of("Fumeur", "Cholestérol", "Poids", "Rechute"));
+        when(mongoTemplate.stream(any(Query.class), eq(PatientRisk.class))).thenReturn(Stream.of(
+                new PatientRisk(1L, List.of("Fumeur", "Cholestérol"), null, "M", "Stale level"),
+                new PatientRisk(2L, List.of("Fumeur"), null, "F", "None"),
+                new PatientRisk(3L, List.of("Cholestérol", "Poids"), null, "F", "None"),
+                new PatientRisk(4L, List.of(), null, "M", "None")));
+        when(riskService.determineRiskLevel(any(PatientRisk.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, PatientRisk.class).getRiskWords().size() >= 2 ? "In Danger" : "None");
+
+        assertEquals(4, cohortIndexService.rebuild());
+    }
+
+    @Test
+    public void findCohort_shouldIntersectTheRiskWords() {
+        assertEquals(List.of(1L), patients(List.of("Fumeur", "cholestérol"), List.of(), List.of(), List.of()));
+        assertEquals(List.of(1L, 3L), patients(List.of(), List.of("Cholestérol", "Poids"), List.of(), List.of()));
+    }
+
+    @Test
+    public void findCohort_shouldFilterOnTheRiskLevels_evaluatedWhenRebuilt() {
+        assertEquals(List.of(1L, 3L), patients(List.of(), List.of(), List.of(), List.of("In Danger")));
+        assertEquals(List.of(), patients(List.of(), List.of(), List.of(), List.of("Stale level")));
+        assertEquals(List.of(3L), patients(List.of(), List.of(), List.of("Fumeur"), List.of("in danger")));
+    }
+
+    @Test
+    public void findCohort_shouldStartFromAllPatients_withoutWordOrLevelToMatch() {
+        CohortDto cohort = cohortIndexService.findCohort(List.of(), List.of(), List.of("Fumeur"), List.of());
+
+        assertEquals(2, cohort.getCount());
+        assertEquals(List.of(3L, 4L), cohort.getPatientIds());
+    }
+
+    @Test
+    public void findCohort_shouldRejectUnknownRiskWords() {
+        assertThrows(InvalidCohortQueryException.class,
+                () -> cohortIndexService.findCohort(List.of("Fumeur"), List.of(), List.of("Fumer"), List.of()));
+    }
+
+    @Test
+    public void update_shouldMoveThePatientToTheirNewRiskWordsAndLevel() {
+        cohortIndexService.update(new PatientRisk(2L, List.of("Fumeur", "Rechute"), null, "F", "In Danger"));
+        cohortIndexService.update(new PatientRisk(5L, List.of("Rechute"), null, "M", "None"));
+
+        assertEquals(List.of(2L, 5L), patients(List.of("Rechute"), List.of(), List.of(), List.of()));
+        assertEquals(List.of(1L, 2L, 3L), patients(List.of(), List.of(), List.of(), List.of("In Danger")));
+        assertEquals(List.of(4L, 5L), patients(List.of(), List.of(), List.of(), List.of("None")));
+    }
+
+    @Test
+    public void hasNoRiskWords_shouldBeTrue_onlyForTheIndexedPatientsWithoutRiskWords() {
+        assertFalse(cohortIndexService.hasNoRiskWords(1L));
+        assertTrue(cohortIndexService.hasNoRiskWords(4L));
+        assertFalse(cohortIndexService.hasNoRiskWords(5L));
+        assertFalse(cohortIndexService.hasNoRiskWords(999999L));
+        assertFalse(cohortIndexService.hasNoRiskWords(-1L));
+
+        cohortIndexService.update(new PatientRisk(1L, List.of(), null, "M", "None"));
+        cohortIndexService.update(new PatientRisk(4L, List.of("Rechute"), null, "M", "None"));
+        cohortIndexService.update(new PatientRisk(5L, List.of(), null, "F", "None"));
+
+        assertTrue(cohortIndexService.hasNoRiskWords(1L));
+        assertFalse(cohortIndexService.hasNoRiskWords(4L));
+        assertTrue(cohortIndexService.hasNoRiskWords(5L));
+    }
+
+    @Test
+    public void hasNoRiskWords_shouldBeFalse_untilTheIndexIsBuilt() {
+        CohortIndexService unbuiltIndex = new CohortIndexService();
+
+        assertFalse(unbuiltIndex.hasNoRiskWords(5L));
+    }
+
+    private List<Long> patients(List<String> allOf, List<String> anyOf, List<String> noneOf, List<String> levelsOf) {
+        return cohortIndexService.findCohort(allOf, anyOf, noneOf, levelsOf).getPatientIds();
+    }
+}
@@ -0,0 +1,53 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.matcher.FrenchTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class FrenchTokenizerTest {
+
+    @Test
+    public void tokens_shouldSplitOnPunctuation_andFoldCaseAndAccents() {
+        assertEquals(List.of("l", "hemoglobin", "a1c", "du", "patient", "est", "anormal"),
+                FrenchTokenizer.tokens("L'HÉMOGLOBINE A1C du patient est... anormale !"));
+        assertEquals(List.of("coeur", "ete", "ile"), FrenchTokenizer.tokens("Cœur, été, İle"));
+        assertEquals(List.of(), FrenchTokenizer.tokens(" ,;. "));
+    }
+
+    @Test
+    public void stem_shouldRemoveThePluralAndFeminineEndings() {
+        assertEquals(FrenchTokenizer.stem("vertige"), FrenchTokenizer.stem("vertiges"));
+        assertEquals(FrenchTokenizer.stem("fumeur"), FrenchTokenizer.stem("fumeuse"));
+        assertEquals(FrenchTokenizer.stem("fumeur"), FrenchTokenizer.stem("fumeuses"));
+        assertEquals(FrenchTokenizer.stem("anormal"), FrenchTokenizer.stem("anormaux"));
+        assertEquals(FrenchTokenizer.stem("anormal"), FrenchTokenizer.stem("anormales"));
+        assertEquals(FrenchTokenizer.stem("recommande"), FrenchTokenizer.stem("recommandees"));
+        assertEquals(FrenchTokenizer.stem("egal"), FrenchTokenizer.stem("egaux"));
+        assertEquals("a1c", FrenchTokenizer.stem("a1c"));
+        assertNotEquals(FrenchTokenizer.stem("taille"), FrenchTokenizer.stem("detaille"));
+    }
+
+    @Test
+    public void tokenHashes_shouldHashTheStemmedTokens() {
+        long[] hashes = FrenchTokenizer.tokenHashes("Vertiges, VERTIGE et taille");
+
+        assertEquals(4, hashes.length);
+        assertEquals(hashes[0], hashes[1]);
+        assertEquals(FrenchTokenizer.hash(FrenchTokenizer.stem("taille")), hashes[3]);
+        assertEquals(1000, FrenchTokenizer.tokenHashes("poids ".repeat(1000)).length);
+    }
+
+    @Test
+    public void tokenOffsets_shouldLocateEachToken_inTheOrderOfTheHashes() {
+        String text = "L'HÉMOGLOBINE, cœur  ";
+
+        assertArrayEquals(new int[]{0, 1, 2, 13, 15, 19}, FrenchTokenizer.tokenOffsets(text));
+        assertEquals(FrenchTokenizer.tokenHashes(text).length * 2, FrenchTokenizer.tokenOffsets(text).length);
+        assertEquals(2000, FrenchTokenizer.tokenOffsets("poids ".repeat(1000)).length);
+    }
+}
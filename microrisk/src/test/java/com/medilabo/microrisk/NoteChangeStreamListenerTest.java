@@ -0,0 +1,120 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.RiskStoreState;
+import com.medilabo.microrisk.listener.NoteChangeStreamListener;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matching.MatchingMode;
+import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskStoreService;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteChangeStreamListenerTest {
+
+    private static final RiskVocabulary VOCABULARY = RiskVocabulary.compile(1, List.of("Fumeur"), List.of("Recommandé"));
+
+    @InjectMocks
+    private NoteChangeStreamListener noteChangeStreamListener;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private RiskStoreService riskStoreService;
+
+    @Mock
+    private RiskService riskService;
+
+    @Mock
+    private Message<ChangeStreamDocument<Document>, Note> message;
+
+    @Mock
+    private ChangeStreamDocument<Document> change;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(noteChangeStreamListener, "retryBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(noteChangeStreamListener, "maxRetryBackoff", Duration.ofMillis(10));
+        lenient().when(riskService.getVocabulary()).thenReturn(VOCABULARY);
+        lenient().when(riskService.getMatchingMode()).thenReturn(MatchingMode.CONTENTS);
+    }
+
+    @Test
+    public void onMessage_shouldRecordTheChange_whenItIsApplied() {
+        Note note = new Note("1", 1L, "Kenobi", "Fumeur");
+        when(message.getRaw()).thenReturn(change);
+        when(message.getBody()).thenReturn(note);
+        when(change.getOperationType()).thenReturn(OperationType.INSERT);
+        when(change.getResumeToken()).thenReturn(new BsonDocument("_data", new BsonString("token")));
+
+        ReflectionTestUtils.invokeMethod(noteChangeStreamListener, "onMessage", message);
+
+        verify(riskStoreService).onNoteChanged(note);
+        verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(RiskStoreState.class));
+        verify(riskStoreService, never()).invalidate();
+    }
+
+    @Test
+    public void onMessage_shouldInvalidateAndRebuildTheStore_whenTheChangeCannotBeApplied() throws InterruptedException {
+        Note note = new Note("1", 1L, "Kenobi", "Fumeur");
+        when(message.getRaw()).thenReturn(change);
+        when(message.getBody()).thenReturn(note);
+        when(change.getOperationType()).thenReturn(OperationType.UPDATE);
+        doThrow(new IllegalStateException("microlabo is down")).when(riskStoreService).onNoteChanged(note);
+
+        ReflectionTestUtils.invokeMethod(noteChangeStreamListener, "onMessage", message);
+
+        verify(riskStoreService).invalidate();
+        awaitRebuild();
+        verify(riskStoreService).rebuild(VOCABULARY);
+        verify(change, never()).getResumeToken();
+    }
+
+    @Test
+    public void scheduleRebuild_shouldRetryAFailedRebuild_untilItSucceeds() throws InterruptedException {
+        doThrow(new DataAccessResourceFailureException("microlabo is down"))
+                .doThrow(new DataAccessResourceFailureException("microlabo is down"))
+                .doNothing()
+                .when(riskStoreService).rebuild(VOCABULARY);
+
+        ReflectionTestUtils.invokeMethod(noteChangeStreamListener, "scheduleRebuild");
+
+        awaitRebuild();
+        verify(riskStoreService, times(3)).rebuild(VOCABULARY);
+        verify(mongoTemplate, times(4)).upsert(any(Query.class), any(Update.class), eq(RiskStoreState.class));
+        assertNull(noteChangeStreamListener.getLastFailure());
+    }
+
+    private void awaitRebuild() throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && noteChangeStreamListener.isRebuilding(); attempt++) {
+            Thread.sleep(100);
+        }
+        assertFalse(noteChangeStreamListener.isRebuilding());
+    }
+}
@@ -0,0 +1,202 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.repository.NoteRiskTermRepositoryImpl;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteRiskTermRepositoryTest {
+
+    private static final RiskVocabulary VOCABULARY = RiskVocabulary.compile(1, List.of("Poids", "Fumeur"), List.of("Recommandé"));
+
+    @InjectMocks
+    private NoteRiskTermRepositoryImpl noteRiskTermRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    public void findRiskTermsByPatientId_shouldReturnTheRiskTermsOfThePatient() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("notes"), eq(Document.class)))
+                .thenReturn(results(new Document("_id", 1L).append("riskTerms", List.of("Fumeur"))));
+
+        assertEquals(List.of("Fumeur"), noteRiskTermRepository.findRiskTermsByPatientId(VOCABULARY, 1L));
+    }
+
+    @Test
+    public void findRiskTermsByPatientId_shouldReturnNoRiskTerm_whenNothingMatches() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("notes"), eq(Document.class))).thenReturn(results());
+
+        assertEquals(List.of(), noteRiskTermRepository.findRiskTermsByPatientId(VOCABULARY, 1L));
+    }
+
+    @Test
+    public void findRiskTermsByPatientIdIn_shouldGroupTheRiskTermsByPatient() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("notes"), eq(Document.class)))
+                .thenReturn(results(new Document("_id", 1L).append("riskTerms", List.of("Fumeur", "Poids")),
+                        new Document("_id", 2).append("riskTerms", List.of("Poids"))));
+
+        Map<Long, List<String>> riskTerms = noteRiskTermRepository.findRiskTermsByPatientIdIn(VOCABULARY, List.of(1L, 2L));
+
+        assertEquals(Map.of(1L, List.of("Fumeur", "Poids"), 2L, List.of("Poids")), riskTerms);
+    }
+
+    @Test
+    public void findRiskTerms_shouldEvaluateTheRiskWordsAndTheirExclusionsInThePipeline() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("notes"), eq(Document.class))).thenReturn(results());
+
+        noteRiskTermRepository.findRiskTermsByPatientId(VOCABULARY, 1L);
+
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq("notes"), eq(Document.class));
+        List<Document> pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        assertEquals(List.of("$match", "$project", "$unwind", "$group"),
+                pipeline.stream().map(stage -> stage.keySet().iterator().next()).toList());
+        assertEquals(new Document("$search", "Poids Fumeur"), pipeline.get(0).get("$match", Document.class).get("$text"));
+        String project = pipeline.get(1).toJson();
+        for (String regex : List.of("\\\\QPoids\\\\E", "\\\\QRecommandé Poids\\\\E|\\\\QPoids Recommandé\\\\E")) {
+            assertEquals(true, project.contains(regex), regex);
+        }
+    }
+
+    @Test
+    public void findRiskMasksByPatientIdIn_shouldCombineTheMasksOfTheVocabulary() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("notes")))
+                .thenReturn(List.of(new Document("patientId", 1L).append("riskMask", 1L),
+                        new Document("patientId", 1L).append("riskMask", 2L),
+                        new Document("patientId", 2L).append("riskMask", 0L)));
+
+        Map<Long, Long> riskMasks = noteRiskTermRepository.findRiskMasksByPatientIdIn(VOCABULARY, List.of(1L, 2L));
+
+        assertEquals(Map.of(1L, 3L, 2L, 0L), riskMasks);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Document.class), eq("notes"));
+        assertEquals(VOCABULARY.getFingerprint(), query.getValue().getQueryObject().get("riskVocabulary"));
+        assertEquals(new Document("_id", 0).append("patientId", 1).append("riskMask", 1), query.getValue().getFieldsObject());
+    }
+
+    @Test
+    public void saveRiskMasks_shouldStoreEachMask_onlyWhileItsContentIsUnchanged() {
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+
+        noteRiskTermRepository.saveRiskMasks(VOCABULARY, Map.of(new Note("1", 1L, "Kenobi", "Fumeur"), 2L));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).updateOne(query.capture(), update.capture());
+        verify(bulkOperations).execute();
+        assertEquals(new Document("id", "1").append("content", "Fumeur"), query.getValue().getQueryObject());
+        assertEquals(new Document("riskMask", 2L).append("riskVocabulary", VOCABULARY.getFingerprint()),
+                update.getValue().getUpdateObject().get("$set", Document.class));
+    }
+
+    @Test
+    public void findRiskMaskByPatientId_shouldBeZero_withoutAnyMaskOfTheVocabulary() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("notes"))).thenReturn(List.of());
+
+        assertEquals(0L, noteRiskTermRepository.findRiskMaskByPatientId(VOCABULARY, 1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void streamNoteContentsByContentAndPatientId_shouldReturnTheContentBytes_withoutDecodingThem() {
+        MongoCollection<Document> notes = mock(MongoCollection.class);
+        MongoCollection<RawBsonDocument> rawNotes = mock(MongoCollection.class);
+        FindIterable<RawBsonDocument> found = mock(FindIterable.class);
+        MongoCursor<RawBsonDocument> cursor = mock(MongoCursor.class);
+        when(mongoTemplate.getCollection("notes")).thenReturn(notes);
+        when(notes.withDocumentClass(RawBsonDocument.class)).thenReturn(rawNotes);
+        when(rawNotes.find(any(Bson.class))).thenReturn(found);
+        when(found.projection(any(Bson.class))).thenReturn(found);
+        when(found.batchSize(anyInt())).thenReturn(found);
+        when(found.cursor()).thenReturn(cursor);
+        doCallRealMethod().when(cursor).forEachRemaining(any());
+        when(cursor.hasNext()).thenReturn(true, true, true, false);
+        when(cursor.next()).thenReturn(
+                raw(new Document("_id", new ObjectId()).append("content", "Poids égal")),
+                raw(new Document("_id", "2").append("patientId", 1L).append("tags", List.of("a")).append("content", "Fumeur")),
+                raw(new Document("_id", new ObjectId())));
+
+        try (Stream<ByteBuffer> contents = noteRiskTermRepository.streamNoteContentsByContentAndPatientId("Poids Fumeur", 1L)) {
+            assertEquals(List.of("Poids égal", "Fumeur", ""), contents.map(content -> StandardCharsets.UTF_8.decode(content).toString()).toList());
+        }
+        verify(cursor, atLeastOnce()).close();
+        verify(rawNotes).find(new Document("$text", new Document("$search", "Poids Fumeur")).append("patientId", 1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void streamNoteContentsByContentAndPatientIdIn_shouldReturnTheContentBytes_byPatient() {
+        MongoCollection<Document> notes = mock(MongoCollection.class);
+        MongoCollection<RawBsonDocument> rawNotes = mock(MongoCollection.class);
+        FindIterable<RawBsonDocument> found = mock(FindIterable.class);
+        MongoCursor<RawBsonDocument> cursor = mock(MongoCursor.class);
+        when(mongoTemplate.getCollection("notes")).thenReturn(notes);
+        when(notes.withDocumentClass(RawBsonDocument.class)).thenReturn(rawNotes);
+        when(rawNotes.find(any(Bson.class))).thenReturn(found);
+        when(found.projection(any(Bson.class))).thenReturn(found);
+        when(found.batchSize(anyInt())).thenReturn(found);
+        when(found.cursor()).thenReturn(cursor);
+        doCallRealMethod().when(cursor).forEachRemaining(any());
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn(
+                raw(new Document("_id", new ObjectId()).append("patientId", 1L).append("content", "Poids égal")),
+                raw(new Document("_id", new ObjectId()).append("patientId", 2).append("content", "Fumeur")));
+
+        try (Stream<Map.Entry<Long, ByteBuffer>> contents =
+                     noteRiskTermRepository.streamNoteContentsByContentAndPatientIdIn("Poids Fumeur", List.of(1L, 2L))) {
+            assertEquals(List.of(Map.entry(1L, "Poids égal"), Map.entry(2L, "Fumeur")), contents
+                    .map(content -> Map.entry(content.getKey(), StandardCharsets.UTF_8.decode(content.getValue()).toString()))
+                    .toList());
+        }
+        verify(cursor, atLeastOnce()).close();
+        verify(rawNotes).find(new Document("$text", new Document("$search", "Poids Fumeur"))
+                .append("patientId", new Document("$in", List.of(1L, 2L))));
+    }
+
+    private static RawBsonDocument raw(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec());
+    }
+
+    private static AggregationResults<Document> results(Document... documents) {
+        return new AggregationResults<>(List.of(documents), new Document());
+    }
+}
@@ -0,0 +1,92 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.matcher.FrenchTokenizer;
+import com.medilabo.microrisk.repository.NoteRepository;
+import com.medilabo.microrisk.service.NoteTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteTokenServiceTest {
+
+    @InjectMocks
+    private NoteTokenService noteTokenService;
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager(NoteTokenService.NOTE_TOKENS_CACHE);
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(noteTokenService, "cacheManager", cacheManager);
+    }
+
+    @Test
+    public void getNoteTokens_shouldTokenizeTheNotes_onlyOncePerVersion() {
+        when(noteRepository.findNoteVersionsByPatientIdIn(List.of(1L)))
+                .thenReturn(List.of(version("a", 1L, 0L), version("b", 1L, null)))
+                .thenReturn(List.of(version("a", 1L, 0L), version("b", 1L, null)))
+                .thenReturn(List.of(version("a", 1L, 1L), version("b", 1L, null)));
+        when(noteRepository.findNoteContentsByIdIn(anyCollection()))
+                .thenReturn(List.of(content("a", 0L, "Fumeur"), content("b", null, "Vertiges")))
+                .thenReturn(List.of(content("a", 1L, "Cholestérol anormal")));
+
+        Map<String, long[]> first = noteTokenService.getNoteTokens(1L);
+        Map<String, long[]> second = noteTokenService.getNoteTokens(1L);
+        Map<String, long[]> updated = noteTokenService.getNoteTokens(1L);
+
+        assertArrayEquals(FrenchTokenizer.tokenHashes("Fumeur"), first.get("a"));
+        assertArrayEquals(FrenchTokenizer.tokenHashes("Vertiges"), first.get("b"));
+        assertArrayEquals(first.get("a"), second.get("a"));
+        assertArrayEquals(FrenchTokenizer.tokenHashes("Cholestérol anormal"), updated.get("a"));
+        assertArrayEquals(first.get("b"), updated.get("b"));
+        verify(noteRepository).findNoteContentsByIdIn(Set.of("a", "b"));
+        verify(noteRepository).findNoteContentsByIdIn(Set.of("a"));
+        verifyNoMoreInteractions(noteRepository);
+    }
+
+    @Test
+    public void getNoteTokens_shouldGroupTheTokensByPatient() {
+        when(noteRepository.findNoteVersionsByPatientIdIn(List.of(1L, 2L, 3L)))
+                .thenReturn(List.of(version("a", 1L, 0L), version("b", 2L, 0L), version("c", 2L, 2L)));
+        when(noteRepository.findNoteContentsByIdIn(anyCollection()))
+                .thenReturn(List.of(content("a", 0L, "Poids"), content("b", 0L, "Taille"), content("c", 2L, null)));
+
+        Map<Long, Map<String, long[]>> noteTokens = noteTokenService.getNoteTokens(List.of(1L, 2L, 3L));
+
+        assertEquals(Set.of(1L, 2L), noteTokens.keySet());
+        assertEquals(Set.of("a"), noteTokens.get(1L).keySet());
+        assertEquals(Set.of("b", "c"), noteTokens.get(2L).keySet());
+        assertEquals(0, noteTokens.get(2L).get("c").length);
+    }
+
+    private static Note version(String id, Long patientId, Long version) {
+        Note note = new Note(id, patientId, null, null);
+        note.setVersion(version);
+        return note;
+    }
+
+    private static Note content(String id, Long version, String content) {
+        Note note = new Note(id, null, null, content);
+        note.setVersion(version);
+        return note;
+    }
+}
@@ -0,0 +1,105 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.index.PatientBitmap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.BinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PatientBitmapTest {
+
+    @Test
+    public void add_shouldKeepThePatientIdsSorted_acrossChunks() {
+        PatientBitmap bitmap = PatientBitmap.of(70_000, 3, 1, 3, PatientBitmap.MAX_PATIENT_ID);
+
+        assertArrayEquals(new long[]{1, 3, 70_000, PatientBitmap.MAX_PATIENT_ID}, bitmap.toArray());
+        assertEquals(4, bitmap.cardinality());
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(2));
+        assertFalse(bitmap.contains(-1));
+    }
+
+    @Test
+    public void remove_shouldDropEmptyChunks() {
+        PatientBitmap bitmap = PatientBitmap.of(1, 70_000);
+
+        bitmap.remove(70_000);
+        bitmap.remove(5);
+
+        assertArrayEquals(new long[]{1}, bitmap.toArray());
+        bitmap.remove(1);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void add_shouldRejectPatientIdsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new PatientBitmap().add(-1));
+        assertThrows(IllegalArgumentException.class, () -> new PatientBitmap().add(PatientBitmap.MAX_PATIENT_ID + 1));
+        assertFalse(PatientBitmap.isSupported(null));
+    }
+
+    @Test
+    public void sizeInBytes_shouldStayCompact_forAMillionPatients() {
+        PatientBitmap sequentialIds = new PatientBitmap();
+        PatientBitmap randomIds = new PatientBitmap();
+        Random random = new Random(42);
+        for (long patientId = 1; patientId <= 1_000_000; patientId++) {
+            sequentialIds.add(patientId);
+            randomIds.add(random.nextLong(PatientBitmap.MAX_PATIENT_ID + 1));
+        }
+
+        // About 1 bit per ID for sequential IDs, and about 5 bytes per ID for IDs spread over the whole range, each chunk holding a few IDs
+        assertTrue(sequentialIds.sizeInBytes() < 140_000, "Sequential IDs take " + sequentialIds.sizeInBytes() + " bytes");
+        assertTrue(randomIds.sizeInBytes() < 6_000_000, "Random IDs take " + randomIds.sizeInBytes() + " bytes");
+    }
+
+    @Test
+    public void operations_shouldMatchTheSetOperations_forSparseAndDenseChunks() {
+        Random random = new Random(42);
+        for (int density : new int[]{10, 3_000, 60_000}) {
+            TreeSet<Long> first = randomIds(random, density, 0);
+            TreeSet<Long> second = randomIds(random, density / 2 + 1, 1);
+            PatientBitmap firstBitmap = bitmapOf(first);
+            PatientBitmap secondBitmap = bitmapOf(second);
+
+            assertOperation(first, second, (a, b) -> { a.retainAll(b); return a; }, firstBitmap.and(secondBitmap));
+            assertOperation(first, second, (a, b) -> { a.addAll(b); return a; }, firstBitmap.or(secondBitmap));
+            assertOperation(first, second, (a, b) -> { a.removeAll(b); return a; }, firstBitmap.andNot(secondBitmap));
+            assertArrayEquals(toArray(first), firstBitmap.toArray());
+        }
+    }
+
+    private static TreeSet<Long> randomIds(Random random, int perChunk, long firstChunk) {
+        TreeSet<Long> ids = new TreeSet<>();
+        for (long chunk = firstChunk; chunk < firstChunk + 3; chunk++) {
+            for (int i = 0; i < perChunk; i++) {
+                ids.add((chunk << 16) | random.nextInt(1 << 16));
+            }
+        }
+        return ids;
+    }
+
+    private static PatientBitmap bitmapOf(TreeSet<Long> ids) {
+        PatientBitmap bitmap = new PatientBitmap();
+        ids.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static void assertOperation(TreeSet<Long> first, TreeSet<Long> second,
+                                        BinaryOperator<TreeSet<Long>> operation, PatientBitmap result) {
+        TreeSet<Long> expected = operation.apply(new TreeSet<>(first), second);
+        assertArrayEquals(toArray(expected), result.toArray());
+        assertEquals(expected.size(), result.cardinality());
+    }
+
+    private static long[] toArray(TreeSet<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
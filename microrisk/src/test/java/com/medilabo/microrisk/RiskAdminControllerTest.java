@@ -0,0 +1,83 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.controller.RiskAdminController;
+import com.medilabo.microrisk.exception.InvalidRiskRulesException;
+import com.medilabo.microrisk.exception.InvalidRiskVocabularyException;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.rules.RiskDecisionTable;
+import com.medilabo.microrisk.service.RiskRulesService;
+import com.medilabo.microrisk.service.RiskStoreService;
+import com.medilabo.microrisk.service.RiskVocabularyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(RiskAdminController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class RiskAdminControllerTest {
+
+    @MockBean
+    private RiskRulesService riskRulesService;
+
+    @MockBean
+    private RiskVocabularyService riskVocabularyService;
+
+    @MockBean
+    private RiskStoreService riskStoreService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testReloadRules() throws Exception {
+        when(riskRulesService.reload()).thenReturn(RiskDecisionTable.parse(List.of("*;*;0;None", "*;*;*;In Danger")));
+
+        mockMvc.perform(post("/risk/admin/rules/reload"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Loaded 2 risk rules"));
+    }
+
+    @Test
+    public void testReloadRules_withInvalidRules() throws Exception {
+        when(riskRulesService.reload()).thenThrow(new InvalidRiskRulesException("Line 1: invalid range x"));
+
+        mockMvc.perform(post("/risk/admin/rules/reload"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testRebuildCohortIndex() throws Exception {
+        when(riskStoreService.rebuildCohortIndex()).thenReturn(3L);
+
+        mockMvc.perform(post("/risk/admin/cohort/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Cohort index rebuilt for 3 patients"));
+    }
+
+    @Test
+    public void testReloadVocabulary() throws Exception {
+        when(riskVocabularyService.reload()).thenReturn(RiskVocabulary.compile(2, List.of("Fumeur", "Poids"), List.of("Recommandé")));
+
+        mockMvc.perform(post("/risk/admin/vocabulary/reload"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Risk vocabulary version 2: 2 risk words, 1 exclusion words"));
+    }
+
+    @Test
+    public void testReloadVocabulary_withInvalidVocabulary() throws Exception {
+        when(riskVocabularyService.reload()).thenThrow(new InvalidRiskVocabularyException("Line 1: expected risk;word or exclusion;word but got x"));
+
+        mockMvc.perform(post("/risk/admin/vocabulary/reload"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,149 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.RiskPreviewBaseline;
+import com.medilabo.microrisk.dto.RiskTimelineEntryDto;
+import com.medilabo.microrisk.repository.NoteRepository;
+import com.medilabo.microrisk.repository.ReactiveNoteRepository;
+import com.medilabo.microrisk.service.RiskService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+public class RiskCacheTest {
+
+    @Autowired
+    private RiskService riskService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private NoteRepository noteRepository;
+
+    @MockBean
+    private ReactiveNoteRepository reactiveNoteRepository;
+
+    @MockBean
+    private WebClient.Builder webClientBuilder;
+
+    private final AtomicInteger demographicsRequests = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCache(RiskService.RISK_CACHE).clear();
+        cacheManager.getCache(RiskService.RISK_PREVIEW_CACHE).clear();
+        cacheManager.getCache(RiskService.RISK_TIMELINE_CACHE).clear();
+        String demographics = "{\"id\":1,\"birthdate\":\"" + LocalDate.now().minusYears(24) + "\",\"gender\":\"M\"}";
+        when(webClientBuilder.build()).thenReturn(WebClient.builder()
+                .exchangeFunction(request -> {
+                    demographicsRequests.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(demographics)
+                            .build());
+                })
+                .build());
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong()))
+                .thenAnswer(invocation -> notesOf("Fumeur", "Taille et cholestérol"));
+    }
+
+    @Test
+    public void calculateRiskForPatientAsync_shouldBeComputedOnce_untilEvicted() {
+        assertEquals("In Danger", riskService.calculateRiskForPatientAsync(1L, "someValidToken").block());
+        assertEquals("In Danger", riskService.calculateRiskForPatientAsync(1L, "someValidToken").block());
+
+        assertEquals(1, demographicsRequests.get());
+        verify(noteRepository, times(1)).streamNotesByContentAndPatientId(anyString(), anyLong());
+
+        riskService.evictRisk(1L);
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong()))
+                .thenAnswer(invocation -> notesOf("Fumeur"));
+
+        assertEquals("None", riskService.calculateRiskForPatientAsync(1L, "someValidToken").block());
+        assertEquals(2, demographicsRequests.get());
+    }
+
+    @Test
+    public void riskCache_shouldRecordHitsAndMisses() {
+        double hits = cacheGets("hit");
+        double misses = cacheGets("miss");
+
+        riskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
+        riskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
+
+        assertEquals(hits + 1, cacheGets("hit"));
+        assertEquals(misses + 1, cacheGets("miss"));
+    }
+
+    @Test
+    public void loadRiskPreviewBaseline_shouldBeLoadedOnce_untilEvicted() {
+        RiskPreviewBaseline baseline = riskService.loadRiskPreviewBaseline(1L, "someValidToken").block();
+        riskService.loadRiskPreviewBaseline(1L, "someValidToken").block();
+
+        assertEquals(1, demographicsRequests.get());
+        assertEquals(2, baseline.getNoteMasks().size());
+        verify(noteRepository, times(1)).streamNotesByContentAndPatientId(anyString(), anyLong());
+
+        riskService.evictRisk(1L);
+        riskService.loadRiskPreviewBaseline(1L, "someValidToken").block();
+
+        assertEquals(2, demographicsRequests.get());
+    }
+
+    @Test
+    public void calculateRiskTimeline_shouldBeComputedOnce_untilEvicted() {
+        when(noteRepository.findTimelineNotesByPatientId(1L)).thenAnswer(invocation -> notesOf("Fumeur", "Taille et cholestérol").toList());
+
+        List<RiskTimelineEntryDto> timeline = riskService.calculateRiskTimeline(1L, "someValidToken").block();
+        riskService.calculateRiskTimeline(1L, "someValidToken").block();
+
+        assertEquals(2, timeline.size());
+        assertEquals(1, demographicsRequests.get());
+        verify(noteRepository, times(1)).findTimelineNotesByPatientId(1L);
+
+        riskService.evictRisk(1L);
+        riskService.calculateRiskTimeline(1L, "someValidToken").block();
+
+        assertEquals(2, demographicsRequests.get());
+    }
+
+    private static Stream<Note> notesOf(String... contents) {
+        return IntStream.range(0, contents.length).mapToObj(i -> new Note(String.valueOf(i + 1), 1L, null, contents[i]));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", RiskService.RISK_CACHE)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
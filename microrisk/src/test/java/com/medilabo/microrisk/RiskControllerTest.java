@@ -1,21 +1,53 @@
 package com.medilabo.microrisk;
 
 import com.medilabo.microrisk.controller.RiskController;
+import com.medilabo.microrisk.dto.CohortDto;
+import com.medilabo.microrisk.dto.NoteExplanationDto;
+import com.medilabo.microrisk.dto.PatientRiskLevelDto;
+import com.medilabo.microrisk.dto.RiskExplanationDto;
+import com.medilabo.microrisk.dto.RiskPreviewDto;
+import com.medilabo.microrisk.dto.RiskTimelineDto;
+import com.medilabo.microrisk.dto.RiskTimelineEntryDto;
+import com.medilabo.microrisk.matcher.RiskWordExclusion;
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import com.medilabo.microrisk.service.CohortIndexService;
+import com.medilabo.microrisk.service.RiskPreviewService;
 import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskTimelineService;
 import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
 
 @WebMvcTest(RiskController.class)
@@ -28,6 +60,15 @@ public class RiskControllerTest {
     @MockBean
     private RiskService riskService;
 
+    @MockBean
+    private CohortIndexService cohortIndexService;
+
+    @MockBean
+    private RiskPreviewService riskPreviewService;
+
+    @MockBean
+    private RiskTimelineService riskTimelineService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -36,11 +77,157 @@ public class RiskControllerTest {
 
         String risk = "None";
 
-        when(riskService.calculateRiskForPatient(anyLong(), anyString())).thenReturn(risk);
+        when(riskService.calculateRiskForPatientAsync(anyLong(), anyString())).thenReturn(Mono.just(risk));
 
-        mockMvc.perform(get("/risk/1")
+        MvcResult result = mockMvc.perform(get("/risk/1")
                         .cookie(new Cookie("token", "someValidToken")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(content().string("None"));
     }
+
+    @Test
+    public void testExplainRiskForPatient() throws Exception {
+
+        when(riskService.explainRiskForPatient(eq(1L), anyString())).thenReturn(Mono.just(new RiskExplanationDto("None", 45, "F",
+                List.of("Fumeur"), List.of(new NoteExplanationDto("2", List.of("Fumeur"), List.of(new RiskWordSpan(17, 23, "Fumeur")),
+                List.of(new RiskWordSpan(0, 5, "Poids")), List.of(new RiskWordExclusion(0, 16, "Poids", "Recommandé")))))));
+
+        MvcResult result = mockMvc.perform(get("/risk/1/explain")
+                        .cookie(new Cookie("token", "someValidToken")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.riskLevel").value("None"))
+                .andExpect(jsonPath("$.notes[0].noteId").value("2"))
+                .andExpect(jsonPath("$.notes[0].matches[0].start").value(17))
+                .andExpect(jsonPath("$.notes[0].exclusions[0].exclusionWord").value("Recommandé"));
+    }
+
+    @Test
+    public void testPreviewRiskForPatient() throws Exception {
+
+        when(riskPreviewService.previewRisk(eq(1L), eq("2"), eq("Patient fumeur"), anyString())).thenReturn(Mono.just(
+                new RiskPreviewDto("Borderline", List.of("Taille", "Fumeur"), List.of(new RiskWordSpan(8, 14, "Fumeur")))));
+
+        MvcResult result = mockMvc.perform(post("/risk/1/preview")
+                        .cookie(new Cookie("token", "someValidToken"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"noteId\":\"2\",\"content\":\"Patient fumeur\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.riskLevel").value("Borderline"))
+                .andExpect(jsonPath("$.riskWords[1]").value("Fumeur"))
+                .andExpect(jsonPath("$.spans[0].start").value(8))
+                .andExpect(jsonPath("$.spans[0].end").value(14))
+                .andExpect(jsonPath("$.spans[0].riskWord").value("Fumeur"));
+    }
+
+    @Test
+    public void testGetRiskTimelineForPatient() throws Exception {
+
+        when(riskTimelineService.getRiskTimeline(eq(1L), eq(1), eq(2), anyString())).thenReturn(Mono.just(new RiskTimelineDto(1, 2, 3,
+                List.of(new RiskTimelineEntryDto("3", Instant.parse("2024-05-02T08:00:00Z"), 34, "Borderline", List.of("Taille", "Fumeur"))))));
+
+        MvcResult result = mockMvc.perform(get("/risk/1/timeline?page=1&size=2")
+                        .cookie(new Cookie("token", "someValidToken")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalEntries").value(3))
+                .andExpect(jsonPath("$.entries[0].noteId").value("3"))
+                .andExpect(jsonPath("$.entries[0].createdAt").value("2024-05-02T08:00:00Z"))
+                .andExpect(jsonPath("$.entries[0].riskLevel").value("Borderline"));
+    }
+
+    @Test
+    public void testGetRiskReport() throws Exception {
+
+        when(riskService.streamRiskReport(anyString())).thenReturn(Flux.just(
+                new PatientRiskLevelDto(1L, "None"),
+                new PatientRiskLevelDto(2L, "In Danger")));
+
+        MvcResult result = mockMvc.perform(get("/risk/report")
+                        .cookie(new Cookie("token", "someValidToken")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"patientId\":1,\"riskLevel\":\"None\"}\n{\"patientId\":2,\"riskLevel\":\"In Danger\"}\n"));
+    }
+
+    @Test
+    public void testGetRiskForPatients() throws Exception {
+
+        Map<Long, String> risks = new LinkedHashMap<>();
+        risks.put(1L, "None");
+        risks.put(2L, "In Danger");
+
+        when(riskService.calculateRiskForPatientsAsync(eq(List.of(1L, 2L, 3L)), anyString())).thenReturn(Mono.just(risks));
+
+        MvcResult result = mockMvc.perform(post("/risk/batch")
+                        .cookie(new Cookie("token", "someValidToken"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 2, 3]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.1").value("None"))
+                .andExpect(jsonPath("$.2").value("In Danger"))
+                .andExpect(jsonPath("$.3").doesNotExist());
+    }
+
+    @Test
+    public void testGetRiskForPatients_shouldRejectTooManyPatients() throws Exception {
+
+        String ids = LongStream.rangeClosed(1, RiskService.MAX_BATCH_PATIENTS + 1)
+                .mapToObj(Long::toString)
+                .collect(Collectors.joining(",", "[", "]"));
+
+        mockMvc.perform(post("/risk/batch")
+                        .cookie(new Cookie("token", "someValidToken"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ids))
+                .andExpect(status().isBadRequest());
+
+        verify(riskService, never()).calculateRiskForPatientsAsync(any(), any());
+    }
+
+    @Test
+    public void testGetCohort() throws Exception {
+
+        when(cohortIndexService.findCohort(List.of("Fumeur", "Cholestérol"), List.of(), List.of("Rechute"), List.of("In Danger")))
+                .thenReturn(new CohortDto(2, List.of(1L, 4L)));
+
+        mockMvc.perform(get("/risk/cohort")
+                        .param("all", "Fumeur", "Cholestérol")
+                        .param("none", "Rechute")
+                        .param("level", "In Danger"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.patientIds[1]").value(4));
+    }
+
+    @Test
+    public void testEvictRiskForPatient() throws Exception {
+
+        mockMvc.perform(delete("/risk/1/cache"))
+                .andExpect(status().isNoContent());
+
+        verify(riskService).evictRisk(1L);
+    }
 }
@@ -0,0 +1,137 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.exception.InvalidRiskRulesException;
+import com.medilabo.microrisk.rules.RiskDecisionTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RiskDecisionTableTest {
+
+    private RiskDecisionTable decisionTable;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        decisionTable = RiskDecisionTable.parse(Files.readAllLines(new ClassPathResource("risk-rules.csv").getFile().toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void classify_shouldGiveTheSameResultsAsTheNestedConditions() {
+        for (String gender : Arrays.asList("M", "m", "F", "f", "X", "", "male", null)) {
+            for (int age = -2; age <= 120; age++) {
+                for (long count = 0; count <= 20; count++) {
+                    assertEquals(nestedConditions(age, gender, count), decisionTable.classify(age, gender, count),
+                            gender + ", " + age + ", " + count);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void classify_shouldCapTheCountAboveTheHighestBound() {
+        assertEquals(8, decisionTable.getCountCap());
+        assertEquals("Early onset", decisionTable.classify(45, "F", Long.MAX_VALUE));
+    }
+
+    @Test
+    public void saturationCount_shouldBeTheCountFromWhichTheLevelDoesNotChange() {
+        assertEquals(5, decisionTable.saturationCount(24, "M"));
+        assertEquals(7, decisionTable.saturationCount(24, "F"));
+        assertEquals(8, decisionTable.saturationCount(45, "M"));
+        assertEquals(0, decisionTable.saturationCount(24, null));
+        for (String gender : Arrays.asList("M", "F", "X", null)) {
+            for (int age = 0; age <= 100; age++) {
+                int saturation = decisionTable.saturationCount(age, gender);
+                for (long count = saturation; count <= 20; count++) {
+                    assertEquals(decisionTable.classify(age, gender, saturation), decisionTable.classify(age, gender, count));
+                }
+                if (saturation > 0) {
+                    assertEquals(false, decisionTable.classify(age, gender, saturation - 1).equals(decisionTable.classify(age, gender, 20)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void getLevelWithoutRiskWords_shouldBeNull_whenItDependsOnTheAgeOrGender() {
+        assertEquals("None", decisionTable.getLevelWithoutRiskWords());
+        assertNull(RiskDecisionTable.parse(List.of("F;60+;0;Borderline", "*;*;*;None")).getLevelWithoutRiskWords());
+    }
+
+    @Test
+    public void parse_shouldApplyTheFirstMatchingRule() {
+        RiskDecisionTable table = RiskDecisionTable.parse(List.of(
+                "# comment",
+                "",
+                "F;60+;1+;Borderline",
+                "*;*;3;In Danger",
+                "*;*;*;None"));
+
+        assertEquals("Borderline", table.classify(65, "f", 3));
+        assertEquals("In Danger", table.classify(59, "F", 3));
+        assertEquals("None", table.classify(65, "M", 1));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void parse_shouldRejectInvalidLines() {
+        assertThrows(InvalidRiskRulesException.class, () -> RiskDecisionTable.parse(List.of("M;*;*")));
+        assertThrows(InvalidRiskRulesException.class, () -> RiskDecisionTable.parse(List.of("Male;*;*;None")));
+        assertThrows(InvalidRiskRulesException.class, () -> RiskDecisionTable.parse(List.of("M;5-2;*;None")));
+        assertThrows(InvalidRiskRulesException.class, () -> RiskDecisionTable.parse(List.of("M;*;two;None")));
+        assertThrows(InvalidRiskRulesException.class, () -> RiskDecisionTable.parse(List.of("M;*;*; ")));
+        assertThrows(InvalidRiskRulesException.class, () -> RiskDecisionTable.parse(List.of("# no rule")));
+    }
+
+    @Test
+    public void parse_shouldRejectTablesThatDontCoverEveryPatient() {
+        assertThrows(InvalidRiskRulesException.class, () -> RiskDecisionTable.parse(List.of("M;*;*;None")));
+    }
+
+    // Reference implementation, as previously done in RiskService
+
+    private static String nestedConditions(int age, String gender, long riskWordOccurrences) {
+        if (riskWordOccurrences == 0) {
+            return "None";
+        } else if (riskWordOccurrences >= 2 && riskWordOccurrences <= 5) {
+            if (age > 30) {
+                return "Borderline";
+            }
+        }
+        if ("m".equalsIgnoreCase(gender)) {
+            if (age < 30) {
+                if (riskWordOccurrences >= 3 && riskWordOccurrences < 5) {
+                    return "In Danger";
+                } else if (riskWordOccurrences < 3) {
+                    return "None";
+                } else return "Early onset";
+            }
+            if (riskWordOccurrences >= 6 && riskWordOccurrences < 8) {
+                return "In Danger";
+            } else return "Early onset";
+        }
+        if ("f".equalsIgnoreCase(gender)) {
+            if (age < 30) {
+                if (riskWordOccurrences >= 4 && riskWordOccurrences < 7) {
+                    return "In Danger";
+                } else if (riskWordOccurrences < 4) {
+                    return "None";
+                } else return "Early onset";
+            }
+            if (riskWordOccurrences == 7) {
+                return "In Danger";
+            } else return "Early onset";
+        }
+        return "None";
+    }
+}
@@ -0,0 +1,89 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.RiskPreviewBaseline;
+import com.medilabo.microrisk.dto.RiskPreviewDto;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import com.medilabo.microrisk.service.RiskPreviewService;
+import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskVocabularyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RiskPreviewServiceTest {
+
+    @InjectMocks
+    private RiskPreviewService riskPreviewService;
+
+    @Mock
+    private RiskService riskService;
+
+    private final RiskVocabulary vocabulary = new RiskVocabularyService().getVocabulary();
+
+    @BeforeEach
+    public void setUp() {
+        when(riskService.getVocabulary()).thenReturn(vocabulary);
+        lenient().when(riskService.explainRiskWords(any(), any()))
+                .thenAnswer(invocation -> vocabulary.getMatcher().explain(invocation.getArgument(1, CharSequence.class)));
+        lenient().when(riskService.determineRiskLevel(anyInt(), any(), anyLong()))
+                .thenAnswer(invocation -> invocation.getArgument(2, Long.class) >= 3 ? "In Danger" : "None");
+    }
+
+    @Test
+    public void previewRisk_shouldCombineTheDraft_withTheSavedNotes() {
+        when(riskService.loadRiskPreviewBaseline(1L, "someValidToken")).thenReturn(Mono.just(baseline(vocabulary.getVersion())));
+
+        RiskPreviewDto preview = riskPreviewService.previewRisk(1L, null, "Patient fumeur", "someValidToken").block();
+
+        assertEquals("In Danger", preview.getRiskLevel());
+        assertEquals(List.of("Taille", "Poids", "Fumeur"), preview.getRiskWords());
+        assertEquals(List.of(new RiskWordSpan(8, 14, "Fumeur")), preview.getSpans());
+    }
+
+    @Test
+    public void previewRisk_shouldReplaceTheSavedVersion_ofTheUpdatedNote() {
+        when(riskService.loadRiskPreviewBaseline(1L, "someValidToken")).thenReturn(Mono.just(baseline(vocabulary.getVersion())));
+
+        RiskPreviewDto preview = riskPreviewService.previewRisk(1L, "2", "Patient fumeur", "someValidToken").block();
+
+        assertEquals("None", preview.getRiskLevel());
+        assertEquals(List.of("Taille", "Fumeur"), preview.getRiskWords());
+    }
+
+    @Test
+    public void previewRisk_shouldReloadTheBaseline_whenItWasLoadedWithAnotherVocabulary() {
+        when(riskService.loadRiskPreviewBaseline(1L, "someValidToken"))
+                .thenReturn(Mono.just(baseline(vocabulary.getVersion() - 1)), Mono.just(baseline(vocabulary.getVersion())));
+
+        RiskPreviewDto preview = riskPreviewService.previewRisk(1L, null, "", "someValidToken").block();
+
+        assertEquals(List.of("Taille", "Poids"), preview.getRiskWords());
+        verify(riskService).evictRisk(1L);
+        verify(riskService, times(2)).loadRiskPreviewBaseline(1L, "someValidToken");
+    }
+
+    private RiskPreviewBaseline baseline(long vocabularyVersion) {
+        return new RiskPreviewBaseline(vocabularyVersion, LocalDate.now().minusYears(24), "M", Map.of(
+                "1", vocabulary.getMatcher().match("Taille"),
+                "2", vocabulary.getMatcher().match("Poids")));
+    }
+}
@@ -0,0 +1,59 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.exception.InvalidRiskRulesException;
+import com.medilabo.microrisk.rules.RiskDecisionTable;
+import com.medilabo.microrisk.service.RiskRulesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RiskRulesServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    private Path rules;
+
+    private RiskRulesService riskRulesService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        rules = directory.resolve("risk-rules.csv");
+        Files.writeString(rules, "*;*;0;None\n*;*;*;In Danger\n");
+        riskRulesService = new RiskRulesService();
+        ReflectionTestUtils.setField(riskRulesService, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(riskRulesService, "rulesLocation", rules.toUri().toString());
+        riskRulesService.init();
+    }
+
+    @Test
+    public void reload_shouldSwapTheDecisionTable() throws IOException {
+        assertEquals("In Danger", riskRulesService.getDecisionTable().classify(40, "M", 1));
+
+        Files.writeString(rules, "*;*;0;None\n*;*;*;Borderline\n");
+        RiskDecisionTable reloaded = riskRulesService.reload();
+
+        assertSame(reloaded, riskRulesService.getDecisionTable());
+        assertEquals("Borderline", riskRulesService.getDecisionTable().classify(40, "M", 1));
+    }
+
+    @Test
+    public void reload_shouldKeepTheCurrentTable_whenTheFileIsInvalid() throws IOException {
+        RiskDecisionTable current = riskRulesService.getDecisionTable();
+
+        Files.writeString(rules, "M;*;*;None\n");
+
+        assertThrows(InvalidRiskRulesException.class, () -> riskRulesService.reload());
+        assertSame(current, riskRulesService.getDecisionTable());
+    }
+}
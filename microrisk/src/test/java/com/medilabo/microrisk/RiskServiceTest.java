@@ -1,17 +1,65 @@
 package com.medilabo.microrisk;
 
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.dto.NoteExplanationDto;
+import com.medilabo.microrisk.dto.PatientDemographicsDto;
+import com.medilabo.microrisk.dto.RiskExplanationDto;
+import com.medilabo.microrisk.dto.RiskTimelineEntryDto;
+import com.medilabo.microrisk.matcher.FrenchTokenizer;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordExclusion;
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import com.medilabo.microrisk.matching.AggregationMatching;
+import com.medilabo.microrisk.matching.ContentsMatching;
+import com.medilabo.microrisk.matching.MatchingMode;
+import com.medilabo.microrisk.matching.NoteMasksMatching;
+import com.medilabo.microrisk.matching.TokensMatching;
+import com.medilabo.microrisk.matching.Utf8Matching;
 import com.medilabo.microrisk.repository.NoteRepository;
+import com.medilabo.microrisk.repository.PatientRiskRepository;
+import com.medilabo.microrisk.repository.ReactiveNoteRepository;
+import com.medilabo.microrisk.service.CohortIndexService;
+import com.medilabo.microrisk.service.NoteTokenService;
+import com.medilabo.microrisk.service.RiskRulesService;
 import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskStoreService;
+import com.medilabo.microrisk.service.RiskVocabularyService;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -24,20 +72,66 @@ public class RiskServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private ReactiveNoteRepository reactiveNoteRepository;
+
+    @Mock
+    private PatientRiskRepository patientRiskRepository;
+
+    @Mock
+    private ObjectProvider<CohortIndexService> cohortIndexServiceProvider;
+
+    @Mock
+    private CohortIndexService cohortIndexService;
+
+    @Mock
+    private ObjectProvider<RiskStoreService> riskStoreServiceProvider;
+
+    @Mock
+    private RiskStoreService riskStoreService;
+
+    @Mock
+    private NoteTokenService noteTokenService;
+
+    @Spy
+    private RiskRulesService riskRulesService = new RiskRulesService();
+
+    @Spy
+    private RiskVocabularyService riskVocabularyService = new RiskVocabularyService();
+
+    @Spy
+    @InjectMocks
+    private ContentsMatching contentsMatching;
+
+    @InjectMocks
+    private AggregationMatching aggregationMatching;
+
+    @InjectMocks
+    private NoteMasksMatching noteMasksMatching;
+
+    @InjectMocks
+    private Utf8Matching utf8Matching;
+
+    @InjectMocks
+    private TokensMatching tokensMatching;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(this.riskService, "matchings",
+                List.of(contentsMatching, aggregationMatching, noteMasksMatching, utf8Matching, tokensMatching));
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.CONTENTS);
+    }
+
     @Test
     public void testCalculateAge() {
-        RiskService spyRiskService = spy(this.riskService);
         LocalDate birthdate = LocalDate.now();
-        doReturn(birthdate).when(spyRiskService).fetchBirthDate(anyLong(), anyString());
-        int age = spyRiskService.calculateAge(1L, "someValidToken");
+        int age = this.riskService.calculateAge(birthdate);
         assertEquals(0, age);
     }
 
     @Test
     public void testCalculateAge_WithNullBirthdate() {
-        RiskService spyRiskService = spy(this.riskService);
-        doReturn(null).when(spyRiskService).fetchBirthDate(anyLong(), anyString());
-        int age = spyRiskService.calculateAge(1L, "someValidToken");
+        int age = this.riskService.calculateAge(null);
         assertEquals(0, age);
     }
 
@@ -64,9 +158,8 @@ public class RiskServiceTest {
         List<String> riskyContents = List.of(contents.get(2), contents.get(1));
 
         RiskService spyRiskService = spy(this.riskService);
-        when(noteRepository.findNoteContentsByContentAndPatientId(anyString(), anyLong())).thenReturn(riskyContents);
-        doReturn(riskWords).when(spyRiskService).getRiskWords();
-        doReturn(exclusionWords).when(spyRiskService).getExclusionWords();
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(notesOf(riskyContents));
+        doReturn(RiskVocabulary.compile(1, riskWords, exclusionWords)).when(spyRiskService).getVocabulary();
         long riskWordOccurrences = spyRiskService.getRiskWordsOccurrences(1L);
         assertEquals(2, riskWordOccurrences);
     }
@@ -79,9 +172,8 @@ public class RiskServiceTest {
         List<String> riskyContents = List.of(contents.get(2));
 
         RiskService spyRiskService = spy(this.riskService);
-        when(noteRepository.findNoteContentsByContentAndPatientId(anyString(), anyLong())).thenReturn(riskyContents);
-        doReturn(riskWords).when(spyRiskService).getRiskWords();
-        doReturn(exclusionWords).when(spyRiskService).getExclusionWords();
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(notesOf(riskyContents));
+        doReturn(RiskVocabulary.compile(1, riskWords, exclusionWords)).when(spyRiskService).getVocabulary();
         long riskWordOccurrences = spyRiskService.getRiskWordsOccurrences(1L);
         assertEquals(1, riskWordOccurrences);
     }
@@ -94,9 +186,8 @@ public class RiskServiceTest {
         List<String> exclusionWords = List.of("Égal", "Recommandé");
 
         RiskService spyRiskService = spy(this.riskService);
-        when(noteRepository.findNoteContentsByContentAndPatientId(anyString(), anyLong())).thenReturn(riskyContents);
-        doReturn(riskWords).when(spyRiskService).getRiskWords();
-        doReturn(exclusionWords).when(spyRiskService).getExclusionWords();
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(notesOf(riskyContents));
+        doReturn(RiskVocabulary.compile(1, riskWords, exclusionWords)).when(spyRiskService).getVocabulary();
         long riskWordOccurrences = spyRiskService.getRiskWordsOccurrences(1L);
         assertEquals(1, riskWordOccurrences);
     }
@@ -120,26 +211,389 @@ public class RiskServiceTest {
 
         RiskService spyRiskService = spy(this.riskService);
 
-        doReturn(riskWords).when(spyRiskService).getRiskWords();
-        doReturn(exclusionWords).when(spyRiskService).getExclusionWords();
-        when(noteRepository.findNoteContentsByContentAndPatientId(anyString(), anyLong())).thenReturn(riskyContents);
+        doReturn(RiskVocabulary.compile(1, riskWords, exclusionWords)).when(spyRiskService).getVocabulary();
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(notesOf(riskyContents));
 
         long count = spyRiskService.getRiskWordsOccurrences(1L);
 
         assertEquals(1, count);
     }
 
+    @Test
+    public void getRiskWordsMasks_shouldMergeTheRiskWordsOfEachPatient() {
+        List<Note> notes = List.of(
+                new Note("1", 1L, "Kenobi", "Fumeur"),
+                new Note("2", 2L, "Skywalker", "Poids recommandé"),
+                new Note("3", 1L, "Kenobi", "Cholestérol et fumeur"));
+        when(noteRepository.findNotesByContentAndPatientIdIn(anyString(), anyCollection())).thenReturn(notes);
+
+        Map<Long, Long> masks = this.riskService.getRiskWordsMasks(List.of(1L, 2L, 3L));
+
+        assertEquals(2, Long.bitCount(masks.get(1L)));
+        assertEquals(0L, masks.get(2L));
+        assertEquals(null, masks.get(3L));
+    }
+
+    @Test
+    public void getRiskWordsOccurrences_shouldCountTheAggregatedRiskTerms_whenTheAggregationIsEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.AGGREGATION);
+        when(noteRepository.findRiskTermsByPatientId(any(RiskVocabulary.class), anyLong())).thenReturn(List.of("Fumeur", "Cholestérol"));
+
+        assertEquals(2, this.riskService.getRiskWordsOccurrences(1L));
+        verify(noteRepository, never()).streamNotesByContentAndPatientId(anyString(), anyLong());
+    }
+
+    @Test
+    public void getRiskWordsMasks_shouldUseTheAggregatedRiskTerms_whenTheAggregationIsEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.AGGREGATION);
+        when(noteRepository.findRiskTermsByPatientIdIn(any(RiskVocabulary.class), anyCollection()))
+                .thenReturn(Map.of(1L, List.of("Fumeur", "Cholestérol")));
+
+        Map<Long, Long> masks = this.riskService.getRiskWordsMasks(List.of(1L, 2L));
+
+        assertEquals(List.of("Fumeur", "Cholestérol"), this.riskService.getRiskWordMatcher().riskWordsOf(masks.get(1L)));
+        assertEquals(null, masks.get(2L));
+        verify(noteRepository, never()).findNotesByContentAndPatientIdIn(anyString(), anyCollection());
+    }
+
+    @Test
+    public void getRiskWordsOccurrences_shouldCombineTheNoteMasks_withTheUnmaskedNotes_whenTheNoteMasksAreEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.NOTE_MASKS);
+        RiskVocabulary vocabulary = this.riskService.getVocabulary();
+        when(noteRepository.findRiskMaskByPatientId(any(RiskVocabulary.class), anyLong()))
+                .thenReturn(vocabulary.getMatcher().maskOf(List.of("Fumeur", "Cholestérol")));
+        when(noteRepository.streamUnmaskedNotesByContentAndPatientId(anyString(), anyLong(), eq(vocabulary.getFingerprint())))
+                .thenReturn(notesOf(List.of("Fumeur et rechute")));
+
+        assertEquals(3, this.riskService.getRiskWordsOccurrences(1L));
+        verify(noteRepository, never()).streamNotesByContentAndPatientId(anyString(), anyLong());
+    }
+
+    @Test
+    public void getRiskWordsMasks_shouldStoreTheMasksOfTheUnmaskedNotes_whenTheNoteMasksAreEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.NOTE_MASKS);
+        RiskVocabulary vocabulary = this.riskService.getVocabulary();
+        Note note = new Note("1", 1L, "Kenobi", "Cholestérol");
+        when(noteRepository.findUnmaskedNotesByContentAndPatientIdIn(anyString(), anyCollection(), anyString()))
+                .thenReturn(List.of(note));
+
+        this.riskService.getRiskWordsMasks(List.of(1L));
+
+        verify(noteRepository).saveRiskMasks(vocabulary, Map.of(note, vocabulary.getMatcher().maskOf(List.of("Cholestérol"))));
+    }
+
+    @Test
+    public void getRiskWordsOccurrences_shouldNotReadTheNotes_whenTheNoteMasksSaturateTheRisk() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.NOTE_MASKS);
+        long riskMask = this.riskService.getRiskWordMatcher().maskOf(List.of("Fumeur", "Cholestérol", "Rechute"));
+        when(noteRepository.findRiskMaskByPatientId(any(RiskVocabulary.class), anyLong())).thenReturn(riskMask);
+
+        assertEquals(3, this.riskService.getRiskWordsOccurrences(1L, () -> 3));
+        verify(noteRepository, never()).streamUnmaskedNotesByContentAndPatientId(anyString(), anyLong(), anyString());
+    }
+
+    @Test
+    public void getRiskWordsOccurrences_shouldScanTheUtf8Contents_regardlessOfAccents_whenTheUtf8ScanIsEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.UTF8);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(noteRepository.streamNoteContentsByContentAndPatientId(anyString(), anyLong()))
+                .thenReturn(Stream.of("Fumeur", "CHOLESTEROL, poids recommande")
+                        .map(content -> ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)))
+                        .onClose(() -> closed.set(true)));
+
+        assertEquals(2, this.riskService.getRiskWordsOccurrences(1L));
+        assertEquals(true, closed.get());
+        verify(noteRepository, never()).streamNotesByContentAndPatientId(anyString(), anyLong());
+    }
+
+    @Test
+    public void matchRiskWords_shouldUseTheStrategyOfEachMatchingMode() {
+        RiskVocabulary vocabulary = this.riskService.getVocabulary();
+        long smoker = vocabulary.getMatcher().maskOf(List.of("Fumeur"));
+
+        for (MatchingMode mode : MatchingMode.values()) {
+            ReflectionTestUtils.setField(this.riskService, "matchingMode", mode);
+            assertEquals(mode, this.riskService.getMatchingMode());
+            assertEquals(smoker, this.riskService.matchRiskWords(vocabulary, "Fumeur"), mode.name());
+        }
+    }
+
+    @Test
+    public void getRiskWordsMasks_shouldScanTheUtf8Contents_regardlessOfAccents_whenTheUtf8ScanIsEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.UTF8);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(noteRepository.streamNoteContentsByContentAndPatientIdIn(anyString(), anyCollection()))
+                .thenReturn(Stream.of(Map.entry(1L, "Fumeur"), Map.entry(1L, "CHOLESTEROL"), Map.entry(2L, "hemoglobine a1c"))
+                        .map(content -> Map.entry(content.getKey(), ByteBuffer.wrap(content.getValue().getBytes(StandardCharsets.UTF_8))))
+                        .onClose(() -> closed.set(true)));
+
+        Map<Long, Long> masks = this.riskService.getRiskWordsMasks(List.of(1L, 2L));
+
+        assertEquals(List.of("Fumeur", "Cholestérol"), this.riskService.getRiskWordMatcher().riskWordsOf(masks.get(1L)));
+        assertEquals(List.of("Hémoglobine A1C"), this.riskService.getRiskWordMatcher().riskWordsOf(masks.get(2L)));
+        assertEquals(true, closed.get());
+        verify(noteRepository, never()).findNotesByContentAndPatientIdIn(anyString(), anyCollection());
+    }
+
+    @Test
+    public void matchRiskWords_shouldFollowTheMatchingMode() {
+        RiskVocabulary vocabulary = this.riskService.getVocabulary();
+        long cholesterol = vocabulary.getMatcher().maskOf(List.of("Cholestérol"));
+
+        assertEquals(0L, this.riskService.matchRiskWords(vocabulary, "cholesterol"));
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.UTF8);
+        assertEquals(cholesterol, this.riskService.matchRiskWords(vocabulary, "cholesterol"));
+    }
+
+    @Test
+    public void getRiskWordsOccurrences_shouldMatchTheCachedTokens_whenTheTokensAreEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.TOKENS);
+        when(noteTokenService.getNoteTokens(1L)).thenReturn(Map.of(
+                "1", FrenchTokenizer.tokenHashes("Vertige et CHOLESTEROL"),
+                "2", FrenchTokenizer.tokenHashes("Vertiges, poids recommandé, compte rendu détaillé")));
+
+        assertEquals(2, this.riskService.getRiskWordsOccurrences(1L));
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void getRiskWordsMasks_shouldMatchTheCachedTokens_whenTheTokensAreEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.TOKENS);
+        when(noteTokenService.getNoteTokens(List.of(1L, 2L))).thenReturn(Map.of(
+                1L, Map.of("1", FrenchTokenizer.tokenHashes("Fumeuse"), "2", FrenchTokenizer.tokenHashes("Rechute")),
+                2L, Map.of("3", FrenchTokenizer.tokenHashes("Fumeur"))));
+
+        Map<Long, Long> masks = this.riskService.getRiskWordsMasks(List.of(1L, 2L));
+
+        assertEquals(this.riskService.getRiskWordMatcher().maskOf(List.of("Fumeur", "Rechute")), masks.get(1L));
+        assertEquals(this.riskService.getRiskWordMatcher().maskOf(List.of("Fumeur")), masks.get(2L));
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void getRiskWordsMasks_shouldMergeTheNoteMasks_withTheUnmaskedNotes_whenTheNoteMasksAreEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.NOTE_MASKS);
+        long smoker = this.riskService.getRiskWordMatcher().maskOf(List.of("Fumeur"));
+        when(noteRepository.findRiskMasksByPatientIdIn(any(RiskVocabulary.class), anyCollection()))
+                .thenReturn(Map.of(1L, smoker, 2L, smoker));
+        when(noteRepository.findUnmaskedNotesByContentAndPatientIdIn(anyString(), anyCollection(), anyString()))
+                .thenReturn(List.of(new Note("1", 1L, "Kenobi", "Cholestérol"), new Note("3", 3L, "Solo", "Rechute")));
+
+        Map<Long, Long> masks = this.riskService.getRiskWordsMasks(List.of(1L, 2L, 3L));
+
+        assertEquals(2, Long.bitCount(masks.get(1L)));
+        assertEquals(smoker, masks.get(2L));
+        assertEquals(1, Long.bitCount(masks.get(3L)));
+        verify(noteRepository, never()).findNotesByContentAndPatientIdIn(anyString(), anyCollection());
+    }
+
+    @Test
+    public void calculateRiskForPatients_shouldDetermineTheRiskOfEachFoundPatient() {
+        LocalDate under30 = LocalDate.now().minusYears(25);
+        LocalDate over30 = LocalDate.now().minusYears(40);
+        List<PatientDemographicsDto> demographics = List.of(
+                new PatientDemographicsDto(1L, under30, "M"),
+                new PatientDemographicsDto(2L, over30, "F"),
+                new PatientDemographicsDto(3L, over30, "M"));
+        List<Note> notes = List.of(
+                new Note("1", 1L, "Kenobi", "Fumeur, cholestérol anormal"),
+                new Note("2", 2L, "Leia", "Taille et poids"),
+                new Note("3", 2L, "Leia", "Taille"));
+
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Flux.fromIterable(demographics)).when(spyRiskService).fetchDemographics(anyCollection(), anyString());
+        when(noteRepository.findNotesByContentAndPatientIdIn(anyString(), anyCollection())).thenReturn(notes);
+
+        Map<Long, String> risks = spyRiskService.calculateRiskForPatients(List.of(1L, 2L, 3L, 4L, 1L), "someValidToken");
+
+        assertEquals(List.of(1L, 2L, 3L), List.copyOf(risks.keySet()));
+        assertEquals("In Danger", risks.get(1L));
+        assertEquals("Borderline", risks.get(2L));
+        assertEquals("None", risks.get(3L));
+        verify(spyRiskService, times(1)).fetchDemographics(anyCollection(), anyString());
+        verify(noteRepository, times(1)).findNotesByContentAndPatientIdIn(anyString(), anyCollection());
+    }
+
+    @Test
+    public void streamRiskReport_shouldPageThePatients_andComputeTheRiskLevelOfEachOne() {
+        List<Long> afterIds = new CopyOnWriteArrayList<>();
+        RiskService spyRiskService = spy(this.riskService);
+        doAnswer(invocation -> demographicsPage(invocation.getArgument(0), invocation.getArgument(1), 2500, afterIds))
+                .when(spyRiskService).fetchDemographicsPage(anyLong(), anyInt(), anyString());
+        when(noteRepository.findNotesByContentAndPatientIdIn(anyString(), anyCollection())).thenAnswer(invocation ->
+                invocation.getArgument(1, Collection.class).contains(2001L)
+                        ? List.of(new Note("1", 2001L, "Kenobi", "Fumeur, cholestérol anormal"))
+                        : List.of());
+
+        Map<Long, String> risks = new HashMap<>();
+        StepVerifier.create(spyRiskService.streamRiskReport("someValidToken"))
+                .thenConsumeWhile(line -> risks.put(line.getPatientId(), line.getRiskLevel()) == null)
+                .verifyComplete();
+
+        assertEquals(2500, risks.size());
+        assertEquals("In Danger", risks.get(2001L));
+        assertEquals("None", risks.get(2500L));
+        assertEquals(List.of(0L, 1000L, 2000L, 2500L), afterIds);
+        verify(noteRepository, times(3)).findNotesByContentAndPatientIdIn(anyString(), anyCollection());
+    }
+
+    @Test
+    public void streamRiskReport_shouldKeepPaging_whenThePatientMicroserviceCapsTheSizeOfThePages() {
+        List<Long> afterIds = new CopyOnWriteArrayList<>();
+        RiskService spyRiskService = spy(this.riskService);
+        doAnswer(invocation -> demographicsPage(invocation.getArgument(0), 400, 1000, afterIds))
+                .when(spyRiskService).fetchDemographicsPage(anyLong(), anyInt(), anyString());
+        when(noteRepository.findNotesByContentAndPatientIdIn(anyString(), anyCollection())).thenReturn(List.of());
+
+        StepVerifier.create(spyRiskService.streamRiskReport("someValidToken"))
+                .expectNextCount(1000)
+                .verifyComplete();
+
+        assertEquals(List.of(0L, 400L, 800L, 1000L), afterIds);
+    }
+
+    @Test
+    public void streamRiskReport_shouldOnlyFetchThePagesConsumed() {
+        List<Long> afterIds = new CopyOnWriteArrayList<>();
+        RiskService spyRiskService = spy(this.riskService);
+        doAnswer(invocation -> demographicsPage(invocation.getArgument(0), invocation.getArgument(1), 1_000_000, afterIds))
+                .when(spyRiskService).fetchDemographicsPage(anyLong(), anyInt(), anyString());
+        when(noteRepository.findNotesByContentAndPatientIdIn(anyString(), anyCollection())).thenReturn(List.of());
+
+        StepVerifier.create(spyRiskService.streamRiskReport("someValidToken"), 0)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenRequest(1500)
+                .expectNextCount(1500)
+                .thenCancel()
+                .verify();
+
+        assertTrue(afterIds.size() < 10, afterIds.size() + " pages fetched out of 1000");
+    }
+
+    private static Flux<PatientDemographicsDto> demographicsPage(long afterId, int size, long patients, List<Long> afterIds) {
+        afterIds.add(afterId);
+        return Flux.range(1, (int) Math.max(0, Math.min(size, patients - afterId)))
+                .map(i -> new PatientDemographicsDto(afterId + i, LocalDate.now().minusYears(24), "M"));
+    }
+
+    @Test
+    public void calculateRiskForPatientsAsync_shouldStreamNotes_whenReactiveModeIsEnabled() {
+        ReflectionTestUtils.setField(this.contentsMatching, "reactiveEnabled", true);
+        List<PatientDemographicsDto> demographics = List.of(
+                new PatientDemographicsDto(1L, LocalDate.now().minusYears(25), "M"),
+                new PatientDemographicsDto(2L, LocalDate.now().minusYears(40), "F"));
+        Flux<Note> notes = Flux.just(
+                new Note("1", 1L, "Kenobi", "Fumeur, cholestérol anormal"),
+                new Note("2", 2L, "Leia", "Taille et poids"));
+
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Flux.fromIterable(demographics)).when(spyRiskService).fetchDemographics(anyCollection(), anyString());
+        when(reactiveNoteRepository.findNotesByContentAndPatientIdIn(anyString(), anyCollection())).thenReturn(notes);
+
+        StepVerifier.create(spyRiskService.calculateRiskForPatientsAsync(List.of(1L, 2L), "someValidToken"))
+                .assertNext(risks -> {
+                    assertEquals("In Danger", risks.get(1L));
+                    assertEquals("Borderline", risks.get(2L));
+                })
+                .verifyComplete();
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void calculateRiskForPatientAsync_shouldStreamNotes_whenReactiveModeIsEnabled() {
+        ReflectionTestUtils.setField(this.contentsMatching, "reactiveEnabled", true);
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(24), "m"))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        when(reactiveNoteRepository.findNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(Flux.just(
+                new Note("1", 1L, "Kenobi", "Fumeur"),
+                new Note("2", 1L, "Kenobi", "Taille et poids recommandé")));
+
+        StepVerifier.create(spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken"))
+                .expectNext("None")
+                .verifyComplete();
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void calculateRiskForPatientAsync_shouldReadTheRiskStore_whenStoreIsEnabled() {
+        enableCurrentStore();
+        PatientRisk risk = new PatientRisk(1L, List.of("Fumeur", "Taille", "Poids"), LocalDate.now().minusYears(24), "M", "In Danger");
+        when(patientRiskRepository.findById(1L)).thenReturn(Optional.of(risk));
+
+        RiskService spyRiskService = spy(this.riskService);
+
+        StepVerifier.create(spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken"))
+                .expectNext("In Danger")
+                .verifyComplete();
+        verify(spyRiskService, never()).fetchDemographics(anyLong(), anyString());
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    public void calculateRiskForPatientAsync_shouldAnswerWithoutAnyQuery_whenTheCohortIndexKnowsThePatientHasNoRiskWords() {
+        enableCurrentStore();
+        when(cohortIndexServiceProvider.getIfAvailable()).thenReturn(cohortIndexService);
+        when(cohortIndexService.hasNoRiskWords(1L)).thenReturn(true);
+
+        RiskService spyRiskService = spy(this.riskService);
+
+        StepVerifier.create(spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken"))
+                .expectNext("None")
+                .verifyComplete();
+        verify(spyRiskService, never()).fetchDemographics(anyLong(), anyString());
+        verifyNoInteractions(patientRiskRepository, noteRepository, reactiveNoteRepository);
+    }
+
+    @Test
+    public void calculateRiskForPatientAsync_shouldComputeTheRisk_whenTheRiskStoreIsNotCurrent() {
+        ReflectionTestUtils.setField(this.riskService, "storeEnabled", true);
+        when(riskStoreServiceProvider.getIfAvailable()).thenReturn(riskStoreService);
+        when(riskStoreService.isCurrent()).thenReturn(false);
+        ReflectionTestUtils.setField(this.contentsMatching, "reactiveEnabled", true);
+        when(reactiveNoteRepository.findNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(Flux.just(
+                new Note("1", 1L, "Kenobi", "Fumeur, taille et poids")));
+
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(24), "M"))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+
+        StepVerifier.create(spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken"))
+                .expectNext("In Danger")
+                .verifyComplete();
+        verifyNoInteractions(patientRiskRepository, cohortIndexServiceProvider);
+    }
+
+    @Test
+    public void calculateRiskForPatientAsync_shouldComputeTheRisk_whenPatientIsNotInTheRiskStore() {
+        enableCurrentStore();
+        when(patientRiskRepository.findById(1L)).thenReturn(Optional.empty());
+
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(24), "M"))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(3L);
+
+        assertEquals("In Danger", spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block());
+    }
+
+    @Test
+    public void calculateRiskForAPatient_ShouldReturnNone_whenPatientDemographicsAreEmpty() {
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.empty()).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(3L);
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
+        assertEquals("None", actualRisk);
+    }
+
     @Test
     public void calculateRiskForAPatient_ShouldReturnNone_whenNoRiskWordOccurrencesAreFound() {
         int age = 24;
         String gender = "m";
         long riskWordOccurrences = 0;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "None";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -149,11 +603,10 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 3;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "In Danger";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -163,11 +616,10 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 7;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "In Danger";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -177,11 +629,10 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 3;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Borderline";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -191,11 +642,10 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 2;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "None";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -205,11 +655,10 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 5;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Early onset";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -219,11 +668,10 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 10;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Early onset";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -233,11 +681,10 @@ public class RiskServiceTest {
         String gender = "f";
         long riskWordOccurrences = 5;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "In Danger";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -247,11 +694,10 @@ public class RiskServiceTest {
         String gender = "f";
         long riskWordOccurrences = 3;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "None";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -261,11 +707,10 @@ public class RiskServiceTest {
         String gender = "f";
         long riskWordOccurrences = 8;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Early onset";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -275,11 +720,10 @@ public class RiskServiceTest {
         String gender = "f";
         long riskWordOccurrences = 7;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "In Danger";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -289,11 +733,10 @@ public class RiskServiceTest {
         String gender = "f";
         long riskWordOccurrences = 8;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Early onset";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -303,11 +746,10 @@ public class RiskServiceTest {
         String gender = "f";
         long riskWordOccurrences = 1;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Early onset";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -317,11 +759,10 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 7;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Early onset";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
 
@@ -331,11 +772,148 @@ public class RiskServiceTest {
         String gender = "m";
         long riskWordOccurrences = 10;
         RiskService spyRiskService = spy(this.riskService);
-        doReturn(age).when(spyRiskService).calculateAge(anyLong(), anyString());
-        doReturn(gender).when(spyRiskService).fetchGender(anyLong(), anyString());
-        doReturn(riskWordOccurrences).when(spyRiskService).getRiskWordsOccurrences(anyLong());
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(age), gender))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+        stubRiskWordsOccurrences(riskWordOccurrences);
         String expectedRisk = "Early onset";
-        String actualRisk = spyRiskService.calculateRiskForPatient(1L, "someValidToken");
+        String actualRisk = spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block();
         assertEquals(expectedRisk, actualRisk);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getRiskWordsOccurrences_shouldStopReadingNotes_onceTheSaturationCountIsReached() {
+        AtomicInteger readNotes = new AtomicInteger();
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Note> notes = notesOf(List.of("Fumeur", "Taille et poids", "Cholestérol", "Vertiges"))
+                .peek(note -> readNotes.incrementAndGet())
+                .onClose(() -> closed.set(true));
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(notes);
+
+        assertEquals(3, this.riskService.getRiskWordsOccurrences(1L, () -> 3));
+        assertEquals(2, readNotes.get());
+        assertEquals(true, closed.get());
+    }
+
+    @Test
+    public void getRiskWordsOccurrences_shouldReadEveryNote_belowTheCountCap() {
+        AtomicInteger readNotes = new AtomicInteger();
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong()))
+                .thenReturn(notesOf(List.of("Fumeur", "Taille et poids", "Fumeur")).peek(note -> readNotes.incrementAndGet()));
+
+        assertEquals(3, this.riskService.getRiskWordsOccurrences(1L));
+        assertEquals(3, readNotes.get());
+    }
+
+    @Test
+    public void calculateRiskForPatient_shouldStopReadingNotes_onceTheRiskOfThePatientIsSaturated() {
+        // A man under 30 with 5 risk words or more is at "Early onset" risk, whatever the other risk words
+        AtomicInteger readNotes = new AtomicInteger();
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong()))
+                .thenReturn(notesOf(List.of("Fumeur, taille et poids", "Cholestérol anormal", "Vertiges", "Rechute", "Réaction"))
+                        .peek(note -> readNotes.incrementAndGet()));
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(24), "M"))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+
+        assertEquals("Early onset", spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken").block());
+        assertEquals(2, readNotes.get());
+    }
+
+    @Test
+    public void calculateRiskForPatientAsync_shouldCancelTheNotes_onceTheRiskOfThePatientIsSaturated() {
+        ReflectionTestUtils.setField(this.contentsMatching, "reactiveEnabled", true);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<Note> notes = Flux.fromStream(notesOf(List.of("Fumeur, taille et poids", "Cholestérol anormal", "Vertiges")))
+                .doOnCancel(() -> cancelled.set(true));
+        when(reactiveNoteRepository.findNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(notes);
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(24), "M"))).when(spyRiskService).fetchDemographics(anyLong(), anyString());
+
+        StepVerifier.create(spyRiskService.calculateRiskForPatientAsync(1L, "someValidToken"))
+                .expectNext("Early onset")
+                .verifyComplete();
+        assertEquals(true, cancelled.get());
+    }
+
+    @Test
+    public void calculateRiskTimeline_shouldAccumulateTheRiskWords_withTheAgeOfThePatientAtEachNote() {
+        Instant firstDate = Instant.parse("2018-01-10T12:00:00Z");
+        Instant secondDate = Instant.parse("2019-02-01T12:00:00Z");
+        Instant legacyDate = Instant.parse("2022-01-01T12:00:00Z");
+        String legacyNoteId = new ObjectId(Date.from(legacyDate)).toHexString();
+        List<Note> notes = List.of(
+                new Note(legacyNoteId, 1L, null, "Taille"),
+                new Note("2", 1L, null, "Cholestérol anormal", secondDate, 1L),
+                new Note("1", 1L, null, "Fumeur", firstDate, 0L));
+        when(noteRepository.findTimelineNotesByPatientId(1L)).thenReturn(notes);
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.of(1990, 6, 15), "M")))
+                .when(spyRiskService).fetchDemographics(anyLong(), anyString());
+
+        List<RiskTimelineEntryDto> timeline = spyRiskService.calculateRiskTimeline(1L, "someValidToken").block();
+
+        assertEquals(List.of(
+                new RiskTimelineEntryDto("1", firstDate, 27, "None", List.of("Fumeur")),
+                new RiskTimelineEntryDto("2", secondDate, 28, "In Danger", List.of("Fumeur", "Anormal", "Cholestérol")),
+                new RiskTimelineEntryDto(legacyNoteId, legacyDate, 31, "Borderline", List.of("Taille", "Fumeur", "Anormal", "Cholestérol"))),
+                timeline);
+        verify(noteRepository, times(1)).findTimelineNotesByPatientId(1L);
+    }
+
+    @Test
+    public void explainRiskForPatient_shouldLocateTheRiskWordsAndExclusions_ofEachNote() {
+        when(noteRepository.streamNotesByContentAndPatientId(anyString(), anyLong())).thenReturn(Stream.of(
+                new Note("1", 1L, null, "Fumeur, cholestérol"),
+                new Note("2", 1L, null, "Poids recommandé, taille anormale")));
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(24), "M")))
+                .when(spyRiskService).fetchDemographics(anyLong(), anyString());
+
+        RiskExplanationDto explanation = spyRiskService.explainRiskForPatient(1L, "someValidToken").block();
+
+        assertEquals("In Danger", explanation.getRiskLevel());
+        assertEquals(24, explanation.getAge());
+        assertEquals(List.of("Taille", "Fumeur", "Anormal", "Cholestérol"), explanation.getRiskWords());
+        assertEquals(List.of(
+                new NoteExplanationDto("1", List.of("Fumeur", "Cholestérol"),
+                        List.of(new RiskWordSpan(0, 6, "Fumeur"), new RiskWordSpan(8, 19, "Cholestérol")), List.of(), List.of()),
+                new NoteExplanationDto("2", List.of("Taille", "Anormal"),
+                        List.of(new RiskWordSpan(18, 24, "Taille"), new RiskWordSpan(25, 32, "Anormal")),
+                        List.of(new RiskWordSpan(0, 5, "Poids")),
+                        List.of(new RiskWordExclusion(0, 16, "Poids", "Recommandé")))),
+                explanation.getNotes());
+        verify(noteRepository, times(1)).streamNotesByContentAndPatientId(anyString(), anyLong());
+    }
+
+    @Test
+    public void explainRiskForPatient_shouldExplainTheTokensOfAllTheNotes_whenTheTokensAreEnabled() {
+        ReflectionTestUtils.setField(this.riskService, "matchingMode", MatchingMode.TOKENS);
+        when(noteRepository.streamNotesByPatientId(1L)).thenReturn(Stream.of(
+                new Note("1", 1L, null, "Ancienne fumeuse, compte rendu détaillé"),
+                new Note("2", 1L, null, "Vertiges")));
+        RiskService spyRiskService = spy(this.riskService);
+        doReturn(Mono.just(new PatientDemographicsDto(1L, LocalDate.now().minusYears(24), "M")))
+                .when(spyRiskService).fetchDemographics(anyLong(), anyString());
+
+        RiskExplanationDto explanation = spyRiskService.explainRiskForPatient(1L, "someValidToken").block();
+
+        assertEquals(List.of("Fumeur", "Vertiges"), explanation.getRiskWords());
+        assertEquals(this.riskService.determineRiskLevel(24, "M", 2), explanation.getRiskLevel());
+        assertEquals(List.of(new RiskWordSpan(9, 16, "Fumeur")), explanation.getNotes().get(0).getMatches());
+        assertEquals(List.of(new RiskWordSpan(0, 8, "Vertiges")), explanation.getNotes().get(1).getMatches());
+        verify(noteRepository, never()).streamNotesByContentAndPatientId(anyString(), anyLong());
+    }
+
+    private void enableCurrentStore() {
+        ReflectionTestUtils.setField(this.riskService, "storeEnabled", true);
+        when(riskStoreServiceProvider.getIfAvailable()).thenReturn(riskStoreService);
+        when(riskStoreService.isCurrent()).thenReturn(true);
+    }
+
+    private void stubRiskWordsOccurrences(long riskWordOccurrences) {
+        long mask = (1L << riskWordOccurrences) - 1;
+        doReturn(Mono.just(mask)).when(contentsMatching).findRiskWordsMaskAsync(any(RiskVocabulary.class), anyLong(), any(LongSupplier.class));
+    }
+
+    private static Stream<Note> notesOf(List<String> contents) {
+        return contents.stream().map(content -> new Note(null, 1L, null, content));
+    }
+}
@@ -0,0 +1,111 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.domain.RiskStoreState;
+import com.medilabo.microrisk.repository.PatientRiskRepository;
+import com.medilabo.microrisk.repository.RiskStoreStateRepository;
+import com.medilabo.microrisk.service.RiskService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the risk store against a single node replica set, as required by change streams.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest
+@TestPropertySource(properties = "microrisk.store.enabled=true")
+public class RiskStoreIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:4.4");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PatientRiskRepository patientRiskRepository;
+
+    @Autowired
+    private RiskStoreStateRepository riskStoreStateRepository;
+
+    @Autowired
+    private RiskService riskService;
+
+    @MockBean
+    private WebClient.Builder webClientBuilder;
+
+    @Test
+    public void riskStore_shouldFollowTheChangesOfTheNotes() throws InterruptedException {
+        String demographics = "{\"id\":1,\"birthdate\":\"" + LocalDate.now().minusYears(24) + "\",\"gender\":\"M\"}";
+        when(webClientBuilder.build()).thenReturn(WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body(demographics)
+                        .build()))
+                .build());
+
+        Note first = mongoTemplate.insert(new Note(null, 1L, "Kenobi", "Fumeur"));
+        awaitRisk(1L, risk -> risk.getRiskWords().equals(List.of("Fumeur")));
+
+        mongoTemplate.insert(new Note(null, 1L, "Kenobi", "Taille, poids et cholestérol"));
+        PatientRisk risk = awaitRisk(1L, patientRisk -> patientRisk.getRiskWords().size() == 4);
+        assertEquals("In Danger", risk.getRiskLevel());
+        assertEquals("In Danger", riskService.calculateRiskForPatientAsync(1L, "someValidToken").block());
+
+        mongoTemplate.remove(first);
+        awaitRisk(1L, patientRisk -> patientRisk.getRiskWords().size() == 3);
+    }
+
+    @Test
+    public void riskStore_shouldPersistAResumePoint_whenNoChangeWasProcessedSinceTheRebuild() throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Optional<RiskStoreState> state = riskStoreStateRepository.findById("notes")
+                    .filter(riskStoreState -> riskStoreState.getRiskWords() != null);
+            if (state.isPresent()) {
+                assertNotNull(state.get().getResumeAt());
+                assertEquals(riskService.getRiskWords(), state.get().getRiskWords());
+                assertEquals(riskService.getMatchingMode().name(), state.get().getMatchingMode());
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("Risk store was not rebuilt");
+    }
+
+    private PatientRisk awaitRisk(Long patientId, Predicate<PatientRisk> condition) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Optional<PatientRisk> risk = patientRiskRepository.findById(patientId).filter(condition);
+            if (risk.isPresent()) {
+                return risk.get();
+            }
+            Thread.sleep(100);
+        }
+        return fail("Risk store was not updated for patient " + patientId);
+    }
+}
@@ -0,0 +1,146 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.Note;
+import com.medilabo.microrisk.domain.NoteRiskMask;
+import com.medilabo.microrisk.domain.PatientRisk;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.repository.NoteRiskMaskRepository;
+import com.medilabo.microrisk.repository.PatientRiskRepository;
+import com.medilabo.microrisk.service.CohortIndexService;
+import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskStoreService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RiskStoreServiceTest {
+
+    private static final RiskVocabulary VOCABULARY = RiskVocabulary.compile(1,
+            List.of("Fumeur", "Taille", "Poids", "Cholestérol"), List.of("Recommandé"));
+
+    private static final RiskWordMatcher MATCHER = VOCABULARY.getMatcher();
+
+    @InjectMocks
+    private RiskStoreService riskStoreService;
+
+    @Mock
+    private RiskService riskService;
+
+    @Mock
+    private NoteRiskMaskRepository noteRiskMaskRepository;
+
+    @Mock
+    private PatientRiskRepository patientRiskRepository;
+
+    @Mock
+    private CohortIndexService cohortIndexService;
+
+    private PatientRisk patientRisk;
+
+    @BeforeEach
+    public void setUp() {
+        patientRisk = new PatientRisk(1L, List.of("Fumeur"), LocalDate.now().minusYears(40), "F", "None");
+        lenient().when(riskService.getRiskWordMatcher()).thenReturn(MATCHER);
+        lenient().when(riskService.getVocabulary()).thenReturn(VOCABULARY);
+        lenient().when(riskService.matchRiskWords(eq(VOCABULARY), any(CharSequence.class)))
+                .thenAnswer(invocation -> MATCHER.match(invocation.<CharSequence>getArgument(1)));
+        lenient().when(riskService.determineRiskLevel(any(PatientRisk.class))).thenReturn("Borderline");
+        lenient().when(patientRiskRepository.findById(1L)).thenReturn(Optional.of(patientRisk));
+    }
+
+    @Test
+    public void onNoteChanged_shouldRescanTheNoteAndMergeTheMasksOfThePatient() {
+        Note note = new Note("2", 1L, "Leia", "Taille et cholestérol");
+        when(noteRiskMaskRepository.findById("2")).thenReturn(Optional.empty());
+        when(noteRiskMaskRepository.findByPatientId(1L)).thenReturn(List.of(
+                new NoteRiskMask("1", 1L, MATCHER.match("Fumeur")),
+                new NoteRiskMask("2", 1L, MATCHER.match(note.getContent()))));
+
+        riskStoreService.onNoteChanged(note);
+
+        verify(noteRiskMaskRepository).save(new NoteRiskMask("2", 1L, MATCHER.match(note.getContent())));
+        ArgumentCaptor<PatientRisk> saved = ArgumentCaptor.forClass(PatientRisk.class);
+        verify(patientRiskRepository).save(saved.capture());
+        assertEquals(List.of("Fumeur", "Taille", "Cholestérol"), saved.getValue().getRiskWords());
+        assertEquals("Borderline", saved.getValue().getRiskLevel());
+        verify(riskService).evictRisk(1L);
+        verify(cohortIndexService).update(saved.getValue());
+    }
+
+    @Test
+    public void onNoteChanged_shouldNotUpdateThePatient_whenCountedRiskWordsAreUnchanged() {
+        Note note = new Note("1", 1L, "Leia", "Fumeur, poids recommandé");
+        when(noteRiskMaskRepository.findById("1")).thenReturn(Optional.of(new NoteRiskMask("1", 1L, MATCHER.match("Fumeur"))));
+
+        riskStoreService.onNoteChanged(note);
+
+        verify(noteRiskMaskRepository).save(any(NoteRiskMask.class));
+        verify(noteRiskMaskRepository, never()).findByPatientId(anyLong());
+        verify(patientRiskRepository, never()).save(any(PatientRisk.class));
+        verifyNoInteractions(cohortIndexService);
+    }
+
+    @Test
+    public void onNoteChanged_shouldMatchTheNoteInTheMatchingModeOfTheRiskService() {
+        Note note = new Note("1", 1L, "Leia", "Fumeuse");
+        when(riskService.matchRiskWords(VOCABULARY, "Fumeuse")).thenReturn(MATCHER.match("Fumeur"));
+        when(noteRiskMaskRepository.findById("1")).thenReturn(Optional.empty());
+        when(noteRiskMaskRepository.findByPatientId(1L)).thenReturn(List.of(new NoteRiskMask("1", 1L, MATCHER.match("Fumeur"))));
+
+        riskStoreService.onNoteChanged(note);
+
+        verify(noteRiskMaskRepository).save(new NoteRiskMask("1", 1L, MATCHER.match("Fumeur")));
+    }
+
+    @Test
+    public void isCurrent_shouldTellWhetherTheStoreWasResumedWithTheCurrentVocabulary() {
+        assertFalse(riskStoreService.isCurrent());
+
+        riskStoreService.resume(VOCABULARY);
+
+        assertTrue(riskStoreService.isCurrent());
+        verify(cohortIndexService).rebuild();
+        when(riskService.getVocabulary()).thenReturn(RiskVocabulary.compile(2, List.of("Fumeur"), List.of()));
+        assertFalse(riskStoreService.isCurrent());
+    }
+
+    @Test
+    public void onNoteDeleted_shouldUpdateTheRiskOfThePatient() {
+        when(noteRiskMaskRepository.findById("1")).thenReturn(Optional.of(new NoteRiskMask("1", 1L, MATCHER.match("Fumeur"))));
+        when(noteRiskMaskRepository.findByPatientId(1L)).thenReturn(List.of());
+
+        riskStoreService.onNoteDeleted("1");
+
+        verify(noteRiskMaskRepository).deleteById("1");
+        ArgumentCaptor<PatientRisk> saved = ArgumentCaptor.forClass(PatientRisk.class);
+        verify(patientRiskRepository).save(saved.capture());
+        assertEquals(List.of(), saved.getValue().getRiskWords());
+    }
+
+    @Test
+    public void onNoteDeleted_shouldIgnoreUnknownNotes() {
+        when(noteRiskMaskRepository.findById("unknown")).thenReturn(Optional.empty());
+
+        riskStoreService.onNoteDeleted("unknown");
+
+        verify(noteRiskMaskRepository, never()).deleteById(anyString());
+        verifyNoInteractions(patientRiskRepository);
+    }
+}
@@ -0,0 +1,66 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.dto.RiskTimelineDto;
+import com.medilabo.microrisk.dto.RiskTimelineEntryDto;
+import com.medilabo.microrisk.service.RiskService;
+import com.medilabo.microrisk.service.RiskTimelineService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RiskTimelineServiceTest {
+
+    @InjectMocks
+    private RiskTimelineService riskTimelineService;
+
+    @Mock
+    private RiskService riskService;
+
+    private final List<RiskTimelineEntryDto> timeline = IntStream.range(0, 250)
+            .mapToObj(i -> new RiskTimelineEntryDto(String.valueOf(i), Instant.EPOCH.plusSeconds(i), 40, "None", List.of()))
+            .toList();
+
+    @BeforeEach
+    public void setUp() {
+        when(riskService.calculateRiskTimeline(1L, "someValidToken")).thenReturn(Mono.just(timeline));
+    }
+
+    @Test
+    public void getRiskTimeline_shouldReturnTheRequestedPage() {
+        RiskTimelineDto page = riskTimelineService.getRiskTimeline(1L, 2, 20, "someValidToken").block();
+
+        assertEquals(250, page.getTotalEntries());
+        assertEquals(timeline.subList(40, 60), page.getEntries());
+    }
+
+    @Test
+    public void getRiskTimeline_shouldBoundThePageSize() {
+        RiskTimelineDto page = riskTimelineService.getRiskTimeline(1L, 2, 1000, "someValidToken").block();
+
+        assertEquals(RiskTimelineService.MAX_TIMELINE_PAGE_SIZE, page.getSize());
+        assertEquals(timeline.subList(200, 250), page.getEntries());
+        verify(riskService, times(1)).calculateRiskTimeline(1L, "someValidToken");
+    }
+
+    @Test
+    public void getRiskTimeline_shouldReturnAnEmptyPage_pastTheLastEntry() {
+        RiskTimelineDto page = riskTimelineService.getRiskTimeline(1L, 5, 100, "someValidToken").block();
+
+        assertEquals(250, page.getTotalEntries());
+        assertEquals(List.of(), page.getEntries());
+    }
+}
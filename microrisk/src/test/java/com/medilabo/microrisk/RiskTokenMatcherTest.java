@@ -0,0 +1,91 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.matcher.FrenchTokenizer;
+import com.medilabo.microrisk.matcher.RiskTokenMatcher;
+import com.medilabo.microrisk.matcher.RiskWordExclusion;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RiskTokenMatcherTest {
+
+    private static final List<String> RISK_WORDS = List.of("Hémoglobine A1C", "Microalbumine", "Taille", "Poids", "Fumeur", "Fumeuse", "Anormal", "Cholestérol", "Vertiges", "Vertige", "Rechute", "Réaction", "Anticorps");
+    private static final List<String> EXCLUSION_WORDS = List.of("Égal", "Recommandé");
+
+    private RiskTokenMatcher tokenMatcher;
+    private RiskWordMatcher matcher;
+
+    @BeforeEach
+    public void setUp() {
+        tokenMatcher = RiskTokenMatcher.compile(RISK_WORDS, EXCLUSION_WORDS);
+        matcher = RiskWordMatcher.compile(RISK_WORDS, EXCLUSION_WORDS);
+    }
+
+    @Test
+    public void match_shouldCountRiskWordsHavingTheSameStem_once() {
+        assertEquals(List.of("Vertiges"), matcher.riskWordsOf(tokenMatcher.match("Vertige passager, puis vertiges répétés")));
+        assertEquals(List.of("Fumeur"), matcher.riskWordsOf(tokenMatcher.match("Ancienne fumeuse")));
+    }
+
+    @Test
+    public void match_shouldOnlyMatchWholeWords() {
+        assertEquals(0L, tokenMatcher.match("Compte rendu détaillé, anticorpsx"));
+        assertEquals(List.of("Taille"), matcher.riskWordsOf(tokenMatcher.match("Tailles relevées")));
+    }
+
+    @Test
+    public void match_shouldFoldCaseAndAccents_andMatchPhrases() {
+        assertEquals(List.of("Hémoglobine A1C", "Anormal", "Cholestérol"),
+                matcher.riskWordsOf(tokenMatcher.match("HEMOGLOBINE A1C élevée, cholesterol anormaux")));
+        assertEquals(0L, tokenMatcher.match("Hémoglobine normale, A1C à revoir"));
+    }
+
+    @Test
+    public void match_shouldApplyExclusions_acrossPunctuation() {
+        assertEquals(0L, tokenMatcher.match("Poids, recommandé"));
+        assertEquals(0L, tokenMatcher.match("Taille égale à la précédente"));
+        assertEquals(List.of("Poids"), matcher.riskWordsOf(tokenMatcher.match("Poids en hausse, taille égale")));
+    }
+
+    @Test
+    public void explain_shouldLocateTheTokensOfTheMatchedPhrases() {
+        String content = "HÉMOGLOBINE  a1c, vertiges. Poids, recommandé; puis fumeuse";
+
+        RiskWordExplanation explanation = tokenMatcher.explain(content);
+
+        assertEquals(tokenMatcher.match(content), explanation.mask());
+        assertEquals(List.of(
+                new RiskWordSpan(0, 16, "Hémoglobine A1C"),
+                new RiskWordSpan(18, 26, "Vertiges"),
+                new RiskWordSpan(52, 59, "Fumeur")), explanation.matches());
+        assertEquals(List.of(new RiskWordSpan(28, 33, "Poids")), explanation.excludedMatches());
+        assertEquals(List.of(new RiskWordExclusion(28, 45, "Poids", "Recommandé")), explanation.exclusions());
+    }
+
+    @Test
+    public void explain_shouldCountTheRiskWordsOfMatch() {
+        List<String> notes = List.of("", "Taille égale, poids", "Anticorps réaction égal", "égal Rechute rechute", "Vertige vertiges VERTIGES");
+        for (String note : notes) {
+            assertEquals(tokenMatcher.match(note), tokenMatcher.explain(note).mask(), note);
+        }
+    }
+
+    @Test
+    public void match_shouldMatchTheCachedTokens_asTheContent() {
+        String content = "Le patient est fumeur, vertiges et réaction aux anticorps";
+        assertEquals(tokenMatcher.match(content), tokenMatcher.match(FrenchTokenizer.tokenHashes(content)));
+    }
+
+    @Test
+    public void compile_shouldRejectWordsWithoutToken() {
+        assertThrows(IllegalArgumentException.class, () -> RiskTokenMatcher.compile(List.of("Poids"), List.of("...")));
+        assertThrows(IllegalArgumentException.class, () -> RiskTokenMatcher.compile(List.of("--"), EXCLUSION_WORDS));
+    }
+}
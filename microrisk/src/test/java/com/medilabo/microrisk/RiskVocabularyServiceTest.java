@@ -0,0 +1,114 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.domain.ExclusionWord;
+import com.medilabo.microrisk.domain.RiskWord;
+import com.medilabo.microrisk.event.RiskVocabularyChangedEvent;
+import com.medilabo.microrisk.exception.InvalidRiskVocabularyException;
+import com.medilabo.microrisk.matcher.RiskVocabulary;
+import com.medilabo.microrisk.service.RiskVocabularyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class RiskVocabularyServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    private Path vocabulary;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    private RiskVocabularyService riskVocabularyService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        vocabulary = directory.resolve("risk-vocabulary.csv");
+        Files.writeString(vocabulary, "# Vocabulary\nrisk;Fumeur\nrisk;Poids\nexclusion;Recommandé\n");
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        riskVocabularyService = new RiskVocabularyService();
+        ReflectionTestUtils.setField(riskVocabularyService, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(riskVocabularyService, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(riskVocabularyService, "vocabularyLocation", vocabulary.toUri().toString());
+        riskVocabularyService.init();
+    }
+
+    @Test
+    public void init_shouldLoadTheVocabularyFile() {
+        RiskVocabulary current = riskVocabularyService.getVocabulary();
+
+        assertEquals(1, current.getVersion());
+        assertEquals(List.of("Fumeur", "Poids"), current.getRiskWords());
+        assertEquals(List.of("Recommandé"), current.getExclusionWords());
+        assertEquals("Fumeur Poids", current.getSearchQuery());
+    }
+
+    @Test
+    public void fingerprint_shouldBeTheOneOfTheRiskMasksWrittenByMicronotes() {
+        RiskVocabulary defaults = RiskVocabulary.compile(0,
+                Stream.of(RiskWord.values()).map(RiskWord::getRiskWord).toList(),
+                Stream.of(ExclusionWord.values()).map(ExclusionWord::getExclusionWord).toList());
+
+        assertEquals("92bfed9e2026411d", defaults.getFingerprint());
+        assertNotEquals(defaults.getFingerprint(), riskVocabularyService.getVocabulary().getFingerprint());
+    }
+
+    @Test
+    public void reload_shouldSwapTheVocabulary_andPublishIt() throws IOException {
+        RiskVocabulary inFlight = riskVocabularyService.getVocabulary();
+
+        Files.writeString(vocabulary, "risk;Fumeur\nrisk;Poids\nrisk;Rechute\nexclusion;Recommandé\n");
+        RiskVocabulary reloaded = riskVocabularyService.reload();
+
+        assertSame(reloaded, riskVocabularyService.getVocabulary());
+        assertEquals(2, reloaded.getVersion());
+        assertEquals(3, Long.bitCount(reloaded.getMatcher().match("Fumeur, poids et rechute")));
+        assertEquals(2, Long.bitCount(inFlight.getMatcher().match("Fumeur, poids et rechute")));
+        verify(eventPublisher).publishEvent(new RiskVocabularyChangedEvent(reloaded));
+    }
+
+    @Test
+    public void reload_shouldKeepTheVocabulary_whenTheWordsAreUnchanged() {
+        RiskVocabulary current = riskVocabularyService.getVocabulary();
+
+        assertSame(current, riskVocabularyService.reload());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void reload_shouldKeepTheVocabulary_whenTheFileIsInvalid() throws IOException {
+        RiskVocabulary current = riskVocabularyService.getVocabulary();
+
+        Files.writeString(vocabulary, "risk;Fumeur\nrisky;Poids\n");
+
+        assertThrows(InvalidRiskVocabularyException.class, () -> riskVocabularyService.reload());
+        assertSame(current, riskVocabularyService.getVocabulary());
+    }
+
+    @Test
+    public void getVocabulary_shouldDefaultToTheRiskWordEnums() {
+        RiskVocabulary defaults = new RiskVocabularyService().getVocabulary();
+
+        assertEquals(0, defaults.getVersion());
+        assertEquals(13, defaults.getRiskWords().size());
+        assertEquals(List.of("Égal", "Recommandé"), defaults.getExclusionWords());
+    }
+}
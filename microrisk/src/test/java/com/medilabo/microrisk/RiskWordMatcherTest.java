@@ -0,0 +1,142 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.matcher.RiskWordExclusion;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RiskWordMatcherTest {
+
+    private static final List<String> RISK_WORDS = List.of("Hémoglobine A1C", "Microalbumine", "Taille", "Poids", "Fumeur", "Fumeuse", "Anormal", "Cholestérol", "Vertiges", "Vertige", "Rechute", "Réaction", "Anticorps");
+    private static final List<String> EXCLUSION_WORDS = List.of("Égal", "Recommandé");
+
+    private RiskWordMatcher matcher;
+
+    @BeforeEach
+    public void setUp() {
+        matcher = RiskWordMatcher.compile(RISK_WORDS, EXCLUSION_WORDS);
+    }
+
+    @Test
+    public void match_shouldFindRiskWords_regardlessOfCase() {
+        long mask = matcher.match("Le patient est FUMEUR et son taux de CHOLESTÉROL est anormal");
+        assertEquals(List.of("Fumeur", "Anormal", "Cholestérol"), matcher.riskWordsOf(mask));
+    }
+
+    @Test
+    public void match_shouldCountOverlappingRiskWords() {
+        long mask = matcher.match("Vertiges de l'amour");
+        assertEquals(List.of("Vertiges", "Vertige"), matcher.riskWordsOf(mask));
+    }
+
+    @Test
+    public void match_shouldExcludeRiskWord_whenExclusionWordIsBeforeOrAfter() {
+        assertEquals(0L, matcher.match("J'aime les petits égal poids"));
+        assertEquals(0L, matcher.match("J'aime les petits poids recommandé"));
+    }
+
+    @Test
+    public void match_shouldExcludeRiskWord_evenWhenItAlsoAppearsAlone() {
+        long mask = matcher.match("Poids recommandé. Poids stable, fumeur");
+        assertEquals(List.of("Fumeur"), matcher.riskWordsOf(mask));
+    }
+
+    @Test
+    public void match_shouldReturnZero_whenNoRiskWordIsPresent() {
+        assertEquals(0L, matcher.match("Je vais chez ce cher Serge"));
+        assertEquals(0L, matcher.match(""));
+    }
+
+    @Test
+    public void match_shouldGiveTheSameResultsAsContainsBasedMatching() {
+        List<String> fragments = List.of("poids", "Poids", "égal", "ÉGAL", "recommandé", "Recommandé", " ", "  ", "vertige", "s",
+                "Hémoglobine", " A1C", "fumeu", "r", "se", "x", "İ", "microalbumine", "Réaction", "anticorps", ".");
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder content = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                content.append(fragments.get(random.nextInt(fragments.size())));
+            }
+            String note = content.toString();
+            assertEquals(containsBasedMatch(note), Set.copyOf(matcher.riskWordsOf(matcher.match(note))), note);
+            assertEquals(matcher.match(note), matcher.explain(note).mask(), note);
+        }
+    }
+
+    @Test
+    public void spans_shouldLocateTheCountedRiskWords_inTheOriginalContent() {
+        String content = "İ FUMEUR, vertiges. Poids recommandé, poids stable";
+
+        assertEquals(List.of(
+                new RiskWordSpan(2, 8, "Fumeur"),
+                new RiskWordSpan(10, 17, "Vertige"),
+                new RiskWordSpan(10, 18, "Vertiges")), matcher.spans(content));
+        assertEquals(List.of(), matcher.spans(""));
+    }
+
+    @Test
+    public void explain_shouldLocateTheExclusions_thatPreventRiskWordsFromCounting() {
+        String content = "Fumeur. Poids recommandé, puis poids";
+
+        RiskWordExplanation explanation = matcher.explain(content);
+
+        assertEquals(List.of("Fumeur"), matcher.riskWordsOf(explanation.mask()));
+        assertEquals(List.of(new RiskWordSpan(0, 6, "Fumeur")), explanation.matches());
+        assertEquals(List.of(new RiskWordSpan(8, 13, "Poids"), new RiskWordSpan(31, 36, "Poids")), explanation.excludedMatches());
+        assertEquals(List.of(new RiskWordExclusion(8, 24, "Poids", "Recommandé")), explanation.exclusions());
+        assertEquals(List.of(new RiskWordExclusion(0, 11, "Taille", "Égal")), matcher.explain("ÉGAL TAILLE").exclusions());
+    }
+
+    @Test
+    public void riskWordsOf_shouldCountDuplicatedRiskWordsOnce() {
+        RiskWordMatcher duplicated = RiskWordMatcher.compile(List.of("Poids", "Poids", "Taille"), EXCLUSION_WORDS);
+        assertEquals(List.of("Poids", "Taille"), duplicated.getRiskWords());
+        assertEquals(2, Long.bitCount(duplicated.match("poids et taille")));
+    }
+
+    @Test
+    public void maskOf_shouldReverseRiskWordsOf() {
+        long mask = matcher.match("Fumeur, poids et cholestérol");
+        assertEquals(mask, matcher.maskOf(matcher.riskWordsOf(mask)));
+        assertEquals(0L, matcher.maskOf(List.of("Inconnu")));
+    }
+
+    @Test
+    public void isCompiledFrom_shouldCompareTheVocabulary() {
+        assertTrue(matcher.isCompiledFrom(RISK_WORDS, EXCLUSION_WORDS));
+        assertEquals(false, matcher.isCompiledFrom(RISK_WORDS, List.of("Égal")));
+    }
+
+    @Test
+    public void compile_shouldRejectBlankWords() {
+        assertThrows(IllegalArgumentException.class, () -> RiskWordMatcher.compile(List.of("Poids", " "), EXCLUSION_WORDS));
+    }
+
+    // Reference implementation, as previously done in RiskService
+
+    private static Set<String> containsBasedMatch(String content) {
+        String lowerContent = content.toLowerCase();
+        return RISK_WORDS.stream()
+                .filter(riskWord -> {
+                    String lowerRiskWord = riskWord.toLowerCase();
+                    return lowerContent.contains(lowerRiskWord) && EXCLUSION_WORDS.stream()
+                            .map(String::toLowerCase)
+                            .noneMatch(lowerExclusionWord ->
+                                    lowerContent.contains(lowerExclusionWord + " " + lowerRiskWord) ||
+                                            lowerContent.contains(lowerRiskWord + " " + lowerExclusionWord));
+                })
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,43 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.service.ServiceTokenService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServiceTokenServiceTest {
+
+    private static final String SECRET = "5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437";
+
+    private final ServiceTokenService serviceTokenService = new ServiceTokenService();
+
+    @BeforeEach
+    public void setUp() {
+        // As set in docker-compose.yml, with a leading space
+        ReflectionTestUtils.setField(serviceTokenService, "secret", " " + SECRET);
+    }
+
+    @Test
+    public void getToken_shouldIssueATokenTheGatewayValidates_andReuseIt() {
+        String token = serviceTokenService.getToken();
+
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        assertEquals("microrisk", claims.getSubject());
+        assertTrue(claims.getExpiration().after(new Date(System.currentTimeMillis() + 60_000)));
+        assertSame(token, serviceTokenService.getToken());
+    }
+}
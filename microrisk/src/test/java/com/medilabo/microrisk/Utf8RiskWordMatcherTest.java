@@ -0,0 +1,109 @@
+package com.medilabo.microrisk;
+
+import com.medilabo.microrisk.matcher.RiskWordExclusion;
+import com.medilabo.microrisk.matcher.RiskWordExplanation;
+import com.medilabo.microrisk.matcher.RiskWordMatcher;
+import com.medilabo.microrisk.matcher.RiskWordSpan;
+import com.medilabo.microrisk.matcher.Utf8RiskWordMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Utf8RiskWordMatcherTest {
+
+    private static final List<String> RISK_WORDS = List.of("Hémoglobine A1C", "Microalbumine", "Taille", "Poids", "Fumeur", "Fumeuse", "Anormal", "Cholestérol", "Vertiges", "Vertige", "Rechute", "Réaction", "Anticorps");
+    private static final List<String> EXCLUSION_WORDS = List.of("Égal", "Recommandé");
+
+    private final Utf8RiskWordMatcher matcher = Utf8RiskWordMatcher.compile(RISK_WORDS, EXCLUSION_WORDS);
+    private final RiskWordMatcher charMatcher = RiskWordMatcher.compile(RISK_WORDS, EXCLUSION_WORDS);
+
+    @Test
+    public void match_shouldFindRiskWords_regardlessOfCaseAndAccents() {
+        assertEquals(mask("Hémoglobine A1C", "Cholestérol", "Réaction"), match("HEMOGLOBINE a1c, cholesterol et REACTION"));
+        assertEquals(mask("Hémoglobine A1C", "Cholestérol"), match("hÉmOgLoBiNe A1C, CHOLESTÊROL"));
+    }
+
+    @Test
+    public void match_shouldIgnoreExcludedRiskWords_withOrWithoutAccents() {
+        assertEquals(0L, match("Poids egal, réaction RECOMMANDE"));
+        assertEquals(mask("Taille"), match("Égal poids, taille"));
+    }
+
+    @Test
+    public void match_shouldMatchLikeTheCharMatcher_onRandomNotes() {
+        String[] words = {"le", "patient", "fumeur", "égal", "poids", "recommandé", "Taille", "VERTIGES", "rechute",
+                "Hémoglobine", "A1C", "anticorps", "Réaction", "cholestérol", "anormal", "日本", "œdème", "ß", "!", "\n"};
+        Random random = new Random(7);
+        for (int note = 0; note < 500; note++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = random.nextInt(40); i > 0; i--) {
+                content.append(words[random.nextInt(words.length)]).append(random.nextInt(5) == 0 ? "" : " ");
+            }
+            assertEquals(charMatcher.match(content), match(content.toString()), content.toString());
+        }
+    }
+
+    @Test
+    public void match_shouldScanTheRemainingBytesOfABuffer() {
+        byte[] bytes = "fumeur|poids et taille|rechute".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 7, 15).slice();
+
+        assertEquals(mask("Taille", "Poids"), matcher.match(buffer));
+        assertEquals(0, buffer.position());
+        assertEquals(mask("Taille", "Poids"), matcher.match(ByteBuffer.allocateDirect(15).put(bytes, 7, 15).flip()));
+    }
+
+    @Test
+    public void match_shouldMatchNonLatinWords() {
+        Utf8RiskWordMatcher oedema = Utf8RiskWordMatcher.compile(List.of("œdème", "Æsthésie"), List.of());
+
+        assertEquals(3L, oedema.match("œDEME et æsthesie".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void explain_shouldLocateTheRiskWords_regardlessOfAccents() {
+        String content = "😀 HEMOGLOBINE a1c, poids egal. Cholestêrol";
+
+        RiskWordExplanation explanation = matcher.explain(content);
+
+        assertEquals(mask("Hémoglobine A1C", "Cholestérol"), explanation.mask());
+        assertEquals(List.of(new RiskWordSpan(3, 18, "Hémoglobine A1C"), new RiskWordSpan(32, 43, "Cholestérol")), explanation.matches());
+        assertEquals(List.of(new RiskWordSpan(20, 25, "Poids")), explanation.excludedMatches());
+        assertEquals(List.of(new RiskWordExclusion(20, 30, "Poids", "Égal")), explanation.exclusions());
+        assertEquals(List.of(new RiskWordSpan(0, 5, "œdème")),
+                Utf8RiskWordMatcher.compile(List.of("œdème"), List.of()).explain("œDEME").matches());
+    }
+
+    @Test
+    public void explain_shouldCountTheRiskWordsOfMatch_onRandomNotes() {
+        String[] words = {"fumeur", "égal", "EGAL", "poids", "recommande", "Taille", "VERTIGES", "hemoglobine", "A1C",
+                "réaction", "CHOLESTÉROL", "日本", "œdème", "😀", "\uD800", "ß", "!"};
+        Random random = new Random(11);
+        for (int note = 0; note < 500; note++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                content.append(words[random.nextInt(words.length)]).append(random.nextInt(5) == 0 ? "" : " ");
+            }
+            assertEquals(match(content.toString()), matcher.explain(content).mask(), content.toString());
+        }
+    }
+
+    @Test
+    public void compile_shouldRejectBlankWords() {
+        assertThrows(IllegalArgumentException.class, () -> Utf8RiskWordMatcher.compile(List.of("Fumeur", " "), List.of()));
+    }
+
+    private long match(String content) {
+        return matcher.match(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long mask(String... riskWords) {
+        return charMatcher.maskOf(List.of(riskWords));
+    }
+}